@@ -0,0 +1,75 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Источник данных с репликами для чтения (database.replicas.enabled=true).
+ *
+ * Основная БД настраивается как обычно (spring.datasource), реплики - списком
+ * database.replicas.hosts. Без этой настройки используется стандартный источник данных Spring Boot.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "database.replicas", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaDataSourceProperties.class)
+public class ReplicaDataSourceConfig {
+
+    /**
+     * Пул основной БД с настройками spring.datasource.hikari
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             DataSourceProperties dataSourceProperties,
+                                                             ReplicaDataSourceProperties replicaProperties,
+                                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaProperties.getHosts().size(); i++) {
+            ReplicaDataSourceProperties.Replica host = replicaProperties.getHosts().get(i);
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("BankCardsReplica-" + i);
+            replica.setDriverClassName(dataSourceProperties.determineDriverClassName());
+            replica.setJdbcUrl(host.getUrl());
+            replica.setUsername(host.getUsername());
+            replica.setPassword(host.getPassword());
+            replica.setMaximumPoolSize(replicaProperties.getMaximumPoolSize());
+            replica.setReadOnly(true);
+            // Реплики не бины, поэтому метрики Hikari Spring Boot подключает только к основному пулу
+            meterRegistry.ifAvailable(registry -> replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, replicaProperties.getSelection(),
+                replicaProperties.getMaxLagSeconds(),
+                replicaProperties.getLagCheckIntervalMs() * replicaProperties.getStatusTtlChecks(),
+                replicaProperties.getLagQuery());
+    }
+
+    /**
+     * Источник данных приложения: соединение выбирается при первом запросе транзакции,
+     * когда уже известно, только ли она для чтения
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
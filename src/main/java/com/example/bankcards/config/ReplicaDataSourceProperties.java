@@ -0,0 +1,56 @@
+package com.example.bankcards.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки реплик БД для чтения (database.replicas)
+ */
+@Data
+@ConfigurationProperties(prefix = "database.replicas")
+public class ReplicaDataSourceProperties {
+
+    /** Включает маршрутизацию транзакций только для чтения на реплики */
+    private boolean enabled;
+
+    /** Способ выбора реплики */
+    private Selection selection = Selection.ROUND_ROBIN;
+
+    /** Допустимое отставание реплики в секундах; отрицательное значение отключает проверку отставания */
+    private long maxLagSeconds = 5;
+
+    /** Интервал проверки отставания реплик в миллисекундах */
+    private long lagCheckIntervalMs = 5000;
+
+    /** Результат проверки устаревает через столько интервалов проверки, после чего реплика не используется */
+    private int statusTtlChecks = 3;
+
+    /** Запрос отставания: строка с колонкой Seconds_Behind_Source (или Seconds_Behind_Master) */
+    private String lagQuery = "SHOW REPLICA STATUS";
+
+    /** Размер пула соединений каждой реплики */
+    private int maximumPoolSize = 10;
+
+    private List<Replica> hosts = new ArrayList<>();
+
+    /**
+     * Способы выбора реплики
+     */
+    public enum Selection {
+        ROUND_ROBIN,        // По очереди
+        LEAST_CONNECTIONS   // Реплика с наименьшим числом занятых соединений
+    }
+
+    /**
+     * Параметры подключения к реплике
+     */
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Маршрутизация соединений между основной БД и репликами.
+ *
+ * Транзакции только для чтения (@Transactional(readOnly = true)) получают соединение реплики,
+ * все остальные - основной БД. Реплика пропускается, если она недоступна или отстает больше
+ * допустимого; если подходящих реплик нет, чтение идет в основную БД. Отставание проверяется
+ * по расписанию, а не при каждом соединении; до первой проверки реплики не используются.
+ * Результат проверки действует ограниченное время: если проверки остановились (завис планировщик,
+ * проверка висит на сетевом таймауте), реплика перестает считаться свежей и чтения уходят в основную БД.
+ *
+ * Чтение с последующей записью (read-modify-write) и поиск учетных данных при входе должны выполняться
+ * в транзакции на запись: реплика может еще не содержать только что закоммиченные изменения.
+ *
+ * Работает только за LazyConnectionDataSourceProxy: признак readOnly выставляется уже после
+ * открытия транзакции, и соединение должно браться при первом запросе.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    static final String PRIMARY = "primary";
+
+    private final List<ReplicaNode> replicas = new ArrayList<>();
+    private final ReplicaDataSourceProperties.Selection selection;
+    private final long maxLagSeconds;
+    private final long statusTtlNanos;
+    private final String lagQuery;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final LongAdder primaryFallbacks = new LongAdder();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicaDataSources,
+                                    ReplicaDataSourceProperties.Selection selection,
+                                    long maxLagSeconds, long statusTtlMillis, String lagQuery) {
+        this.selection = selection;
+        this.maxLagSeconds = maxLagSeconds;
+        this.statusTtlNanos = TimeUnit.MILLISECONDS.toNanos(statusTtlMillis);
+        this.lagQuery = lagQuery;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            ReplicaNode node = new ReplicaNode("replica-" + i, replicaDataSources.get(i));
+            replicas.add(node);
+            targets.put(node.key, node.dataSource);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        ReplicaNode replica = selectReplica();
+        if (replica == null) {
+            primaryFallbacks.increment();
+            return PRIMARY;
+        }
+        replica.reads.increment();
+        return replica.key;
+    }
+
+    private ReplicaNode selectReplica() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (selection == ReplicaDataSourceProperties.Selection.LEAST_CONNECTIONS) {
+            ReplicaNode best = null;
+            int bestActive = Integer.MAX_VALUE;
+            for (ReplicaNode node : replicas) {
+                if (isUsable(node, now)) {
+                    int active = node.activeConnections();
+                    if (active < bestActive) {
+                        best = node;
+                        bestActive = active;
+                    }
+                }
+            }
+            return best;
+        }
+        int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            ReplicaNode node = replicas.get((start + i) % size);
+            if (isUsable(node, now)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Реплика прошла последнюю проверку, и эта проверка не устарела
+     */
+    private boolean isUsable(ReplicaNode node, long now) {
+        return node.available && now - node.checkedAt <= statusTtlNanos;
+    }
+
+    /**
+     * Проверяет доступность и отставание реплик
+     */
+    @Scheduled(fixedDelayString = "${database.replicas.lag-check-interval-ms:5000}")
+    public void checkReplicas() {
+        for (int i = 0; i < replicas.size(); i++) {
+            ReplicaNode node = replicas.get(i);
+            Long lag;
+            try {
+                lag = measureLag(node.dataSource);
+            } catch (SQLException e) {
+                logger.debug("Ошибка проверки реплики {}: {}", node.key, e.getMessage());
+                lag = null;
+            }
+            updateLag(i, lag);
+        }
+    }
+
+    /**
+     * Обновляет состояние реплики по измеренному отставанию
+     * @param lagSeconds отставание в секундах, null - реплика недоступна или репликация остановлена
+     */
+    void updateLag(int index, Long lagSeconds) {
+        ReplicaNode node = replicas.get(index);
+        boolean available = lagSeconds != null && (maxLagSeconds < 0 || lagSeconds <= maxLagSeconds);
+        node.lagSeconds = lagSeconds;
+        node.checkedAt = System.nanoTime();
+        if (node.available != available) {
+            if (available) {
+                logger.info("✅ Реплика {} снова принимает чтения (отставание {} с)", node.key, lagSeconds);
+            } else {
+                logger.warn("⚠️ Реплика {} исключена из чтения: {}", node.key,
+                        lagSeconds == null ? "недоступна" : "отставание " + lagSeconds + " с");
+            }
+        }
+        node.available = available;
+    }
+
+    private Long measureLag(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            if (maxLagSeconds < 0) {
+                // Отставание не проверяется, достаточно живого соединения
+                return connection.isValid(2) ? 0L : null;
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                if (!resultSet.next()) {
+                    // Сервер не реплицирует: данные могут быть сколько угодно старыми
+                    return null;
+                }
+                long lag = resultSet.getLong(lagColumn(resultSet));
+                return resultSet.wasNull() ? null : lag;
+            }
+        }
+    }
+
+    private static String lagColumn(ResultSet resultSet) throws SQLException {
+        int columns = resultSet.getMetaData().getColumnCount();
+        for (int i = 1; i <= columns; i++) {
+            if ("Seconds_Behind_Source".equalsIgnoreCase(resultSet.getMetaData().getColumnLabel(i))) {
+                return "Seconds_Behind_Source";
+            }
+        }
+        // MySQL до 8.0.22
+        return "Seconds_Behind_Master";
+    }
+
+    /**
+     * Количество чтений, ушедших в основную БД из-за отсутствия подходящей реплики
+     */
+    public long getPrimaryFallbacks() {
+        return primaryFallbacks.sum();
+    }
+
+    /**
+     * Состояние реплик для мониторинга
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("primaryFallbacks", getPrimaryFallbacks());
+        for (ReplicaNode node : replicas) {
+            Map<String, Object> nodeStats = new LinkedHashMap<>();
+            nodeStats.put("available", isUsable(node, System.nanoTime()));
+            nodeStats.put("lagSeconds", node.lagSeconds);
+            nodeStats.put("reads", node.reads.sum());
+            nodeStats.put("activeConnections", node.activeConnections());
+            stats.put(node.key, nodeStats);
+        }
+        return stats;
+    }
+
+    /**
+     * Закрывает пулы соединений реплик (пул основной БД закрывается своим бином)
+     */
+    public void close() {
+        for (ReplicaNode node : replicas) {
+            if (node.dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    logger.warn("Ошибка при закрытии пула реплики {}: {}", node.key, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Реплика и ее состояние
+     */
+    private static final class ReplicaNode {
+        private final String key;
+        private final DataSource dataSource;
+        private final LongAdder reads = new LongAdder();
+        // До первой проверки чтения идут в основную БД
+        private volatile boolean available;
+        private volatile Long lagSeconds;
+        private volatile long checkedAt;
+
+        private ReplicaNode(String key, DataSource dataSource) {
+            this.key = key;
+            this.dataSource = dataSource;
+        }
+
+        private int activeConnections() {
+            if (dataSource instanceof HikariDataSource hikari) {
+                HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+                return pool == null ? 0 : pool.getActiveConnections();
+            }
+            return 0;
+        }
+    }
+}
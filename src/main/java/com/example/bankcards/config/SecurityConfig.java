@@ -1,7 +1,13 @@
 package com.example.bankcards.config;
 
 import com.example.bankcards.security.CustomUserDetailsService;
+import com.example.bankcards.security.AuthenticationBusyException;
 import com.example.bankcards.security.JwtAuthenticationFilter;
+import com.example.bankcards.security.JwtLogoutHandler;
+import com.example.bankcards.security.LoginAttemptTracker;
+import com.example.bankcards.security.LoginThrottleFilter;
+import com.example.bankcards.security.PasswordHashingExecutor;
+import com.example.bankcards.security.PooledBCryptPasswordEncoder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -11,9 +17,12 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 /**
@@ -25,11 +34,21 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfig {
     private final CustomUserDetailsService userDetailsService;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final LoginThrottleFilter loginThrottleFilter;
+    private final LoginAttemptTracker loginAttemptTracker;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final JwtLogoutHandler jwtLogoutHandler;
 
     @Autowired
-    public SecurityConfig(CustomUserDetailsService userDetailsService, JwtAuthenticationFilter jwtAuthenticationFilter) {
+    public SecurityConfig(CustomUserDetailsService userDetailsService, JwtAuthenticationFilter jwtAuthenticationFilter,
+                          LoginThrottleFilter loginThrottleFilter, LoginAttemptTracker loginAttemptTracker,
+                          PasswordHashingExecutor passwordHashingExecutor, JwtLogoutHandler jwtLogoutHandler) {
         this.userDetailsService = userDetailsService;
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.loginThrottleFilter = loginThrottleFilter;
+        this.loginAttemptTracker = loginAttemptTracker;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.jwtLogoutHandler = jwtLogoutHandler;
     }
 
     @Bean
@@ -41,6 +60,10 @@ public class SecurityConfig {
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/swagger-ui/**", "/swagger-ui.html").permitAll()
                         
+                        // Actuator (отдельный порт management.server.port): проверка живости и сбор метрик
+                        .requestMatchers("/actuator/health", "/actuator/health/**", "/actuator/prometheus").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+                        
                         // Веб-страницы
                         .requestMatchers("/login").permitAll()
                         .requestMatchers("/css/**", "/js/**", "/images/**").permitAll()
@@ -72,12 +95,13 @@ public class SecurityConfig {
                 )
                 .formLogin(form -> form
                         .loginPage("/login")
-                        .defaultSuccessUrl("/", true)
-                        .failureUrl("/login?error=true")
+                        .successHandler(formLoginSuccessHandler())
+                        .failureHandler(formLoginFailureHandler())
                         .permitAll()
                 )
                 .logout(logout -> logout
                         .logoutUrl("/logout")
+                        .addLogoutHandler(jwtLogoutHandler)
                         .logoutSuccessUrl("/login?logout=true")
                         .invalidateHttpSession(true)
                         .deleteCookies("JSESSIONID")
@@ -88,6 +112,7 @@ public class SecurityConfig {
                         .maximumSessions(1)
                         .maxSessionsPreventsLogin(false)
                 )
+                .addFilterBefore(loginThrottleFilter, UsernamePasswordAuthenticationFilter.class)
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
@@ -99,11 +124,43 @@ public class SecurityConfig {
         authenticationManagerBuilder
                 .userDetailsService(userDetailsService)
                 .passwordEncoder(passwordEncoder());
+        // Без родительского менеджера неудачный вход не проверяет пароль второй раз тем же провайдером
+        authenticationManagerBuilder.parentAuthenticationManager(null);
         return authenticationManagerBuilder.build();
     }
 
+    /**
+     * Успешный вход через форму сбрасывает счетчик неудачных попыток email
+     */
+    private AuthenticationSuccessHandler formLoginSuccessHandler() {
+        SimpleUrlAuthenticationSuccessHandler delegate = new SimpleUrlAuthenticationSuccessHandler("/");
+        delegate.setAlwaysUseDefaultTargetUrl(true);
+        return (request, response, authentication) -> {
+            loginAttemptTracker.recordSuccess(authentication.getName());
+            delegate.onAuthenticationSuccess(request, response, authentication);
+        };
+    }
+
+    /**
+     * Неудачный вход через форму учитывается по email и IP
+     */
+    private AuthenticationFailureHandler formLoginFailureHandler() {
+        SimpleUrlAuthenticationFailureHandler delegate = new SimpleUrlAuthenticationFailureHandler("/login?error=true");
+        return (request, response, exception) -> {
+            if (exception instanceof AuthenticationBusyException) {
+                response.sendRedirect(request.getContextPath() + "/login?busy=true");
+                return;
+            }
+            loginAttemptTracker.recordFailure(request.getParameter("username"), request.getRemoteAddr());
+            delegate.onAuthenticationFailure(request, response, exception);
+        };
+    }
+
+    /**
+     * BCrypt в ограниченном пуле потоков (см. PasswordHashingExecutor)
+     */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new PooledBCryptPasswordEncoder(passwordHashingExecutor);
     }
 }
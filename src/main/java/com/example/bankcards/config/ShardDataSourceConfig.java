@@ -0,0 +1,119 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Шардирование карт, переводов и уведомлений по владельцу (database.shards.enabled=true).
+ *
+ * Шард 0 - основная БД (spring.datasource): в нем пользователи, аудит, токены и данные
+ * пользователей, попавших в шард 0. Дополнительные шарды задаются списком database.shards.hosts,
+ * схема в них создается теми же миграциями, а строки users копируются из шарда 0.
+ * Включается только на новой установке: существующие карты не переносятся.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "database.shards", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardDataSourceProperties.class)
+public class ShardDataSourceConfig {
+
+    /**
+     * Пул шарда 0 с настройками spring.datasource.hikari
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource homeShardDataSource(DataSourceProperties dataSourceProperties,
+                                                ShardDataSourceProperties shardProperties,
+                                                @Value("${database.replicas.enabled:false}") boolean replicasEnabled) {
+        if (replicasEnabled) {
+            throw new IllegalStateException("Шардирование и реплики для чтения пока не поддерживаются вместе");
+        }
+        HikariDataSource home = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        home.setConnectionInitSql(autoIncrementSql(ShardRouter.HOME_SHARD, shardCount(shardProperties)));
+        return home;
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(HikariDataSource homeShardDataSource,
+                                                         DataSourceProperties dataSourceProperties,
+                                                         ShardDataSourceProperties shardProperties,
+                                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        int shardCount = shardCount(shardProperties);
+        List<HikariDataSource> shards = new ArrayList<>();
+        shards.add(homeShardDataSource);
+        for (int i = 1; i < shardCount; i++) {
+            ShardDataSourceProperties.Shard host = shardProperties.getHosts().get(i - 1);
+            HikariDataSource shard = new HikariDataSource();
+            shard.setPoolName("BankCardsShard-" + i);
+            shard.setDriverClassName(dataSourceProperties.determineDriverClassName());
+            shard.setJdbcUrl(host.getUrl());
+            shard.setUsername(host.getUsername());
+            shard.setPassword(host.getPassword());
+            shard.setMaximumPoolSize(shardProperties.getMaximumPoolSize());
+            shard.setConnectionInitSql(autoIncrementSql(i, shardCount));
+            // Дополнительные шарды не бины, поэтому метрики Hikari Spring Boot подключает только к основному пулу
+            meterRegistry.ifAvailable(registry -> shard.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            shards.add(shard);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * Источник данных приложения: соединение берется при первом запросе из шарда, выбранного ShardRouter
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public ShardRouter shardRouter(ShardRoutingDataSource shardRoutingDataSource,
+                                   PlatformTransactionManager transactionManager) {
+        return new ShardRouter(shardRoutingDataSource.getShardCount(), transactionManager);
+    }
+
+    @Bean
+    public ShardSchemaInitializer shardSchemaInitializer(ShardRoutingDataSource shardRoutingDataSource,
+                                                         ResourceLoader resourceLoader,
+                                                         @Value("${spring.liquibase.change-log}") String changeLog,
+                                                         @Value("${spring.liquibase.contexts:}") String contexts) {
+        return new ShardSchemaInitializer(shardRoutingDataSource, resourceLoader, changeLog, contexts);
+    }
+
+    @Bean
+    public ShardUserReplicator shardUserReplicator(ShardRoutingDataSource shardRoutingDataSource,
+                                                   ShardRouter shardRouter,
+                                                   EntityManagerFactory entityManagerFactory,
+                                                   ShardSchemaInitializer shardSchemaInitializer) {
+        return new ShardUserReplicator(shardRoutingDataSource, shardRouter, entityManagerFactory);
+    }
+
+    private static int shardCount(ShardDataSourceProperties shardProperties) {
+        return shardProperties.getHosts().size() + 1;
+    }
+
+    /**
+     * AUTO_INCREMENT шарда k выдает id k+1, k+1+N, ...: по id строки видно, в каком она шарде
+     */
+    private static String autoIncrementSql(int shard, int shardCount) {
+        return "SET SESSION auto_increment_increment = " + shardCount + ", auto_increment_offset = " + (shard + 1);
+    }
+}
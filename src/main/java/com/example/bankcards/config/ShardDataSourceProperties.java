@@ -0,0 +1,34 @@
+package com.example.bankcards.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки шардирования карт, переводов и уведомлений (database.shards)
+ */
+@Data
+@ConfigurationProperties(prefix = "database.shards")
+public class ShardDataSourceProperties {
+
+    /** Включает размещение данных пользователей по шардам */
+    private boolean enabled;
+
+    /** Размер пула соединений каждого дополнительного шарда */
+    private int maximumPoolSize = 20;
+
+    /** Дополнительные шарды; шард 0 - основная БД из spring.datasource */
+    private List<Shard> hosts = new ArrayList<>();
+
+    /**
+     * Параметры подключения к шарду
+     */
+    @Data
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.bankcards.config;
+
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Размещение данных по шардам и выполнение кода в транзакции нужного шарда.
+ *
+ * Карты, переводы и уведомления пользователя лежат в шарде, выбранном по хешу id владельца.
+ * id этих строк выдаются AUTO_INCREMENT с шагом, равным числу шардов, и смещением номера шарда,
+ * поэтому шард строки определяется по ее id без дополнительного справочника.
+ *
+ * Код в inShard выполняется в отдельной транзакции шарда; если поток уже работает с этим
+ * шардом, используется текущая транзакция. Без шардирования (SINGLE) код выполняется как есть.
+ */
+public class ShardRouter {
+
+    /** Шард с пользователями, аудитом и токенами; он же единственный шард без шардирования */
+    public static final int HOME_SHARD = 0;
+
+    /** Один шард: код выполняется в текущей транзакции */
+    public static final ShardRouter SINGLE = new ShardRouter(1, null);
+
+    // Дробная часть золотого сечения: соседние id пользователей расходятся по разным шардам
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final int shardCount;
+    private final PlatformTransactionManager transactionManager;
+    private final LongAdder[] calls;
+    private final LongAdder crossShardQueries = new LongAdder();
+
+    public ShardRouter(int shardCount, PlatformTransactionManager transactionManager) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Число шардов должно быть положительным");
+        }
+        this.shardCount = shardCount;
+        this.transactionManager = transactionManager;
+        this.calls = new LongAdder[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            calls[i] = new LongAdder();
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    /**
+     * Шард данных пользователя
+     */
+    public int shardOfUser(Long userId) {
+        if (shardCount == 1 || userId == null) {
+            return HOME_SHARD;
+        }
+        return Math.floorMod((userId * HASH_MULTIPLIER) >>> 32, shardCount);
+    }
+
+    /**
+     * Шард карты, перевода или уведомления по id строки
+     */
+    public int shardOfId(Long id) {
+        if (shardCount == 1 || id == null) {
+            return HOME_SHARD;
+        }
+        // Шард k выдает id k+1, k+1+N, k+1+2N, ...
+        return Math.floorMod(id - 1, shardCount);
+    }
+
+    /**
+     * Выполняет действие в транзакции шарда. Признак readOnly берется из текущей транзакции.
+     */
+    public <T> T inShard(int shard, Supplier<T> action) {
+        if (shardCount == 1) {
+            return action.get();
+        }
+        if (shard < 0 || shard >= shardCount) {
+            throw new IllegalArgumentException("Нет шарда " + shard);
+        }
+        calls[shard].increment();
+
+        Integer current = ShardRoutingDataSource.getCurrentShard();
+        int effective = current != null ? current : HOME_SHARD;
+        if (effective == shard) {
+            return action.get();
+        }
+
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        template.setReadOnly(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+        ShardRoutingDataSource.setCurrentShard(shard);
+        try {
+            return template.execute(status -> action.get());
+        } finally {
+            ShardRoutingDataSource.setCurrentShard(current);
+        }
+    }
+
+    /**
+     * Выполняет действие без результата в транзакции шарда
+     */
+    public void runInShard(int shard, Runnable action) {
+        inShard(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Выполняет действие в каждом шарде по очереди
+     * @return результаты в порядке номеров шардов
+     */
+    public <T> List<T> inEachShard(IntFunction<T> action) {
+        if (shardCount > 1) {
+            crossShardQueries.increment();
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            results.add(inShard(target, () -> action.apply(target)));
+        }
+        return results;
+    }
+
+    /**
+     * Страница выборки по всем шардам. Каждый шард отдает первые offset + size строк,
+     * они объединяются в заданном порядке, и из результата вырезается нужная страница.
+     * Чем дальше страница, тем больше строк читается из каждого шарда.
+     *
+     * @param query запрос к текущему шарду; результат должен быть готов к использованию вне транзакции
+     * @param order порядок строк, совпадающий с порядком запроса
+     */
+    public <T> Page<T> findPage(Pageable pageable, Comparator<? super T> order, Function<Pageable, Page<T>> query) {
+        if (shardCount == 1) {
+            return query.apply(pageable);
+        }
+        if (pageable.isUnpaged()) {
+            return mergeAll(pageable, order, query);
+        }
+
+        Pageable head = PageRequest.of(0, (int) pageable.getOffset() + pageable.getPageSize(), pageable.getSort());
+        List<T> merged = new ArrayList<>();
+        long total = 0;
+        for (Page<T> page : inEachShard(shard -> query.apply(head))) {
+            merged.addAll(page.getContent());
+            total += page.getTotalElements();
+        }
+        merged.sort(order);
+
+        int from = (int) Math.min(pageable.getOffset(), merged.size());
+        int to = Math.min(from + pageable.getPageSize(), merged.size());
+        return new PageImpl<>(new ArrayList<>(merged.subList(from, to)), pageable, total);
+    }
+
+    private <T> Page<T> mergeAll(Pageable pageable, Comparator<? super T> order, Function<Pageable, Page<T>> query) {
+        List<T> merged = new ArrayList<>();
+        for (Page<T> page : inEachShard(shard -> query.apply(pageable))) {
+            merged.addAll(page.getContent());
+        }
+        merged.sort(order);
+        return new PageImpl<>(merged, pageable, merged.size());
+    }
+
+    /**
+     * Порядок по Sort для объединения страниц шардов. Свойства, которых нет у объекта, не учитываются.
+     */
+    public static <T> Comparator<T> comparing(Sort sort) {
+        Comparator<T> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<T> byProperty = (a, b) -> compareValues(property(a, order.getProperty()), property(b, order.getProperty()));
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            // Как в MySQL: NULL меньше любого значения
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return a instanceof Comparable comparable ? comparable.compareTo(b) : 0;
+    }
+
+    private static Object property(Object target, String name) {
+        BeanWrapperImpl wrapper = new BeanWrapperImpl(target);
+        return wrapper.isReadableProperty(name) ? wrapper.getPropertyValue(name) : null;
+    }
+
+    /**
+     * Число обращений к каждому шарду и запросов по всем шардам
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shards", shardCount);
+        stats.put("crossShardQueries", crossShardQueries.sum());
+        for (int i = 0; i < shardCount; i++) {
+            stats.put("shard-" + i, calls[i].sum());
+        }
+        return stats;
+    }
+}
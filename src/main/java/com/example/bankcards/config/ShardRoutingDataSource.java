@@ -0,0 +1,109 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Маршрутизация соединений между шардами.
+ *
+ * Шард выбирает ShardRouter перед открытием транзакции шарда; без выбранного шарда
+ * соединение берется из домашнего шарда (spring.datasource). Как и для реплик, работает
+ * только за LazyConnectionDataSourceProxy: соединение должно браться при первом запросе.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRoutingDataSource.class);
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private final List<DataSource> shards;
+
+    /**
+     * @param shards источники данных шардов, первый - домашний шард
+     */
+    public ShardRoutingDataSource(List<? extends DataSource> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Нужен хотя бы один шард");
+        }
+        this.shards = new ArrayList<>(shards);
+
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(ShardRouter.HOME_SHARD));
+        // Неизвестный номер шарда - ошибка, а не тихий переход в домашний шард
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = CURRENT_SHARD.get();
+        return shard != null ? shard : ShardRouter.HOME_SHARD;
+    }
+
+    static Integer getCurrentShard() {
+        return CURRENT_SHARD.get();
+    }
+
+    static void setCurrentShard(Integer shard) {
+        if (shard == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(shard);
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Источник данных шарда в обход маршрутизации (миграции, копирование пользователей)
+     */
+    public DataSource getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    /**
+     * Занятые соединения пулов шардов для мониторинга
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            int active = 0;
+            if (shards.get(i) instanceof HikariDataSource hikari) {
+                HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+                active = pool == null ? 0 : pool.getActiveConnections();
+            }
+            stats.put("shard-" + i + "-activeConnections", active);
+        }
+        return stats;
+    }
+
+    /**
+     * Закрывает пулы соединений шардов, кроме домашнего (он закрывается своим бином)
+     */
+    public void close() {
+        for (int i = 1; i < shards.size(); i++) {
+            if (shards.get(i) instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    logger.warn("Ошибка при закрытии пула шарда {}: {}", i, e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.bankcards.config;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.ResourceLoader;
+
+/**
+ * Применяет миграции Liquibase к дополнительным шардам при старте.
+ *
+ * Шард 0 мигрирует Spring Boot как обычно. Отдельные бины SpringLiquibase здесь не объявляются:
+ * с ними автоконфигурация Liquibase для основной БД бы отключилась.
+ */
+public class ShardSchemaInitializer implements InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardSchemaInitializer.class);
+
+    private final ShardRoutingDataSource shardRoutingDataSource;
+    private final ResourceLoader resourceLoader;
+    private final String changeLog;
+    private final String contexts;
+
+    public ShardSchemaInitializer(ShardRoutingDataSource shardRoutingDataSource, ResourceLoader resourceLoader,
+                                  String changeLog, String contexts) {
+        this.shardRoutingDataSource = shardRoutingDataSource;
+        this.resourceLoader = resourceLoader;
+        this.changeLog = changeLog;
+        this.contexts = contexts;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        for (int shard = 1; shard < shardRoutingDataSource.getShardCount(); shard++) {
+            SpringLiquibase liquibase = new SpringLiquibase();
+            liquibase.setDataSource(shardRoutingDataSource.getShard(shard));
+            liquibase.setResourceLoader(resourceLoader);
+            liquibase.setChangeLog(changeLog);
+            if (contexts != null && !contexts.isBlank()) {
+                liquibase.setContexts(contexts);
+            }
+            liquibase.afterPropertiesSet();
+            logger.info("Миграции шарда {} применены", shard);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Копирует строки users из шарда 0 в шард пользователя.
+ *
+ * Карты, переводы и уведомления ссылаются на users внешними ключами, а owner карты загружается
+ * в транзакции шарда, поэтому в шарде пользователя нужна его строка. Источник истины - шард 0:
+ * после коммита изменения пользователя строка копируется целиком, удаление пользователя удаляет
+ * его строку в шарде и каскадом его карты, переводы и уведомления. При старте все пользователи
+ * сверяются заново, так что пропущенное из-за недоступности шарда изменение исправится при перезапуске.
+ * Изменения в обход Hibernate (SQL вручную) не копируются до перезапуска.
+ */
+public class ShardUserReplicator implements InitializingBean, PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardUserReplicator.class);
+
+    private final ShardRoutingDataSource shardRoutingDataSource;
+    private final ShardRouter shardRouter;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public ShardUserReplicator(ShardRoutingDataSource shardRoutingDataSource, ShardRouter shardRouter,
+                               EntityManagerFactory entityManagerFactory) {
+        this.shardRoutingDataSource = shardRoutingDataSource;
+        this.shardRouter = shardRouter;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+        syncAll();
+    }
+
+    /**
+     * Сверяет пользователей всех шардов с шардом 0
+     */
+    public void syncAll() {
+        long startTime = System.currentTimeMillis();
+        List<Set<Long>> placed = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            placed.add(new HashSet<>());
+        }
+
+        ColumnMapRowMapper rowMapper = new ColumnMapRowMapper();
+        jdbc(ShardRouter.HOME_SHARD).query("SELECT * FROM users", resultSet -> {
+            Map<String, Object> row = rowMapper.mapRow(resultSet, 0);
+            Long id = ((Number) row.get("id")).longValue();
+            int shard = shardRouter.shardOfUser(id);
+            if (shard != ShardRouter.HOME_SHARD) {
+                upsert(shard, row);
+                placed.get(shard).add(id);
+            }
+        });
+
+        int removed = 0;
+        for (int shard = 1; shard < shardRouter.getShardCount(); shard++) {
+            for (Long id : jdbc(shard).queryForList("SELECT id FROM users", Long.class)) {
+                if (!placed.get(shard).contains(id)) {
+                    removed += jdbc(shard).update("DELETE FROM users WHERE id = ?", id);
+                }
+            }
+        }
+        logger.info("Пользователи шардов сверены за {} мс, удалено лишних: {}",
+                System.currentTimeMillis() - startTime, removed);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        copy(event.getId());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        copy(event.getId());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Long id = (Long) event.getId();
+        int shard = shardRouter.shardOfUser(id);
+        if (shard == ShardRouter.HOME_SHARD) {
+            return;
+        }
+        try {
+            jdbc(shard).update("DELETE FROM users WHERE id = ?", id);
+        } catch (Exception e) {
+            logger.error("❌ Не удалось удалить пользователя {} из шарда {}: {}", id, shard, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return User.class.equals(persister.getMappedClass());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // Транзакция откатилась - копировать нечего
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    private void copy(Object userId) {
+        Long id = (Long) userId;
+        int shard = shardRouter.shardOfUser(id);
+        if (shard == ShardRouter.HOME_SHARD) {
+            return;
+        }
+        try {
+            // Строка читается заново: после коммита в шарде 0 лежит последняя версия
+            List<Map<String, Object>> rows = jdbc(ShardRouter.HOME_SHARD).queryForList("SELECT * FROM users WHERE id = ?", id);
+            if (!rows.isEmpty()) {
+                upsert(shard, rows.get(0));
+            }
+        } catch (Exception e) {
+            logger.error("❌ Не удалось скопировать пользователя {} в шард {}: {}", id, shard, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * INSERT ... ON DUPLICATE KEY UPDATE, а не REPLACE: REPLACE удаляет строку и каскадом карты пользователя
+     */
+    private void upsert(int shard, Map<String, Object> row) {
+        StringJoiner columns = new StringJoiner(", ");
+        StringJoiner placeholders = new StringJoiner(", ");
+        StringJoiner updates = new StringJoiner(", ");
+        for (String column : row.keySet()) {
+            columns.add(column);
+            placeholders.add("?");
+            if (!"id".equalsIgnoreCase(column)) {
+                updates.add(column + " = VALUES(" + column + ")");
+            }
+        }
+        String sql = "INSERT INTO users (" + columns + ") VALUES (" + placeholders + ") ON DUPLICATE KEY UPDATE " + updates;
+        jdbc(shard).update(sql, row.values().toArray());
+    }
+
+    private JdbcTemplate jdbc(int shard) {
+        return new JdbcTemplate(shardRoutingDataSource.getShard(shard));
+    }
+}
@@ -1,20 +1,33 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.exception.ValidationException;
+import com.example.bankcards.service.DataVersionService;
+import com.example.bankcards.service.ExportBundleService;
+import com.example.bankcards.service.ExportCacheService;
 import com.example.bankcards.service.ExportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Контроллер для экспорта данных администратором
@@ -27,6 +40,12 @@ public class AdminExportController {
     @Autowired
     private ExportService exportService;
 
+    @Autowired
+    private ExportCacheService exportCacheService;
+
+    @Autowired
+    private ExportBundleService exportBundleService;
+
     /**
      * Экспорт карт в CSV с фильтрами
      */
@@ -34,18 +53,17 @@ public class AdminExportController {
     public ResponseEntity<ByteArrayResource> exportCardsCSV(
             @RequestParam(required = false) String status,
             @RequestParam(required = false) String search,
-            @RequestParam(required = false) String ownerEmail) {
+            @RequestParam(required = false) String ownerEmail,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         try {
-            byte[] csvData = exportService.exportCardsToCSVForAdmin(status, search, ownerEmail);
-            
-            String filename = generateFilename("cards", "csv");
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .contentType(MediaType.parseMediaType("text/csv"))
-                    .body(new ByteArrayResource(csvData));
-                    
+            Map<String, String> filters = ExportCacheService.filters("status", status, "search", search, "ownerEmail", ownerEmail);
+            String cacheKey = exportCacheService.buildKey("cards", "csv", filters,
+                    DataVersionService.Table.CARDS, DataVersionService.Table.USERS);
+
+            return cachedDownload(cacheKey, ifNoneMatch, "cards", "csv", MediaType.parseMediaType("text/csv"),
+                    () -> exportService.exportCardsToCSVForAdmin(filters.get("status"), filters.get("search"), filters.get("ownerEmail")));
+
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при экспорте карт в CSV: " + e.getMessage());
         }
@@ -58,18 +76,17 @@ public class AdminExportController {
     public ResponseEntity<ByteArrayResource> exportCardsPDF(
             @RequestParam(required = false) String status,
             @RequestParam(required = false) String search,
-            @RequestParam(required = false) String ownerEmail) {
+            @RequestParam(required = false) String ownerEmail,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         try {
-            byte[] pdfData = exportService.exportCardsToPDFForAdmin(status, search, ownerEmail);
-            
-            String filename = generateFilename("cards", "pdf");
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .body(new ByteArrayResource(pdfData));
-                    
+            Map<String, String> filters = ExportCacheService.filters("status", status, "search", search, "ownerEmail", ownerEmail);
+            String cacheKey = exportCacheService.buildKey("cards", "pdf", filters,
+                    DataVersionService.Table.CARDS, DataVersionService.Table.USERS);
+
+            return cachedDownload(cacheKey, ifNoneMatch, "cards", "pdf", MediaType.APPLICATION_PDF,
+                    () -> exportService.exportCardsToPDFForAdmin(filters.get("status"), filters.get("search"), filters.get("ownerEmail")));
+
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при экспорте карт в PDF: " + e.getMessage());
         }
@@ -82,18 +99,17 @@ public class AdminExportController {
     public ResponseEntity<ByteArrayResource> exportTransfersCSV(
             @RequestParam(required = false) String userEmail,
             @RequestParam(required = false) String fromDate,
-            @RequestParam(required = false) String toDate) {
+            @RequestParam(required = false) String toDate,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         try {
-            byte[] csvData = exportService.exportTransfersToCSVForAdmin(userEmail, fromDate, toDate);
-            
-            String filename = generateFilename("transfers", "csv");
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .contentType(MediaType.parseMediaType("text/csv"))
-                    .body(new ByteArrayResource(csvData));
-                    
+            Map<String, String> filters = ExportCacheService.filters("userEmail", userEmail, "fromDate", fromDate, "toDate", toDate);
+            String cacheKey = exportCacheService.buildKey("transfers", "csv", filters,
+                    DataVersionService.Table.TRANSFERS, DataVersionService.Table.CARDS, DataVersionService.Table.USERS);
+
+            return cachedDownload(cacheKey, ifNoneMatch, "transfers", "csv", MediaType.parseMediaType("text/csv"),
+                    () -> exportService.exportTransfersToCSVForAdmin(filters.get("userEmail"), filters.get("fromDate"), filters.get("toDate")));
+
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при экспорте переводов в CSV: " + e.getMessage());
         }
@@ -106,18 +122,17 @@ public class AdminExportController {
     public ResponseEntity<ByteArrayResource> exportTransfersPDF(
             @RequestParam(required = false) String userEmail,
             @RequestParam(required = false) String fromDate,
-            @RequestParam(required = false) String toDate) {
+            @RequestParam(required = false) String toDate,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         try {
-            byte[] pdfData = exportService.exportTransfersToPDFForAdmin(userEmail, fromDate, toDate);
-            
-            String filename = generateFilename("transfers", "pdf");
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .body(new ByteArrayResource(pdfData));
-                    
+            Map<String, String> filters = ExportCacheService.filters("userEmail", userEmail, "fromDate", fromDate, "toDate", toDate);
+            String cacheKey = exportCacheService.buildKey("transfers", "pdf", filters,
+                    DataVersionService.Table.TRANSFERS, DataVersionService.Table.CARDS, DataVersionService.Table.USERS);
+
+            return cachedDownload(cacheKey, ifNoneMatch, "transfers", "pdf", MediaType.APPLICATION_PDF,
+                    () -> exportService.exportTransfersToPDFForAdmin(filters.get("userEmail"), filters.get("fromDate"), filters.get("toDate")));
+
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при экспорте переводов в PDF: " + e.getMessage());
         }
@@ -129,18 +144,17 @@ public class AdminExportController {
     @GetMapping("/users/csv")
     public ResponseEntity<ByteArrayResource> exportUsersCSV(
             @RequestParam(required = false) String role,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         try {
-            byte[] csvData = exportService.exportUsersToCSV(role, search);
-            
-            String filename = generateFilename("users", "csv");
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .contentType(MediaType.parseMediaType("text/csv"))
-                    .body(new ByteArrayResource(csvData));
-                    
+            Map<String, String> filters = ExportCacheService.filters("role", role, "search", search);
+            String cacheKey = exportCacheService.buildKey("users", "csv", filters,
+                    DataVersionService.Table.USERS, DataVersionService.Table.CARDS);
+
+            return cachedDownload(cacheKey, ifNoneMatch, "users", "csv", MediaType.parseMediaType("text/csv"),
+                    () -> exportService.exportUsersToCSV(filters.get("role"), filters.get("search")));
+
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при экспорте пользователей в CSV: " + e.getMessage());
         }
@@ -152,18 +166,17 @@ public class AdminExportController {
     @GetMapping("/users/pdf")
     public ResponseEntity<ByteArrayResource> exportUsersPDF(
             @RequestParam(required = false) String role,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         try {
-            byte[] pdfData = exportService.exportUsersToPDF(role, search);
-            
-            String filename = generateFilename("users", "pdf");
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .body(new ByteArrayResource(pdfData));
-                    
+            Map<String, String> filters = ExportCacheService.filters("role", role, "search", search);
+            String cacheKey = exportCacheService.buildKey("users", "pdf", filters,
+                    DataVersionService.Table.USERS, DataVersionService.Table.CARDS);
+
+            return cachedDownload(cacheKey, ifNoneMatch, "users", "pdf", MediaType.APPLICATION_PDF,
+                    () -> exportService.exportUsersToPDF(filters.get("role"), filters.get("search")));
+
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при экспорте пользователей в PDF: " + e.getMessage());
         }
@@ -176,18 +189,17 @@ public class AdminExportController {
     public ResponseEntity<ByteArrayResource> exportAuditLogsCSV(
             @RequestParam(required = false) String action,
             @RequestParam(required = false) String status,
-            @RequestParam(required = false) String userEmail) {
+            @RequestParam(required = false) String userEmail,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         try {
-            byte[] csvData = exportService.exportAuditLogsToCSV(action, status, userEmail);
-            
-            String filename = generateFilename("audit-logs", "csv");
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .contentType(MediaType.parseMediaType("text/csv"))
-                    .body(new ByteArrayResource(csvData));
-                    
+            Map<String, String> filters = ExportCacheService.filters("action", action, "status", status, "userEmail", userEmail);
+            String cacheKey = exportCacheService.buildKey("audit-logs", "csv", filters,
+                    DataVersionService.Table.AUDIT, DataVersionService.Table.USERS);
+
+            return cachedDownload(cacheKey, ifNoneMatch, "audit-logs", "csv", MediaType.parseMediaType("text/csv"),
+                    () -> exportService.exportAuditLogsToCSV(filters.get("action"), filters.get("status"), filters.get("userEmail")));
+
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при экспорте аудит-логов в CSV: " + e.getMessage());
         }
@@ -200,23 +212,136 @@ public class AdminExportController {
     public ResponseEntity<ByteArrayResource> exportAuditLogsPDF(
             @RequestParam(required = false) String action,
             @RequestParam(required = false) String status,
-            @RequestParam(required = false) String userEmail) {
+            @RequestParam(required = false) String userEmail,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         try {
-            byte[] pdfData = exportService.exportAuditLogsToPDF(action, status, userEmail);
-            
-            String filename = generateFilename("audit-logs", "pdf");
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .body(new ByteArrayResource(pdfData));
-                    
+            Map<String, String> filters = ExportCacheService.filters("action", action, "status", status, "userEmail", userEmail);
+            String cacheKey = exportCacheService.buildKey("audit-logs", "pdf", filters,
+                    DataVersionService.Table.AUDIT, DataVersionService.Table.USERS);
+
+            return cachedDownload(cacheKey, ifNoneMatch, "audit-logs", "pdf", MediaType.APPLICATION_PDF,
+                    () -> exportService.exportAuditLogsToPDF(filters.get("action"), filters.get("status"), filters.get("userEmail")));
+
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при экспорте аудит-логов в PDF: " + e.getMessage());
         }
     }
 
+    /**
+     * Бинарная выгрузка карт для машинных потребителей (формат описан в BinaryExportWriter).
+     * Параметр compression: none (по умолчанию) или deflate
+     */
+    @GetMapping("/cards/binary")
+    public ResponseEntity<StreamingResponseBody> exportCardsBinary(
+            @RequestParam(defaultValue = "none") String compression) {
+        boolean deflate = parseCompression(compression);
+        return binaryDownload("cards", out -> exportService.writeAllCardsBinary(out, deflate));
+    }
+
+    /**
+     * Бинарная выгрузка переводов
+     */
+    @GetMapping("/transfers/binary")
+    public ResponseEntity<StreamingResponseBody> exportTransfersBinary(
+            @RequestParam(defaultValue = "none") String compression) {
+        boolean deflate = parseCompression(compression);
+        return binaryDownload("transfers", out -> exportService.writeAllTransfersBinary(out, deflate));
+    }
+
+    /**
+     * Бинарная выгрузка пользователей
+     */
+    @GetMapping("/users/binary")
+    public ResponseEntity<StreamingResponseBody> exportUsersBinary(
+            @RequestParam(defaultValue = "none") String compression) {
+        boolean deflate = parseCompression(compression);
+        return binaryDownload("users", out -> exportService.writeAllUsersBinary(out, deflate));
+    }
+
+    /**
+     * Бинарная выгрузка аудит-логов
+     */
+    @GetMapping("/audit/binary")
+    public ResponseEntity<StreamingResponseBody> exportAuditLogsBinary(
+            @RequestParam(defaultValue = "none") String compression) {
+        boolean deflate = parseCompression(compression);
+        return binaryDownload("audit-logs", out -> exportService.writeAllAuditLogsBinary(out, deflate));
+    }
+
+    /**
+     * Архив с несколькими разделами экспорта (карты, переводы, пользователи, аудит).
+     * Разделы формируются параллельно и попадают в ZIP по мере готовности.
+     * Это полная выгрузка: фильтры остальных экспортов к разделам не применяются.
+     * Если пул формирования архивов занят, запрос получает 503 до начала выгрузки.
+     * Пример: /admin/export/bundle?sections=cards,users
+     */
+    @GetMapping("/bundle")
+    public ResponseEntity<StreamingResponseBody> exportBundle(
+            @RequestParam(required = false) List<String> sections) {
+
+        Set<ExportBundleService.Section> selected = ExportBundleService.parseSections(sections);
+        String filename = generateFilename("export-bundle", "zip");
+
+        ExportBundleService.Bundle bundle = exportBundleService.start(selected);
+        StreamingResponseBody body = bundle::writeTo;
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
+
+    /**
+     * Отдает экспорт из кеша или формирует его; при совпадении ETag возвращает 304
+     */
+    private ResponseEntity<ByteArrayResource> cachedDownload(String cacheKey, String ifNoneMatch,
+                                                             String dataType, String format, MediaType mediaType,
+                                                             ExportCacheService.ExportSupplier supplier) throws IOException {
+        if (exportCacheService.matchesETag(ifNoneMatch, cacheKey)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(cacheKey)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .build();
+        }
+
+        byte[] data = exportCacheService.getOrCompute(cacheKey, supplier);
+        String filename = generateFilename(dataType, format);
+
+        return ResponseEntity.ok()
+                .eTag(cacheKey)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(mediaType)
+                .body(new ByteArrayResource(data));
+    }
+
+    /**
+     * Потоковый ответ с бинарной выгрузкой
+     */
+    private ResponseEntity<StreamingResponseBody> binaryDownload(String dataType, StreamingResponseBody body) {
+        String filename = generateFilename(dataType, "bcx");
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    /**
+     * Разбирает способ сжатия бинарной выгрузки
+     */
+    private boolean parseCompression(String compression) {
+        switch (compression.trim().toLowerCase(Locale.ROOT)) {
+            case "none":
+                return false;
+            case "deflate":
+                return true;
+            default:
+                throw new ValidationException("Неподдерживаемое сжатие: " + compression + ". Допустимо: none, deflate");
+        }
+    }
+
     /**
      * Генерирует имя файла с текущей датой
      */
@@ -1,20 +1,33 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.ArchivedAuditLogDto;
+import com.example.bankcards.dto.AuditLogCursorPage;
 import com.example.bankcards.entity.AuditLog;
+import com.example.bankcards.entity.BankCard;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.ValidationException;
+import com.example.bankcards.security.LoginAttemptTracker;
+import com.example.bankcards.security.PasswordHashingExecutor;
 import com.example.bankcards.service.AuditService;
+import com.example.bankcards.service.EntityCacheMetrics;
+import com.example.bankcards.service.OutboxRelay;
 import com.example.bankcards.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Контроллер для просмотра аудита действий пользователей
@@ -29,6 +42,18 @@ public class AuditController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private LoginAttemptTracker loginAttemptTracker;
+
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private EntityCacheMetrics entityCacheMetrics;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
     /**
      * Страница аудита для пользователя
      */
@@ -69,11 +94,12 @@ public class AuditController {
     }
 
     /**
-     * Страница аудита для администратора
+     * Страница аудита для администратора (постраничный переход по курсору)
      */
     @GetMapping("/admin")
     @PreAuthorize("hasRole('ADMIN')")
     public String adminAuditLogs(
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(required = false) String action,
@@ -81,17 +107,7 @@ public class AuditController {
             @RequestParam(required = false) String userEmail,
             Model model) {
 
-        Pageable pageable = PageRequest.of(page, size);
-        Page<AuditLog> auditLogs;
-
-        // Применяем фильтры
-        if ((action != null && !action.isEmpty()) || 
-            (status != null && !status.isEmpty()) || 
-            (userEmail != null && !userEmail.isEmpty())) {
-            auditLogs = auditService.getAuditLogsWithFilters(action, status, userEmail, pageable);
-        } else {
-            auditLogs = auditService.getAllAuditLogsForAdmin(pageable);
-        }
+        AuditLogCursorPage auditLogs = auditService.getAuditLogsPage(action, status, userEmail, cursor, size);
 
         // Получаем статистику
         List<AuditLog> securityAlerts = auditService.getRecentFailedLogins();
@@ -104,13 +120,83 @@ public class AuditController {
         model.addAttribute("failedLogins", failedLoginsCount);
         model.addAttribute("todayActions", todayActionsCount);
         model.addAttribute("uniqueUsers", uniqueUsersCount);
-        model.addAttribute("currentPage", page);
-        model.addAttribute("totalPages", auditLogs.getTotalPages());
-        model.addAttribute("totalElements", auditLogs.getTotalElements());
+        model.addAttribute("recentLoginFailures", loginAttemptTracker.getRecentFailures());
+        model.addAttribute("loginWindowMinutes", loginAttemptTracker.getWindowMinutes());
+        model.addAttribute("rejectedLogins", loginAttemptTracker.getRecentRejections());
+        model.addAttribute("lockedLogins", loginAttemptTracker.getLockedCount());
+        model.addAttribute("passwordQueueDepth", passwordHashingExecutor.getQueueDepth());
+        model.addAttribute("passwordHashAvgMs", Math.round(passwordHashingExecutor.getAverageHashMillis()));
+        model.addAttribute("passwordRejected", passwordHashingExecutor.getRejectedCount());
+        model.addAttribute("cardCacheHitRatio", entityCacheMetrics.getHitRatioPercent(BankCard.CACHE_REGION));
+        model.addAttribute("hotSince", auditService.getHotSince());
+        model.addAttribute("currentPage", cursor == null || cursor.isEmpty() ? 0 : page);
+        model.addAttribute("nextCursor", auditLogs.getNextCursor());
+        model.addAttribute("pageSize", size);
         model.addAttribute("currentAction", action);
         model.addAttribute("currentStatus", status);
         model.addAttribute("currentUserEmail", userEmail);
 
         return "audit/admin-logs";
     }
+
+    /**
+     * Логи аудита из архива за месяцы [from, to] в формате YYYY-MM (для администратора)
+     */
+    @GetMapping("/admin/archive")
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseBody
+    public ResponseEntity<List<ArchivedAuditLogDto>> adminArchivedLogs(
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String userEmail,
+            @RequestParam(defaultValue = "200") int limit) throws IOException {
+
+        YearMonth fromMonth = parseMonth(from);
+        YearMonth toMonth = parseMonth(to);
+        if (fromMonth.isAfter(toMonth)) {
+            throw new ValidationException("Начальный месяц не может быть позже конечного");
+        }
+
+        return ResponseEntity.ok(auditService.getArchivedAuditLogs(fromMonth, toMonth, action, status, userEmail, limit));
+    }
+
+    /**
+     * Показатели пула хеширования паролей: очередь, время BCrypt, отклоненные запросы (для администратора)
+     */
+    @GetMapping("/admin/password-hashing")
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> passwordHashingStats() {
+        return ResponseEntity.ok(passwordHashingExecutor.getStats());
+    }
+
+    /**
+     * Показатели кэша второго уровня по регионам: попадания, промахи, доля попаданий (для администратора)
+     */
+    @GetMapping("/admin/entity-cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> entityCacheStats() {
+        return ResponseEntity.ok(entityCacheMetrics.getStats());
+    }
+
+    /**
+     * Очередь исходящих событий: ожидающие, с ошибками, доставленные узлом (для администратора)
+     */
+    @GetMapping("/admin/outbox")
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> outboxStats() {
+        return ResponseEntity.ok(outboxRelay.getStats());
+    }
+
+    private YearMonth parseMonth(String value) {
+        try {
+            return YearMonth.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("Месяц должен быть в формате YYYY-MM: " + value);
+        }
+    }
 }
@@ -2,18 +2,27 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.AuthResponse;
 import com.example.bankcards.dto.LoginRequest;
+import com.example.bankcards.dto.RefreshTokenRequest;
 import com.example.bankcards.dto.RegisterRequest;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.security.AuthenticationBusyException;
+import com.example.bankcards.security.LoginAttemptTracker;
+import com.example.bankcards.security.RefreshTokenService;
 import com.example.bankcards.service.UserService;
 import com.example.bankcards.util.JwtUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
@@ -38,13 +47,43 @@ public class AuthController {
     @Autowired
     private JwtUtils jwtUtils;
 
+    @Autowired
+    private LoginAttemptTracker loginAttemptTracker;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
     @PostMapping("/login")
     @Operation(summary = "Вход в систему", description = "Аутентификация пользователя и получение JWT токена")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest, HttpServletRequest request) {
+        // Адрес соединения, а не X-Forwarded-For: заголовок подделывается клиентом
+        String ipAddress = request.getRemoteAddr();
+        long retryAfter = loginAttemptTracker.getRetryAfterSeconds(loginRequest.getEmail(), ipAddress);
+        if (retryAfter > 0) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Слишком много неудачных попыток входа. Повторите позже");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .body(error);
+        }
+
         try {
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword())
-            );
+            Authentication authentication;
+            try {
+                authentication = authenticationManager.authenticate(
+                        new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword())
+                );
+            } catch (AuthenticationBusyException e) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", e.getMessage());
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(error);
+            } catch (AuthenticationException e) {
+                loginAttemptTracker.recordFailure(loginRequest.getEmail(), ipAddress);
+                throw e;
+            }
+            loginAttemptTracker.recordSuccess(loginRequest.getEmail());
 
             UserDetails userDetails = (UserDetails) authentication.getPrincipal();
             String jwt = jwtUtils.generateToken(userDetails);
@@ -54,6 +93,8 @@ public class AuthController {
             
             return ResponseEntity.ok(new AuthResponse(
                     jwt,
+                    jwtUtils.getExpirationSeconds(),
+                    refreshTokenService.issue(user),
                     user.getEmail(),
                     user.getRole().name(),
                     user.getFirstName(),
@@ -67,6 +108,29 @@ public class AuthController {
     }
 
 
+    @PostMapping("/refresh")
+    @Operation(summary = "Обновление токена", description = "Обмен refresh токена на новую пару токенов без проверки пароля")
+    public ResponseEntity<?> refreshToken(@Valid @RequestBody RefreshTokenRequest refreshRequest) {
+        try {
+            RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshRequest.getRefreshToken());
+            User user = rotation.getUser();
+
+            return ResponseEntity.ok(new AuthResponse(
+                    jwtUtils.generateToken(user.getEmail()),
+                    jwtUtils.getExpirationSeconds(),
+                    rotation.getRefreshToken(),
+                    user.getEmail(),
+                    user.getRole().name(),
+                    user.getFirstName(),
+                    user.getLastName()
+            ));
+        } catch (BusinessException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        }
+    }
+
     @PostMapping("/validate")
     @Operation(summary = "Валидация токена", description = "Проверка валидности JWT токена")
     public ResponseEntity<?> validateToken(@RequestHeader("Authorization") String authHeader) {
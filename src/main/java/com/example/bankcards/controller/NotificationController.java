@@ -3,6 +3,7 @@ package com.example.bankcards.controller;
 import com.example.bankcards.entity.Notification;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.service.NotificationService;
+import com.example.bankcards.service.NotificationStreamHub;
 import com.example.bankcards.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -14,9 +15,16 @@ import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Контроллер для работы с уведомлениями
  */
@@ -30,6 +38,9 @@ public class NotificationController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private NotificationStreamHub notificationStreamHub;
+    
     /**
      * Страница уведомлений (только для админов)
      */
@@ -73,6 +84,25 @@ public class NotificationController {
         return "notifications/list";
     }
     
+    /**
+     * Поток новых уведомлений (Server-Sent Events, только для админов).
+     * Событие "notification" приходит после создания уведомления, вместо опроса страницы
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseBody
+    public ResponseEntity<SseEmitter> stream() {
+        SseEmitter emitter = notificationStreamHub.subscribe();
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        
+        // Отключаем буферизацию ответа на nginx, иначе события приходят пачками
+        return ResponseEntity.ok()
+            .header("X-Accel-Buffering", "no")
+            .body(emitter);
+    }
+    
     /**
      * Отметить уведомление как прочитанное (только для админов)
      */
@@ -168,4 +198,20 @@ public class NotificationController {
             return ResponseEntity.status(500).body("Ошибка при обновлении уведомления: " + e.getMessage());
         }
     }
+    
+    /**
+     * REST API: Отметить несколько уведомлений как обработанные одним запросом.
+     * Тело запроса - массив id, например [1, 2, 3]
+     */
+    @PostMapping("/api/notifications/mark-processed")
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseBody
+    public ResponseEntity<?> markProcessedBulkApi(@RequestBody List<Long> ids) {
+        int updated = notificationService.markProcessed(ids);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("requested", ids.size());
+        response.put("updated", updated);
+        return ResponseEntity.ok(response);
+    }
 }
@@ -2,6 +2,7 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.service.CardExpirationSchedulerService;
 import com.example.bankcards.service.BankCardService;
+import com.example.bankcards.service.SchedulerLockService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -28,6 +29,9 @@ public class SchedulerController {
     @Autowired
     private BankCardService bankCardService;
 
+    @Autowired
+    private SchedulerLockService schedulerLockService;
+
     /**
      * Ручной запуск проверки истекших карт (только для админа)
      */
@@ -67,7 +71,7 @@ public class SchedulerController {
      */
     @GetMapping("/status")
     @PreAuthorize("hasRole('ADMIN')")
-    @Operation(summary = "Статус планировщика", description = "Получает информацию о работе планировщика задач")
+    @Operation(summary = "Статус планировщика", description = "Получает информацию о работе планировщика задач и блокировках задач между узлами")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Статус получен успешно"),
             @ApiResponse(responseCode = "403", description = "Недостаточно прав")
@@ -78,6 +82,9 @@ public class SchedulerController {
         response.put("dailyCheckTime", "00:01");
         response.put("frequentCheckInterval", "Every 6 hours at :05");
         response.put("nextDailyCheck", "Следующая проверка в 00:01");
+        response.put("nodeId", schedulerLockService.getNodeId());
+        response.put("expiryPartitions", schedulerService.getPartitions());
+        response.put("locks", schedulerLockService.getLocks());
         response.put("timestamp", java.time.LocalDateTime.now());
         
         return ResponseEntity.ok(response);
@@ -1,12 +1,21 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.UserImportResult;
+import com.example.bankcards.dto.UserImportRow;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.service.UserImportService;
 import com.example.bankcards.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -20,6 +29,9 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserImportService userImportService;
+
     /**
      * Поиск пользователей по имени, email или ID (только обычные пользователи для создания карт)
      */
@@ -43,6 +55,27 @@ public class UserController {
         return ResponseEntity.ok(results);
     }
 
+    /**
+     * Массовый импорт пользователей из JSON массива
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserImportResult> importUsers(@RequestBody List<UserImportRow> rows) {
+        return ResponseEntity.ok(userImportService.importUsers(rows));
+    }
+
+    /**
+     * Массовый импорт пользователей из CSV файла
+     * (заголовок: email,password,firstName,lastName,role,country,gender,dateOfBirth)
+     */
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserImportResult> importUsersCsv(@RequestParam("file") MultipartFile file) throws IOException {
+        try (Reader reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
+            return ResponseEntity.ok(userImportService.importUsers(userImportService.parseCsv(reader)));
+        }
+    }
+
     /**
      * DTO для результатов поиска пользователей
      */
@@ -7,7 +7,6 @@ import com.example.bankcards.entity.User;
 import com.example.bankcards.service.BankCardService;
 import com.example.bankcards.service.UserService;
 import com.example.bankcards.service.NotificationService;
-import com.example.bankcards.repository.BankCardRepository;
 import com.example.bankcards.entity.Notification;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -42,9 +41,6 @@ public class WebBankCardController {
     
     @Autowired
     private NotificationService notificationService;
-    
-    @Autowired
-    private BankCardRepository bankCardRepository;
 
     /**
      * Страница со списком карт пользователя (только для обычных пользователей)
@@ -329,20 +325,8 @@ public class WebBankCardController {
                 return ResponseEntity.status(403).body("Нет доступа к карте");
             }
             
-            // Получаем карту через сервис
-            BankCardDto cardDto = bankCardService.findById(id)
-                .orElseThrow(() -> new RuntimeException("Карта не найдена"));
-            
-            // Получаем сущность карты для уведомления
-            BankCard card = bankCardService.getCardEntityById(id)
-                .orElseThrow(() -> new RuntimeException("Карта не найдена"));
-            
-            // Создаем уведомление для админов
-            notificationService.createCardBlockRequest(currentUser, card, reason);
-            
-            // Устанавливаем флаг, что запрос на блокировку отправлен
-            card.setBlockRequestSent(true);
-            bankCardService.saveCard(card);
+            // Флаг запроса ставится сразу, уведомление для админов создается из события после коммита
+            bankCardService.requestCardBlock(id, currentUser, reason);
             
             return ResponseEntity.ok("✅ Запрос на блокировку карты отправлен администраторам");
             
@@ -487,7 +471,7 @@ public class WebBankCardController {
             System.out.println("🔄 Запрос на пересоздание карты: cardId=" + cardId + ", newExpiryDate=" + newExpiryDate + ", user=" + currentUser.getEmail());
             
             // Найти карту и проверить, что она принадлежит пользователю
-            BankCard card = bankCardRepository.findById(cardId)
+            BankCard card = bankCardService.getCardEntityById(cardId)
                 .orElseThrow(() -> new RuntimeException("Карта не найдена"));
                 
             System.out.println("🔍 Найдена карта: " + card.getMaskedNumber() + ", статус: " + card.getStatus() + ", истекла: " + card.isExpired());
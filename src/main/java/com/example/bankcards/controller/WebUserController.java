@@ -1,6 +1,8 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.UserImportResult;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.service.UserImportService;
 import com.example.bankcards.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -12,9 +14,14 @@ import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Controller
 @RequestMapping("/users")
@@ -24,6 +31,9 @@ public class WebUserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserImportService userImportService;
+
     /**
      * Страница управления пользователями
      */
@@ -51,6 +61,7 @@ public class WebUserController {
             }
             
             model.addAttribute("users", usersPage.getContent());
+            model.addAttribute("summaries", userService.getUserSummaries(usersPage.getContent()));
             model.addAttribute("currentPage", page);
             model.addAttribute("totalPages", usersPage.getTotalPages());
             model.addAttribute("totalElements", usersPage.getTotalElements());
@@ -105,6 +116,30 @@ public class WebUserController {
         }
     }
 
+    /**
+     * Массовый импорт пользователей из CSV файла
+     */
+    @PostMapping("/import")
+    public String importUsers(@RequestParam("file") MultipartFile file, RedirectAttributes redirectAttributes) {
+        try (Reader reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
+            UserImportResult result = userImportService.importUsers(userImportService.parseCsv(reader));
+            redirectAttributes.addFlashAttribute("successMessage", "✅ Импортировано пользователей: "
+                    + result.getImported() + " из " + result.getTotal());
+            if (!result.getErrors().isEmpty()) {
+                // Во flash-сообщение попадают первые ошибки, полный отчет возвращает /api/users/import
+                String details = result.getErrors().stream()
+                        .limit(5)
+                        .map(error -> "строка " + error.getRow() + ": " + error.getMessage())
+                        .collect(Collectors.joining("; "));
+                redirectAttributes.addFlashAttribute("errorMessage", "❌ Ошибок: " + result.getErrors().size()
+                        + " (" + details + (result.getErrors().size() > 5 ? "; ..." : "") + ")");
+            }
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("errorMessage", "❌ Ошибка при импорте пользователей: " + e.getMessage());
+        }
+        return "redirect:/users";
+    }
+
     /**
      * Страница редактирования пользователя
      */
@@ -0,0 +1,28 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO записи аудита, прочитанной из архива
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedAuditLogDto {
+    private Long id;
+    private LocalDateTime createdAt;
+    private Long userId;
+    private String userEmail;
+    private String action;
+    private String entityType;
+    private Long entityId;
+    private String description;
+    private String ipAddress;
+    private String userAgent;
+    private String status;
+    private String errorMessage;
+}
@@ -0,0 +1,26 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.AuditLog;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Страница логов аудита с курсором на следующую страницу (без подсчета общего количества)
+ */
+@Getter
+@AllArgsConstructor
+public class AuditLogCursorPage {
+    private List<AuditLog> content;
+    /** Курсор последней записи страницы, null - следующей страницы нет */
+    private String nextCursor;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public static AuditLogCursorPage empty() {
+        return new AuditLogCursorPage(List.of(), null);
+    }
+}
@@ -7,7 +7,7 @@ import lombok.NoArgsConstructor;
 /**
  * DTO для ответа аутентификации
  * 
- * Содержит JWT токен и информацию о пользователе
+ * Содержит JWT токен, refresh токен для его продления и информацию о пользователе
  */
 @Data
 @NoArgsConstructor
@@ -15,6 +15,8 @@ import lombok.NoArgsConstructor;
 public class AuthResponse {
     private String token;
     private String type = "Bearer";
+    private long expiresIn;
+    private String refreshToken;
     private String email;
     private String role;
     private String firstName;
@@ -27,4 +29,11 @@ public class AuthResponse {
         this.firstName = firstName;
         this.lastName = lastName;
     }
+
+    public AuthResponse(String token, long expiresIn, String refreshToken, String email, String role,
+                        String firstName, String lastName) {
+        this(token, email, role, firstName, lastName);
+        this.expiresIn = expiresIn;
+        this.refreshToken = refreshToken;
+    }
 }
@@ -0,0 +1,13 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+/**
+ * DTO для запроса обмена refresh токена
+ */
+@Data
+public class RefreshTokenRequest {
+    @NotBlank(message = "Refresh токен не может быть пустым")
+    private String refreshToken;
+}
@@ -0,0 +1,33 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO результата массового импорта пользователей с ошибками по строкам
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportResult {
+    private int total;
+    private int imported;
+    private long durationMs;
+    private List<RowError> errors = new ArrayList<>();
+
+    /**
+     * Ошибка строки импорта; row - номер строки данных, начиная с 1
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private int row;
+        private String email;
+        private String message;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO строки массового импорта пользователей (CSV или JSON)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportRow {
+    private String email;
+    private String password;
+    private String firstName;
+    private String lastName;
+    private String role;
+    private String country;
+    private String gender;
+    private String dateOfBirth;
+}
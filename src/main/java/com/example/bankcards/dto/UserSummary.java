@@ -0,0 +1,29 @@
+package com.example.bankcards.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сводка по пользователю для списка администратора: карты, непрочитанные уведомления
+ * и время последнего действия в журнале аудита
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummary {
+    private Long userId;
+    private long cardCount;
+    private long activeCardCount;
+    private long unreadNotificationCount;
+    private LocalDateTime lastActivityAt;
+
+    /**
+     * Сводка пользователя без карт, уведомлений и действий
+     */
+    public static UserSummary empty(Long userId) {
+        return new UserSummary(userId, 0, 0, 0, null);
+    }
+}
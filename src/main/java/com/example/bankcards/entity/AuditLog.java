@@ -14,8 +14,9 @@ public class AuditLog {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Пустой для системных действий и после удаления пользователя
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "user_id", nullable = false)
+    @JoinColumn(name = "user_id")
     private User user;
 
     @Column(nullable = false, length = 100)
@@ -45,6 +46,10 @@ public class AuditLog {
     @Column(name = "error_message", length = 1000)
     private String errorMessage;
 
+    // Ключ исходящего события, по которому создана запись (защита от повторной доставки)
+    @Column(name = "outbox_event_key", length = 100)
+    private String outboxEventKey;
+
     // Конструкторы
     public AuditLog() {
         this.createdAt = LocalDateTime.now();
@@ -187,5 +192,13 @@ public class AuditLog {
     public void setErrorMessage(String errorMessage) {
         this.errorMessage = errorMessage;
     }
+
+    public String getOutboxEventKey() {
+        return outboxEventKey;
+    }
+
+    public void setOutboxEventKey(String outboxEventKey) {
+        this.outboxEventKey = outboxEventKey;
+    }
 }
 
@@ -0,0 +1,96 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Почасовой итог аудита: количество событий по действию и статусу.
+ * Строка с действием и статусом ALL содержит общее количество событий за час
+ * и скетч уникальных пользователей.
+ */
+@Entity
+@Table(name = "audit_rollups", uniqueConstraints = @UniqueConstraint(
+        name = "uk_audit_rollups_hour_action_status", columnNames = {"hour_start", "action", "status"}))
+public class AuditRollup {
+
+    public static final String ALL = "ALL";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "hour_start", nullable = false)
+    private LocalDateTime hourStart;
+
+    @Column(nullable = false, length = 100)
+    private String action;
+
+    @Column(nullable = false, length = 50)
+    private String status;
+
+    @Column(name = "event_count", nullable = false)
+    private Long eventCount;
+
+    @Column(name = "user_sketch", length = 1024)
+    private byte[] userSketch;
+
+    // Конструкторы
+    public AuditRollup() {
+    }
+
+    public AuditRollup(LocalDateTime hourStart, String action, String status, Long eventCount) {
+        this.hourStart = hourStart;
+        this.action = action;
+        this.status = status;
+        this.eventCount = eventCount;
+    }
+
+    // Геттеры и сеттеры
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getHourStart() {
+        return hourStart;
+    }
+
+    public void setHourStart(LocalDateTime hourStart) {
+        this.hourStart = hourStart;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getEventCount() {
+        return eventCount;
+    }
+
+    public void setEventCount(Long eventCount) {
+        this.eventCount = eventCount;
+    }
+
+    public byte[] getUserSketch() {
+        return userSketch;
+    }
+
+    public void setUserSketch(byte[] userSketch) {
+        this.userSketch = userSketch;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Слот счетчика версий таблицы. Версия таблицы - сумма версий всех ее слотов.
+ * Запись увеличивает случайный слот, чтобы параллельные транзакции не ждали одну строку.
+ */
+@Entity
+@Table(name = "data_versions")
+@IdClass(DataVersion.Key.class)
+public class DataVersion {
+
+    @Id
+    @Column(name = "table_name", length = 20)
+    private String tableName;
+
+    @Id
+    private Integer slot;
+
+    @Column(nullable = false)
+    private Long version;
+
+    /**
+     * Составной ключ: таблица и номер слота
+     */
+    public static class Key implements Serializable {
+
+        private String tableName;
+        private Integer slot;
+
+        public Key() {
+        }
+
+        public Key(String tableName, Integer slot) {
+            this.tableName = tableName;
+            this.slot = slot;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key key)) {
+                return false;
+            }
+            return Objects.equals(tableName, key.tableName) && Objects.equals(slot, key.slot);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tableName, slot);
+        }
+    }
+
+    // Конструкторы
+    public DataVersion() {
+    }
+
+    public DataVersion(String tableName, Integer slot) {
+        this.tableName = tableName;
+        this.slot = slot;
+        this.version = 0L;
+    }
+
+    // Геттеры и сеттеры
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public Integer getSlot() {
+        return slot;
+    }
+
+    public void setSlot(Integer slot) {
+        this.slot = slot;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
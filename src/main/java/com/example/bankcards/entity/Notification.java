@@ -53,6 +53,10 @@ public class Notification {
     @Column
     private LocalDateTime processedAt;
     
+    // Ключ открытого запроса (пользователь:карта:тип), уникален среди необработанных запросов
+    @Column(length = 150, unique = true)
+    private String openRequestKey;
+    
     // Конструкторы
     public Notification() {}
     
@@ -106,6 +110,7 @@ public class Notification {
     public void markAsProcessed() {
         this.isProcessed = true;
         this.processedAt = LocalDateTime.now();
+        this.openRequestKey = null;
     }
     
     // Геттеры и сеттеры
@@ -212,4 +217,12 @@ public class Notification {
     public void setAmount(Double amount) {
         this.amount = amount;
     }
+    
+    public String getOpenRequestKey() {
+        return openRequestKey;
+    }
+    
+    public void setOpenRequestKey(String openRequestKey) {
+        this.openRequestKey = openRequestKey;
+    }
 }
@@ -0,0 +1,178 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Исходящее событие: записывается в одной транзакции с изменением карты или перевода
+ * и доставляется обработчикам (аудит, уведомления) фоновым OutboxRelay.
+ * События одного агрегата доставляются в порядке id.
+ * Событие, которое не удалось доставить за отведенное число попыток, откладывается
+ * насовсем (parked_at) и больше не задерживает остальные события агрегата.
+ */
+@Entity
+@Table(name = "outbox_events")
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 50)
+    private Type type;
+
+    @Column(name = "aggregate_type", nullable = false, length = 50)
+    private String aggregateType;
+
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    @Column(nullable = false, length = 4000)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "parked_at")
+    private LocalDateTime parkedAt;
+
+    // Конструкторы
+    public OutboxEvent() {
+    }
+
+    public OutboxEvent(Type type, Long aggregateId, String payload) {
+        this.type = type;
+        this.aggregateType = type.getAggregateType();
+        this.aggregateId = aggregateId;
+        this.payload = payload;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    /**
+     * Типы событий и агрегат, к которому они относятся
+     */
+    public enum Type {
+        CARD_CREATED(AggregateTypes.CARD),
+        CARD_BLOCKED(AggregateTypes.CARD),
+        CARD_ACTIVATED(AggregateTypes.CARD),
+        CARD_DELETED(AggregateTypes.CARD),
+        CARD_TOPPED_UP(AggregateTypes.CARD),
+        CARD_BLOCK_REQUESTED(AggregateTypes.CARD),
+        TRANSFER_COMPLETED(AggregateTypes.TRANSFER);
+
+        private final String aggregateType;
+
+        Type(String aggregateType) {
+            this.aggregateType = aggregateType;
+        }
+
+        public String getAggregateType() {
+            return aggregateType;
+        }
+    }
+
+    // Типы агрегатов
+    public static class AggregateTypes {
+        public static final String CARD = "CARD";
+        public static final String TRANSFER = "TRANSFER";
+    }
+
+    /**
+     * Ключ агрегата для соблюдения порядка доставки
+     */
+    public String getAggregateKey() {
+        return aggregateType + ":" + aggregateId;
+    }
+
+    // Геттеры и сеттеры
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getAggregateType() {
+        return aggregateType;
+    }
+
+    public void setAggregateType(String aggregateType) {
+        this.aggregateType = aggregateType;
+    }
+
+    public Long getAggregateId() {
+        return aggregateId;
+    }
+
+    public void setAggregateId(Long aggregateId) {
+        this.aggregateId = aggregateId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getParkedAt() {
+        return parkedAt;
+    }
+
+    public void setParkedAt(LocalDateTime parkedAt) {
+        this.parkedAt = parkedAt;
+    }
+}
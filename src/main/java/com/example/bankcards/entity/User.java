@@ -20,7 +20,9 @@ import java.util.Date;
 public class User {
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Последовательность (в MySQL - таблица users_seq) выдает id блоками и позволяет пакетную вставку
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "username", unique = true, nullable = true)
@@ -1,7 +1,10 @@
 package com.example.bankcards.exception;
 
+import com.example.bankcards.security.AuthenticationBusyException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -13,9 +16,11 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.servlet.ModelAndView;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 /**
@@ -44,6 +49,68 @@ public class GlobalExceptionHandler {
         }
     }
     
+    /**
+     * Перегрузка пула хеширования паролей
+     */
+    @ExceptionHandler(AuthenticationBusyException.class)
+    public Object handleAuthenticationBusyException(AuthenticationBusyException ex, HttpServletRequest request) {
+        logger.warn("Password hashing pool is busy: {}", ex.getMessage());
+        
+        if (isApiRequest(request)) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(createErrorResponse("SERVER_BUSY", ex.getMessage()));
+        } else {
+            ModelAndView modelAndView = new ModelAndView("error");
+            modelAndView.addObject("error", ex.getMessage());
+            modelAndView.addObject("errorCode", "SERVER_BUSY");
+            return modelAndView;
+        }
+    }
+    
+    /**
+     * Пул фоновых задач запроса (формирование архива экспорта) заполнен
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public Object handleRejectedExecution(RejectedExecutionException ex, HttpServletRequest request,
+                                          HttpServletResponse response) {
+        logger.warn("Task pool is full: {}", ex.getMessage());
+        
+        String errorMessage = "Сервер перегружен. Повторите попытку позже.";
+        if (isApiRequest(request)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(createErrorResponse("SERVER_BUSY", errorMessage));
+        } else {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+            ModelAndView modelAndView = new ModelAndView("error");
+            modelAndView.setStatus(HttpStatus.SERVICE_UNAVAILABLE);
+            modelAndView.addObject("error", errorMessage);
+            modelAndView.addObject("errorCode", "SERVER_BUSY");
+            return modelAndView;
+        }
+    }
+    
+    /**
+     * Конфликт версий: карту одновременно изменил другой запрос (перевод, пополнение).
+     * Транзакция откатилась целиком, поэтому операцию можно безопасно повторить
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public Object handleOptimisticLockingFailure(OptimisticLockingFailureException ex, HttpServletRequest request) {
+        logger.warn("Concurrent update conflict: {}", ex.getMessage());
+        
+        String errorMessage = "Данные изменились во время выполнения операции. Повторите попытку.";
+        if (isApiRequest(request)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(createErrorResponse("CONCURRENT_UPDATE", errorMessage));
+        } else {
+            ModelAndView modelAndView = new ModelAndView("error");
+            modelAndView.addObject("error", errorMessage);
+            modelAndView.addObject("errorCode", "CONCURRENT_UPDATE");
+            return modelAndView;
+        }
+    }
+    
     /**
      * Обработка исключений валидации
      */
@@ -2,15 +2,22 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.AuditLog;
 import com.example.bankcards.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий для работы с логами аудита
@@ -43,6 +50,12 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
     @Query("SELECT a FROM AuditLog a ORDER BY a.createdAt DESC")
     Page<AuditLog> findAllForAdmins(Pageable pageable);
 
+    /**
+     * Находит логи для админа начиная с даты (читаются только горячие партиции)
+     */
+    @Query("SELECT a FROM AuditLog a WHERE a.createdAt >= :since ORDER BY a.createdAt DESC")
+    Page<AuditLog> findAllForAdminsSince(@Param("since") LocalDateTime since, Pageable pageable);
+
     /**
      * Находит логи по действию для админа
      */
@@ -83,16 +96,62 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
     /**
      * Находит логи с фильтрами для админа
      */
-    @Query("SELECT a FROM AuditLog a WHERE " +
+    @Query("SELECT a FROM AuditLog a LEFT JOIN a.user u WHERE " +
            "(:action IS NULL OR a.action = :action) AND " +
            "(:status IS NULL OR a.status = :status) AND " +
-           "(:userEmail IS NULL OR a.user.email LIKE %:userEmail%) " +
+           "(:userEmail IS NULL OR u.email LIKE %:userEmail%) " +
            "ORDER BY a.createdAt DESC")
     Page<AuditLog> findWithFilters(@Param("action") String action, 
                                   @Param("status") String status, 
                                   @Param("userEmail") String userEmail, 
                                   Pageable pageable);
 
+    /**
+     * Находит логи с фильтрами для админа начиная с даты (читаются только горячие партиции)
+     */
+    @Query("SELECT a FROM AuditLog a LEFT JOIN a.user u WHERE a.createdAt >= :since AND " +
+           "(:action IS NULL OR a.action = :action) AND " +
+           "(:status IS NULL OR a.status = :status) AND " +
+           "(:userEmail IS NULL OR u.email LIKE %:userEmail%) " +
+           "ORDER BY a.createdAt DESC")
+    Page<AuditLog> findWithFiltersSince(@Param("action") String action,
+                                        @Param("status") String status,
+                                        @Param("userEmail") String userEmail,
+                                        @Param("since") LocalDateTime since,
+                                        Pageable pageable);
+
+    /**
+     * Страница логов для админа начиная с даты, записи старше курсора (cursorAt, cursorId),
+     * новые первыми. Без курсора возвращает первую страницу, размер задает Pageable (без COUNT).
+     */
+    @Query("SELECT a FROM AuditLog a LEFT JOIN FETCH a.user WHERE a.createdAt >= :since AND " +
+           "(:action IS NULL OR a.action = :action) AND " +
+           "(:status IS NULL OR a.status = :status) AND " +
+           "(:cursorAt IS NULL OR (a.createdAt <= :cursorAt AND (a.createdAt < :cursorAt OR a.id < :cursorId))) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<AuditLog> findPageForAdmins(@Param("action") String action,
+                                     @Param("status") String status,
+                                     @Param("since") LocalDateTime since,
+                                     @Param("cursorAt") LocalDateTime cursorAt,
+                                     @Param("cursorId") Long cursorId,
+                                     Pageable pageable);
+
+    /**
+     * То же для логов указанных пользователей (индекс idx_audit_logs_user_created)
+     */
+    @Query("SELECT a FROM AuditLog a LEFT JOIN FETCH a.user WHERE a.user.id IN :userIds AND a.createdAt >= :since AND " +
+           "(:action IS NULL OR a.action = :action) AND " +
+           "(:status IS NULL OR a.status = :status) AND " +
+           "(:cursorAt IS NULL OR (a.createdAt <= :cursorAt AND (a.createdAt < :cursorAt OR a.id < :cursorId))) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<AuditLog> findPageForAdminsByUsers(@Param("userIds") Collection<Long> userIds,
+                                            @Param("action") String action,
+                                            @Param("status") String status,
+                                            @Param("since") LocalDateTime since,
+                                            @Param("cursorAt") LocalDateTime cursorAt,
+                                            @Param("cursorId") Long cursorId,
+                                            Pageable pageable);
+
     /**
      * Подсчитывает количество неудачных попыток входа
      */
@@ -110,4 +169,77 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
      */
     @Query("SELECT COUNT(DISTINCT a.user) FROM AuditLog a WHERE a.user IS NOT NULL AND a.createdAt >= :since")
     long countUniqueUsers(@Param("since") LocalDateTime since);
+
+    /**
+     * Потоково выбирает поля для счетчиков панели аудита: [дата, действие, статус, id пользователя]
+     * (требует транзакции)
+     */
+    @Query("SELECT a.createdAt, a.action, a.status, u.id FROM AuditLog a LEFT JOIN a.user u " +
+           "WHERE a.createdAt >= :since AND a.createdAt < :until")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Object[]> streamForMetrics(@Param("since") LocalDateTime since, @Param("until") LocalDateTime until);
+
+    /**
+     * Находит самую раннюю дату записи в таблице
+     */
+    @Query("SELECT MIN(a.createdAt) FROM AuditLog a")
+    LocalDateTime findOldestCreatedAt();
+
+    /**
+     * Время последнего действия пользователей: [id пользователя, дата]
+     */
+    @Query("SELECT a.user.id, MAX(a.createdAt) FROM AuditLog a WHERE a.user.id IN :userIds GROUP BY a.user.id")
+    List<Object[]> findLastActivityByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Потоково выбирает логи периода для архивации по возрастанию id (требует транзакции):
+     * [id, дата, id пользователя, email, действие, тип сущности, id сущности,
+     * описание, IP, User-Agent, статус, ошибка]
+     */
+    @Query("SELECT a.id, a.createdAt, u.id, u.email, a.action, a.entityType, a.entityId, " +
+           "a.description, a.ipAddress, a.userAgent, a.status, a.errorMessage " +
+           "FROM AuditLog a LEFT JOIN a.user u " +
+           "WHERE a.createdAt >= :from AND a.createdAt < :to ORDER BY a.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Object[]> streamForArchive(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Подсчитывает логи за период [from, to)
+     */
+    @Query("SELECT COUNT(a) FROM AuditLog a WHERE a.createdAt >= :from AND a.createdAt < :to")
+    long countInRange(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Удаляет заархивированные логи периода с id в [fromId, toId) в отдельной транзакции
+     * @return количество удаленных логов
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM AuditLog a WHERE a.id >= :fromId AND a.id < :toId " +
+           "AND a.createdAt >= :from AND a.createdAt < :to")
+    int deleteArchived(@Param("fromId") Long fromId,
+                       @Param("toId") Long toId,
+                       @Param("from") LocalDateTime from,
+                       @Param("to") LocalDateTime to);
+
+    /**
+     * Отвязывает логи от удаляемого пользователя (вместо ON DELETE SET NULL,
+     * недоступного для партиционированной таблицы)
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE AuditLog a SET a.user = NULL WHERE a.user.id = :userId")
+    int detachUser(@Param("userId") Long userId);
+
+    /**
+     * Есть ли запись, созданная по исходящему событию (индекс idx_audit_logs_outbox_event_key)
+     */
+    boolean existsByOutboxEventKey(String outboxEventKey);
+
+    /**
+     * Потоково выбирает все логи с пользователями для экспорта, новые первыми (требует транзакции)
+     */
+    @Query("SELECT a FROM AuditLog a LEFT JOIN FETCH a.user ORDER BY a.id DESC")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<AuditLog> streamAllForExport();
 }
@@ -0,0 +1,32 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.AuditRollup;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Репозиторий почасовых итогов аудита
+ */
+@Repository
+public interface AuditRollupRepository extends JpaRepository<AuditRollup, Long> {
+
+    /**
+     * Находит итоги, начиная с указанного часа
+     */
+    List<AuditRollup> findByHourStartGreaterThanEqualOrderByHourStart(LocalDateTime since);
+
+    /**
+     * Итоги за час с блокировкой строк: узлы добавляют к ним свои приращения по очереди
+     * (требует транзакции)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM AuditRollup r WHERE r.hourStart = :hourStart")
+    List<AuditRollup> findByHourStartForUpdate(@Param("hourStart") LocalDateTime hourStart);
+}
@@ -2,21 +2,25 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.BankCard;
 import com.example.bankcards.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий для работы с банковскими картами
  */
 @Repository
-public interface BankCardRepository extends JpaRepository<BankCard, Long> {
+public interface BankCardRepository extends JpaRepository<BankCard, Long>, BankCardRepositoryCustom {
 
     /**
      * Находит все карты пользователя
@@ -80,6 +84,19 @@ public interface BankCardRepository extends JpaRepository<BankCard, Long> {
     @Query("SELECT bc FROM BankCard bc WHERE bc.expiryDate < CURRENT_DATE AND bc.status = 'ACTIVE'")
     List<BankCard> findExpiredCards();
 
+    /**
+     * Находит истекшие карты с id в диапазоне [fromId, toId]
+     */
+    @Query("SELECT bc FROM BankCard bc WHERE bc.expiryDate < CURRENT_DATE AND bc.status = 'ACTIVE' " +
+           "AND bc.id BETWEEN :fromId AND :toId")
+    List<BankCard> findExpiredCardsInRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    /**
+     * Наибольший id карты (для разбиения проверки истекших карт на диапазоны)
+     */
+    @Query("SELECT MAX(bc.id) FROM BankCard bc")
+    Long findMaxId();
+
     /**
      * Находит карты пользователя, которые можно использовать для переводов
      */
@@ -105,4 +122,17 @@ public interface BankCardRepository extends JpaRepository<BankCard, Long> {
      * Проверяет, существует ли карта с таким маскированным номером
      */
     boolean existsByMaskedNumber(String maskedNumber);
+
+    /**
+     * Потоково выбирает все карты с владельцами для экспорта (требует транзакции)
+     */
+    @Query("SELECT bc FROM BankCard bc JOIN FETCH bc.owner ORDER BY bc.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<BankCard> streamAllForExport();
+
+    /**
+     * Подсчитывает количество карт по владельцам: [id владельца, количество]
+     */
+    @Query("SELECT bc.owner.id, COUNT(bc) FROM BankCard bc GROUP BY bc.owner.id")
+    List<Object[]> countCardsGroupedByOwner();
 }
@@ -0,0 +1,17 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.BankCard;
+
+import java.util.Optional;
+
+/**
+ * Методы репозитория карт, реализованные вручную
+ */
+public interface BankCardRepositoryCustom {
+
+    /**
+     * Находит карту с актуальным балансом: копия из кэша второго уровня сверяется
+     * с версией в БД и при расхождении перечитывается
+     */
+    Optional<BankCard> findCurrentById(Long id);
+}
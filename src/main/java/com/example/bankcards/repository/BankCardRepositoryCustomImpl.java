@@ -0,0 +1,49 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.BankCard;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Чтение карты с проверкой версии.
+ *
+ * Кэш второго уровня локален для узла: после изменения карты на другом узле здесь до
+ * истечения ttl лежит старый баланс. Поэтому карта берется из кэша (или из контекста
+ * сессии), а ее версия читается из БД одним запросом по первичному ключу; если версии
+ * расходятся, карта перечитывается из БД, и refresh заодно вытесняет устаревшую копию из кэша.
+ */
+public class BankCardRepositoryCustomImpl implements BankCardRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<BankCard> findCurrentById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        BankCard card = entityManager.find(BankCard.class, id);
+        if (card == null) {
+            return Optional.empty();
+        }
+        Optional<Long> version = entityManager
+                .createQuery("SELECT c.version FROM BankCard c WHERE c.id = :id", Long.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst();
+        if (version.isEmpty()) {
+            // Карту удалил другой узел
+            entityManager.detach(card);
+            entityManager.getEntityManagerFactory().getCache().evict(BankCard.class, id);
+            return Optional.empty();
+        }
+        if (version.get() != card.getVersion()) {
+            entityManager.refresh(card);
+        }
+        return Optional.of(card);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.DataVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Репозиторий счетчиков версий таблиц
+ */
+@Repository
+public interface DataVersionRepository extends JpaRepository<DataVersion, DataVersion.Key> {
+
+    /**
+     * Увеличивает версию слота в текущей транзакции.
+     * Изменения сущностей сбрасываются в БД до обновления, поэтому строка слота
+     * блокируется последней и держится только до коммита.
+     * @return 0, если слота нет
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE DataVersion v SET v.version = v.version + 1 WHERE v.tableName = :tableName AND v.slot = :slot")
+    int increment(@Param("tableName") String tableName, @Param("slot") Integer slot);
+
+    /**
+     * Версии таблиц: пары [имя таблицы, сумма версий слотов]
+     */
+    @Query("SELECT v.tableName, SUM(v.version) FROM DataVersion v WHERE v.tableName IN :tableNames GROUP BY v.tableName")
+    List<Object[]> sumVersions(@Param("tableNames") Collection<String> tableNames);
+}
@@ -2,14 +2,23 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Notification;
 import com.example.bankcards.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий для работы с уведомлениями
@@ -32,12 +41,44 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
      */
     Long countByUserAndIsReadFalse(User user);
     
+    /**
+     * Подсчитывает непрочитанные уведомления для набора пользователей
+     * @return пары [id пользователя, количество]
+     */
+    @Query("SELECT n.user.id, COUNT(n) FROM Notification n " +
+           "WHERE n.isRead = false AND n.user.id IN :userIds GROUP BY n.user.id")
+    List<Object[]> countUnreadGroupedByUser(@Param("userIds") List<Long> userIds);
+    
+    /**
+     * Отмечает все непрочитанные уведомления пользователя как прочитанные одним запросом
+     * @return количество обновленных уведомлений
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Notification n SET n.isRead = true, n.readAt = :readAt " +
+           "WHERE n.user = :user AND n.isRead = false")
+    int markAllAsReadByUser(@Param("user") User user, @Param("readAt") LocalDateTime readAt);
+    
+    /**
+     * Отмечает уведомления как обработанные одним запросом; уже обработанные не изменяются
+     * @return количество обновленных уведомлений
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Notification n SET n.isProcessed = true, n.processedAt = :processedAt, " +
+           "n.openRequestKey = NULL " +
+           "WHERE n.id IN :ids AND n.isProcessed = false")
+    int markProcessedByIds(@Param("ids") Collection<Long> ids, @Param("processedAt") LocalDateTime processedAt);
+    
+    /**
+     * Находит ожидающий обработки запрос по ключу пользователь:карта:тип
+     */
+    Optional<Notification> findByOpenRequestKey(String openRequestKey);
+    
     /**
      * Находит уведомления с фильтрацией по статусу обработки
      */
     @Query("SELECT n FROM Notification n WHERE " +
            "(:processed IS NULL OR n.isProcessed = :processed) " +
-           "ORDER BY n.createdAt DESC")
+           "ORDER BY n.createdAt DESC, n.id DESC")
     Page<Notification> findByProcessedStatus(@Param("processed") Boolean processed, Pageable pageable);
     
     /**
@@ -47,7 +88,7 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
            "(:processed IS NULL OR n.isProcessed = :processed) AND " +
            "(LOWER(n.title) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
            "LOWER(n.message) LIKE LOWER(CONCAT('%', :search, '%'))) " +
-           "ORDER BY n.createdAt DESC")
+           "ORDER BY n.createdAt DESC, n.id DESC")
     Page<Notification> searchNotificationsWithFilters(
             @Param("search") String search,
             @Param("processed") Boolean processed,
@@ -64,4 +105,33 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
      */
     @Query("SELECT n FROM Notification n ORDER BY n.createdAt DESC")
     Page<Notification> findAllForAdmins(Pageable pageable);
+    
+    /**
+     * Находит следующую пачку id обработанных и прочитанных уведомлений старше даты
+     * @param afterId id, после которого продолжается поиск (0 для первой пачки)
+     */
+    @Query("SELECT n.id FROM Notification n WHERE n.id > :afterId " +
+           "AND n.isProcessed = true AND n.isRead = true AND n.createdAt < :cutoff " +
+           "ORDER BY n.id")
+    List<Long> findPurgeableIds(@Param("afterId") Long afterId,
+                                @Param("cutoff") LocalDateTime cutoff,
+                                Pageable pageable);
+    
+    /**
+     * Удаляет пачку уведомлений в отдельной транзакции; условия повторяются,
+     * чтобы не удалить уведомление, изменившееся после выборки id
+     * @return количество удаленных уведомлений
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.id IN :ids " +
+           "AND n.isProcessed = true AND n.isRead = true AND n.createdAt < :cutoff")
+    int deletePurgeableByIds(@Param("ids") Collection<Long> ids, @Param("cutoff") LocalDateTime cutoff);
+    
+    /**
+     * Потоковое чтение полей для индекса поиска: [id, заголовок, сообщение, обработано, дата создания]
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT n.id, n.title, n.message, n.isProcessed, n.createdAt FROM Notification n ORDER BY n.id")
+    Stream<Object[]> streamForSearchIndex();
 }
@@ -0,0 +1,65 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Репозиторий исходящих событий
+ */
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Находит события, готовые к доставке, и блокирует их до конца транзакции.
+     * Агрегаты, у которых есть событие в обработке или ожидающее повтора, пропускаются:
+     * их события доставляются только по порядку. Отложенные насовсем события не выбираются
+     * и агрегат не задерживают
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM OutboxEvent e WHERE e.nextAttemptAt <= :now AND e.parkedAt IS NULL AND NOT EXISTS (" +
+           "SELECT h.id FROM OutboxEvent h WHERE h.aggregateType = e.aggregateType " +
+           "AND h.aggregateId = e.aggregateId AND h.nextAttemptAt > :now AND h.parkedAt IS NULL) ORDER BY e.id")
+    List<OutboxEvent> findDueForUpdate(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Занимает события до указанного времени
+     */
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.nextAttemptAt = :until WHERE e.id IN :ids")
+    int claim(@Param("ids") Collection<Long> ids, @Param("until") LocalDateTime until);
+
+    /**
+     * Откладывает событие после ошибки обработчика
+     */
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.lastError = :error, e.nextAttemptAt = :retryAt WHERE e.id = :id")
+    int postpone(@Param("id") Long id, @Param("error") String error, @Param("retryAt") LocalDateTime retryAt);
+
+    /**
+     * Откладывает событие насовсем, когда попытки исчерпаны; повторить можно, сбросив parked_at
+     */
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.lastError = :error, e.parkedAt = :parkedAt WHERE e.id = :id")
+    int park(@Param("id") Long id, @Param("error") String error, @Param("parkedAt") LocalDateTime parkedAt);
+
+    /**
+     * Количество событий, доставка которых уже завершалась ошибкой и еще повторяется
+     */
+    long countByAttemptsGreaterThanAndParkedAtIsNull(Integer attempts);
+
+    /**
+     * Количество событий, отложенных насовсем
+     */
+    long countByParkedAtIsNotNull();
+}
@@ -0,0 +1,65 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.SchedulerLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Репозиторий блокировок фоновых задач
+ */
+@Repository
+public interface SchedulerLockRepository extends JpaRepository<SchedulerLock, String> {
+
+    /**
+     * Занимает существующую блокировку, если ее аренда истекла
+     * @return 1, если блокировка занята этим узлом
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE SchedulerLock l SET l.lockedBy = :owner, l.lockedAt = :now, l.lockedUntil = :until, l.heartbeatAt = :now " +
+           "WHERE l.name = :name AND l.lockedUntil <= :now")
+    int takeOver(@Param("name") String name, @Param("owner") String owner,
+                 @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    /**
+     * Создает блокировку при первом запуске задачи; если строку уже создал другой узел,
+     * вставка завершится нарушением первичного ключа
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO scheduler_locks (name, locked_by, locked_at, locked_until, heartbeat_at) " +
+                   "VALUES (:name, :owner, :now, :until, :now)", nativeQuery = true)
+    int insertLock(@Param("name") String name, @Param("owner") String owner,
+                   @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    /**
+     * Продлевает аренду, пока задача выполняется
+     * @return 0, если блокировку занял другой узел
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE SchedulerLock l SET l.lockedUntil = :until, l.heartbeatAt = :now " +
+           "WHERE l.name = :name AND l.lockedBy = :owner")
+    int extend(@Param("name") String name, @Param("owner") String owner,
+               @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    /**
+     * Освобождает блокировку после задачи, оставляя ее занятой до указанного времени
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE SchedulerLock l SET l.lockedUntil = :until WHERE l.name = :name AND l.lockedBy = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("until") LocalDateTime until);
+
+    /**
+     * Все блокировки по имени (для статуса планировщика)
+     */
+    List<SchedulerLock> findAllByOrderByName();
+}
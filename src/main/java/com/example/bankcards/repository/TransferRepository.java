@@ -2,15 +2,19 @@ package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Transfer;
 import com.example.bankcards.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий для работы с переводами
@@ -70,4 +74,14 @@ public interface TransferRepository extends JpaRepository<Transfer, Long> {
            "(t.fromCard.owner = :user OR t.toCard.owner = :user) AND " +
            "t.status = 'COMPLETED' AND t.createdAt >= :startOfMonth")
     double getAmountByUserThisMonth(@Param("user") User user, @Param("startOfMonth") LocalDateTime startOfMonth);
+
+    /**
+     * Потоково выбирает все переводы с картами и владельцами для экспорта (требует транзакции)
+     */
+    @Query("SELECT t FROM Transfer t " +
+           "JOIN FETCH t.fromCard fc JOIN FETCH fc.owner " +
+           "JOIN FETCH t.toCard " +
+           "ORDER BY t.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Transfer> streamAllForExport();
 }
@@ -1,15 +1,23 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.UserSummary;
+import com.example.bankcards.entity.BankCard;
 import com.example.bankcards.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий для работы с пользователями
@@ -23,6 +31,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.email = :email")
     Optional<User> findByEmail(@Param("email") String email);
     
+    /**
+     * Находит id пользователя по точному email
+     */
+    @Query("SELECT u.id FROM User u WHERE u.email = :email")
+    Optional<Long> findIdByEmail(@Param("email") String email);
+
+    /**
+     * Находит id пользователей, email которых начинается с префикса (использует индекс по email).
+     * Символы !, % и _ в префиксе должны быть экранированы символом !
+     */
+    @Query("SELECT u.id FROM User u WHERE u.email LIKE CONCAT(:prefix, '%') ESCAPE '!' ORDER BY u.email")
+    List<Long> findIdsByEmailPrefix(@Param("prefix") String prefix, Pageable pageable);
+
     /**
      * Проверяет существование пользователя по email
      */
@@ -62,4 +83,49 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * Находит пользователей по email (содержит)
      */
     List<User> findByEmailContainingIgnoreCase(String email);
+
+    /**
+     * Потоково выбирает всех пользователей для экспорта (требует транзакции)
+     */
+    @Query("SELECT u FROM User u ORDER BY u.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<User> streamAllForExport();
+
+    /**
+     * Потоковое чтение полей для индекса поиска: [id, имя, фамилия, email]
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT u.id, u.firstName, u.lastName, u.email FROM User u ORDER BY u.id")
+    Stream<Object[]> streamForSearchIndex();
+
+    /**
+     * Поля для индекса поиска у пользователей, созданных или измененных начиная с since
+     */
+    @Query("SELECT u.id, u.firstName, u.lastName, u.email FROM User u WHERE u.updatedAt >= :since ORDER BY u.id")
+    Stream<Object[]> streamForSearchIndexChangedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Страница пользователей из найденных индексом id (поиск по первичному ключу)
+     */
+    Page<User> findByIdIn(Collection<Long> ids, Pageable pageable);
+
+    /**
+     * Находит уже занятые email из списка (проверка пачки импорта одним запросом)
+     */
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    /**
+     * Сводки по пользователям страницы одним запросом: карты считаются группировкой
+     * по индексу (user_id, status), непрочитанные уведомления и последнее действие -
+     * подзапросами по индексам (user_id, is_read) и (user_id, created_at)
+     */
+    @Query("SELECT new com.example.bankcards.dto.UserSummary(u.id, COUNT(c.id), " +
+           "COALESCE(SUM(CASE WHEN c.status = :activeStatus THEN 1L ELSE 0L END), 0L), " +
+           "(SELECT COUNT(n.id) FROM Notification n WHERE n.user.id = u.id AND n.isRead = false), " +
+           "(SELECT MAX(a.createdAt) FROM AuditLog a WHERE a.user.id = u.id)) " +
+           "FROM User u LEFT JOIN BankCard c ON c.owner.id = u.id " +
+           "WHERE u.id IN :ids GROUP BY u.id")
+    List<UserSummary> findSummariesByIds(@Param("ids") Collection<Long> ids,
+                                         @Param("activeStatus") BankCard.Status activeStatus);
 }
@@ -0,0 +1,13 @@
+package com.example.bankcards.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Очередь хеширования паролей заполнена: запрос отклоняется сразу, клиенту возвращается 429
+ */
+public class AuthenticationBusyException extends AuthenticationServiceException {
+
+    public AuthenticationBusyException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.bankcards.security;
 
 import com.example.bankcards.util.JwtUtils;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -22,49 +25,83 @@ import java.io.IOException;
  * Этот фильтр:
  * - Извлекает JWT токен из заголовка Authorization
  * - Валидирует токен
+ * - Отклоняет отозванные токены до загрузки пользователя из БД
  * - Устанавливает контекст безопасности Spring Security
+ * - Замеряет время проверки токена (метрика bankcards.auth.jwt с тегом result)
  */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    public static final String JWT_TIMER = "bankcards.auth.jwt";
+
     @Autowired
     private JwtUtils jwtUtils;
 
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                     FilterChain filterChain) throws ServletException, IOException {
         
         final String authorizationHeader = request.getHeader("Authorization");
-        
-        String username = null;
-        String jwt = null;
 
         // Извлекаем токен из заголовка Authorization: Bearer <token>
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String result = "error";
             try {
-                username = jwtUtils.getUsernameFromToken(jwt);
-            } catch (Exception e) {
-                logger.error("JWT token is invalid: " + e.getMessage());
-            }
-        }
-
-        // Если токен валиден и пользователь не аутентифицирован
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-            
-            if (jwtUtils.validateToken(jwt, userDetails)) {
-                UsernamePasswordAuthenticationToken authToken = 
-                    new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
+                result = authenticate(authorizationHeader.substring(7), request);
+            } finally {
+                sample.stop(meterRegistry.timer(JWT_TIMER, "result", result));
             }
         }
         
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Проверяет токен и устанавливает аутентификацию
+     * @return результат проверки для метрики: authenticated, skipped, invalid или revoked
+     */
+    private String authenticate(String jwt, HttpServletRequest request) {
+        String username = null;
+        try {
+            username = jwtUtils.getUsernameFromToken(jwt);
+        } catch (Exception e) {
+            logger.error("JWT token is invalid: " + e.getMessage());
+        }
+        if (username == null) {
+            return "invalid";
+        }
+
+        // Отозванный токен не аутентифицирует запрос; проверка идет в памяти, без запроса к БД
+        Claims claims = jwtUtils.getClaimsFromToken(jwt);
+        if (claims != null && tokenRevocationService.isRevoked(claims.getId(), username, JwtUtils.getIssuedAt(claims))) {
+            logger.debug("JWT token is revoked for " + username);
+            return "revoked";
+        }
+
+        // Пользователь уже аутентифицирован
+        if (SecurityContextHolder.getContext().getAuthentication() != null) {
+            return "skipped";
+        }
+
+        UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        if (!jwtUtils.validateToken(jwt, userDetails)) {
+            return "invalid";
+        }
+        UsernamePasswordAuthenticationToken authToken =
+            new UsernamePasswordAuthenticationToken(
+                userDetails, null, userDetails.getAuthorities());
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+        return "authenticated";
+    }
 }
@@ -0,0 +1,46 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.util.JwtUtils;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.logout.LogoutHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Обработчик выхода: отзывает JWT токен из заголовка Authorization до истечения его срока
+ * и цепочку refresh токена из заголовка X-Refresh-Token
+ */
+@Component
+public class JwtLogoutHandler implements LogoutHandler {
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Override
+    public void logout(HttpServletRequest request, HttpServletResponse response, Authentication authentication) {
+        String refreshToken = request.getHeader("X-Refresh-Token");
+        if (refreshToken != null && !refreshToken.isBlank()) {
+            refreshTokenService.revoke(refreshToken);
+        }
+
+        String authorizationHeader = request.getHeader("Authorization");
+        if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+            return;
+        }
+        Claims claims = jwtUtils.getClaimsFromToken(authorizationHeader.substring(7));
+        if (claims != null) {
+            tokenRevocationService.revokeToken(claims.getId(), claims.getSubject(), claims.getExpiration(),
+                    RevokedToken.Reasons.LOGOUT);
+        }
+    }
+}
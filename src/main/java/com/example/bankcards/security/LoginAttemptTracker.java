@@ -0,0 +1,231 @@
+package com.example.bankcards.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Учет неудачных попыток входа в скользящем окне по email и по IP.
+ *
+ * Окно делится на корзины, каждая корзина хранит номер своего интервала и счетчик
+ * в одном long и обновляется через CAS, без блокировок. Превышение лимита блокирует
+ * ключ на время lockout: следующие попытки отклоняются до проверки пароля, поэтому
+ * затраты на BCrypt не растут вместе с интенсивностью перебора. Счетчики без
+ * активности дольше окна удаляются по расписанию.
+ */
+@Component
+public class LoginAttemptTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginAttemptTracker.class);
+
+    static final int BUCKETS = 10;
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    /** Защита от роста памяти при переборе случайных email: новые ключи сверх лимита не учитываются */
+    private static final int MAX_TRACKED_KEYS = 100_000;
+
+    private final long bucketMillis;
+    private final long lockoutMillis;
+    private final int maxFailuresPerEmail;
+    private final int maxFailuresPerIp;
+
+    private final ConcurrentHashMap<String, Counter> emails = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> ips = new ConcurrentHashMap<>();
+    private final Counter failures = new Counter();
+    private final Counter rejections = new Counter();
+
+    @Autowired
+    public LoginAttemptTracker(@Value("${security.login-attempts.window-seconds:900}") long windowSeconds,
+                               @Value("${security.login-attempts.lockout-seconds:900}") long lockoutSeconds,
+                               @Value("${security.login-attempts.max-per-email:5}") int maxFailuresPerEmail,
+                               @Value("${security.login-attempts.max-per-ip:50}") int maxFailuresPerIp) {
+        this.bucketMillis = Math.max(1, windowSeconds * 1000 / BUCKETS);
+        this.lockoutMillis = lockoutSeconds * 1000;
+        this.maxFailuresPerEmail = maxFailuresPerEmail;
+        this.maxFailuresPerIp = maxFailuresPerIp;
+    }
+
+    /**
+     * Проверяет, заблокирован ли вход для email или IP. Заблокированная попытка учитывается как отклоненная.
+     * @return через сколько секунд можно повторить попытку, 0 - вход разрешен
+     */
+    public long getRetryAfterSeconds(String email, String ip) {
+        return getRetryAfterSeconds(email, ip, System.currentTimeMillis());
+    }
+
+    long getRetryAfterSeconds(String email, String ip, long now) {
+        long lockedUntil = Math.max(lockedUntil(emails, normalizeEmail(email)), lockedUntil(ips, ip));
+        if (lockedUntil <= now) {
+            return 0;
+        }
+        rejections.increment(now / bucketMillis);
+        return Math.max(1, (lockedUntil - now + 999) / 1000);
+    }
+
+    /**
+     * Учитывает неудачную попытку входа
+     */
+    public void recordFailure(String email, String ip) {
+        recordFailure(email, ip, System.currentTimeMillis());
+    }
+
+    void recordFailure(String email, String ip, long now) {
+        long epoch = now / bucketMillis;
+        failures.increment(epoch);
+        String key = normalizeEmail(email);
+        if (key != null) {
+            lockIfExceeded(counter(emails, key, now), epoch, now, maxFailuresPerEmail, "email " + key);
+        }
+        if (ip != null) {
+            lockIfExceeded(counter(ips, ip, now), epoch, now, maxFailuresPerIp, "IP " + ip);
+        }
+    }
+
+    /**
+     * Сбрасывает счетчик email после успешного входа (счетчик IP сохраняется)
+     */
+    public void recordSuccess(String email) {
+        String key = normalizeEmail(email);
+        if (key != null) {
+            emails.remove(key);
+        }
+    }
+
+    /**
+     * Длина окна в минутах
+     */
+    public long getWindowMinutes() {
+        return bucketMillis * BUCKETS / 60_000;
+    }
+
+    /**
+     * Количество неудачных попыток входа за окно
+     */
+    public long getRecentFailures() {
+        return failures.sum(System.currentTimeMillis() / bucketMillis);
+    }
+
+    /**
+     * Количество попыток, отклоненных без проверки пароля, за окно
+     */
+    public long getRecentRejections() {
+        return rejections.sum(System.currentTimeMillis() / bucketMillis);
+    }
+
+    /**
+     * Количество заблокированных сейчас email и IP
+     */
+    public long getLockedCount() {
+        long now = System.currentTimeMillis();
+        return emails.values().stream().filter(counter -> counter.lockedUntil > now).count()
+                + ips.values().stream().filter(counter -> counter.lockedUntil > now).count();
+    }
+
+    /**
+     * Удаляет счетчики без активности дольше окна и без действующей блокировки
+     */
+    @Scheduled(fixedDelayString = "${security.login-attempts.cleanup-interval-ms:60000}")
+    public void evictExpired() {
+        evictExpired(System.currentTimeMillis());
+    }
+
+    void evictExpired(long now) {
+        long expiredBefore = now - bucketMillis * BUCKETS;
+        emails.values().removeIf(counter -> counter.isExpired(expiredBefore, now));
+        ips.values().removeIf(counter -> counter.isExpired(expiredBefore, now));
+    }
+
+    int trackedKeys() {
+        return emails.size() + ips.size();
+    }
+
+    private void lockIfExceeded(Counter counter, long epoch, long now, int maxFailures, String key) {
+        if (counter == null) {
+            return;
+        }
+        counter.lastSeen = now;
+        counter.increment(epoch);
+        if (counter.sum(epoch) >= maxFailures && counter.lockedUntil <= now) {
+            counter.lockedUntil = now + lockoutMillis;
+            logger.warn("🔒 Вход заблокирован для {} на {} с: слишком много неудачных попыток", key, lockoutMillis / 1000);
+        }
+    }
+
+    private Counter counter(ConcurrentHashMap<String, Counter> counters, String key, long now) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        if (emails.size() + ips.size() >= MAX_TRACKED_KEYS) {
+            evictExpired(now);
+            if (emails.size() + ips.size() >= MAX_TRACKED_KEYS) {
+                return null;
+            }
+        }
+        return counters.computeIfAbsent(key, k -> new Counter());
+    }
+
+    private static long lockedUntil(ConcurrentHashMap<String, Counter> counters, String key) {
+        if (key == null) {
+            return 0;
+        }
+        Counter counter = counters.get(key);
+        return counter == null ? 0 : counter.lockedUntil;
+    }
+
+    private static String normalizeEmail(String email) {
+        return email == null || email.isBlank() ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Счетчик событий в скользящем окне из BUCKETS корзин.
+     * Элемент корзины: номер интервала в старших битах, количество событий в младших COUNT_BITS.
+     */
+    static final class Counter {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private volatile long lockedUntil;
+        private volatile long lastSeen;
+
+        void increment(long epoch) {
+            int index = (int) (epoch % BUCKETS);
+            while (true) {
+                long current = buckets.get(index);
+                long next;
+                if (current >>> COUNT_BITS != epoch) {
+                    // Корзина осталась от прошлого круга окна - начинаем ее заново
+                    next = (epoch << COUNT_BITS) | 1;
+                } else if ((current & COUNT_MASK) == COUNT_MASK) {
+                    return;
+                } else {
+                    next = current + 1;
+                }
+                if (buckets.compareAndSet(index, current, next)) {
+                    return;
+                }
+            }
+        }
+
+        long sum(long epoch) {
+            long sum = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                long value = buckets.get(i);
+                long bucketEpoch = value >>> COUNT_BITS;
+                if (bucketEpoch > epoch - BUCKETS && bucketEpoch <= epoch) {
+                    sum += value & COUNT_MASK;
+                }
+            }
+            return sum;
+        }
+
+        private boolean isExpired(long expiredBefore, long now) {
+            return lastSeen < expiredBefore && lockedUntil <= now;
+        }
+    }
+}
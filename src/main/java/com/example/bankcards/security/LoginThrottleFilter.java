@@ -0,0 +1,38 @@
+package com.example.bankcards.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Фильтр формы входа: отклоняет попытку до проверки пароля, если email или IP
+ * заблокированы после серии неудачных входов
+ */
+@Component
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private LoginAttemptTracker loginAttemptTracker;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || !"/login".equals(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long retryAfter = loginAttemptTracker.getRetryAfterSeconds(request.getParameter("username"), request.getRemoteAddr());
+        if (retryAfter > 0) {
+            response.sendRedirect(request.getContextPath() + "/login?locked=true");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
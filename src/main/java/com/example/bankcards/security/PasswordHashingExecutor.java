@@ -0,0 +1,164 @@
+package com.example.bankcards.security;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Пул потоков для хеширования и проверки паролей.
+ *
+ * BCrypt занимает процессор на десятки миллисекунд, поэтому число потоков равно числу ядер,
+ * а очередь ограничена: при всплеске входов запросы сверх очереди сразу получают
+ * AuthenticationBusyException (429), и потоки Tomcat не занимаются ожиданием BCrypt.
+ */
+@Component
+public class PasswordHashingExecutor {
+
+    private static final String THREAD_PREFIX = "password-hash-";
+
+    private final int bcryptStrength;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder hashCount = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxHashNanos = new LongAccumulator(Long::max, 0);
+
+    @Autowired
+    public PasswordHashingExecutor(@Value("${security.password.pool-size:0}") int poolSize,
+                                   @Value("${security.password.queue-capacity:64}") int queueCapacity,
+                                   @Value("${security.password.bcrypt-strength:10}") int bcryptStrength) {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.bcryptStrength = bcryptStrength;
+        this.queueCapacity = queueCapacity;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Стоимость BCrypt для новых хешей
+     */
+    public int getBcryptStrength() {
+        return bcryptStrength;
+    }
+
+    /**
+     * Выполняет задачу в пуле и ждет результата
+     * @throws AuthenticationBusyException если очередь заполнена
+     */
+    public <T> T execute(Supplier<T> task) {
+        // Повторный вызов из потока пула (например, перехеширование) выполняется на месте
+        if (Thread.currentThread().getName().startsWith(THREAD_PREFIX)) {
+            return task.get();
+        }
+
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                waitNanos.add(startedAt - submittedAt);
+                try {
+                    return task.get();
+                } finally {
+                    long elapsed = System.nanoTime() - startedAt;
+                    hashCount.increment();
+                    hashNanos.add(elapsed);
+                    maxHashNanos.accumulate(elapsed);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new AuthenticationBusyException("Сервер перегружен запросами входа, повторите попытку позже");
+        }
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new AuthenticationBusyException("Проверка пароля прервана");
+        }
+    }
+
+    /**
+     * Текущая длина очереди
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Среднее время одного хеширования или проверки, мс
+     */
+    public double getAverageHashMillis() {
+        long count = hashCount.sum();
+        return count == 0 ? 0 : hashNanos.sum() / 1_000_000.0 / count;
+    }
+
+    /**
+     * Количество запросов, отклоненных из-за заполненной очереди
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Показатели пула для мониторинга
+     */
+    public Map<String, Object> getStats() {
+        long count = hashCount.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("poolSize", executor.getMaximumPoolSize());
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("completed", count);
+        stats.put("rejected", getRejectedCount());
+        stats.put("averageHashMs", getAverageHashMillis());
+        stats.put("maxHashMs", maxHashNanos.get() / 1_000_000.0);
+        stats.put("averageQueueWaitMs", count == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / count);
+        stats.put("bcryptStrength", bcryptStrength);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_PREFIX + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.bankcards.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * BCrypt, выполняемый в ограниченном пуле PasswordHashingExecutor.
+ *
+ * upgradeEncoding сообщает, что хеш создан с меньшей стоимостью, чем настроенная:
+ * тогда после успешного входа Spring Security перехеширует пароль через
+ * CustomUserDetailsService.updatePassword.
+ */
+public class PooledBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private final PasswordHashingExecutor executor;
+
+    public PooledBCryptPasswordEncoder(PasswordHashingExecutor executor) {
+        super(executor.getBcryptStrength());
+        this.executor = executor;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return executor.execute(() -> super.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return super.matches(rawPassword, encodedPassword);
+        }
+        return executor.execute(() -> super.matches(rawPassword, encodedPassword));
+    }
+}
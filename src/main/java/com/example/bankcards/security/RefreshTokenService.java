@@ -0,0 +1,169 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Выдача и ротация refresh токенов.
+ *
+ * Refresh токен - случайная строка, в БД хранится только ее SHA-256 хеш. Обмен токена -
+ * один поиск по уникальному индексу и условный UPDATE, без проверки пароля. Каждый токен
+ * одноразовый: при обмене выдается новый токен той же цепочки. Повторное предъявление
+ * использованного токена означает, что токен скопирован, и отзывает всю цепочку.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+    private static final int TOKEN_BYTES = 32;
+    private static final String INVALID_TOKEN = "INVALID_REFRESH_TOKEN";
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final long refreshLifetimeMillis;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Autowired
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               @Value("${jwt.refresh-expiration:2592000000}") long refreshLifetimeMillis) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.refreshLifetimeMillis = refreshLifetimeMillis;
+    }
+
+    /**
+     * Выдает refresh токен новой цепочки после входа по паролю
+     * @return токен для клиента (в БД не хранится)
+     */
+    public String issue(User user) {
+        return issue(user, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Обменивает refresh токен на новый
+     * Токен ищется в основной БД: на реплике может не быть только что выданного или отозванного токена.
+     * Отзыв цепочки при повторном использовании сохраняется, несмотря на исключение
+     * @throws BusinessException если токен неизвестен, истек, отозван или уже использован
+     */
+    @Transactional(noRollbackFor = BusinessException.class)
+    public Rotation rotate(String token) {
+        LocalDateTime now = LocalDateTime.now();
+        RefreshToken refreshToken = refreshTokenRepository.findByTokenHashWithUser(hash(token))
+                .orElseThrow(() -> new BusinessException("Refresh токен недействителен", INVALID_TOKEN));
+
+        if (refreshToken.getRevokedAt() != null || refreshToken.getExpiresAt().isBefore(now)) {
+            throw new BusinessException("Refresh токен недействителен", INVALID_TOKEN);
+        }
+        // Условный UPDATE: из двух одновременных обменов одного токена проходит только один
+        if (refreshToken.getUsedAt() != null || refreshTokenRepository.markUsed(refreshToken.getId(), now) == 0) {
+            int revoked = refreshTokenRepository.revokeFamily(refreshToken.getFamilyId(), now);
+            logger.warn("⚠️ Повторное использование refresh токена пользователя {}: отозвано {} токенов цепочки",
+                    refreshToken.getUser().getEmail(), revoked);
+            throw new BusinessException("Refresh токен уже использован", INVALID_TOKEN);
+        }
+
+        User user = refreshToken.getUser();
+        return new Rotation(user, issue(user, refreshToken.getFamilyId()));
+    }
+
+    /**
+     * Отзывает цепочку токена при выходе; неизвестный токен игнорируется
+     */
+    @Transactional
+    public void revoke(String token) {
+        refreshTokenRepository.findByTokenHashWithUser(hash(token))
+                .ifPresent(refreshToken -> refreshTokenRepository.revokeFamily(refreshToken.getFamilyId(), LocalDateTime.now()));
+    }
+
+    /**
+     * Отзывает все refresh токены пользователя (смена пароля)
+     */
+    public void revokeAllForUser(Long userId) {
+        refreshTokenRepository.revokeAllForUser(userId, LocalDateTime.now());
+    }
+
+    /**
+     * Удаляет все refresh токены пользователя перед удалением пользователя
+     */
+    public void deleteAllForUser(Long userId) {
+        refreshTokenRepository.deleteByUserId(userId);
+    }
+
+    /**
+     * Удаляет истекшие refresh токены
+     */
+    @Scheduled(cron = "${jwt.refresh-cleanup-cron:0 25 * * * ?}")
+    public void purgeExpired() {
+        try {
+            int deleted = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+            if (deleted > 0) {
+                logger.info("🧹 Удалено {} истекших refresh токенов", deleted);
+            }
+        } catch (Exception e) {
+            logger.error("Ошибка при очистке refresh токенов: {}", e.getMessage(), e);
+        }
+    }
+
+    private String issue(User user, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        LocalDateTime now = LocalDateTime.now();
+        refreshTokenRepository.save(new RefreshToken(hash(token), familyId, user, now,
+                now.plus(refreshLifetimeMillis, ChronoUnit.MILLIS)));
+        return token;
+    }
+
+    // Токен - 256 случайных бит, поэтому соль и медленный хеш не нужны
+    static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Результат обмена: владелец токена и новый refresh токен
+     */
+    public static final class Rotation {
+        private final User user;
+        private final String refreshToken;
+
+        private Rotation(User user, String refreshToken) {
+            this.user = user;
+            this.refreshToken = refreshToken;
+        }
+
+        public User getUser() {
+            return user;
+        }
+
+        public String getRefreshToken() {
+            return refreshToken;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import com.example.bankcards.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отзыв JWT токенов.
+ *
+ * Отозванные токены хранятся в таблице revoked_tokens и в памяти: фильтр Блума плюс точное
+ * множество jti и время отзыва всех токенов пользователя. Проверка неотозванного токена -
+ * это проверка фильтра Блума без обращения к БД. Записи других узлов догружаются
+ * по расписанию по возрастанию id, после удаления истекших записей состояние строится заново.
+ *
+ * Id выдаются при вставке, а видны строки после коммита, поэтому строка с меньшим id может
+ * появиться позже уже прочитанной. Догрузка каждый раз перечитывает строки после id, прочитанного
+ * не позднее reread-window-ms назад; повторное применение записи ничего не меняет.
+ * Свой отзыв применяется в памяти после коммита транзакции, в которой он сохранен.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+    private static final String SUBJECT_PREFIX = "sub:";
+    private static final int EXPECTED_REVOCATIONS = 100_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int LOAD_BATCH_SIZE = 1000;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final long tokenLifetimeMillis;
+    private final long rereadWindowNanos;
+
+    private volatile State state = new State();
+
+    @Autowired
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  @Value("${jwt.expiration:900000}") long tokenLifetimeMillis,
+                                  @Value("${security.revocation.reread-window-ms:60000}") long rereadWindowMillis) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.tokenLifetimeMillis = tokenLifetimeMillis;
+        this.rereadWindowNanos = TimeUnit.MILLISECONDS.toNanos(rereadWindowMillis);
+    }
+
+    /**
+     * Загружает отозванные токены до начала обработки запросов
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // Догрузка по расписанию начнется с id 0 и загрузит все записи
+            logger.error("Ошибка при загрузке отозванных токенов: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Отзывает один токен до его истечения
+     */
+    public void revokeToken(String tokenId, String subject, Date expiresAt, String reason) {
+        if (tokenId == null || subject == null) {
+            return;
+        }
+        LocalDateTime expires = expiresAt != null
+                ? LocalDateTime.ofInstant(expiresAt.toInstant(), ZONE)
+                : LocalDateTime.now().plus(tokenLifetimeMillis, ChronoUnit.MILLIS);
+        save(new RevokedToken(tokenId, subject, reason, LocalDateTime.now(), expires));
+    }
+
+    /**
+     * Отзывает все токены пользователя, выданные до текущего момента
+     */
+    public void revokeAllForSubject(String subject, String reason) {
+        if (subject == null) {
+            return;
+        }
+        // Время отзыва хранится с точностью до миллисекунды, как и время выдачи токена
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        save(new RevokedToken(null, subject, reason, now, now.plus(tokenLifetimeMillis, ChronoUnit.MILLIS)));
+    }
+
+    /**
+     * Проверяет, отозван ли токен
+     * @param tokenId jti токена (может отсутствовать у токенов, выданных до появления jti)
+     * @param issuedAt время выдачи токена (JwtUtils.getIssuedAt); у старых токенов без iat_ms
+     *                 это начало секунды выдачи, и токен той же секунды, что и отзыв, считается отозванным
+     */
+    public boolean isRevoked(String tokenId, String subject, Date issuedAt) {
+        State current = state;
+        if (tokenId != null && current.bloom.mightContain(tokenId) && current.tokenIds.contains(tokenId)) {
+            return true;
+        }
+        if (subject != null && current.bloom.mightContain(SUBJECT_PREFIX + subject)) {
+            Long revokedAt = current.subjects.get(subject);
+            // Отозваны токены, выданные не позже отзыва; выданные после него в ту же секунду действуют
+            return revokedAt != null && (issuedAt == null || issuedAt.getTime() <= revokedAt);
+        }
+        return false;
+    }
+
+    /**
+     * Догружает записи, добавленные другими узлами
+     */
+    @Scheduled(fixedDelayString = "${security.revocation.refresh-interval-ms:5000}")
+    public synchronized void refresh() {
+        State current = state;
+        long now = System.nanoTime();
+        current.advanceSafeId(now - rereadWindowNanos);
+        load(current, current.safeId);
+        current.checkpoints.add(new long[]{now, current.lastId});
+    }
+
+    /**
+     * Удаляет записи истекших токенов и строит состояние в памяти заново
+     */
+    @Scheduled(cron = "${security.revocation.cleanup-cron:0 20 * * * ?}")
+    public void purgeExpired() {
+        try {
+            int deleted = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+            if (deleted > 0) {
+                rebuild();
+                logger.info("🧹 Удалено {} записей истекших отозванных токенов", deleted);
+            }
+        } catch (Exception e) {
+            logger.error("Ошибка при очистке отозванных токенов: {}", e.getMessage(), e);
+        }
+    }
+
+    synchronized void rebuild() {
+        // Новое состояние заполняется целиком и только потом заменяет текущее
+        State fresh = new State();
+        long now = System.nanoTime();
+        load(fresh, 0);
+        fresh.checkpoints.add(new long[]{now, fresh.lastId});
+        state = fresh;
+        // Отзывы, сохраненные во время загрузки в старое состояние, переносятся сразу, а не через интервал
+        load(fresh, fresh.lastId);
+    }
+
+    /**
+     * Применяет записи с id больше fromId
+     */
+    private void load(State target, long fromId) {
+        List<RevokedToken> batch;
+        long afterId = fromId;
+        do {
+            batch = revokedTokenRepository.findByIdGreaterThanOrderById(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            for (RevokedToken revokedToken : batch) {
+                target.apply(revokedToken);
+                afterId = revokedToken.getId();
+                target.lastId = Math.max(target.lastId, afterId);
+            }
+        } while (batch.size() == LOAD_BATCH_SIZE);
+    }
+
+    private void save(RevokedToken revokedToken) {
+        RevokedToken saved = revokedTokenRepository.save(revokedToken);
+        // После отката транзакции отзыва нет в БД - в памяти его тоже не должно быть
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    state.apply(saved);
+                }
+            });
+        } else {
+            state.apply(saved);
+        }
+        logger.info("Отозваны токены {}: {} ({})", saved.getTokenId() != null ? "токен " + saved.getTokenId() : "все",
+                saved.getSubject(), saved.getReason());
+    }
+
+    /**
+     * Отозванные токены в памяти
+     */
+    private static final class State {
+        private final BloomFilter bloom = new BloomFilter(EXPECTED_REVOCATIONS, FALSE_POSITIVE_RATE);
+        private final Set<String> tokenIds = ConcurrentHashMap.newKeySet();
+        /** Время отзыва всех токенов пользователя, миллисекунды эпохи */
+        private final ConcurrentHashMap<String, Long> subjects = new ConcurrentHashMap<>();
+        private volatile long lastId;
+        /** Все строки с id не больше этого прочитаны: они были видны дольше окна перечитывания */
+        private long safeId;
+        /** Время чтения (System.nanoTime) и наибольший прочитанный id */
+        private final ArrayDeque<long[]> checkpoints = new ArrayDeque<>();
+
+        private void advanceSafeId(long readBefore) {
+            while (!checkpoints.isEmpty() && checkpoints.peekFirst()[0] <= readBefore) {
+                safeId = checkpoints.pollFirst()[1];
+            }
+        }
+
+        private void apply(RevokedToken revokedToken) {
+            if (revokedToken.getTokenId() != null) {
+                addToken(revokedToken.getTokenId());
+            } else {
+                long revokedAt = revokedToken.getRevokedAt().atZone(ZONE).toInstant().toEpochMilli();
+                // Сначала точные данные, затем фильтр: проверка идет в обратном порядке
+                subjects.merge(revokedToken.getSubject(), revokedAt, Math::max);
+                bloom.add(SUBJECT_PREFIX + revokedToken.getSubject());
+            }
+        }
+
+        private void addToken(String tokenId) {
+            tokenIds.add(tokenId);
+            bloom.add(tokenId);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.ArchivedAuditLogDto;
+import com.example.bankcards.repository.AuditLogRepository;
+import com.example.bankcards.util.BinaryExportReader;
+import com.example.bankcards.util.BinaryExportWriter;
+import com.example.bankcards.util.BinaryExportWriter.ColumnType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Архивация холодных месяцев audit_logs в файлы на диске.
+ *
+ * Горячими считаются текущий месяц и несколько предыдущих (audit.archive.hot-months),
+ * только их читают запросы страницы аудита. Более старые месяцы выгружаются в сегменты
+ * {directory}/YYYY-MM/segment-{время}.bcx.gz - формат BinaryExportWriter, сжатый gzip.
+ * Сегменты только добавляются и никогда не перезаписываются. После записи сегмента
+ * месяц удаляется из БД: партиция целиком, если она есть и совпадает с выгруженным,
+ * иначе пачками по id. Если узел упал между записью сегмента и удалением, повторный запуск
+ * не выгружает строки, уже лежащие в сегментах месяца, и только удаляет их из БД.
+ * При выключенной архивации (audit.archive.enabled=false) все записи считаются горячими.
+ *
+ * При нескольких узлах архивацию выполняет один из них (блокировка SchedulerLockService),
+ * а каталог архива должен быть общим для всех узлов (сетевой диск): иначе сегменты
+ * окажутся только на узле, выполнившем задачу, и остальные узлы не покажут архивные записи.
+ */
+@Service
+public class AuditArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditArchiveService.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".bcx.gz";
+    private static final int MAX_READ_LIMIT = 10_000;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    public static final String ARCHIVE_JOB = "audit-archive";
+
+    private static final BinaryExportWriter.Column[] COLUMNS = {
+            BinaryExportWriter.column("id", ColumnType.INT64),
+            BinaryExportWriter.column("created_at", ColumnType.TIMESTAMP),
+            BinaryExportWriter.column("user_id", ColumnType.INT64),
+            BinaryExportWriter.column("user_email", ColumnType.STRING),
+            BinaryExportWriter.column("action", ColumnType.STRING),
+            BinaryExportWriter.column("entity_type", ColumnType.STRING),
+            BinaryExportWriter.column("entity_id", ColumnType.INT64),
+            BinaryExportWriter.column("description", ColumnType.STRING),
+            BinaryExportWriter.column("ip_address", ColumnType.STRING),
+            BinaryExportWriter.column("user_agent", ColumnType.STRING),
+            BinaryExportWriter.column("status", ColumnType.STRING),
+            BinaryExportWriter.column("error_message", ColumnType.STRING)
+    };
+
+    private final AuditLogRepository auditLogRepository;
+    private final AuditPartitionManager auditPartitionManager;
+    private final SchedulerLockService schedulerLockService;
+    private final DataVersionService dataVersionService;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Path directory;
+    private final boolean enabled;
+    private final int hotMonths;
+    private final int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Autowired
+    public AuditArchiveService(AuditLogRepository auditLogRepository,
+                               AuditPartitionManager auditPartitionManager,
+                               SchedulerLockService schedulerLockService,
+                               DataVersionService dataVersionService,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${audit.archive.directory:data/audit-archive}") String directory,
+                               @Value("${audit.archive.enabled:true}") boolean enabled,
+                               @Value("${audit.archive.hot-months:3}") int hotMonths,
+                               @Value("${audit.archive.batch-size:1000}") int batchSize) {
+        this.auditLogRepository = auditLogRepository;
+        this.auditPartitionManager = auditPartitionManager;
+        this.schedulerLockService = schedulerLockService;
+        this.dataVersionService = dataVersionService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.directory = Paths.get(directory);
+        this.enabled = enabled;
+        this.hotMonths = Math.max(1, hotMonths);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Начало горячего периода: первый день самого старого горячего месяца
+     * @return null, если архивация выключена и в БД хранится весь журнал
+     */
+    public LocalDateTime hotSince() {
+        return enabled ? firstHotMonth().atDay(1).atStartOfDay() : null;
+    }
+
+    /**
+     * Ежедневная архивация, по умолчанию в 02:30; при нескольких узлах выполняется на одном из них
+     */
+    @Scheduled(cron = "${audit.archive.cron:0 30 2 * * ?}")
+    public void archiveScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Optional<Long> archived = schedulerLockService.runLocked(ARCHIVE_JOB, () -> {
+                try {
+                    return archiveColdMonths();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (archived.isEmpty()) {
+                logger.info("ℹ️ Архивация аудита выполняется на другом узле");
+            }
+        } catch (Exception e) {
+            logger.error("❌ Ошибка при архивации аудита: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Архивирует все месяцы старше горячего периода, которые еще есть в БД
+     * @return количество заархивированных записей
+     */
+    public long archiveColdMonths() throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Архивация аудита уже выполняется, запуск пропущен");
+            return 0;
+        }
+        try {
+            LocalDateTime oldest = auditLogRepository.findOldestCreatedAt();
+            if (oldest == null) {
+                return 0;
+            }
+
+            long archived = 0;
+            YearMonth firstHot = firstHotMonth();
+            for (YearMonth month = YearMonth.from(oldest); month.isBefore(firstHot); month = month.plusMonths(1)) {
+                archived += archiveMonth(month);
+            }
+            return archived;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Выгружает месяц в новый сегмент и удаляет его из БД
+     * @return количество заархивированных записей
+     */
+    long archiveMonth(YearMonth month) throws IOException {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        long startTime = System.currentTimeMillis();
+
+        Path monthDirectory = directory.resolve(month.toString());
+        Files.createDirectories(monthDirectory);
+        // Строки, выгруженные прошлым запуском, который не успел удалить их из БД
+        Set<Long> alreadyArchived = archivedIds(month);
+        Path segment = monthDirectory.resolve(SEGMENT_PREFIX + System.currentTimeMillis() + SEGMENT_SUFFIX);
+        Path tempFile = monthDirectory.resolve(segment.getFileName() + ".tmp");
+
+        long[] idRange = {Long.MAX_VALUE, Long.MIN_VALUE};
+        long[] skipped = {0};
+        long rows;
+        try {
+            rows = writeSegment(tempFile, from, to, alreadyArchived, idRange, skipped);
+        } catch (RuntimeException | IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        long total = rows + skipped[0];
+        if (total == 0) {
+            Files.deleteIfExists(tempFile);
+            deleteIfEmpty(monthDirectory);
+            return 0;
+        }
+
+        // Если за время выгрузки в месяц добавились записи, сегмент неполный: повторим при следующем запуске
+        long inDatabase = auditLogRepository.countInRange(from, to);
+        if (inDatabase != total) {
+            Files.deleteIfExists(tempFile);
+            deleteIfEmpty(monthDirectory);
+            logger.warn("Архивация {} отложена: выгружено {} записей, в БД {}", month, total, inDatabase);
+            return 0;
+        }
+        if (rows > 0) {
+            Files.move(tempFile, segment, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            Files.deleteIfExists(tempFile);
+        }
+        if (skipped[0] > 0) {
+            logger.warn("Аудит за {}: {} записей уже были в архиве и только удаляются из БД", month, skipped[0]);
+        }
+
+        if (!auditPartitionManager.dropMonth(month, total)) {
+            deleteArchived(idRange[0], idRange[1], from, to);
+        }
+        // Записи месяца ушли из БД: экспорты аудита из кеша устарели
+        dataVersionService.markChanged(DataVersionService.Table.AUDIT);
+
+        logger.info("🗄️ Аудит за {} заархивирован: {} записей в {} за {} мс",
+                month, rows, segment, System.currentTimeMillis() - startTime);
+        return rows;
+    }
+
+    /**
+     * Читает записи из архива за месяцы [from, to], новые первыми
+     */
+    public List<ArchivedAuditLogDto> readArchived(YearMonth from, YearMonth to, String action, String status,
+                                                  String userEmail, int limit) throws IOException {
+        int maxRows = Math.min(Math.max(limit, 1), MAX_READ_LIMIT);
+        Comparator<ArchivedAuditLogDto> oldestFirst = Comparator
+                .comparing(ArchivedAuditLogDto::getCreatedAt)
+                .thenComparing(ArchivedAuditLogDto::getId);
+        // Куча хранит maxRows самых новых записей, память не зависит от размера архива
+        PriorityQueue<ArchivedAuditLogDto> newest = new PriorityQueue<>(maxRows + 1, oldestFirst);
+
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            for (Path segment : listSegments(month)) {
+                readSegment(segment, dto -> {
+                    if (matches(dto, action, status, userEmail)) {
+                        newest.add(dto);
+                        if (newest.size() > maxRows) {
+                            newest.poll();
+                        }
+                    }
+                });
+            }
+        }
+
+        List<ArchivedAuditLogDto> result = new ArrayList<>(newest);
+        result.sort(oldestFirst.reversed());
+        return result;
+    }
+
+    /**
+     * Месяцы, для которых есть архивные сегменты
+     */
+    public List<YearMonth> getArchivedMonths() throws IOException {
+        List<YearMonth> months = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return months;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                try {
+                    months.add(YearMonth.parse(entry.getFileName().toString()));
+                } catch (Exception e) {
+                    // Посторонние файлы в каталоге архива пропускаются
+                }
+            }
+        }
+        months.sort(Comparator.naturalOrder());
+        return months;
+    }
+
+    private YearMonth firstHotMonth() {
+        return YearMonth.now().minusMonths(hotMonths - 1);
+    }
+
+    /**
+     * Id записей месяца, уже лежащих в его сегментах
+     */
+    private Set<Long> archivedIds(YearMonth month) throws IOException {
+        Set<Long> ids = new HashSet<>();
+        for (Path segment : listSegments(month)) {
+            readSegment(segment, dto -> ids.add(dto.getId()));
+        }
+        return ids;
+    }
+
+    private long writeSegment(Path file, LocalDateTime from, LocalDateTime to, Set<Long> alreadyArchived,
+                              long[] idRange, long[] skipped) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file)), 64 * 1024)) {
+            BinaryExportWriter writer = new BinaryExportWriter(out, false, ZONE, COLUMNS);
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = auditLogRepository.streamForArchive(from, to)) {
+                    for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                        long id = (Long) row[0];
+                        idRange[0] = Math.min(idRange[0], id);
+                        idRange[1] = Math.max(idRange[1], id);
+                        if (alreadyArchived.contains(id)) {
+                            skipped[0]++;
+                            continue;
+                        }
+
+                        writer.beginRow();
+                        writer.writeLong(id);
+                        writer.writeTimestamp((LocalDateTime) row[1]);
+                        writer.writeLong((Long) row[2]);
+                        writer.writeString((String) row[3]);
+                        writer.writeString((String) row[4]);
+                        writer.writeString((String) row[5]);
+                        writer.writeLong((Long) row[6]);
+                        writer.writeString((String) row[7]);
+                        writer.writeString((String) row[8]);
+                        writer.writeString((String) row[9]);
+                        writer.writeString((String) row[10]);
+                        writer.writeString((String) row[11]);
+                        writer.endRow();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.finish();
+            return writer.getRowCount();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void deleteIfEmpty(Path monthDirectory) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(monthDirectory)) {
+            if (entries.iterator().hasNext()) {
+                return;
+            }
+        }
+        Files.deleteIfExists(monthDirectory);
+    }
+
+    private void deleteArchived(long minId, long maxId, LocalDateTime from, LocalDateTime to) {
+        for (long fromId = minId; fromId <= maxId; fromId += batchSize) {
+            auditLogRepository.deleteArchived(fromId, fromId + batchSize, from, to);
+        }
+    }
+
+    private List<Path> listSegments(YearMonth month) throws IOException {
+        Path monthDirectory = directory.resolve(month.toString());
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(monthDirectory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(monthDirectory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path entry : entries) {
+                segments.add(entry);
+            }
+        }
+        segments.sort(Comparator.naturalOrder());
+        return segments;
+    }
+
+    private void readSegment(Path segment, Consumer<ArchivedAuditLogDto> consumer) throws IOException {
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(segment)), 64 * 1024);
+             BinaryExportReader reader = new BinaryExportReader(in)) {
+            while (reader.next()) {
+                consumer.accept(new ArchivedAuditLogDto(
+                        reader.getLong(0),
+                        reader.getTimestamp(1, ZONE),
+                        reader.isNull(2) ? null : reader.getLong(2),
+                        reader.getString(3),
+                        reader.getString(4),
+                        reader.getString(5),
+                        reader.isNull(6) ? null : reader.getLong(6),
+                        reader.getString(7),
+                        reader.getString(8),
+                        reader.getString(9),
+                        reader.getString(10),
+                        reader.getString(11)));
+            }
+        }
+    }
+
+    private static boolean matches(ArchivedAuditLogDto dto, String action, String status, String userEmail) {
+        if (action != null && !action.isEmpty() && !action.equals(dto.getAction())) {
+            return false;
+        }
+        if (status != null && !status.isEmpty() && !status.equals(dto.getStatus())) {
+            return false;
+        }
+        return userEmail == null || userEmail.isEmpty()
+                || (dto.getUserEmail() != null && dto.getUserEmail().contains(userEmail));
+    }
+}
@@ -0,0 +1,467 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.AuditLog;
+import com.example.bankcards.entity.AuditRollup;
+import com.example.bankcards.repository.AuditLogRepository;
+import com.example.bankcards.repository.AuditRollupRepository;
+import com.example.bankcards.util.HyperLogLog;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Счетчики аудита для панели администратора.
+ *
+ * AuditService передает сюда каждое записанное событие после коммита. Счетчики по действию
+ * и статусу хранятся в кольцевом буфере поминутных ячеек за последние сутки, уникальные
+ * пользователи оцениваются скетчами HyperLogLog по дням.
+ *
+ * Итоги в audit_rollups общие для всех узлов: каждый узел периодически прибавляет к строкам часа
+ * свои приращения с прошлой записи, а скетч пользователей объединяет с сохраненным. При старте
+ * счетчики восстанавливаются из audit_rollups, а последние два часа пересчитываются по audit_logs:
+ * в итоги этих часов могли не попасть приращения узла, остановленного без записи. Если итогов
+ * еще нет, они один раз строятся по audit_logs. Пока счетчики не восстановлены, isReady()
+ * возвращает false и панель читает данные из БД. События других узлов после старта
+ * в счетчики этого узла не попадают. При шардировании audit_logs и audit_rollups ведутся
+ * только в шарде ShardRouter.HOME_SHARD, в который без явного inShard идут все запросы,
+ * поэтому обходить остальные шарды не нужно.
+ */
+@Service
+public class AuditMetricsAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditMetricsAggregator.class);
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    // Лишняя ячейка, чтобы текущая неполная минута не вытесняла минуту суточной давности
+    private static final int SLOT_COUNT = MINUTES_PER_DAY + 1;
+    private static final int UNIQUE_USERS_DAYS = 30;
+    // Часы, которые при старте пересчитываются по audit_logs, а не берутся из итогов
+    private static final int RECOUNT_HOURS = 2;
+    private static final String KEY_SEPARATOR = "|";
+
+    private final AuditRollupRepository auditRollupRepository;
+    private final AuditLogRepository auditLogRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final MinuteSlot[] slots = new MinuteSlot[SLOT_COUNT];
+    private final ConcurrentSkipListMap<Long, HourBucket> hours = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, HyperLogLog> days = new ConcurrentSkipListMap<>();
+
+    // События до этого момента учитываются при восстановлении из БД, после - при записи
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private volatile boolean ready;
+
+    @Autowired
+    public AuditMetricsAggregator(AuditRollupRepository auditRollupRepository,
+                                  AuditLogRepository auditLogRepository,
+                                  PlatformTransactionManager transactionManager) {
+        this.auditRollupRepository = auditRollupRepository;
+        this.auditLogRepository = auditLogRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            slots[i] = new MinuteSlot();
+        }
+    }
+
+    /**
+     * Восстанавливает счетчики в фоне после старта приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        Thread thread = new Thread(this::warmUp, "audit-metrics-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Загружает почасовые итоги за последние 30 дней; если их нет, строит их по audit_logs
+     */
+    public void warmUp() {
+        long startTime = System.currentTimeMillis();
+        try {
+            LocalDateTime since = startedAt.toLocalDate().minusDays(UNIQUE_USERS_DAYS - 1).atStartOfDay();
+            List<AuditRollup> rollups = auditRollupRepository.findByHourStartGreaterThanEqualOrderByHourStart(since);
+
+            if (rollups.isEmpty()) {
+                recount(since);
+                writeChanged();
+                logger.info("Счетчики аудита построены по audit_logs за {} мс", System.currentTimeMillis() - startTime);
+            } else {
+                LocalDateTime recountFrom = startedAt.truncatedTo(ChronoUnit.HOURS).minusHours(RECOUNT_HOURS - 1);
+                for (AuditRollup rollup : rollups) {
+                    if (rollup.getHourStart().isBefore(recountFrom)) {
+                        load(rollup);
+                    }
+                }
+                recount(recountFrom.isAfter(since) ? recountFrom : since);
+                // Пересчитанные часы только читаются: в итогах их пополняют узлы, записавшие события
+                for (HourBucket hour : hours.values()) {
+                    hour.baseline.clear();
+                }
+                logger.info("Счетчики аудита восстановлены из {} почасовых итогов за {} мс",
+                        rollups.size(), System.currentTimeMillis() - startTime);
+            }
+            ready = true;
+        } catch (Exception e) {
+            logger.error("Ошибка при восстановлении счетчиков аудита: {}", e.getMessage(), e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Учитывает записанное событие аудита; в транзакции - после ее коммита
+     */
+    public void record(AuditLog auditLog) {
+        Long userId = auditLog.getUser() != null ? auditLog.getUser().getId() : null;
+        LocalDateTime createdAt = auditLog.getCreatedAt();
+        String action = auditLog.getAction();
+        String status = auditLog.getStatus();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(createdAt, action, status, userId);
+                }
+            });
+        } else {
+            record(createdAt, action, status, userId);
+        }
+    }
+
+    void record(LocalDateTime createdAt, String action, String status, Long userId) {
+        add(createdAt, action, status, userId, false);
+    }
+
+    /**
+     * Учитывает события из audit_logs с указанного момента до старта узла
+     */
+    private void recount(LocalDateTime from) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = auditLogRepository.streamForMetrics(from, startedAt)) {
+                rows.forEach(row -> add((LocalDateTime) row[0], (String) row[1], (String) row[2],
+                        (Long) row[3], true));
+            }
+        });
+    }
+
+    /**
+     * @param baseline событие пересчитано по audit_logs: в итоги оно пишется только для часа,
+     *                 которого в audit_rollups еще нет, а не прибавляется к ним
+     */
+    private void add(LocalDateTime createdAt, String action, String status, Long userId, boolean baseline) {
+        if (createdAt == null) {
+            return;
+        }
+        long minute = epochMinute(createdAt);
+        String key = key(action, status);
+
+        MinuteSlot slot = slots[(int) (minute % SLOT_COUNT)];
+        synchronized (slot) {
+            if (slot.minute < minute) {
+                slot.counts.clear();
+                slot.total = 0;
+                slot.minute = minute;
+            }
+            // Событие старше суток в буфер уже не попадает, но учитывается в почасовых итогах
+            if (slot.minute == minute) {
+                slot.counts.merge(key, 1L, Long::sum);
+                slot.total++;
+            }
+        }
+
+        HourBucket hour = hours.computeIfAbsent(minute / 60, h -> new HourBucket());
+        (baseline ? hour.baseline : hour.deltas).computeIfAbsent(key, k -> new LongAdder()).increment();
+        if (userId != null) {
+            hour.users.add(userId);
+            days.computeIfAbsent(createdAt.toLocalDate().toEpochDay(), d -> new HyperLogLog()).add(userId);
+        }
+        hour.dirty.set(true);
+    }
+
+    /**
+     * Количество событий с действием и статусом за последние 24 часа
+     */
+    public long countLast24Hours(String action, String status) {
+        return countLast24Hours(action, status, LocalDateTime.now());
+    }
+
+    long countLast24Hours(String action, String status, LocalDateTime now) {
+        long to = epochMinute(now);
+        return sum(to - MINUTES_PER_DAY + 1, to, key(action, status));
+    }
+
+    /**
+     * Количество событий с начала текущих суток
+     */
+    public long getTodayActionsCount() {
+        return getTodayActionsCount(LocalDateTime.now());
+    }
+
+    long getTodayActionsCount(LocalDateTime now) {
+        return sum(epochMinute(now.toLocalDate().atStartOfDay()), epochMinute(now), null);
+    }
+
+    /**
+     * Оценка количества уникальных пользователей за последние 30 дней
+     */
+    public long getUniqueUsersCount() {
+        return getUniqueUsersCount(LocalDate.now());
+    }
+
+    long getUniqueUsersCount(LocalDate today) {
+        long from = today.minusDays(UNIQUE_USERS_DAYS - 1).toEpochDay();
+        HyperLogLog merged = new HyperLogLog();
+        for (HyperLogLog day : days.subMap(from, true, today.toEpochDay(), true).values()) {
+            merged.merge(day);
+        }
+        return merged.estimate();
+    }
+
+    /**
+     * Прибавляет приращения узла к почасовым итогам в audit_rollups (write-behind).
+     * До восстановления счетчиков не выполняется: строки текущего часа, созданные раньше
+     * построения итогов по audit_logs, не дали бы записать события до старта.
+     */
+    @Scheduled(fixedDelayString = "${audit.metrics.flush-interval-ms:300000}")
+    public void flush() {
+        if (!ready) {
+            return;
+        }
+        writeChanged();
+        evictOld(LocalDateTime.now());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private synchronized void writeChanged() {
+        List<HourWrite> changed = new ArrayList<>();
+        for (Map.Entry<Long, HourBucket> entry : hours.entrySet()) {
+            if (entry.getValue().dirty.getAndSet(false)) {
+                changed.add(new HourWrite(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (HourWrite write : changed) {
+                        addToRollups(write);
+                    }
+                });
+                logger.debug("Записаны итоги аудита за {} ч", changed.size());
+            } catch (Exception e) {
+                for (HourWrite write : changed) {
+                    write.restore();
+                }
+                logger.error("Ошибка при записи итогов аудита: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Прибавляет приращения часа к строкам audit_rollups, заблокированным на время транзакции.
+     * Пересчитанные по audit_logs итоги пишутся, только если строк часа еще нет
+     * (иначе их уже записал другой узел)
+     */
+    private void addToRollups(HourWrite write) {
+        if (write.deltas.isEmpty() && write.baseline.isEmpty()) {
+            return;
+        }
+        LocalDateTime hourStart = LocalDateTime.ofEpochSecond(write.hour * 3600, 0, ZoneOffset.UTC);
+        Map<String, AuditRollup> rows = new HashMap<>();
+        for (AuditRollup rollup : auditRollupRepository.findByHourStartForUpdate(hourStart)) {
+            rows.put(key(rollup.getAction(), rollup.getStatus()), rollup);
+        }
+
+        Map<String, Long> deltas = new HashMap<>(write.deltas);
+        if (rows.isEmpty()) {
+            write.baseline.forEach((key, count) -> deltas.merge(key, count, Long::sum));
+        }
+
+        List<AuditRollup> created = new ArrayList<>();
+        long total = 0;
+        for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+            total += delta.getValue();
+            AuditRollup rollup = rows.get(delta.getKey());
+            if (rollup == null) {
+                String[] parts = delta.getKey().split("\\" + KEY_SEPARATOR, 2);
+                rollup = new AuditRollup(hourStart, parts[0], parts[1], 0L);
+                created.add(rollup);
+            }
+            rollup.setEventCount(rollup.getEventCount() + delta.getValue());
+        }
+
+        AuditRollup all = rows.get(key(AuditRollup.ALL, AuditRollup.ALL));
+        if (all == null) {
+            all = new AuditRollup(hourStart, AuditRollup.ALL, AuditRollup.ALL, 0L);
+            created.add(all);
+        }
+        all.setEventCount(all.getEventCount() + total);
+        // Объединение скетчей не зависит от порядка и повторов, поэтому скетч узла пишется целиком
+        HyperLogLog users = HyperLogLog.fromBytes(write.users);
+        if (all.getUserSketch() != null) {
+            users.merge(HyperLogLog.fromBytes(all.getUserSketch()));
+        }
+        all.setUserSketch(users.toBytes());
+
+        if (!created.isEmpty()) {
+            auditRollupRepository.saveAll(created);
+        }
+    }
+
+    /**
+     * Добавляет сохраненный итог к счетчикам в памяти
+     */
+    private void load(AuditRollup rollup) {
+        long minute = epochMinute(rollup.getHourStart());
+        HourBucket hour = hours.computeIfAbsent(minute / 60, h -> new HourBucket());
+
+        if (AuditRollup.ALL.equals(rollup.getAction()) && AuditRollup.ALL.equals(rollup.getStatus())) {
+            if (rollup.getUserSketch() != null) {
+                HyperLogLog users = HyperLogLog.fromBytes(rollup.getUserSketch());
+                hour.users.merge(users);
+                days.computeIfAbsent(rollup.getHourStart().toLocalDate().toEpochDay(), d -> new HyperLogLog())
+                        .merge(users);
+            }
+            return;
+        }
+
+        String key = key(rollup.getAction(), rollup.getStatus());
+        long count = rollup.getEventCount() != null ? rollup.getEventCount() : 0;
+
+        // Итог за час попадает в буфер целиком, в ячейку первой минуты часа
+        MinuteSlot slot = slots[(int) (minute % SLOT_COUNT)];
+        synchronized (slot) {
+            if (slot.minute < minute) {
+                slot.counts.clear();
+                slot.total = 0;
+                slot.minute = minute;
+            }
+            if (slot.minute == minute) {
+                slot.counts.merge(key, count, Long::sum);
+                slot.total += count;
+            }
+        }
+    }
+
+    /**
+     * Убирает из памяти записанные часы старше суток и дни старше 30 дней
+     */
+    private void evictOld(LocalDateTime now) {
+        long oldestHour = epochMinute(now) / 60 - 24;
+        hours.headMap(oldestHour).entrySet().removeIf(entry -> !entry.getValue().dirty.get());
+        days.headMap(now.toLocalDate().minusDays(UNIQUE_USERS_DAYS).toEpochDay()).clear();
+    }
+
+    /**
+     * Сумма по ячейкам буфера за минуты [from, to]; key == null - все события
+     */
+    private long sum(long from, long to, String key) {
+        long total = 0;
+        for (MinuteSlot slot : slots) {
+            synchronized (slot) {
+                if (slot.minute >= from && slot.minute <= to) {
+                    total += key == null ? slot.total : slot.counts.getOrDefault(key, 0L);
+                }
+            }
+        }
+        return total;
+    }
+
+    private static String key(String action, String status) {
+        return (action != null ? action : "UNKNOWN") + KEY_SEPARATOR + (status != null ? status : AuditLog.Status.SUCCESS);
+    }
+
+    private static long epochMinute(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    /**
+     * Счетчики за одну минуту. Доступ синхронизирован на самой ячейке.
+     */
+    private static final class MinuteSlot {
+        private long minute = -1;
+        private long total;
+        private final Map<String, Long> counts = new HashMap<>();
+    }
+
+    /**
+     * Итоги за один час, которые еще нужно записать или которые нужны для суточного окна
+     */
+    private static final class HourBucket {
+        // События узла, еще не прибавленные к audit_rollups
+        private final ConcurrentHashMap<String, LongAdder> deltas = new ConcurrentHashMap<>();
+        // Итоги, пересчитанные по audit_logs при старте
+        private final ConcurrentHashMap<String, LongAdder> baseline = new ConcurrentHashMap<>();
+        private final HyperLogLog users = new HyperLogLog();
+        private final AtomicBoolean dirty = new AtomicBoolean();
+    }
+
+    /**
+     * Снимок приращений часа для записи; при ошибке записи приращения возвращаются в час
+     */
+    private static final class HourWrite {
+        private final long hour;
+        private final HourBucket bucket;
+        private final Map<String, Long> deltas;
+        private final Map<String, Long> baseline;
+        private final byte[] users;
+
+        private HourWrite(long hour, HourBucket bucket) {
+            this.hour = hour;
+            this.bucket = bucket;
+            this.deltas = drain(bucket.deltas);
+            this.baseline = drain(bucket.baseline);
+            this.users = bucket.users.toBytes();
+        }
+
+        private static Map<String, Long> drain(ConcurrentHashMap<String, LongAdder> counts) {
+            Map<String, Long> snapshot = new HashMap<>();
+            for (Map.Entry<String, LongAdder> count : counts.entrySet()) {
+                long value = count.getValue().sumThenReset();
+                if (value != 0) {
+                    snapshot.put(count.getKey(), value);
+                }
+            }
+            return snapshot;
+        }
+
+        private void restore() {
+            deltas.forEach((key, count) -> bucket.deltas.computeIfAbsent(key, k -> new LongAdder()).add(count));
+            baseline.forEach((key, count) -> bucket.baseline.computeIfAbsent(key, k -> new LongAdder()).add(count));
+            bucket.dirty.set(true);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.AuditLog;
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Запись аудита по событиям карт и переводов.
+ * Адрес и браузер клиента берутся из события: запрос к моменту обработки уже завершен.
+ * Ошибка записи оставляет событие в очереди; повторная доставка не создает вторую запись
+ */
+@Service
+public class AuditOutboxHandler implements OutboxEventHandler {
+
+    @Autowired
+    private AuditService auditService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Override
+    public Set<OutboxEvent.Type> getTypes() {
+        return EnumSet.of(OutboxEvent.Type.CARD_CREATED, OutboxEvent.Type.CARD_BLOCKED,
+                OutboxEvent.Type.CARD_ACTIVATED, OutboxEvent.Type.CARD_DELETED,
+                OutboxEvent.Type.CARD_TOPPED_UP, OutboxEvent.Type.TRANSFER_COMPLETED);
+    }
+
+    @Override
+    public void handle(OutboxEvent event, JsonNode payload) {
+        String cardNumber = payload.path("maskedNumber").asText();
+        String action;
+        String entityType = AuditLog.EntityTypes.CARD;
+        String description;
+        switch (event.getType()) {
+            case CARD_CREATED -> {
+                action = AuditLog.Actions.CREATE_CARD;
+                description = "Создана карта " + cardNumber;
+            }
+            case CARD_BLOCKED -> {
+                action = AuditLog.Actions.BLOCK_CARD;
+                description = "Заблокирована карта " + cardNumber + ". Причина: " + payload.path("reason").asText();
+            }
+            case CARD_ACTIVATED -> {
+                action = AuditLog.Actions.ACTIVATE_CARD;
+                description = "Активирована карта " + cardNumber;
+            }
+            case CARD_DELETED -> {
+                action = AuditLog.Actions.DELETE_CARD;
+                description = "Удалена карта " + cardNumber;
+            }
+            case CARD_TOPPED_UP -> {
+                action = AuditLog.Actions.TOPUP_CARD;
+                description = "Пополнена карта " + cardNumber + " на сумму " + payload.path("amount").asDouble() + " ₽";
+            }
+            case TRANSFER_COMPLETED -> {
+                action = AuditLog.Actions.TRANSFER;
+                entityType = AuditLog.EntityTypes.TRANSFER;
+                description = "Перевод " + payload.path("amount").asDouble() + " ₽ с карты "
+                        + payload.path("fromCard").asText() + " на карту " + payload.path("toCard").asText();
+            }
+            default -> {
+                return;
+            }
+        }
+
+        // Пользователь мог быть удален до обработки события - запись останется без него
+        User user = userRepository.findById(payload.path(OutboxService.USER_ID).asLong()).orElse(null);
+        auditService.logOutboxAction(eventKey(event), user, action, entityType, event.getAggregateId(), description,
+                payload.path(OutboxService.IP_ADDRESS).asText(null), payload.path(OutboxService.USER_AGENT).asText(null));
+    }
+
+    /**
+     * Ключ события: id событий свои в каждом шарде, а id агрегатов уникальны среди всех шардов
+     */
+    static String eventKey(OutboxEvent event) {
+        return event.getAggregateKey() + ":" + event.getId();
+    }
+}
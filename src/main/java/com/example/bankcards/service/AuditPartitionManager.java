@@ -0,0 +1,144 @@
+package com.example.bankcards.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Помесячные партиции таблицы audit_logs (MySQL, см. V19).
+ *
+ * Партиции называются pYYYYMM, последняя партиция p_future принимает все будущие записи.
+ * Задача заранее выделяет из p_future партиции на ближайшие месяцы, архивация удаляет
+ * партицию целиком вместо построчного DELETE. Если таблица не разбита на партиции
+ * (другая СУБД, тестовая H2), методы ничего не делают.
+ * При нескольких узлах ежедневную задачу выполняет один из них (блокировка SchedulerLockService).
+ */
+@Service
+public class AuditPartitionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditPartitionManager.class);
+    private static final DateTimeFormatter PARTITION_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final String FUTURE_PARTITION = "p_future";
+
+    public static final String PARTITIONS_JOB = "audit-partitions";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SchedulerLockService schedulerLockService;
+    private final int monthsAhead;
+
+    private volatile Boolean partitioned;
+
+    @Autowired
+    public AuditPartitionManager(JdbcTemplate jdbcTemplate,
+                                 SchedulerLockService schedulerLockService,
+                                 @Value("${audit.partitions.months-ahead:2}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.schedulerLockService = schedulerLockService;
+        this.monthsAhead = monthsAhead;
+    }
+
+    /**
+     * Проверяет, разбита ли таблица audit_logs на партиции
+     */
+    public boolean isPartitioned() {
+        Boolean result = partitioned;
+        if (result == null) {
+            try {
+                result = !partitionNames().isEmpty();
+            } catch (Exception e) {
+                logger.debug("Партиции audit_logs недоступны: {}", e.getMessage());
+                result = false;
+            }
+            partitioned = result;
+        }
+        return result;
+    }
+
+    /**
+     * Ежедневно проверяет, что партиции на ближайшие месяцы созданы
+     */
+    @Scheduled(cron = "${audit.partitions.cron:0 10 0 * * ?}")
+    public void ensureFuturePartitions() {
+        if (!isPartitioned()) {
+            return;
+        }
+        try {
+            // Два узла, одновременно разбивающие p_future, мешали бы друг другу
+            if (schedulerLockService.runLocked(PARTITIONS_JOB, this::createFuturePartitions).isEmpty()) {
+                logger.info("ℹ️ Партиции audit_logs проверяет другой узел");
+            }
+        } catch (Exception e) {
+            logger.error("Ошибка при создании партиций audit_logs: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Выделяет из p_future недостающие партиции
+     * @return количество созданных партиций
+     */
+    private int createFuturePartitions() {
+        Set<String> existing = new HashSet<>(partitionNames());
+        int created = 0;
+        YearMonth month = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++, month = month.plusMonths(1)) {
+            String name = partitionName(month);
+            if (existing.contains(name)) {
+                continue;
+            }
+            // p_future всегда пуста для будущих месяцев, поэтому разбиение не переносит данные
+            jdbcTemplate.execute("ALTER TABLE audit_logs REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO ("
+                    + "PARTITION " + name + " VALUES LESS THAN (UNIX_TIMESTAMP('" + month.plusMonths(1).atDay(1) + " 00:00:00')), "
+                    + "PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN MAXVALUE)");
+            logger.info("Создана партиция audit_logs {}", name);
+            created++;
+        }
+        return created;
+    }
+
+    /**
+     * Удаляет партицию месяца, если она есть и содержит ровно заархивированные строки.
+     * Границы партиций вычисляются в часовом поясе сессии БД, а архивируемый месяц -
+     * в поясе приложения; при расхождении в партиции окажутся чужие строки или не все свои
+     * @param expectedRows количество строк месяца, выгруженных в архив
+     * @return true, если партиция удалена; false - строки нужно удалять запросом
+     */
+    public boolean dropMonth(YearMonth month, long expectedRows) {
+        if (!isPartitioned()) {
+            return false;
+        }
+        String name = partitionName(month);
+        if (!partitionNames().contains(name)) {
+            return false;
+        }
+        Long inPartition = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_logs PARTITION (" + name + ")", Long.class);
+        if (inPartition == null || inPartition != expectedRows) {
+            logger.warn("⚠️ Партиция audit_logs {} не удалена: в ней {} строк, в архив выгружено {}",
+                    name, inPartition, expectedRows);
+            return false;
+        }
+        jdbcTemplate.execute("ALTER TABLE audit_logs DROP PARTITION " + name);
+        logger.info("Удалена партиция audit_logs {}", name);
+        return true;
+    }
+
+    static String partitionName(YearMonth month) {
+        return month.format(PARTITION_FORMAT);
+    }
+
+    private List<String> partitionNames() {
+        return jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'audit_logs' AND PARTITION_NAME IS NOT NULL",
+                String.class);
+    }
+}
@@ -1,19 +1,32 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.ArchivedAuditLogDto;
+import com.example.bankcards.dto.AuditLogCursorPage;
 import com.example.bankcards.entity.AuditLog;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.ValidationException;
 import com.example.bankcards.repository.AuditLogRepository;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * Сервис для работы с аудитом действий пользователей
@@ -22,31 +35,95 @@ import java.util.List;
 @Transactional
 public class AuditService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_EMAIL_MATCHES = 500;
+    // Нижняя граница запросов, когда архивация выключена и весь журнал хранится в БД
+    private static final LocalDateTime ALL_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+    // Записи о просмотрах и выгрузках не сбрасывают кешированные экспорты аудита:
+    // иначе каждое открытие страницы делало бы кеш бесполезным. Такие записи попадают
+    // в кешированный экспорт при следующем изменении журнала
+    private static final Set<String> READ_ONLY_ACTIONS = Set.of(
+            AuditLog.Actions.VIEW_CARDS, AuditLog.Actions.VIEW_TRANSFERS, AuditLog.Actions.EXPORT_DATA);
+
+    // Время записи в аудит; теги kind (user, failed, system) и outcome.
+    // Запись идет в транзакции вызывающего метода и замеряется до коммита: outcome=success
+    // значит, что запись сохранена в транзакции; если транзакция затем откатится, метрика этого не покажет
+    public static final String WRITE_TIMER = "bankcards.audit.write";
+
     @Autowired
     private AuditLogRepository auditLogRepository;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    @Autowired
+    private AuditMetricsAggregator auditMetrics;
+
+    @Autowired
+    private AuditArchiveService auditArchiveService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     /**
      * Записывает действие пользователя в лог аудита
      */
     public void logUserAction(User user, String action, String entityType, Long entityId, String description) {
+        String ipAddress = null;
+        String userAgent = null;
+        
+        // Получаем информацию о запросе
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            HttpServletRequest request = attributes.getRequest();
+            ipAddress = getClientIpAddress(request);
+            userAgent = request.getHeader("User-Agent");
+        }
+        
+        logUserAction(user, action, entityType, entityId, description, ipAddress, userAgent);
+    }
+
+    /**
+     * Записывает действие пользователя с сохраненными данными клиента
+     * (для событий, обрабатываемых вне запроса)
+     */
+    public void logUserAction(User user, String action, String entityType, Long entityId, String description,
+                              String ipAddress, String userAgent) {
         try {
             AuditLog auditLog = new AuditLog(user, action, entityType, entityId, description);
+            auditLog.setIpAddress(ipAddress);
+            auditLog.setUserAgent(userAgent);
             
-            // Получаем информацию о запросе
-            ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
-            if (attributes != null) {
-                HttpServletRequest request = attributes.getRequest();
-                auditLog.setIpAddress(getClientIpAddress(request));
-                auditLog.setUserAgent(request.getHeader("User-Agent"));
-            }
-            
-            auditLogRepository.save(auditLog);
+            write(auditLog, "user");
         } catch (Exception e) {
             // Не бросаем исключение, чтобы не нарушить основную логику
             System.err.println("Error logging user action: " + e.getMessage());
         }
     }
 
+    /**
+     * Записывает действие по исходящему событию.
+     * В отличие от logUserAction ошибка записи пробрасывается, чтобы событие осталось в очереди,
+     * а повторная доставка уже записанного события пропускается
+     * @param outboxEventKey ключ события, уникальный среди всех шардов
+     * @return false, если запись по этому событию уже есть
+     */
+    public boolean logOutboxAction(String outboxEventKey, User user, String action, String entityType, Long entityId,
+                                   String description, String ipAddress, String userAgent) {
+        if (auditLogRepository.existsByOutboxEventKey(outboxEventKey)) {
+            return false;
+        }
+        AuditLog auditLog = new AuditLog(user, action, entityType, entityId, description);
+        auditLog.setIpAddress(ipAddress);
+        auditLog.setUserAgent(userAgent);
+        auditLog.setOutboxEventKey(outboxEventKey);
+        write(auditLog, "user");
+        return true;
+    }
+
     /**
      * Записывает неудачное действие пользователя
      */
@@ -64,7 +141,7 @@ public class AuditService {
                 auditLog.setUserAgent(request.getHeader("User-Agent"));
             }
             
-            auditLogRepository.save(auditLog);
+            write(auditLog, "failed");
         } catch (Exception e) {
             System.err.println("Error logging failed action: " + e.getMessage());
         }
@@ -81,12 +158,30 @@ public class AuditService {
             auditLog.setEntityId(entityId);
             auditLog.setDescription(description);
             
-            auditLogRepository.save(auditLog);
+            write(auditLog, "system");
         } catch (Exception e) {
             System.err.println("Error logging system action: " + e.getMessage());
         }
     }
 
+    /**
+     * Сохраняет запись и замеряет время записи; ошибки обрабатывает вызывающий метод
+     */
+    private void write(AuditLog auditLog, String kind) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            auditLogRepository.save(auditLog);
+            if (!READ_ONLY_ACTIONS.contains(auditLog.getAction())) {
+                dataVersionService.markChanged(DataVersionService.Table.AUDIT);
+            }
+            auditMetrics.record(auditLog);
+            outcome = "success";
+        } finally {
+            sample.stop(meterRegistry.timer(WRITE_TIMER, "kind", kind, "outcome", outcome));
+        }
+    }
+
     /**
      * Получает логи пользователя
      */
@@ -104,11 +199,11 @@ public class AuditService {
     }
 
     /**
-     * Получает все логи для админа
+     * Получает все логи для админа за горячий период (более старые - в архиве)
      */
     @Transactional(readOnly = true)
     public Page<AuditLog> getAllAuditLogsForAdmin(Pageable pageable) {
-        return auditLogRepository.findAllForAdmins(pageable);
+        return auditLogRepository.findAllForAdminsSince(hotPeriodStart(), pageable);
     }
 
     /**
@@ -132,16 +227,109 @@ public class AuditService {
      */
     @Transactional(readOnly = true)
     public List<AuditLog> getRecentFailedLogins() {
+        // Если по счетчикам неудачных входов не было, список из БД не нужен
+        if (auditMetrics.isReady()
+                && auditMetrics.countLast24Hours(AuditLog.Actions.LOGIN, AuditLog.Status.FAILED) == 0) {
+            return List.of();
+        }
         LocalDateTime since = LocalDateTime.now().minusHours(24);
         return auditLogRepository.findFailedLoginAttempts(since);
     }
 
     /**
-     * Получает логи с фильтрами для админа
+     * Получает логи с фильтрами для админа за горячий период (более старые - в архиве)
      */
     @Transactional(readOnly = true)
     public Page<AuditLog> getAuditLogsWithFilters(String action, String status, String userEmail, Pageable pageable) {
-        return auditLogRepository.findWithFilters(action, status, userEmail, pageable);
+        return auditLogRepository.findWithFiltersSince(action, status, userEmail, hotPeriodStart(), pageable);
+    }
+
+    /**
+     * Получает страницу логов для админа за горячий период: записи старше курсора, новые первыми.
+     * Фильтр по email сначала находит id пользователей (точное совпадение или префикс email),
+     * затем логи читаются по индексу (user_id, created_at). Общее количество не считается.
+     */
+    @Transactional(readOnly = true)
+    public AuditLogCursorPage getAuditLogsPage(String action, String status, String userEmail, String cursor, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        LocalDateTime cursorAt = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            int separator = cursor.lastIndexOf('_');
+            try {
+                cursorAt = LocalDateTime.parse(cursor.substring(0, separator));
+                cursorId = Long.parseLong(cursor.substring(separator + 1));
+            } catch (IndexOutOfBoundsException | DateTimeParseException | NumberFormatException e) {
+                throw new ValidationException("Некорректный курсор страницы: " + cursor);
+            }
+        }
+
+        action = emptyToNull(action);
+        status = emptyToNull(status);
+        userEmail = emptyToNull(userEmail);
+        LocalDateTime since = hotPeriodStart();
+        // Одна лишняя запись показывает, есть ли следующая страница
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+
+        List<AuditLog> logs;
+        if (userEmail == null) {
+            logs = auditLogRepository.findPageForAdmins(action, status, since, cursorAt, cursorId, limit);
+        } else {
+            List<Long> userIds = resolveUserIds(userEmail);
+            if (userIds.isEmpty()) {
+                return AuditLogCursorPage.empty();
+            }
+            logs = auditLogRepository.findPageForAdminsByUsers(userIds, action, status, since, cursorAt, cursorId, limit);
+        }
+
+        if (logs.size() <= pageSize) {
+            return new AuditLogCursorPage(logs, null);
+        }
+        List<AuditLog> content = logs.subList(0, pageSize);
+        AuditLog last = content.get(pageSize - 1);
+        return new AuditLogCursorPage(content, last.getCreatedAt() + "_" + last.getId());
+    }
+
+    /**
+     * Начало периода, логи которого хранятся в БД
+     * @return null, если архивация выключена и в БД весь журнал
+     */
+    public LocalDateTime getHotSince() {
+        return auditArchiveService.hotSince();
+    }
+
+    private LocalDateTime hotPeriodStart() {
+        LocalDateTime since = auditArchiveService.hotSince();
+        return since != null ? since : ALL_TIME;
+    }
+
+    /**
+     * Находит id пользователей по email: сначала точное совпадение, затем по началу email
+     */
+    private List<Long> resolveUserIds(String userEmail) {
+        Optional<Long> exact = userRepository.findIdByEmail(userEmail);
+        if (exact.isPresent()) {
+            return List.of(exact.get());
+        }
+        String prefix = userEmail.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+        List<Long> userIds = userRepository.findIdsByEmailPrefix(prefix, PageRequest.of(0, MAX_EMAIL_MATCHES + 1));
+        if (userIds.size() > MAX_EMAIL_MATCHES) {
+            throw new ValidationException("Под фильтр подходит слишком много пользователей, уточните email");
+        }
+        return userIds;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    /**
+     * Получает логи из архива за месяцы [from, to], новые первыми
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ArchivedAuditLogDto> getArchivedAuditLogs(YearMonth from, YearMonth to, String action, String status,
+                                                          String userEmail, int limit) throws IOException {
+        return auditArchiveService.readArchived(from, to, action, status, userEmail, limit);
     }
 
     /**
@@ -149,6 +337,9 @@ public class AuditService {
      */
     @Transactional(readOnly = true)
     public long getFailedLoginsCount() {
+        if (auditMetrics.isReady()) {
+            return auditMetrics.countLast24Hours(AuditLog.Actions.LOGIN, AuditLog.Status.FAILED);
+        }
         LocalDateTime since = LocalDateTime.now().minusHours(24);
         return auditLogRepository.countFailedLoginAttempts(since);
     }
@@ -158,6 +349,9 @@ public class AuditService {
      */
     @Transactional(readOnly = true)
     public long getTodayActionsCount() {
+        if (auditMetrics.isReady()) {
+            return auditMetrics.getTodayActionsCount();
+        }
         LocalDateTime startOfDay = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0).withNano(0);
         LocalDateTime endOfDay = startOfDay.plusDays(1);
         return auditLogRepository.countByDateRange(startOfDay, endOfDay);
@@ -165,9 +359,13 @@ public class AuditService {
 
     /**
      * Получает количество уникальных пользователей за последние 30 дней
+     * (по счетчикам - приблизительно, с погрешностью около 3%)
      */
     @Transactional(readOnly = true)
     public long getUniqueUsersCount() {
+        if (auditMetrics.isReady()) {
+            return auditMetrics.getUniqueUsersCount();
+        }
         LocalDateTime since = LocalDateTime.now().minusDays(30);
         return auditLogRepository.countUniqueUsers(since);
     }
@@ -183,7 +381,7 @@ public class AuditService {
     /**
      * Получает IP адрес клиента
      */
-    private String getClientIpAddress(HttpServletRequest request) {
+    static String getClientIpAddress(HttpServletRequest request) {
         String xForwardedFor = request.getHeader("X-Forwarded-For");
         if (xForwardedFor != null && !xForwardedFor.isEmpty() && !"unknown".equalsIgnoreCase(xForwardedFor)) {
             return xForwardedFor.split(",")[0].trim();
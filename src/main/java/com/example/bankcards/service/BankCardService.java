@@ -1,32 +1,52 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ShardRouter;
 import com.example.bankcards.dto.BankCardDto;
 import com.example.bankcards.dto.CreateBankCardRequest;
 import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.OutboxEvent;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.*;
 import com.example.bankcards.repository.BankCardRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.util.CardEncryptionUtil;
 import com.example.bankcards.util.ValidationUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
- * Сервис для работы с банковскими картами
+ * Сервис для работы с банковскими картами.
+ *
+ * При шардировании обращения к картам выполняются в шарде владельца (ShardRouter).
+ * Аудит и уведомления не выполняются в запросе: событие карты пишется в outbox
+ * в той же транзакции шарда и доставляется OutboxRelay после коммита.
  */
 @Service
 @Transactional
 public class BankCardService {
 
+    // Время проверки истекших карт (тег scope: all или range) и число карт, переведенных в EXPIRED
+    public static final String EXPIRY_TIMER = "bankcards.cards.expiry";
+    public static final String EXPIRED_COUNTER = "bankcards.cards.expired";
+
     @Autowired
     private BankCardRepository bankCardRepository;
 
@@ -40,7 +60,17 @@ public class BankCardService {
     private ValidationUtils validationUtils;
     
     @Autowired
-    private AuditService auditService;
+    private OutboxService outboxService;
+
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    // Без database.shards.enabled бина нет и все выполняется в текущей транзакции
+    @Autowired(required = false)
+    private ShardRouter shardRouter = ShardRouter.SINGLE;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     /**
      * Создает новую банковскую карту (только для админа)
@@ -69,8 +99,8 @@ public class BankCardService {
         // Генерируем маскированный номер
         String maskedNumber = cardEncryptionUtil.getMaskedNumberFromEncrypted(encryptedCardNumber);
 
-        // Проверяем уникальность зашифрованного номера
-        if (bankCardRepository.existsByCardNumber(encryptedCardNumber)) {
+        // Проверяем уникальность зашифрованного номера (уникальный индекс есть только внутри шарда)
+        if (shardRouter.inEachShard(shard -> bankCardRepository.existsByCardNumber(encryptedCardNumber)).contains(true)) {
             throw new BusinessException("Карта с таким номером уже существует", "DUPLICATE_CARD_NUMBER");
         }
 
@@ -82,10 +112,12 @@ public class BankCardService {
                 request.getExpiryDateAsLocalDate()
         );
 
-        BankCard savedCard = bankCardRepository.save(bankCard);
-        
-        // Логируем создание карты
-        auditService.logCardCreation(owner, savedCard.getId(), maskedNumber);
+        BankCard savedCard = shardRouter.inShard(shardRouter.shardOfUser(owner.getId()), () -> {
+            BankCard saved = bankCardRepository.save(bankCard);
+            publishCardEvent(OutboxEvent.Type.CARD_CREATED, saved, Map.of());
+            return saved;
+        });
+        dataVersionService.markChanged(DataVersionService.Table.CARDS);
         
         return BankCardDto.fromEntity(savedCard);
     }
@@ -95,8 +127,8 @@ public class BankCardService {
      */
     @Transactional(readOnly = true)
     public Optional<BankCardDto> findById(Long id) {
-        return bankCardRepository.findById(id)
-                .map(BankCardDto::fromEntity);
+        return shardRouter.inShard(shardRouter.shardOfId(id), () -> bankCardRepository.findCurrentById(id)
+                .map(BankCardDto::fromEntity));
     }
 
     /**
@@ -104,11 +136,13 @@ public class BankCardService {
      */
     @Transactional
     public Page<BankCardDto> findByOwner(User owner, Pageable pageable) {
-        // Сначала обновляем статус истекших карт
-        updateExpiredCards();
-        
-        return bankCardRepository.findByOwner(owner, pageable)
-                .map(BankCardDto::fromEntity);
+        return shardRouter.inShard(shardRouter.shardOfUser(owner.getId()), () -> {
+            // Сначала обновляем статус истекших карт
+            expireCardsInCurrentShard();
+            
+            return bankCardRepository.findByOwner(owner, pageable)
+                    .map(BankCardDto::fromEntity);
+        });
     }
 
     /**
@@ -116,23 +150,32 @@ public class BankCardService {
      */
     @Transactional
     public Page<BankCardDto> findByOwnerWithFilters(User owner, BankCard.Status status, String searchTerm, Pageable pageable) {
-        // Сначала обновляем статус истекших карт
-        updateExpiredCards();
-        
-        return bankCardRepository.findByOwnerWithFilters(owner, status, searchTerm, pageable)
-                .map(BankCardDto::fromEntity);
+        return shardRouter.inShard(shardRouter.shardOfUser(owner.getId()), () -> {
+            // Сначала обновляем статус истекших карт
+            expireCardsInCurrentShard();
+            
+            return bankCardRepository.findByOwnerWithFilters(owner, status, searchTerm, pageable)
+                    .map(BankCardDto::fromEntity);
+        });
     }
 
     /**
-     * Находит все карты с фильтрацией (для админа)
+     * Находит все карты с фильтрацией (для админа).
+     * При шардировании страница собирается из первых строк каждого шарда
      */
     @Transactional
     public Page<BankCardDto> findAllWithFilters(BankCard.Status status, String searchTerm, Pageable pageable) {
         // Сначала обновляем статус истекших карт
         updateExpiredCards();
         
-        return bankCardRepository.findAllWithFilters(status, searchTerm, pageable)
-                .map(BankCardDto::fromEntity);
+        // Страницы шардов объединяются по сортировке, поэтому без сортировки упорядочиваем по id
+        Pageable ordered = pageable;
+        if (shardRouter.isSharded() && pageable.isPaged() && pageable.getSort().isUnsorted()) {
+            ordered = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("id"));
+        }
+        return shardRouter.findPage(ordered, ShardRouter.comparing(ordered.getSort()),
+                page -> bankCardRepository.findAllWithFilters(status, searchTerm, page)
+                        .map(BankCardDto::fromEntity));
     }
 
     /**
@@ -143,18 +186,20 @@ public class BankCardService {
         validationUtils.validateId(cardId, "карты");
         validationUtils.validateDescription(reason, "Причина блокировки");
         
-        BankCard card = bankCardRepository.findById(cardId)
-                .orElseThrow(() -> new ResourceNotFoundException("Карта", cardId));
+        BankCard savedCard = shardRouter.inShard(shardRouter.shardOfId(cardId), () -> {
+            BankCard card = bankCardRepository.findCurrentById(cardId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Карта", cardId));
 
-        if (card.getStatus() == BankCard.Status.BLOCKED) {
-            throw new BusinessException("Карта уже заблокирована", "CARD_ALREADY_BLOCKED");
-        }
+            if (card.getStatus() == BankCard.Status.BLOCKED) {
+                throw new BusinessException("Карта уже заблокирована", "CARD_ALREADY_BLOCKED");
+            }
 
-        card.block(reason);
-        BankCard savedCard = bankCardRepository.save(card);
-        
-        // Логируем блокировку карты
-        auditService.logCardBlock(savedCard.getOwner(), savedCard.getId(), savedCard.getMaskedNumber(), reason);
+            card.block(reason);
+            BankCard saved = withOwner(bankCardRepository.save(card));
+            publishCardEvent(OutboxEvent.Type.CARD_BLOCKED, saved, Collections.singletonMap("reason", reason));
+            return saved;
+        });
+        dataVersionService.markChanged(DataVersionService.Table.CARDS);
         
         return BankCardDto.fromEntity(savedCard);
     }
@@ -168,21 +213,21 @@ public class BankCardService {
         validationUtils.validateId(cardId, "карты");
         
         try {
-            BankCard card = bankCardRepository.findById(cardId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Карта", cardId));
+            BankCard savedCard = shardRouter.inShard(shardRouter.shardOfId(cardId), () -> {
+                BankCard card = bankCardRepository.findCurrentById(cardId)
+                        .orElseThrow(() -> new ResourceNotFoundException("Карта", cardId));
 
-            if (card.getStatus() == BankCard.Status.ACTIVE) {
-                throw new BusinessException("Карта уже активна", "CARD_ALREADY_ACTIVE");
-            }
+                if (card.getStatus() == BankCard.Status.ACTIVE) {
+                    throw new BusinessException("Карта уже активна", "CARD_ALREADY_ACTIVE");
+                }
 
-            card.activate();
-            BankCard savedCard = bankCardRepository.save(card);
-            
-            // Принудительно загружаем owner для избежания lazy loading проблем
-            savedCard.getOwner().getEmail();
-            
-            // Логируем активацию карты
-            auditService.logCardActivation(savedCard.getOwner(), savedCard.getId(), savedCard.getMaskedNumber());
+                card.activate();
+                // Принудительно загружаем owner для избежания lazy loading проблем
+                BankCard saved = withOwner(bankCardRepository.save(card));
+                publishCardEvent(OutboxEvent.Type.CARD_ACTIVATED, saved, Map.of());
+                return saved;
+            });
+            dataVersionService.markChanged(DataVersionService.Table.CARDS);
             
             return BankCardDto.fromEntity(savedCard);
         } catch (Exception e) {
@@ -198,15 +243,18 @@ public class BankCardService {
     @Transactional
     public void activateCardSimple(Long cardId) {
         try {
-            BankCard card = bankCardRepository.findById(cardId)
-                    .orElseThrow(() -> new IllegalArgumentException("Карта не найдена"));
+            shardRouter.runInShard(shardRouter.shardOfId(cardId), () -> {
+                BankCard card = bankCardRepository.findCurrentById(cardId)
+                        .orElseThrow(() -> new IllegalArgumentException("Карта не найдена"));
 
-            if (card.getStatus() == BankCard.Status.ACTIVE) {
-                throw new IllegalArgumentException("Карта уже активна");
-            }
+                if (card.getStatus() == BankCard.Status.ACTIVE) {
+                    throw new IllegalArgumentException("Карта уже активна");
+                }
 
-            card.activate();
-            bankCardRepository.save(card);
+                card.activate();
+                bankCardRepository.save(card);
+            });
+            dataVersionService.markChanged(DataVersionService.Table.CARDS);
         } catch (Exception e) {
             System.err.println("Error in activateCardSimple service: " + e.getMessage());
             e.printStackTrace();
@@ -221,27 +269,72 @@ public class BankCardService {
         // Валидация входных данных
         validationUtils.validateId(cardId, "карты");
         
-        BankCard card = bankCardRepository.findById(cardId)
-                .orElseThrow(() -> new ResourceNotFoundException("Карта", cardId));
-        
-        // Сохраняем информацию для логирования перед удалением
-        String maskedNumber = card.getMaskedNumber();
-        User owner = card.getOwner();
-        
-        bankCardRepository.deleteById(cardId);
+        shardRouter.runInShard(shardRouter.shardOfId(cardId), () -> {
+            BankCard found = bankCardRepository.findCurrentById(cardId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Карта", cardId));
+            bankCardRepository.deleteById(cardId);
+            // Номер и владелец сохраняются в событии: после удаления карту уже не прочитать
+            publishCardEvent(OutboxEvent.Type.CARD_DELETED, found, Map.of());
+        });
         
-        // Логируем удаление карты
-        auditService.logCardDeletion(owner, cardId, maskedNumber);
+        dataVersionService.markChanged(DataVersionService.Table.CARDS, DataVersionService.Table.TRANSFERS);
     }
     
     /**
-     * Обновляет статус истекших карт на EXPIRED
+     * Обновляет статус истекших карт на EXPIRED во всех шардах
      * @return количество обновленных карт
      */
     @Transactional
     public int updateExpiredCards() {
-        List<BankCard> expiredCards = bankCardRepository.findExpiredCards();
-        
+        return timedExpiry("all", () -> shardRouter.inEachShard(shard -> expireCardsInCurrentShard())
+                .stream()
+                .mapToInt(Integer::intValue)
+                .sum());
+    }
+
+    /**
+     * Обновляет статус истекших карт с id в диапазоне [fromId, toId] во всех шардах
+     * (часть проверки, распределенной между узлами)
+     * @return количество обновленных карт
+     */
+    @Transactional
+    public int updateExpiredCards(long fromId, long toId) {
+        return timedExpiry("range", () -> shardRouter
+                .inEachShard(shard -> expireCards(bankCardRepository.findExpiredCardsInRange(fromId, toId)))
+                .stream()
+                .mapToInt(Integer::intValue)
+                .sum());
+    }
+
+    private int timedExpiry(String scope, Supplier<Integer> update) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            int expired = update.get();
+            meterRegistry.counter(EXPIRED_COUNTER).increment(expired);
+            return expired;
+        } finally {
+            sample.stop(meterRegistry.timer(EXPIRY_TIMER, "scope", scope));
+        }
+    }
+
+    /**
+     * Наибольший id карты во всех шардах, 0 если карт нет
+     */
+    @Transactional(readOnly = true)
+    public long getMaxCardId() {
+        return shardRouter.inEachShard(shard -> bankCardRepository.findMaxId())
+                .stream()
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .max()
+                .orElse(0L);
+    }
+
+    private int expireCardsInCurrentShard() {
+        return expireCards(bankCardRepository.findExpiredCards());
+    }
+
+    private int expireCards(List<BankCard> expiredCards) {
         if (expiredCards.isEmpty()) {
             return 0;
         }
@@ -252,6 +345,7 @@ public class BankCardService {
             bankCardRepository.save(card);
             updatedCount++;
         }
+        dataVersionService.markChanged(DataVersionService.Table.CARDS);
         
         return updatedCount;
     }
@@ -261,13 +355,34 @@ public class BankCardService {
      */
     @Transactional
     public List<BankCardDto> findActiveCardsForUser(User user) {
-        // Сначала обновляем статус истекших карт
-        updateExpiredCards();
-        
-        return bankCardRepository.findActiveCardsForUser(user)
-                .stream()
-                .map(BankCardDto::fromEntity)
-                .toList();
+        return shardRouter.inShard(shardRouter.shardOfUser(user.getId()), () -> {
+            // Сначала обновляем статус истекших карт
+            expireCardsInCurrentShard();
+            
+            return bankCardRepository.findActiveCardsForUser(user)
+                    .stream()
+                    .map(BankCardDto::fromEntity)
+                    .toList();
+        });
+    }
+
+    /**
+     * Записывает событие карты в текущую транзакцию шарда
+     */
+    private void publishCardEvent(OutboxEvent.Type type, BankCard card, Map<String, Object> details) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put(OutboxService.USER_ID, card.getOwner().getId());
+        payload.put("maskedNumber", card.getMaskedNumber());
+        payload.putAll(details);
+        outboxService.publish(type, card.getId(), payload);
+    }
+
+    /**
+     * Загружает владельца, пока открыта транзакция шарда: DTO использует его после нее
+     */
+    private static BankCard withOwner(BankCard card) {
+        Hibernate.initialize(card.getOwner());
+        return card;
     }
 
     /**
@@ -306,9 +421,14 @@ public class BankCardService {
      * Проверяет, может ли пользователь управлять картой
      */
     public boolean canUserManageCard(User user, Long cardId) {
-        return bankCardRepository.findById(cardId)
+        // Карта из чужого шарда не может принадлежать пользователю
+        if (shardRouter.shardOfId(cardId) != shardRouter.shardOfUser(user.getId())) {
+            return false;
+        }
+        // Владелец карты не меняется, копии из кэша второго уровня достаточно
+        return shardRouter.inShard(shardRouter.shardOfId(cardId), () -> bankCardRepository.findById(cardId)
                 .map(card -> card.getOwner().getId().equals(user.getId()))
-                .orElse(false);
+                .orElse(false));
     }
 
     /**
@@ -320,27 +440,54 @@ public class BankCardService {
         BigDecimal topupAmount = BigDecimal.valueOf(amount);
         validationUtils.validateMinAmount(topupAmount, new BigDecimal("0.01"));
         
-        BankCard card = bankCardRepository.findById(cardId)
-                .orElseThrow(() -> new ResourceNotFoundException("Карта", cardId));
-        
-        if (card.getStatus() != BankCard.Status.ACTIVE) {
-            throw new CardBlockedException(card.getMaskedNumber(), "Карта неактивна");
-        }
-        
-        BigDecimal currentBalance = card.getBalance();
-        card.setBalance(currentBalance.add(topupAmount));
+        shardRouter.runInShard(shardRouter.shardOfId(cardId), () -> {
+            BankCard card = bankCardRepository.findCurrentById(cardId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Карта", cardId));
+            
+            if (card.getStatus() != BankCard.Status.ACTIVE) {
+                throw new CardBlockedException(card.getMaskedNumber(), "Карта неактивна");
+            }
+            
+            BigDecimal currentBalance = card.getBalance();
+            card.setBalance(currentBalance.add(topupAmount));
 
-        BankCard savedCard = bankCardRepository.save(card);
+            BankCard saved = bankCardRepository.save(card);
+            publishCardEvent(OutboxEvent.Type.CARD_TOPPED_UP, saved, Map.of("amount", amount));
+        });
+        dataVersionService.markChanged(DataVersionService.Table.CARDS);
+    }
+    
+    /**
+     * Запрос пользователя на блокировку карты: флаг запроса и событие для уведомления
+     * администраторов записываются в одной транзакции
+     */
+    public void requestCardBlock(Long cardId, User user, String reason) {
+        validationUtils.validateId(cardId, "карты");
+        validationUtils.validateDescription(reason, "Причина блокировки");
         
-        // Логируем пополнение карты
-        auditService.logCardTopup(savedCard.getOwner(), savedCard.getId(), savedCard.getMaskedNumber(), amount);
+        shardRouter.runInShard(shardRouter.shardOfId(cardId), () -> {
+            BankCard card = bankCardRepository.findCurrentById(cardId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Карта", cardId));
+            if (Boolean.TRUE.equals(card.getBlockRequestSent())) {
+                throw new BusinessException("Запрос на блокировку этой карты уже отправлен и ожидает обработки",
+                        "DUPLICATE_REQUEST");
+            }
+            
+            card.setBlockRequestSent(true);
+            BankCard saved = bankCardRepository.save(card);
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put(OutboxService.USER_ID, user.getId());
+            details.put("reason", reason);
+            publishCardEvent(OutboxEvent.Type.CARD_BLOCK_REQUESTED, saved, details);
+        });
+        dataVersionService.markChanged(DataVersionService.Table.CARDS);
     }
     
     /**
-     * Получение сущности карты по ID
+     * Получение сущности карты по ID (для номера и владельца; баланс может быть из кэша узла)
      */
     public Optional<BankCard> getCardEntityById(Long id) {
-        return bankCardRepository.findById(id);
+        return shardRouter.inShard(shardRouter.shardOfId(id), () -> bankCardRepository.findById(id));
     }
     
     /**
@@ -348,6 +495,11 @@ public class BankCardService {
      */
     @Transactional
     public BankCard saveCard(BankCard card) {
-        return bankCardRepository.save(card);
+        int shard = card.getId() != null
+                ? shardRouter.shardOfId(card.getId())
+                : shardRouter.shardOfUser(card.getOwner().getId());
+        BankCard savedCard = shardRouter.inShard(shard, () -> bankCardRepository.save(card));
+        dataVersionService.markChanged(DataVersionService.Table.CARDS);
+        return savedCard;
     }
 }
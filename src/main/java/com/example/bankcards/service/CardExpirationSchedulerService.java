@@ -3,14 +3,21 @@ package com.example.bankcards.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Optional;
 
 /**
- * Сервис для автоматической проверки и обновления истекших карт
+ * Сервис для автоматической проверки и обновления истекших карт.
+ *
+ * При нескольких узлах каждую задачу выполняет один узел: проверка идет под блокировкой
+ * в БД (SchedulerLockService). Если задано scheduler.card-expiration.partitions больше 1,
+ * карты делятся на диапазоны id с отдельной блокировкой у каждого, и узлы, запустившие
+ * задачу одновременно, разбирают диапазоны между собой.
  */
 @Service
 public class CardExpirationSchedulerService {
@@ -18,9 +25,19 @@ public class CardExpirationSchedulerService {
     private static final Logger logger = LoggerFactory.getLogger(CardExpirationSchedulerService.class);
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    public static final String DAILY_JOB = "card-expiration-daily";
+    public static final String FREQUENT_JOB = "card-expiration-frequent";
+    private static final int NOT_RUN = -1;
+
     @Autowired
     private BankCardService bankCardService;
 
+    @Autowired
+    private SchedulerLockService schedulerLockService;
+
+    @Value("${scheduler.card-expiration.partitions:1}")
+    private int partitions;
+
     /**
      * Проверяет и обновляет статус истекших карт каждый день в 00:01
      * Cron: секунды минуты часы день месяц день_недели
@@ -31,9 +48,11 @@ public class CardExpirationSchedulerService {
         logger.info("🕐 Запуск проверки истекших карт: {}", currentTime);
         
         try {
-            int updatedCount = bankCardService.updateExpiredCards();
+            int updatedCount = expireCards(DAILY_JOB);
             
-            if (updatedCount > 0) {
+            if (updatedCount == NOT_RUN) {
+                logger.info("ℹ️ Проверка истекших карт выполняется на другом узле");
+            } else if (updatedCount > 0) {
                 logger.info("✅ Обновлено {} истекших карт на статус EXPIRED", updatedCount);
             } else {
                 logger.info("ℹ️ Истекших карт не найдено");
@@ -56,9 +75,11 @@ public class CardExpirationSchedulerService {
         logger.debug("🔍 Частая проверка истекших карт: {}", currentTime);
         
         try {
-            int updatedCount = bankCardService.updateExpiredCards();
+            int updatedCount = expireCards(FREQUENT_JOB);
             
-            if (updatedCount > 0) {
+            if (updatedCount == NOT_RUN) {
+                logger.debug("Частая проверка выполняется на другом узле");
+            } else if (updatedCount > 0) {
                 logger.warn("⚠️ Найдено {} истекших карт при частой проверке! Обновлен статус на EXPIRED", updatedCount);
             } else {
                 logger.debug("✓ Частая проверка: истекших карт не найдено");
@@ -69,6 +90,41 @@ public class CardExpirationSchedulerService {
         }
     }
 
+    /**
+     * Обновляет истекшие карты под блокировкой задачи
+     * @return количество обновленных карт или NOT_RUN, если всю работу выполнили другие узлы
+     */
+    private int expireCards(String job) {
+        if (partitions <= 1) {
+            return schedulerLockService.runLocked(job, bankCardService::updateExpiredCards).orElse(NOT_RUN);
+        }
+
+        long maxId = bankCardService.getMaxCardId();
+        long span = Math.max(1, (maxId + partitions - 1) / partitions);
+        // Узлы начинают с разных диапазонов, чтобы реже сталкиваться на одной блокировке
+        int start = Math.floorMod(schedulerLockService.getNodeId().hashCode(), partitions);
+
+        int updatedCount = 0;
+        boolean ran = false;
+        for (int i = 0; i < partitions; i++) {
+            int part = (start + i) % partitions;
+            long fromId = part * span + 1;
+            // Последний диапазон открыт: в него попадут карты, созданные после чтения maxId
+            long toId = part == partitions - 1 ? Long.MAX_VALUE : (part + 1) * span;
+            Optional<Integer> result = schedulerLockService.runLocked(job + "-" + part,
+                    () -> bankCardService.updateExpiredCards(fromId, toId));
+            if (result.isPresent()) {
+                ran = true;
+                updatedCount += result.get();
+            }
+        }
+        return ran ? updatedCount : NOT_RUN;
+    }
+
+    public int getPartitions() {
+        return Math.max(partitions, 1);
+    }
+
     /**
      * Тестовый метод для проверки работы планировщика (каждые 30 секунд)
      * Можно отключить в продакшене, убрав аннотацию @Scheduled
@@ -0,0 +1,186 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.ShardRouter;
+import com.example.bankcards.entity.DataVersion;
+import com.example.bankcards.repository.DataVersionRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Версии данных по таблицам.
+ *
+ * Каждая запись в таблицу увеличивает ее версию, поэтому по набору версий
+ * можно понять, изменились ли данные с момента формирования экспорта.
+ * Версии хранятся в БД (data_versions) и увеличиваются в той же транзакции, что и данные,
+ * поэтому все узлы видят одну и ту же версию и новая версия появляется вместе с новыми данными.
+ */
+@Service
+public class DataVersionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataVersionService.class);
+
+    /**
+     * Число слотов счетчика на таблицу: параллельные записи увеличивают разные строки
+     */
+    static final int SLOTS = 16;
+
+    /**
+     * Отслеживаемые таблицы
+     */
+    public enum Table {
+        CARDS,
+        TRANSFERS,
+        USERS,
+        AUDIT
+    }
+
+    private final DataVersionRepository dataVersionRepository;
+
+    // При шардировании версия таблицы складывается из счетчиков всех шардов
+    @Autowired(required = false)
+    private ShardRouter shardRouter = ShardRouter.SINGLE;
+
+    @Autowired
+    public DataVersionService(DataVersionRepository dataVersionRepository) {
+        this.dataVersionRepository = dataVersionRepository;
+    }
+
+    /**
+     * Создает недостающие строки слотов до начала обработки запросов
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            shardRouter.inEachShard(shard -> createMissingSlots());
+        } catch (Exception e) {
+            logger.error("Ошибка при создании счетчиков версий данных: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Отмечает изменение таблиц.
+     * Внутри транзакции версии увеличиваются непосредственно перед коммитом: строки слотов
+     * блокируются последними и в одном порядке, а при откате версия не меняется.
+     */
+    public void markChanged(Table... tables) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            EnumSet<Table> changed = EnumSet.noneOf(Table.class);
+            changed.addAll(Arrays.asList(tables));
+            bump(changed);
+            return;
+        }
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingChanges pending && pending.owner == this) {
+                pending.tables.addAll(Arrays.asList(tables));
+                return;
+            }
+        }
+        PendingChanges pending = new PendingChanges(this);
+        pending.tables.addAll(Arrays.asList(tables));
+        TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+
+    /**
+     * Получает текущую версию таблицы
+     */
+    public long getVersion(Table table) {
+        return readVersions(table).get(table);
+    }
+
+    /**
+     * Формирует строку версий для набора таблиц, например "CARDS=3;USERS=5"
+     */
+    public String describeVersions(Table... tables) {
+        Map<Table, Long> versions = readVersions(tables);
+        StringBuilder result = new StringBuilder();
+        for (Table table : tables) {
+            if (result.length() > 0) {
+                result.append(';');
+            }
+            result.append(table.name()).append('=').append(versions.get(table));
+        }
+        return result.toString();
+    }
+
+    private Map<Table, Long> readVersions(Table... tables) {
+        Map<Table, Long> versions = new EnumMap<>(Table.class);
+        for (Table table : tables) {
+            versions.put(table, 0L);
+        }
+        Set<String> names = Arrays.stream(tables).map(Table::name).collect(Collectors.toSet());
+        for (List<Object[]> rows : shardRouter.inEachShard(shard -> dataVersionRepository.sumVersions(names))) {
+            for (Object[] row : rows) {
+                Table table = Table.valueOf((String) row[0]);
+                versions.merge(table, ((Number) row[1]).longValue(), Long::sum);
+            }
+        }
+        return versions;
+    }
+
+    // Таблицы увеличиваются в порядке перечисления, чтобы транзакции не ждали друг друга по кругу
+    private void bump(EnumSet<Table> tables) {
+        for (Table table : tables) {
+            int slot = ThreadLocalRandom.current().nextInt(SLOTS);
+            if (dataVersionRepository.increment(table.name(), slot) == 0) {
+                logger.warn("⚠️ Нет счетчика версии {} (слот {}), изменение не учтено", table, slot);
+            }
+        }
+    }
+
+    private Void createMissingSlots() {
+        Set<DataVersion.Key> existing = new HashSet<>();
+        for (DataVersion version : dataVersionRepository.findAll()) {
+            existing.add(new DataVersion.Key(version.getTableName(), version.getSlot()));
+        }
+        for (Table table : Table.values()) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (existing.contains(new DataVersion.Key(table.name(), slot))) {
+                    continue;
+                }
+                try {
+                    dataVersionRepository.saveAndFlush(new DataVersion(table.name(), slot));
+                } catch (DataIntegrityViolationException e) {
+                    // Строку одновременно создал другой узел
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Таблицы, измененные в текущей транзакции
+     */
+    private static final class PendingChanges implements TransactionSynchronization {
+
+        private final DataVersionService owner;
+        private final EnumSet<Table> tables = EnumSet.noneOf(Table.class);
+
+        private PendingChanges(DataVersionService owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!readOnly) {
+                owner.bump(tables);
+            }
+        }
+    }
+}
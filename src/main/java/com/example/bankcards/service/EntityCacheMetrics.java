@@ -0,0 +1,115 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BankCard;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Показатели кэша второго уровня Hibernate по регионам: попадания, промахи, записи
+ * и доля попаданий. Счетчики ведет статистика Hibernate (hibernate.generate_statistics)
+ * с момента запуска узла.
+ *
+ * Те же показатели публикуются в Micrometer с тегом region; Spring Boot привязывает
+ * бин к реестру как MeterBinder.
+ */
+@Service
+public class EntityCacheMetrics implements MeterBinder {
+
+    /** Регионы, которые показываются в панели администратора */
+    public static final List<String> REGIONS = List.of(BankCard.CACHE_REGION);
+
+    // Обращения к кэшу второго уровня; тег region
+    public static final String HITS_COUNTER = "bankcards.cache.hits";
+    public static final String MISSES_COUNTER = "bankcards.cache.misses";
+    public static final String PUTS_COUNTER = "bankcards.cache.puts";
+    // Доля попаданий в процентах с момента запуска; тег region
+    public static final String HIT_RATIO_GAUGE = "bankcards.cache.hit.ratio";
+
+    private final Statistics statistics;
+
+    @Autowired
+    public EntityCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String region : REGIONS) {
+            regionCounter(registry, HITS_COUNTER, region, CacheRegionStatistics::getHitCount);
+            regionCounter(registry, MISSES_COUNTER, region, CacheRegionStatistics::getMissCount);
+            regionCounter(registry, PUTS_COUNTER, region, CacheRegionStatistics::getPutCount);
+            Gauge.builder(HIT_RATIO_GAUGE, this, metrics -> metrics.getHitRatioPercent(region))
+                    .tag("region", region)
+                    .baseUnit("percent")
+                    .register(registry);
+        }
+    }
+
+    private void regionCounter(MeterRegistry registry, String name, String region,
+                               ToLongFunction<CacheRegionStatistics> count) {
+        FunctionCounter.builder(name, this, metrics -> {
+                    CacheRegionStatistics regionStatistics = metrics.regionStatistics(region);
+                    return regionStatistics == null ? 0 : count.applyAsLong(regionStatistics);
+                })
+                .tag("region", region)
+                .register(registry);
+    }
+
+    /**
+     * Доля попаданий в регион в процентах, 0 - обращений еще не было или статистика выключена
+     */
+    public long getHitRatioPercent(String region) {
+        CacheRegionStatistics regionStatistics = regionStatistics(region);
+        if (regionStatistics == null) {
+            return 0;
+        }
+        long requests = regionStatistics.getHitCount() + regionStatistics.getMissCount();
+        return requests == 0 ? 0 : Math.round(regionStatistics.getHitCount() * 100.0 / requests);
+    }
+
+    /**
+     * Количество попаданий в регион
+     */
+    public long getHitCount(String region) {
+        CacheRegionStatistics regionStatistics = regionStatistics(region);
+        return regionStatistics == null ? 0 : regionStatistics.getHitCount();
+    }
+
+    /**
+     * Показатели всех регионов для мониторинга
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        for (String region : REGIONS) {
+            CacheRegionStatistics regionStatistics = regionStatistics(region);
+            Map<String, Object> regionStats = new LinkedHashMap<>();
+            if (regionStatistics != null) {
+                regionStats.put("hits", regionStatistics.getHitCount());
+                regionStats.put("misses", regionStatistics.getMissCount());
+                regionStats.put("puts", regionStatistics.getPutCount());
+                regionStats.put("hitRatioPercent", getHitRatioPercent(region));
+            }
+            stats.put(region, regionStats);
+        }
+        return stats;
+    }
+
+    private CacheRegionStatistics regionStatistics(String region) {
+        // null, если кэш второго уровня выключен или регион еще не создан
+        return statistics.isStatisticsEnabled() ? statistics.getCacheRegionStatistics(region) : null;
+    }
+}
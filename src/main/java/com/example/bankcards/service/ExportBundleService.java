@@ -0,0 +1,259 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.ValidationException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Сервис формирования архива с несколькими разделами экспорта.
+ *
+ * Разделы формируются параллельно на ограниченном пуле потоков, каждый в своей
+ * read-only транзакции и с потоковым чтением из БД. Готовые разделы попадают
+ * в ZIP в порядке завершения, не дожидаясь остальных.
+ *
+ * Места в пуле и очереди занимаются в start() сразу для всех разделов архива: если их нет,
+ * запрос отклоняется RejectedExecutionException до начала ответа (503), а не обрывает
+ * уже начатую выгрузку. Архив - полная выгрузка разделов: фильтры экспортов
+ * администратора (статус, поиск, email, период) к нему не применяются.
+ */
+@Service
+public class ExportBundleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportBundleService.class);
+
+    /**
+     * Разделы архива
+     */
+    public enum Section {
+        CARDS("cards.csv"),
+        TRANSFERS("transfers.csv"),
+        USERS("users.csv"),
+        AUDIT("audit-logs.csv");
+
+        private final String fileName;
+
+        Section(String fileName) {
+            this.fileName = fileName;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+    }
+
+    private final ExportService exportService;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ThreadPoolExecutor executor;
+    // Разделы в работе и в очереди; пока место есть, пул не отклоняет задачи
+    private final Semaphore capacity;
+
+    @Autowired
+    public ExportBundleService(ExportService exportService,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${export.bundle.threads:4}") int threads,
+                               @Value("${export.bundle.queue-capacity:16}") int queueCapacity) {
+        this.exportService = exportService;
+        if (threads + queueCapacity < Section.values().length) {
+            throw new IllegalArgumentException("export.bundle: threads + queue-capacity должно вмещать все разделы архива");
+        }
+
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "export-bundle-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.capacity = new Semaphore(threads + queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Разбирает список разделов из параметра запроса; пустой список означает все разделы
+     */
+    public static Set<Section> parseSections(List<String> names) {
+        if (names == null || names.isEmpty()) {
+            return EnumSet.allOf(Section.class);
+        }
+
+        Set<Section> sections = EnumSet.noneOf(Section.class);
+        for (String name : names) {
+            for (String part : name.split(",")) {
+                String value = part.trim();
+                if (value.isEmpty()) {
+                    continue;
+                }
+                try {
+                    sections.add(Section.valueOf(value.toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    throw new ValidationException("Неизвестный раздел экспорта: " + value);
+                }
+            }
+        }
+
+        if (sections.isEmpty()) {
+            return EnumSet.allOf(Section.class);
+        }
+        return sections;
+    }
+
+    /**
+     * Формирует разделы параллельно и записывает их в ZIP по мере готовности
+     */
+    public void writeBundle(Set<Section> sections, OutputStream out) throws IOException {
+        start(sections).writeTo(out);
+    }
+
+    /**
+     * Ставит разделы в очередь на формирование
+     * @throws RejectedExecutionException если в пуле нет места для всех разделов
+     */
+    public Bundle start(Set<Section> sections) {
+        if (!capacity.tryAcquire(sections.size())) {
+            throw new RejectedExecutionException("Очередь формирования архивов заполнена");
+        }
+
+        Bundle bundle = new Bundle(sections.size());
+        for (Section section : sections) {
+            bundle.futures.add(bundle.completion.submit(() -> {
+                try {
+                    return render(section, bundle.tempFiles);
+                } finally {
+                    capacity.release();
+                }
+            }));
+        }
+        return bundle;
+    }
+
+    /**
+     * Архив, разделы которого уже формируются
+     */
+    public final class Bundle {
+        private final List<Path> tempFiles = new CopyOnWriteArrayList<>();
+        private final ExecutorCompletionService<RenderedSection> completion = new ExecutorCompletionService<>(executor);
+        private final List<Future<RenderedSection>> futures = new ArrayList<>();
+        private final long startTime = System.currentTimeMillis();
+        private final int sectionCount;
+
+        private Bundle(int sectionCount) {
+            this.sectionCount = sectionCount;
+        }
+
+        /**
+         * Записывает разделы в ZIP по мере готовности и удаляет временные файлы
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            try {
+                ZipOutputStream zip = new ZipOutputStream(out);
+                for (int i = 0; i < futures.size(); i++) {
+                    RenderedSection rendered = completion.take().get();
+
+                    zip.putNextEntry(new ZipEntry(rendered.section().getFileName()));
+                    Files.copy(rendered.file(), zip);
+                    zip.closeEntry();
+                    zip.flush();
+
+                    Files.deleteIfExists(rendered.file());
+                    logger.debug("Раздел {} добавлен в архив: {} строк за {} мс",
+                            rendered.section(), rendered.rows(), rendered.durationMillis());
+                }
+                zip.finish();
+
+                logger.info("Архив экспорта из {} разделов сформирован за {} мс",
+                        sectionCount, System.currentTimeMillis() - startTime);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Формирование архива прервано", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                throw new IOException("Ошибка при формировании раздела архива: " + cause.getMessage(), cause);
+            } finally {
+                for (Future<RenderedSection> future : futures) {
+                    future.cancel(true);
+                }
+                for (Path file : tempFiles) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Формирует один раздел во временный файл в отдельной read-only транзакции
+     */
+    private RenderedSection render(Section section, List<Path> tempFiles) throws IOException {
+        Path file = Files.createTempFile("export-" + section.name().toLowerCase(Locale.ROOT) + "-", ".csv");
+        tempFiles.add(file);
+        long startTime = System.currentTimeMillis();
+
+        Long rows = readOnlyTransaction.execute(status -> {
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                return writeSection(section, writer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return new RenderedSection(section, file, rows != null ? rows : 0, System.currentTimeMillis() - startTime);
+    }
+
+    private long writeSection(Section section, Writer writer) throws IOException {
+        switch (section) {
+            case CARDS:
+                return exportService.writeAllCardsCSV(writer);
+            case TRANSFERS:
+                return exportService.writeAllTransfersCSV(writer);
+            case USERS:
+                return exportService.writeAllUsersCSV(writer);
+            case AUDIT:
+                return exportService.writeAllAuditLogsCSV(writer);
+            default:
+                throw new IllegalArgumentException("Неизвестный раздел: " + section);
+        }
+    }
+
+    private record RenderedSection(Section section, Path file, long rows, long durationMillis) {
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.bankcards.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Дисковый кеш результатов экспорта.
+ *
+ * Ключ кеша - хеш от типа экспорта, формата, нормализованных фильтров и версий
+ * таблиц, от которых зависит отчет. Пока данные не менялись, повторная выгрузка
+ * отдается из файла без обращения к БД. Общий размер файлов ограничен,
+ * при переполнении удаляются давно не запрашиваемые записи (LRU).
+ */
+@Service
+public class ExportCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportCacheService.class);
+    private static final String FILE_SUFFIX = ".export";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Формирует содержимое экспорта при промахе кеша
+     */
+    @FunctionalInterface
+    public interface ExportSupplier {
+        byte[] get() throws IOException;
+    }
+
+    private final DataVersionService dataVersionService;
+    private final Path directory;
+    private final long maxSizeBytes;
+
+    // Порядок доступа: первым идет давно не использованный элемент
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public ExportCacheService(DataVersionService dataVersionService,
+                              @Value("${export.cache.directory:${java.io.tmpdir}/bankcards-export-cache}") String directory,
+                              @Value("${export.cache.max-size-bytes:104857600}") long maxSizeBytes) throws IOException {
+        this.dataVersionService = dataVersionService;
+        this.directory = Paths.get(directory);
+        this.maxSizeBytes = maxSizeBytes;
+
+        Files.createDirectories(this.directory);
+        clearDirectory();
+    }
+
+    /**
+     * Собирает фильтры из пар ключ-значение: пустые значения отбрасываются,
+     * остальные обрезаются по краям и сортируются по ключу
+     */
+    public static Map<String, String> filters(String... keyValues) {
+        Map<String, String> result = new TreeMap<>();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            String value = normalize(keyValues[i + 1]);
+            if (value != null) {
+                result.put(keyValues[i], value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Нормализует значение фильтра: null для пустых строк, иначе обрезанная строка
+     */
+    public static String normalize(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return value.trim();
+    }
+
+    /**
+     * Строит ключ кеша (он же ETag) для экспорта
+     */
+    public String buildKey(String exportType, String format, Map<String, String> filters,
+                           DataVersionService.Table... dependsOn) {
+        StringBuilder canonical = new StringBuilder()
+                .append(exportType).append('|')
+                .append(format).append('|')
+                .append(dataVersionService.describeVersions(dependsOn));
+
+        for (Map.Entry<String, String> filter : new TreeMap<>(filters).entrySet()) {
+            canonical.append('|').append(filter.getKey()).append('=').append(filter.getValue());
+        }
+
+        return sha256(canonical.toString());
+    }
+
+    /**
+     * Проверяет заголовок If-None-Match на совпадение с ключом
+     */
+    public boolean matchesETag(String ifNoneMatch, String key) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+
+        String quotedKey = "\"" + key + "\"";
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (quotedKey.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает экспорт из кеша или формирует и сохраняет его
+     */
+    public byte[] getOrCompute(String key, ExportSupplier supplier) throws IOException {
+        byte[] cached = read(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        misses.incrementAndGet();
+        byte[] content = supplier.get();
+        store(key, content);
+        return content;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private byte[] read(String key) {
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                return null;
+            }
+        }
+
+        try {
+            return Files.readAllBytes(fileFor(key));
+        } catch (IOException e) {
+            // Файл могли вытеснить параллельно - считаем это промахом
+            synchronized (this) {
+                Long size = entries.remove(key);
+                if (size != null) {
+                    totalSize -= size;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void store(String key, byte[] content) {
+        if (content.length > maxSizeBytes) {
+            return;
+        }
+
+        Path target = fileFor(key);
+        try {
+            Path temp = Files.createTempFile(directory, key, TEMP_SUFFIX);
+            Files.write(temp, content);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Не удалось сохранить экспорт в кеш: {}", e.getMessage());
+            return;
+        }
+
+        synchronized (this) {
+            Long previous = entries.put(key, (long) content.length);
+            if (previous != null) {
+                totalSize -= previous;
+            }
+            totalSize += content.length;
+            evictIfNeeded();
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalSize > maxSizeBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalSize -= eldest.getValue();
+            try {
+                Files.deleteIfExists(fileFor(eldest.getKey()));
+            } catch (IOException e) {
+                logger.warn("Не удалось удалить файл кеша экспорта: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Удаляет файлы прошлого запуска, в том числе временные файлы записи, прерванной остановкой узла
+     */
+    private void clearDirectory() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*{" + FILE_SUFFIX + "," + TEMP_SUFFIX + "}")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key + FILE_SUFFIX);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
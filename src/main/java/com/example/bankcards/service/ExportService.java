@@ -1,14 +1,18 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ShardRouter;
 import com.example.bankcards.dto.TransferResponse;
 import com.example.bankcards.dto.BankCardDto;
 import com.example.bankcards.entity.AuditLog;
 import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Transfer;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.AuditLogRepository;
 import com.example.bankcards.repository.BankCardRepository;
 import com.example.bankcards.repository.TransferRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.BinaryExportWriter;
+import com.example.bankcards.util.BinaryExportWriter.ColumnType;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfWriter;
 import com.itextpdf.layout.Document;
@@ -17,24 +21,47 @@ import com.itextpdf.layout.element.Table;
 import com.itextpdf.layout.element.Cell;
 import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
- * Сервис для экспорта данных в различные форматы
+ * Сервис для экспорта данных в различные форматы.
+ *
+ * При шардировании карты и переводы читаются из всех шардов: страницы администратора
+ * собираются через ShardRouter.findPage, потоковые выгрузки проходят шарды по очереди
+ * (строки идут по id внутри шарда). Пользователи и аудит лежат в шарде 0.
  */
 @Service
 public class ExportService {
@@ -60,21 +87,42 @@ public class ExportService {
     @Autowired
     private AuditLogRepository auditLogRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Без database.shards.enabled бина нет и все выполняется в текущей транзакции
+    @Autowired(required = false)
+    private ShardRouter shardRouter = ShardRouter.SINGLE;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
 
+    // Через сколько строк потоковой выгрузки очищать контекст персистентности
+    private static final int STREAM_CLEAR_INTERVAL = 500;
+
+    // Метрики выгрузок; теги dataset, format и scope (user, admin, stream) принимают только фиксированные значения
+    public static final String EXPORT_TIMER = "bankcards.export";
+    public static final String EXPORT_ROWS = "bankcards.export.rows";
+    public static final String EXPORT_BYTES = "bankcards.export.bytes";
+
     /**
      * Экспорт истории переводов в CSV
      */
     public String exportTransfersToCSV(User user) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         StringWriter writer = new StringWriter();
         CSVFormat csvFormat = CSVFormat.DEFAULT.builder()
                 .setHeader("Дата", "От карты", "На карту", "Сумма (₽)", "Описание", "Статус")
                 .build();
 
+        long rows;
         try (CSVPrinter csvPrinter = new CSVPrinter(writer, csvFormat)) {
             // Получаем все переводы пользователя (большой размер страницы)
             Pageable pageable = PageRequest.of(0, 1000);
             Page<TransferResponse> transfers = transferService.getTransferHistory(user, pageable);
+            rows = transfers.getContent().size();
 
             for (TransferResponse transfer : transfers.getContent()) {
                 csvPrinter.printRecord(
@@ -91,22 +139,27 @@ public class ExportService {
             auditService.logDataExport(user, "Переводы", "CSV");
         }
 
-        return writer.toString();
+        String content = writer.toString();
+        recordExport(sample, "transfers", "csv", "user", rows, utf8Length(content));
+        return content;
     }
 
     /**
      * Экспорт списка карт в CSV
      */
     public String exportCardsToCSV(User user) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         StringWriter writer = new StringWriter();
         CSVFormat csvFormat = CSVFormat.DEFAULT.builder()
                 .setHeader("Номер карты", "Баланс (₽)", "Статус", "Срок действия", "Дата создания")
                 .build();
 
+        long rows;
         try (CSVPrinter csvPrinter = new CSVPrinter(writer, csvFormat)) {
             // Получаем все карты пользователя
             Pageable pageable = PageRequest.of(0, 100);
             Page<BankCardDto> cards = bankCardService.findByOwner(user, pageable);
+            rows = cards.getContent().size();
 
             for (BankCardDto card : cards.getContent()) {
                 csvPrinter.printRecord(
@@ -122,13 +175,16 @@ public class ExportService {
             auditService.logDataExport(user, "Карты", "CSV");
         }
 
-        return writer.toString();
+        String content = writer.toString();
+        recordExport(sample, "cards", "csv", "user", rows, utf8Length(content));
+        return content;
     }
 
     /**
      * Экспорт истории переводов в PDF
      */
     public byte[] exportTransfersToPDF(User user) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         PdfWriter writer = new PdfWriter(baos);
         PdfDocument pdf = new PdfDocument(writer);
@@ -189,13 +245,16 @@ public class ExportService {
         // Логируем экспорт данных
         auditService.logDataExport(user, "Переводы", "PDF");
         
-        return baos.toByteArray();
+        byte[] content = baos.toByteArray();
+        recordExport(sample, "transfers", "pdf", "user", transfers.getContent().size(), content.length);
+        return content;
     }
 
     /**
      * Экспорт списка карт в PDF
      */
     public byte[] exportCardsToPDF(User user) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         PdfWriter writer = new PdfWriter(baos);
         PdfDocument pdf = new PdfDocument(writer);
@@ -254,7 +313,9 @@ public class ExportService {
         // Логируем экспорт данных
         auditService.logDataExport(user, "Карты", "PDF");
         
-        return baos.toByteArray();
+        byte[] content = baos.toByteArray();
+        recordExport(sample, "cards", "pdf", "user", cards.getContent().size(), content.length);
+        return content;
     }
 
     // ============= МЕТОДЫ ЭКСПОРТА ДЛЯ АДМИНИСТРАТОРОВ =============
@@ -263,15 +324,18 @@ public class ExportService {
      * Экспорт карт в CSV для администратора с фильтрами
      */
     public byte[] exportCardsToCSVForAdmin(String status, String search, String ownerEmail) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         StringWriter writer = new StringWriter();
         CSVFormat csvFormat = CSVFormat.DEFAULT.builder()
                 .setHeader("Номер карты", "Владелец", "Email владельца", "Баланс (₽)", "Статус", "Срок действия", "Дата создания")
                 .build();
 
+        long rows;
         try (CSVPrinter csvPrinter = new CSVPrinter(writer, csvFormat)) {
             // Получаем карты с фильтрами
             Pageable pageable = PageRequest.of(0, 10000); // Большой размер для экспорта всех данных
             Page<BankCard> cards = getFilteredCards(status, search, ownerEmail, pageable);
+            rows = cards.getContent().size();
 
             for (BankCard card : cards.getContent()) {
                 csvPrinter.printRecord(
@@ -286,13 +350,16 @@ public class ExportService {
             }
         }
 
-        return writer.toString().getBytes();
+        byte[] content = writer.toString().getBytes();
+        recordExport(sample, "cards", "csv", "admin", rows, content.length);
+        return content;
     }
 
     /**
      * Экспорт карт в PDF для администратора с фильтрами
      */
     public byte[] exportCardsToPDFForAdmin(String status, String search, String ownerEmail) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         PdfWriter pdfWriter = new PdfWriter(baos);
         PdfDocument pdf = new PdfDocument(pdfWriter);
@@ -357,21 +424,26 @@ public class ExportService {
         }
 
         document.close();
-        return baos.toByteArray();
+        byte[] content = baos.toByteArray();
+        recordExport(sample, "cards", "pdf", "admin", cards.getContent().size(), content.length);
+        return content;
     }
 
     /**
      * Экспорт переводов в CSV для администратора с фильтрами
      */
     public byte[] exportTransfersToCSVForAdmin(String userEmail, String fromDate, String toDate) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         StringWriter writer = new StringWriter();
         CSVFormat csvFormat = CSVFormat.DEFAULT.builder()
                 .setHeader("Дата", "Пользователь", "Email", "С карты", "На карту", "Сумма (₽)", "Описание", "Статус")
                 .build();
 
+        long rows;
         try (CSVPrinter csvPrinter = new CSVPrinter(writer, csvFormat)) {
             // Получаем переводы с фильтрами
             List<TransferResponse> transfers = getFilteredTransfers(userEmail, fromDate, toDate);
+            rows = transfers.size();
 
             for (TransferResponse transfer : transfers) {
                 // Получаем информацию о пользователе (нужно добавить в TransferResponse)
@@ -388,13 +460,16 @@ public class ExportService {
             }
         }
 
-        return writer.toString().getBytes();
+        byte[] content = writer.toString().getBytes();
+        recordExport(sample, "transfers", "csv", "admin", rows, content.length);
+        return content;
     }
 
     /**
      * Экспорт переводов в PDF для администратора с фильтрами
      */
     public byte[] exportTransfersToPDFForAdmin(String userEmail, String fromDate, String toDate) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         PdfWriter pdfWriter = new PdfWriter(baos);
         PdfDocument pdf = new PdfDocument(pdfWriter);
@@ -448,23 +523,28 @@ public class ExportService {
         }
 
         document.close();
-        return baos.toByteArray();
+        byte[] content = baos.toByteArray();
+        recordExport(sample, "transfers", "pdf", "admin", transfers.size(), content.length);
+        return content;
     }
 
     /**
      * Экспорт пользователей в CSV
      */
     public byte[] exportUsersToCSV(String role, String search) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         StringWriter writer = new StringWriter();
         CSVFormat csvFormat = CSVFormat.DEFAULT.builder()
                 .setHeader("Email", "Имя", "Фамилия", "Роль", "Дата рождения", "Дата регистрации", "Количество карт")
                 .build();
 
+        long rows;
         try (CSVPrinter csvPrinter = new CSVPrinter(writer, csvFormat)) {
             List<User> users = getFilteredUsers(role, search);
+            rows = users.size();
 
             for (User user : users) {
-                long cardCount = bankCardRepository.countByOwner(user);
+                long cardCount = countCards(user);
                 csvPrinter.printRecord(
                         user.getEmail(),
                         user.getFirstName(),
@@ -477,13 +557,16 @@ public class ExportService {
             }
         }
 
-        return writer.toString().getBytes();
+        byte[] content = writer.toString().getBytes();
+        recordExport(sample, "users", "csv", "admin", rows, content.length);
+        return content;
     }
 
     /**
      * Экспорт пользователей в PDF
      */
     public byte[] exportUsersToPDF(String role, String search) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         PdfWriter pdfWriter = new PdfWriter(baos);
         PdfDocument pdf = new PdfDocument(pdfWriter);
@@ -523,7 +606,7 @@ public class ExportService {
 
             // Данные
             for (User user : users) {
-                long cardCount = bankCardRepository.countByOwner(user);
+                long cardCount = countCards(user);
                 table.addCell(new Cell().add(new Paragraph(user.getEmail())));
                 table.addCell(new Cell().add(new Paragraph(user.getFirstName())));
                 table.addCell(new Cell().add(new Paragraph(user.getLastName())));
@@ -537,21 +620,26 @@ public class ExportService {
         }
 
         document.close();
-        return baos.toByteArray();
+        byte[] content = baos.toByteArray();
+        recordExport(sample, "users", "pdf", "admin", users.size(), content.length);
+        return content;
     }
 
     /**
      * Экспорт аудит-логов в CSV
      */
     public byte[] exportAuditLogsToCSV(String action, String status, String userEmail) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         StringWriter writer = new StringWriter();
         CSVFormat csvFormat = CSVFormat.DEFAULT.builder()
                 .setHeader("Дата", "Пользователь", "Email", "Действие", "Описание", "IP адрес", "Статус", "Ошибка")
                 .build();
 
+        long rows;
         try (CSVPrinter csvPrinter = new CSVPrinter(writer, csvFormat)) {
             Pageable pageable = PageRequest.of(0, 10000);
             Page<AuditLog> auditLogs = auditLogRepository.findWithFilters(action, status, userEmail, pageable);
+            rows = auditLogs.getContent().size();
 
             for (AuditLog log : auditLogs.getContent()) {
                 csvPrinter.printRecord(
@@ -567,13 +655,16 @@ public class ExportService {
             }
         }
 
-        return writer.toString().getBytes();
+        byte[] content = writer.toString().getBytes();
+        recordExport(sample, "audit_logs", "csv", "admin", rows, content.length);
+        return content;
     }
 
     /**
      * Экспорт аудит-логов в PDF
      */
     public byte[] exportAuditLogsToPDF(String action, String status, String userEmail) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         PdfWriter pdfWriter = new PdfWriter(baos);
         PdfDocument pdf = new PdfDocument(pdfWriter);
@@ -627,11 +718,427 @@ public class ExportService {
         }
 
         document.close();
-        return baos.toByteArray();
+        byte[] content = baos.toByteArray();
+        recordExport(sample, "audit_logs", "pdf", "admin", auditLogs.getContent().size(), content.length);
+        return content;
+    }
+
+    // ============= ПОТОКОВЫЕ ВЫГРУЗКИ ДЛЯ АРХИВА =============
+    // Методы читают данные курсором и должны вызываться внутри транзакции.
+    // Writer не закрывается - за это отвечает вызывающий код.
+
+    /**
+     * Потоковая выгрузка всех карт в CSV
+     * @return количество выгруженных строк
+     */
+    public long writeAllCardsCSV(Writer out) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CountingWriter counted = new CountingWriter(out);
+        CSVPrinter csvPrinter = new CSVPrinter(counted, CSVFormat.DEFAULT.builder()
+                .setHeader("Номер карты", "Владелец", "Email владельца", "Баланс (₽)", "Статус", "Срок действия", "Дата создания")
+                .build());
+        DateTimeFormatter expiryFormatter = DateTimeFormatter.ofPattern("MM/yy");
+
+        long rows = inEachShard(() -> {
+            long written = 0;
+            try (Stream<BankCard> cards = bankCardRepository.streamAllForExport()) {
+                for (BankCard card : (Iterable<BankCard>) cards::iterator) {
+                    csvPrinter.printRecord(
+                            card.getMaskedNumber(),
+                            card.getOwner().getFirstName() + " " + card.getOwner().getLastName(),
+                            card.getOwner().getEmail(),
+                            String.format("%.2f", card.getBalance()),
+                            card.getStatus().toString(),
+                            card.getExpiryDate().format(expiryFormatter),
+                            card.getCreatedAt().format(DATE_FORMATTER)
+                    );
+                    clearPeriodically(++written);
+                }
+            }
+            return written;
+        });
+
+        csvPrinter.flush();
+        recordExport(sample, "cards", "csv", "stream", rows, counted.getCount());
+        return rows;
+    }
+
+    /**
+     * Потоковая выгрузка всех переводов в CSV
+     * @return количество выгруженных строк
+     */
+    public long writeAllTransfersCSV(Writer out) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CountingWriter counted = new CountingWriter(out);
+        CSVPrinter csvPrinter = new CSVPrinter(counted, CSVFormat.DEFAULT.builder()
+                .setHeader("Дата", "Пользователь", "Email", "С карты", "На карту", "Сумма (₽)", "Описание", "Статус")
+                .build());
+
+        long rows = inEachShard(() -> {
+            long written = 0;
+            try (Stream<Transfer> transfers = transferRepository.streamAllForExport()) {
+                for (Transfer transfer : (Iterable<Transfer>) transfers::iterator) {
+                    User owner = transfer.getFromCard().getOwner();
+                    csvPrinter.printRecord(
+                            transfer.getCreatedAt().format(DATE_FORMATTER),
+                            owner.getFirstName() + " " + owner.getLastName(),
+                            owner.getEmail(),
+                            transfer.getFromCard().getMaskedNumber(),
+                            transfer.getToCard().getMaskedNumber(),
+                            String.format("%.2f", transfer.getAmount()),
+                            transfer.getDescription(),
+                            transfer.getStatus().name()
+                    );
+                    clearPeriodically(++written);
+                }
+            }
+            return written;
+        });
+
+        csvPrinter.flush();
+        recordExport(sample, "transfers", "csv", "stream", rows, counted.getCount());
+        return rows;
+    }
+
+    /**
+     * Потоковая выгрузка всех пользователей в CSV
+     * @return количество выгруженных строк
+     */
+    public long writeAllUsersCSV(Writer out) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CountingWriter counted = new CountingWriter(out);
+        CSVPrinter csvPrinter = new CSVPrinter(counted, CSVFormat.DEFAULT.builder()
+                .setHeader("Email", "Имя", "Фамилия", "Роль", "Дата рождения", "Дата регистрации", "Количество карт")
+                .build());
+
+        Map<Long, Long> cardCounts = loadCardCounts();
+        long rows = 0;
+
+        try (Stream<User> users = userRepository.streamAllForExport()) {
+            for (User user : (Iterable<User>) users::iterator) {
+                csvPrinter.printRecord(
+                        user.getEmail(),
+                        user.getFirstName(),
+                        user.getLastName(),
+                        user.getRole().toString(),
+                        user.getDateOfBirth() != null ? user.getDateOfBirth() : "Не указана",
+                        user.getCreatedAt() != null ? user.getCreatedAt().format(DATE_FORMATTER) : "",
+                        cardCounts.getOrDefault(user.getId(), 0L)
+                );
+                clearPeriodically(++rows);
+            }
+        }
+
+        csvPrinter.flush();
+        recordExport(sample, "users", "csv", "stream", rows, counted.getCount());
+        return rows;
+    }
+
+    /**
+     * Потоковая выгрузка всех аудит-логов в CSV
+     * @return количество выгруженных строк
+     */
+    public long writeAllAuditLogsCSV(Writer out) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CountingWriter counted = new CountingWriter(out);
+        CSVPrinter csvPrinter = new CSVPrinter(counted, CSVFormat.DEFAULT.builder()
+                .setHeader("Дата", "Пользователь", "Email", "Действие", "Описание", "IP адрес", "Статус", "Ошибка")
+                .build());
+        long rows = 0;
+
+        try (Stream<AuditLog> auditLogs = auditLogRepository.streamAllForExport()) {
+            for (AuditLog log : (Iterable<AuditLog>) auditLogs::iterator) {
+                csvPrinter.printRecord(
+                        log.getCreatedAt().format(DATE_FORMATTER),
+                        log.getUser() != null ? log.getUser().getFirstName() + " " + log.getUser().getLastName() : "Система",
+                        log.getUser() != null ? log.getUser().getEmail() : "N/A",
+                        log.getAction(),
+                        log.getDescription(),
+                        log.getIpAddress() != null ? log.getIpAddress() : "N/A",
+                        log.getStatus(),
+                        log.getErrorMessage() != null ? log.getErrorMessage() : ""
+                );
+                clearPeriodically(++rows);
+            }
+        }
+
+        csvPrinter.flush();
+        recordExport(sample, "audit_logs", "csv", "stream", rows, counted.getCount());
+        return rows;
+    }
+
+    // ============= БИНАРНЫЕ ВЫГРУЗКИ =============
+    // Формат описан в BinaryExportWriter. Суммы пишутся в копейках, даты - в epoch millis,
+    // поэтому потребителю не нужно разбирать строки. OutputStream не закрывается.
+
+    /**
+     * Бинарная выгрузка всех карт
+     * @return количество выгруженных строк
+     */
+    @Transactional(readOnly = true)
+    public long writeAllCardsBinary(OutputStream out, boolean deflate) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CountingOutputStream counted = new CountingOutputStream(out);
+        BinaryExportWriter writer = new BinaryExportWriter(counted, deflate, ZoneId.systemDefault(),
+                BinaryExportWriter.column("id", ColumnType.INT64),
+                BinaryExportWriter.column("masked_number", ColumnType.STRING),
+                BinaryExportWriter.column("owner_id", ColumnType.INT64),
+                BinaryExportWriter.column("owner_email", ColumnType.STRING),
+                BinaryExportWriter.column("balance", ColumnType.AMOUNT),
+                BinaryExportWriter.column("status", ColumnType.STRING),
+                BinaryExportWriter.column("expiry_date", ColumnType.DATE),
+                BinaryExportWriter.column("created_at", ColumnType.TIMESTAMP));
+
+        inEachShard(() -> {
+            try (Stream<BankCard> cards = bankCardRepository.streamAllForExport()) {
+                for (BankCard card : (Iterable<BankCard>) cards::iterator) {
+                    writer.beginRow();
+                    writer.writeLong(card.getId());
+                    writer.writeString(card.getMaskedNumber());
+                    writer.writeLong(card.getOwner().getId());
+                    writer.writeString(card.getOwner().getEmail());
+                    writer.writeAmount(card.getBalance());
+                    writer.writeString(card.getStatus().name());
+                    writer.writeDate(card.getExpiryDate());
+                    writer.writeTimestamp(card.getCreatedAt());
+                    writer.endRow();
+                    clearPeriodically(writer.getRowCount());
+                }
+            }
+            return writer.getRowCount();
+        });
+
+        writer.finish();
+        recordExport(sample, "cards", "binary", "stream", writer.getRowCount(), counted.getCount());
+        return writer.getRowCount();
+    }
+
+    /**
+     * Бинарная выгрузка всех переводов
+     * @return количество выгруженных строк
+     */
+    @Transactional(readOnly = true)
+    public long writeAllTransfersBinary(OutputStream out, boolean deflate) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CountingOutputStream counted = new CountingOutputStream(out);
+        BinaryExportWriter writer = new BinaryExportWriter(counted, deflate, ZoneId.systemDefault(),
+                BinaryExportWriter.column("id", ColumnType.INT64),
+                BinaryExportWriter.column("created_at", ColumnType.TIMESTAMP),
+                BinaryExportWriter.column("processed_at", ColumnType.TIMESTAMP),
+                BinaryExportWriter.column("owner_email", ColumnType.STRING),
+                BinaryExportWriter.column("from_card_id", ColumnType.INT64),
+                BinaryExportWriter.column("from_card_masked", ColumnType.STRING),
+                BinaryExportWriter.column("to_card_id", ColumnType.INT64),
+                BinaryExportWriter.column("to_card_masked", ColumnType.STRING),
+                BinaryExportWriter.column("amount", ColumnType.AMOUNT),
+                BinaryExportWriter.column("description", ColumnType.STRING),
+                BinaryExportWriter.column("status", ColumnType.STRING));
+
+        inEachShard(() -> {
+            try (Stream<Transfer> transfers = transferRepository.streamAllForExport()) {
+                for (Transfer transfer : (Iterable<Transfer>) transfers::iterator) {
+                    writer.beginRow();
+                    writer.writeLong(transfer.getId());
+                    writer.writeTimestamp(transfer.getCreatedAt());
+                    writer.writeTimestamp(transfer.getProcessedAt());
+                    writer.writeString(transfer.getFromCard().getOwner().getEmail());
+                    writer.writeLong(transfer.getFromCard().getId());
+                    writer.writeString(transfer.getFromCard().getMaskedNumber());
+                    writer.writeLong(transfer.getToCard().getId());
+                    writer.writeString(transfer.getToCard().getMaskedNumber());
+                    writer.writeAmount(transfer.getAmount());
+                    writer.writeString(transfer.getDescription());
+                    writer.writeString(transfer.getStatus().name());
+                    writer.endRow();
+                    clearPeriodically(writer.getRowCount());
+                }
+            }
+            return writer.getRowCount();
+        });
+
+        writer.finish();
+        recordExport(sample, "transfers", "binary", "stream", writer.getRowCount(), counted.getCount());
+        return writer.getRowCount();
+    }
+
+    /**
+     * Бинарная выгрузка всех пользователей
+     * @return количество выгруженных строк
+     */
+    @Transactional(readOnly = true)
+    public long writeAllUsersBinary(OutputStream out, boolean deflate) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CountingOutputStream counted = new CountingOutputStream(out);
+        BinaryExportWriter writer = new BinaryExportWriter(counted, deflate, ZoneId.systemDefault(),
+                BinaryExportWriter.column("id", ColumnType.INT64),
+                BinaryExportWriter.column("email", ColumnType.STRING),
+                BinaryExportWriter.column("first_name", ColumnType.STRING),
+                BinaryExportWriter.column("last_name", ColumnType.STRING),
+                BinaryExportWriter.column("role", ColumnType.STRING),
+                BinaryExportWriter.column("date_of_birth", ColumnType.STRING),
+                BinaryExportWriter.column("created_at", ColumnType.TIMESTAMP),
+                BinaryExportWriter.column("card_count", ColumnType.INT64));
+
+        Map<Long, Long> cardCounts = loadCardCounts();
+
+        try (Stream<User> users = userRepository.streamAllForExport()) {
+            for (User user : (Iterable<User>) users::iterator) {
+                Long cardCount = cardCounts.get(user.getId());
+                writer.beginRow();
+                writer.writeLong(user.getId());
+                writer.writeString(user.getEmail());
+                writer.writeString(user.getFirstName());
+                writer.writeString(user.getLastName());
+                writer.writeString(user.getRole().name());
+                writer.writeString(user.getDateOfBirth());
+                writer.writeTimestamp(user.getCreatedAt());
+                writer.writeLong(cardCount != null ? cardCount : 0L);
+                writer.endRow();
+                clearPeriodically(writer.getRowCount());
+            }
+        }
+
+        writer.finish();
+        recordExport(sample, "users", "binary", "stream", writer.getRowCount(), counted.getCount());
+        return writer.getRowCount();
+    }
+
+    /**
+     * Бинарная выгрузка всех аудит-логов
+     * @return количество выгруженных строк
+     */
+    @Transactional(readOnly = true)
+    public long writeAllAuditLogsBinary(OutputStream out, boolean deflate) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CountingOutputStream counted = new CountingOutputStream(out);
+        BinaryExportWriter writer = new BinaryExportWriter(counted, deflate, ZoneId.systemDefault(),
+                BinaryExportWriter.column("id", ColumnType.INT64),
+                BinaryExportWriter.column("created_at", ColumnType.TIMESTAMP),
+                BinaryExportWriter.column("user_id", ColumnType.INT64),
+                BinaryExportWriter.column("user_email", ColumnType.STRING),
+                BinaryExportWriter.column("action", ColumnType.STRING),
+                BinaryExportWriter.column("entity_type", ColumnType.STRING),
+                BinaryExportWriter.column("entity_id", ColumnType.INT64),
+                BinaryExportWriter.column("description", ColumnType.STRING),
+                BinaryExportWriter.column("ip_address", ColumnType.STRING),
+                BinaryExportWriter.column("status", ColumnType.STRING),
+                BinaryExportWriter.column("error_message", ColumnType.STRING));
+
+        try (Stream<AuditLog> auditLogs = auditLogRepository.streamAllForExport()) {
+            for (AuditLog log : (Iterable<AuditLog>) auditLogs::iterator) {
+                User user = log.getUser();
+                writer.beginRow();
+                writer.writeLong(log.getId());
+                writer.writeTimestamp(log.getCreatedAt());
+                writer.writeLong(user != null ? user.getId() : null);
+                writer.writeString(user != null ? user.getEmail() : null);
+                writer.writeString(log.getAction());
+                writer.writeString(log.getEntityType());
+                writer.writeLong(log.getEntityId());
+                writer.writeString(log.getDescription());
+                writer.writeString(log.getIpAddress());
+                writer.writeString(log.getStatus());
+                writer.writeString(log.getErrorMessage());
+                writer.endRow();
+                clearPeriodically(writer.getRowCount());
+            }
+        }
+
+        writer.finish();
+        recordExport(sample, "audit_logs", "binary", "stream", writer.getRowCount(), counted.getCount());
+        return writer.getRowCount();
     }
 
     // ============= ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ =============
 
+    /**
+     * Записывает длительность, число строк и размер выгрузки
+     */
+    private void recordExport(Timer.Sample sample, String dataset, String format, String scope, long rows, long bytes) {
+        Tags tags = Tags.of("dataset", dataset, "format", format, "scope", scope);
+        sample.stop(meterRegistry.timer(EXPORT_TIMER, tags));
+        DistributionSummary.builder(EXPORT_ROWS).baseUnit("rows").tags(tags).register(meterRegistry).record(rows);
+        DistributionSummary.builder(EXPORT_BYTES).baseUnit(BaseUnits.BYTES).tags(tags).register(meterRegistry).record(bytes);
+    }
+
+    /**
+     * Размер строки в UTF-8 без копирования в массив байт
+     */
+    private static long utf8Length(CharSequence text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            bytes += utf8Length(text.charAt(i));
+        }
+        return bytes;
+    }
+
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        }
+        // Суррогатная пара занимает 4 байта, по 2 на каждую половину
+        if (c < 0x800 || Character.isSurrogate(c)) {
+            return 2;
+        }
+        return 3;
+    }
+
+    /**
+     * Количество карт по владельцам одним запросом на шард вместо countByOwner на каждую строку
+     */
+    private Map<Long, Long> loadCardCounts() {
+        Map<Long, Long> cardCounts = new HashMap<>();
+        for (List<Object[]> rows : shardRouter.inEachShard(shard -> bankCardRepository.countCardsGroupedByOwner())) {
+            for (Object[] row : rows) {
+                cardCounts.merge((Long) row[0], (Long) row[1], Long::sum);
+            }
+        }
+        return cardCounts;
+    }
+
+    /**
+     * Количество карт пользователя в его шарде
+     */
+    private long countCards(User user) {
+        return shardRouter.inShard(shardRouter.shardOfUser(user.getId()), () -> bankCardRepository.countByOwner(user));
+    }
+
+    /**
+     * Выполняет часть выгрузки в каждом шарде по очереди; без шардирования - один раз в текущей транзакции
+     * @return сумма результатов по шардам
+     */
+    private long inEachShard(ShardExport export) throws IOException {
+        try {
+            long total = 0;
+            for (Long rows : shardRouter.inEachShard(shard -> {
+                try {
+                    return export.write();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })) {
+                total += rows;
+            }
+            return total;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ShardExport {
+        long write() throws IOException;
+    }
+
+    /**
+     * Периодически отсоединяет прочитанные сущности, чтобы курсор не копил их в памяти
+     */
+    private void clearPeriodically(long rows) {
+        if (rows % STREAM_CLEAR_INTERVAL == 0) {
+            entityManager.clear();
+        }
+    }
+
     /**
      * Получает отфильтрованные карты
      */
@@ -645,7 +1152,20 @@ public class ExportService {
             }
         }
         
-        return bankCardRepository.findAllWithFilters(statusEnum, search, pageable);
+        // Страницы шардов объединяются по сортировке, поэтому без сортировки упорядочиваем по id
+        Pageable ordered = pageable;
+        if (shardRouter.isSharded() && pageable.getSort().isUnsorted()) {
+            ordered = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("id"));
+        }
+        BankCard.Status filterStatus = statusEnum;
+        // Владелец загружается в транзакции шарда: после нее ленивая связь уже недоступна
+        return shardRouter.findPage(ordered, ShardRouter.comparing(ordered.getSort()),
+                page -> bankCardRepository.findAllWithFilters(filterStatus, search, page).map(ExportService::withOwner));
+    }
+
+    private static BankCard withOwner(BankCard card) {
+        Hibernate.initialize(card.getOwner());
+        return card;
     }
 
     /**
@@ -680,4 +1200,80 @@ public class ExportService {
             return userRepository.findAll();
         }
     }
+
+    /**
+     * Считает байты, записанные в поток выгрузки (после сжатия, если оно включено)
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        // Поток принадлежит вызывающему коду и не закрывается
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Считает размер CSV в UTF-8 по символам, переданным в Writer выгрузки
+     */
+    private static class CountingWriter extends FilterWriter {
+
+        private long count;
+
+        CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count += utf8Length((char) c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            for (int i = off; i < off + len; i++) {
+                count += utf8Length(cbuf[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            count += utf8Length(str.subSequence(off, off + len));
+        }
+
+        // Writer принадлежит вызывающему коду и не закрывается
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
 }
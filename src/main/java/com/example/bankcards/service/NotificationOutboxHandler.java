@@ -0,0 +1,63 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Уведомления администраторам по событиям карт.
+ * Повторная доставка не создает дубликат: открытый запрос по той же карте объединяется с существующим,
+ * а отказ из-за другого ожидающего запроса считается обработанным событием - повтор его не изменит
+ */
+@Service
+public class NotificationOutboxHandler implements OutboxEventHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationOutboxHandler.class);
+    private static final String DUPLICATE_REQUEST = "DUPLICATE_REQUEST";
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private BankCardService bankCardService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Override
+    public Set<OutboxEvent.Type> getTypes() {
+        return EnumSet.of(OutboxEvent.Type.CARD_BLOCK_REQUESTED);
+    }
+
+    @Override
+    public void handle(OutboxEvent event, JsonNode payload) {
+        Long userId = payload.path(OutboxService.USER_ID).asLong();
+        Optional<User> user = userRepository.findById(userId);
+        Optional<BankCard> card = bankCardService.getCardEntityById(event.getAggregateId());
+        if (user.isEmpty() || card.isEmpty()) {
+            logger.warn("⚠️ Запрос на блокировку карты {} пропущен: карта или пользователь {} удалены",
+                    event.getAggregateId(), userId);
+            return;
+        }
+        try {
+            notificationService.createCardBlockRequest(user.get(), card.get(), payload.path("reason").asText());
+        } catch (BusinessException e) {
+            if (!DUPLICATE_REQUEST.equals(e.getErrorCode())) {
+                throw e;
+            }
+            logger.warn("⚠️ Запрос на блокировку карты {} пропущен: по карте уже ожидает другой запрос",
+                    event.getAggregateId());
+        }
+    }
+}
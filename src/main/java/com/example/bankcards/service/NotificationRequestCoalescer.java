@@ -0,0 +1,86 @@
+package com.example.bankcards.service;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Недавно созданные запросы пользователей к администраторам.
+ *
+ * Повторный запрос с тем же ключом и тем же содержимым в пределах короткого окна
+ * (двойной клик, повтор после таймаута) находит уже сохраненное уведомление по id
+ * вместо поиска по ключу. Хранятся только id и содержимое, а не сущности: вызывающий
+ * код загружает уведомление в своей транзакции. Записи живут в памяти процесса;
+ * после окна или на другом узле повтор распознается по ключу открытого запроса в БД.
+ */
+class NotificationRequestCoalescer {
+
+    private static final int CLEANUP_THRESHOLD = 10_000;
+
+    private final ConcurrentHashMap<String, Entry> recent = new ConcurrentHashMap<>();
+    private volatile long windowMillis;
+
+    NotificationRequestCoalescer(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Возвращает id уведомления, сохраненного в пределах окна с тем же содержимым, или null
+     */
+    Long find(String key, String message, Double amount, long now) {
+        Entry entry = recent.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (now - entry.createdAt > windowMillis) {
+            recent.remove(key, entry);
+            return null;
+        }
+        if (Objects.equals(entry.message, message) && Objects.equals(entry.amount, amount)) {
+            return entry.notificationId;
+        }
+        return null;
+    }
+
+    /**
+     * Запоминает сохраненное уведомление. Вызывается после коммита.
+     */
+    void remember(String key, Long notificationId, String message, Double amount, long now) {
+        if (windowMillis <= 0) {
+            return;
+        }
+        recent.put(key, new Entry(notificationId, message, amount, now));
+        if (recent.size() > CLEANUP_THRESHOLD) {
+            recent.values().removeIf(entry -> now - entry.createdAt > windowMillis);
+        }
+    }
+
+    /**
+     * Забывает уведомления, которые больше не ожидают обработки
+     */
+    void forget(Collection<Long> notificationIds) {
+        recent.values().removeIf(entry -> notificationIds.contains(entry.notificationId));
+    }
+
+    int size() {
+        return recent.size();
+    }
+
+    private static final class Entry {
+        private final Long notificationId;
+        private final String message;
+        private final Double amount;
+        private final long createdAt;
+
+        private Entry(Long notificationId, String message, Double amount, long createdAt) {
+            this.notificationId = notificationId;
+            this.message = message;
+            this.amount = amount;
+            this.createdAt = createdAt;
+        }
+    }
+}
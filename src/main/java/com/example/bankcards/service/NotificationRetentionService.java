@@ -0,0 +1,146 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.ShardRouter;
+import com.example.bankcards.repository.NotificationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Очистка старых уведомлений.
+ *
+ * Удаляются только обработанные и прочитанные уведомления старше заданного срока.
+ * Удаление идет пачками по возрастанию id, каждая пачка в своей короткой транзакции,
+ * между пачками делается пауза, чтобы не держать блокировки и не мешать основной нагрузке.
+ * При нескольких узлах плановую очистку выполняет один из них, под блокировкой планировщика.
+ */
+@Service
+public class NotificationRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationRetentionService.class);
+
+    public static final String PURGE_JOB = "notification-retention";
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationSearchIndex notificationSearchIndex;
+    private final SchedulerLockService schedulerLockService;
+    private final boolean enabled;
+    private final int retentionDays;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // При шардировании шарды очищаются по очереди, каждая пачка - в транзакции своего шарда
+    @Autowired(required = false)
+    private ShardRouter shardRouter = ShardRouter.SINGLE;
+
+    @Autowired
+    public NotificationRetentionService(NotificationRepository notificationRepository,
+                                        NotificationSearchIndex notificationSearchIndex,
+                                        SchedulerLockService schedulerLockService,
+                                        @Value("${notifications.retention.enabled:true}") boolean enabled,
+                                        @Value("${notifications.retention.days:90}") int retentionDays,
+                                        @Value("${notifications.retention.batch-size:1000}") int batchSize,
+                                        @Value("${notifications.retention.pause-ms:200}") long pauseMillis) {
+        this.notificationRepository = notificationRepository;
+        this.notificationSearchIndex = notificationSearchIndex;
+        this.schedulerLockService = schedulerLockService;
+        this.enabled = enabled;
+        this.retentionDays = retentionDays;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * Ежедневная очистка, по умолчанию в 04:00
+     */
+    @Scheduled(cron = "${notifications.retention.cron:0 0 4 * * ?}")
+    public void purgeScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+            Optional<Integer> deleted = schedulerLockService.runLocked(PURGE_JOB, () -> purgeOlderThan(cutoff));
+            if (deleted.isEmpty()) {
+                logger.info("ℹ️ Очистка уведомлений выполняется на другом узле");
+            }
+        } catch (Exception e) {
+            logger.error("❌ Ошибка при очистке старых уведомлений: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Удаляет обработанные и прочитанные уведомления, созданные раньше указанной даты
+     * @return количество удаленных уведомлений
+     */
+    public int purgeOlderThan(LocalDateTime cutoff) {
+        if (!running.compareAndSet(false, true)) {
+            logger.info("Очистка уведомлений уже выполняется, запуск пропущен");
+            return 0;
+        }
+
+        long startTime = System.currentTimeMillis();
+        int deleted = 0;
+        int batches = 0;
+        try {
+            boolean interrupted = false;
+            for (int shard = 0; shard < shardRouter.getShardCount() && !interrupted; shard++) {
+                int current = shard;
+                long afterId = 0;
+                while (true) {
+                    long from = afterId;
+                    List<Long> ids = shardRouter.inShard(current,
+                            () -> notificationRepository.findPurgeableIds(from, cutoff, PageRequest.of(0, batchSize)));
+                    if (ids.isEmpty()) {
+                        break;
+                    }
+
+                    deleted += shardRouter.inShard(current, () -> notificationRepository.deletePurgeableByIds(ids, cutoff));
+                    for (Long id : ids) {
+                        notificationSearchIndex.remove(id);
+                    }
+                    batches++;
+                    afterId = ids.get(ids.size() - 1);
+
+                    if (ids.size() < batchSize) {
+                        break;
+                    }
+                    if (!pause()) {
+                        interrupted = true;
+                        break;
+                    }
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+
+        logger.info("🧹 Удалено {} старых уведомлений (до {}) за {} пачек, {} мс",
+                deleted, cutoff, batches, System.currentTimeMillis() - startTime);
+        return deleted;
+    }
+
+    private boolean pause() {
+        if (pauseMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.ShardRouter;
+import com.example.bankcards.repository.NotificationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Инвертированный индекс по заголовку и тексту уведомлений.
+ *
+ * Слова приводятся к нижнему регистру, "ё" заменяется на "е", у русских слов
+ * отбрасываются типовые окончания. Каждое слово запроса ищется как префикс,
+ * результаты по словам пересекаются. Индекс возвращает id уведомлений в порядке
+ * списка администратора (created_at по убыванию, затем id по убыванию),
+ * сами уведомления загружаются по первичному ключу.
+ *
+ * Индекс строится при старте потоковым чтением таблицы и дальше обновляется
+ * после коммита изменений в NotificationService. Пока индекс не готов,
+ * поиск возвращает null и вызывающий код использует запрос к БД.
+ */
+@Service
+public class NotificationSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationSearchIndex.class);
+
+    private static final int MIN_STEM_LENGTH = 3;
+    private static final String[] RUSSIAN_ENDINGS = {
+            "иями", "ями", "ами", "ого", "его", "ому", "ему", "ыми", "ими", "ией",
+            "ой", "ей", "ый", "ий", "ая", "яя", "ое", "ее", "ые", "ие", "ую", "юю",
+            "ам", "ям", "ах", "ях", "ом", "ем", "ию", "ия",
+            "а", "я", "о", "е", "ы", "и", "у", "ю", "ь"
+    };
+
+    private final NotificationRepository notificationRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    // При шардировании индекс строится по уведомлениям всех шардов
+    @Autowired(required = false)
+    private ShardRouter shardRouter = ShardRouter.SINGLE;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private IndexData data = new IndexData();
+    private volatile boolean ready;
+
+    // Изменения, пришедшие во время перестроения, повторяются на новом индексе
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final List<Consumer<IndexData>> pendingChanges = new ArrayList<>();
+
+    @Autowired
+    public NotificationSearchIndex(NotificationRepository notificationRepository,
+                                   PlatformTransactionManager transactionManager) {
+        this.notificationRepository = notificationRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Строит индекс в фоне после старта приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread thread = new Thread(this::rebuild, "notification-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Ночное перестроение убирает записи, удаленные каскадно вместе с картами и пользователями
+     */
+    @Scheduled(cron = "${notifications.search-index.rebuild-cron:0 30 3 * * ?}")
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            IndexData fresh = new IndexData();
+            readOnlyTransaction.executeWithoutResult(status -> shardRouter.inEachShard(shard -> {
+                try (Stream<Object[]> rows = notificationRepository.streamForSearchIndex()) {
+                    rows.forEach(row -> fresh.add((Long) row[0], (String) row[1], (String) row[2],
+                            Boolean.TRUE.equals(row[3]), (LocalDateTime) row[4]));
+                }
+                return null;
+            }));
+
+            lock.writeLock().lock();
+            try {
+                for (Consumer<IndexData> change : pendingChanges) {
+                    change.accept(fresh);
+                }
+                data = fresh;
+                ready = true;
+            } finally {
+                pendingChanges.clear();
+                rebuilding.set(false);
+                lock.writeLock().unlock();
+            }
+
+            logger.info("Индекс поиска уведомлений построен: {} уведомлений, {} слов за {} мс",
+                    fresh.documentCount(), fresh.termCount(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            lock.writeLock().lock();
+            try {
+                pendingChanges.clear();
+                rebuilding.set(false);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.error("Ошибка при построении индекса поиска уведомлений: {}", e.getMessage(), e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Добавляет уведомление в индекс
+     */
+    public void add(Long id, String title, String message, boolean processed, LocalDateTime createdAt) {
+        apply(index -> index.add(id, title, message, processed, createdAt));
+    }
+
+    /**
+     * Удаляет уведомление из индекса
+     */
+    public void remove(Long id) {
+        apply(index -> index.remove(id));
+    }
+
+    /**
+     * Отмечает уведомления как обработанные
+     */
+    public void markProcessed(Collection<Long> ids) {
+        List<Long> copy = new ArrayList<>(ids);
+        apply(index -> index.markProcessed(copy));
+    }
+
+    /**
+     * Ищет уведомления, содержащие все слова запроса (по префиксу)
+     * @param processed фильтр по статусу обработки, null - без фильтра
+     * @return id по убыванию даты создания, затем id (новые первыми), или null, если индекс не готов или в запросе нет слов
+     */
+    public long[] search(String query, Boolean processed) {
+        if (!ready) {
+            return null;
+        }
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            return data.search(tokens, processed);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Consumer<IndexData> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(data);
+            if (rebuilding.get()) {
+                pendingChanges.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Разбивает текст на нормализованные слова без повторов
+     */
+    static List<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return new ArrayList<>(tokens);
+        }
+
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                current.append(c == 'ё' || c == 'Ё' ? 'е' : Character.toLowerCase(c));
+            } else if (current.length() > 0) {
+                String token = normalize(current.toString());
+                if (token != null) {
+                    tokens.add(token);
+                }
+                current.setLength(0);
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private static String normalize(String word) {
+        boolean digits = word.chars().allMatch(Character::isDigit);
+        if (!digits && word.length() < 2) {
+            return null;
+        }
+        return isCyrillic(word) ? stem(word) : word;
+    }
+
+    /**
+     * Отбрасывает окончание русского слова, оставляя не меньше трех букв основы
+     */
+    static String stem(String word) {
+        for (String ending : RUSSIAN_ENDINGS) {
+            if (word.endsWith(ending) && word.length() - ending.length() >= MIN_STEM_LENGTH) {
+                return word.substring(0, word.length() - ending.length());
+            }
+        }
+        return word;
+    }
+
+    private static boolean isCyrillic(String word) {
+        return Character.UnicodeBlock.of(word.charAt(0)) == Character.UnicodeBlock.CYRILLIC;
+    }
+
+    /**
+     * Данные индекса. Не потокобезопасны, доступ защищен блокировкой сервиса.
+     */
+    private static final class IndexData {
+        // Как в списке администратора: новые первыми, без даты - в конце, при равной дате больший id первым
+        private static final Comparator<Document> NEWEST_FIRST = Comparator
+                .comparing(Document::createdAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+                .thenComparing(Comparator.comparingLong(Document::id).reversed());
+
+        private final TreeMap<String, PostingList> postings = new TreeMap<>();
+        private final Map<Long, Document> documents = new HashMap<>();
+        private final Set<Long> processedIds = new HashSet<>();
+
+        void add(Long id, String title, String message, boolean processed, LocalDateTime createdAt) {
+            remove(id);
+
+            Set<String> terms = new LinkedHashSet<>(tokenize(title));
+            terms.addAll(tokenize(message));
+            String[] documentTerms = terms.toArray(new String[0]);
+            for (String term : documentTerms) {
+                postings.computeIfAbsent(term, key -> new PostingList()).add(id);
+            }
+            documents.put(id, new Document(id, documentTerms, createdAt));
+            if (processed) {
+                processedIds.add(id);
+            }
+        }
+
+        void remove(Long id) {
+            Document document = documents.remove(id);
+            if (document == null) {
+                return;
+            }
+            for (String term : document.terms()) {
+                PostingList list = postings.get(term);
+                if (list != null && list.remove(id) && list.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+            processedIds.remove(id);
+        }
+
+        void markProcessed(Collection<Long> ids) {
+            for (Long id : ids) {
+                if (documents.containsKey(id)) {
+                    processedIds.add(id);
+                }
+            }
+        }
+
+        long[] search(List<String> tokens, Boolean processed) {
+            // Начинаем с самого редкого слова, чтобы пересечения были короче
+            List<long[]> matches = new ArrayList<>();
+            for (String token : tokens) {
+                long[] ids = prefixUnion(token);
+                if (ids.length == 0) {
+                    return ids;
+                }
+                matches.add(ids);
+            }
+            matches.sort((a, b) -> Integer.compare(a.length, b.length));
+
+            long[] result = matches.get(0);
+            for (int i = 1; i < matches.size() && result.length > 0; i++) {
+                result = PostingList.intersect(result, matches.get(i));
+            }
+
+            // Фильтр по статусу; обход с конца дает почти готовый порядок, id обычно растут вместе с датой
+            List<Document> filtered = new ArrayList<>(result.length);
+            for (int i = result.length - 1; i >= 0; i--) {
+                if (processed == null || processedIds.contains(result[i]) == processed) {
+                    filtered.add(documents.get(result[i]));
+                }
+            }
+            filtered.sort(NEWEST_FIRST);
+
+            long[] ordered = new long[filtered.size()];
+            for (int i = 0; i < ordered.length; i++) {
+                ordered[i] = filtered.get(i).id();
+            }
+            return ordered;
+        }
+
+        private long[] prefixUnion(String prefix) {
+            NavigableMap<String, PostingList> range =
+                    postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+            if (range.size() == 1) {
+                return range.firstEntry().getValue().toArray();
+            }
+
+            int total = 0;
+            for (PostingList list : range.values()) {
+                total += list.size;
+            }
+            long[] union = new long[total];
+            int position = 0;
+            for (PostingList list : range.values()) {
+                System.arraycopy(list.ids, 0, union, position, list.size);
+                position += list.size;
+            }
+            Arrays.sort(union);
+
+            int unique = 0;
+            for (int i = 0; i < union.length; i++) {
+                if (i == 0 || union[i] != union[i - 1]) {
+                    union[unique++] = union[i];
+                }
+            }
+            return Arrays.copyOf(union, unique);
+        }
+
+        int documentCount() {
+            return documents.size();
+        }
+
+        int termCount() {
+            return postings.size();
+        }
+    }
+
+    private record Document(long id, String[] terms, LocalDateTime createdAt) {
+    }
+}
@@ -1,32 +1,99 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ShardRouter;
 import com.example.bankcards.entity.Notification;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.BankCard;
 import com.example.bankcards.exception.*;
 import com.example.bankcards.repository.NotificationRepository;
 import com.example.bankcards.util.ValidationUtils;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
- * Сервис для работы с уведомлениями
+ * Сервис для работы с уведомлениями.
+ *
+ * При шардировании уведомление лежит в шарде своего пользователя, рядом с его картами;
+ * списки для админов собираются из всех шардов.
  */
 @Service
 public class NotificationService {
     
+    private static final Logger logger = LoggerFactory.getLogger(NotificationService.class);
+    private static final int RECONCILE_BATCH_SIZE = 500;
+    private static final int MAX_BULK_SIZE = 1000;
+    
+    // Порядок запросов для админов: новые сначала
+    private static final Comparator<Notification> NEWEST_FIRST = Comparator
+            .comparing(Notification::getCreatedAt, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+            .thenComparing(Notification::getId, Comparator.nullsLast(Comparator.<Long>reverseOrder()));
+    
+    // Запросы по карте, повторы которых объединяются с ожидающим обработки запросом
+    private static final Set<Notification.Type> COALESCED_TYPES = EnumSet.of(
+            Notification.Type.CARD_BLOCK_REQUEST,
+            Notification.Type.CARD_TOPUP_REQUEST,
+            Notification.Type.CARD_UNBLOCK_REQUEST);
+    
     @Autowired
     private NotificationRepository notificationRepository;
     
     @Autowired
     private ValidationUtils validationUtils;
     
+    @Autowired
+    private NotificationStreamHub notificationStreamHub;
+    
+    @Autowired
+    private NotificationSearchIndex notificationSearchIndex;
+    
+    // Без database.shards.enabled бина нет и все выполняется в текущей транзакции
+    @Autowired(required = false)
+    private ShardRouter shardRouter = ShardRouter.SINGLE;
+    
+    // Счетчики непрочитанных, чтобы не выполнять COUNT(*) при каждом открытии страницы
+    private final UnreadNotificationCounter unreadCounter = new UnreadNotificationCounter(100_000);
+    
+    @Value("${notifications.unread-counter.max-users:100000}")
+    void setUnreadCounterMaxUsers(int maxUsers) {
+        unreadCounter.setMaxUsers(maxUsers);
+    }
+    
+    // Недавние запросы пользователей, чтобы повторные клики не искали открытый запрос по ключу
+    private final NotificationRequestCoalescer requestCoalescer = new NotificationRequestCoalescer(10_000);
+    
+    @Value("${notifications.coalesce.window-ms:10000}")
+    void setCoalesceWindowMillis(long windowMillis) {
+        requestCoalescer.setWindowMillis(windowMillis);
+    }
+    
     /**
      * Создает уведомление о запросе на блокировку карты
      */
@@ -42,7 +109,7 @@ public class NotificationService {
         );
         
         Notification notification = new Notification(user, card, Notification.Type.CARD_BLOCK_REQUEST, title, message);
-        return notificationRepository.save(notification);
+        return saveRequest(notification);
     }
     
     /**
@@ -60,7 +127,7 @@ public class NotificationService {
         );
         
         Notification notification = new Notification(user, card, Notification.Type.CARD_TOPUP_REQUEST, title, message, amount);
-        return notificationRepository.save(notification);
+        return saveRequest(notification);
     }
     
     /**
@@ -83,7 +150,7 @@ public class NotificationService {
         System.out.println("Type length: " + Notification.Type.CARD_UNBLOCK_REQUEST.name().length());
         
         Notification notification = new Notification(user, card, Notification.Type.CARD_UNBLOCK_REQUEST, title, message);
-        return notificationRepository.save(notification);
+        return saveRequest(notification);
     }
     
     /**
@@ -108,7 +175,7 @@ public class NotificationService {
         notification.setMessage(message);
         notification.setCreatedAt(LocalDateTime.now());
         
-        return notificationRepository.save(notification);
+        return saveNew(notification);
     }
     
     @Transactional
@@ -133,7 +200,7 @@ public class NotificationService {
         notification.setNewExpiryDate(newExpiryDate);
         notification.setCreatedAt(LocalDateTime.now());
 
-        return notificationRepository.save(notification);
+        return saveNew(notification);
     }
     
     /**
@@ -148,7 +215,7 @@ public class NotificationService {
         );
         
         Notification notification = new Notification(user, card, Notification.Type.CARD_ACTIVATED, title, message);
-        return notificationRepository.save(notification);
+        return saveNew(notification);
     }
     
     /**
@@ -164,7 +231,7 @@ public class NotificationService {
         );
         
         Notification notification = new Notification(user, card, Notification.Type.CARD_BLOCKED, title, message);
-        return notificationRepository.save(notification);
+        return saveNew(notification);
     }
     
     /**
@@ -181,35 +248,39 @@ public class NotificationService {
         );
         
         Notification notification = new Notification(user, fromCard, Notification.Type.TRANSFER_COMPLETED, title, message);
-        return notificationRepository.save(notification);
+        return saveNew(notification);
     }
     
     /**
      * Получает уведомления для пользователя с пагинацией
      */
     public Page<Notification> getUserNotifications(User user, Pageable pageable) {
-        return notificationRepository.findByUserOrderByCreatedAtDesc(user, pageable);
+        return inUserShard(user, () -> withAssociations(notificationRepository.findByUserOrderByCreatedAtDesc(user, pageable)));
     }
     
     /**
      * Получает непрочитанные уведомления для пользователя
      */
     public List<Notification> getUnreadNotifications(User user) {
-        return notificationRepository.findByUserAndIsReadFalseOrderByCreatedAtDesc(user);
+        return inUserShard(user, () -> withAssociations(notificationRepository.findByUserAndIsReadFalseOrderByCreatedAtDesc(user)));
     }
     
     /**
      * Подсчитывает количество непрочитанных уведомлений для пользователя
      */
     public Long getUnreadCount(User user) {
-        return notificationRepository.countByUserAndIsReadFalse(user);
+        if (user.getId() == null) {
+            return notificationRepository.countByUserAndIsReadFalse(user);
+        }
+        return unreadCounter.get(user.getId(), () -> inUserShard(user, () -> notificationRepository.countByUserAndIsReadFalse(user)));
     }
     
     /**
      * Получает все уведомления для админов
      */
     public Page<Notification> getAllNotificationsForAdmins(Pageable pageable) {
-        return notificationRepository.findAllForAdmins(pageable);
+        return shardRouter.findPage(pageable, NEWEST_FIRST,
+                page -> withAssociations(notificationRepository.findAllForAdmins(page)));
     }
     
     /**
@@ -217,11 +288,18 @@ public class NotificationService {
      */
     @Transactional
     public void markAsRead(Long notificationId) {
-        Notification notification = notificationRepository.findById(notificationId)
-            .orElseThrow(() -> new RuntimeException("Уведомление не найдено"));
-        
-        notification.markAsRead();
-        notificationRepository.save(notification);
+        shardRouter.runInShard(shardRouter.shardOfId(notificationId), () -> {
+            Notification notification = notificationRepository.findById(notificationId)
+                .orElseThrow(() -> new RuntimeException("Уведомление не найдено"));
+            
+            boolean wasUnread = !Boolean.TRUE.equals(notification.getIsRead());
+            notification.markAsRead();
+            notificationRepository.save(notification);
+            
+            if (wasUnread) {
+                changeUnreadCount(notification, -1);
+            }
+        });
     }
     
     /**
@@ -232,25 +310,65 @@ public class NotificationService {
         // Валидация входных данных
         validationUtils.validateId(notificationId, "уведомления");
         
-        Notification notification = notificationRepository.findById(notificationId)
-            .orElseThrow(() -> new ResourceNotFoundException("Уведомление", notificationId));
+        shardRouter.runInShard(shardRouter.shardOfId(notificationId), () -> {
+            Notification notification = notificationRepository.findById(notificationId)
+                .orElseThrow(() -> new ResourceNotFoundException("Уведомление", notificationId));
+            
+            notification.markAsProcessed();
+            notificationRepository.save(notification);
+        });
         
-        notification.markAsProcessed();
-        notificationRepository.save(notification);
+        afterCommit(() -> {
+            notificationSearchIndex.markProcessed(List.of(notificationId));
+            requestCoalescer.forget(List.of(notificationId));
+        });
     }
     
     /**
      * Отмечает все уведомления пользователя как прочитанные
+     * @return количество обновленных уведомлений
      */
     @Transactional
-    public void markAllAsRead(User user) {
-        List<Notification> unreadNotifications = notificationRepository.findByUserAndIsReadFalseOrderByCreatedAtDesc(user);
+    public int markAllAsRead(User user) {
+        int updated = inUserShard(user, () -> notificationRepository.markAllAsReadByUser(user, LocalDateTime.now()));
         
-        for (Notification notification : unreadNotifications) {
-            notification.markAsRead();
+        if (user.getId() != null) {
+            afterCommit(() -> unreadCounter.reset(user.getId()));
+        }
+        return updated;
+    }
+    
+    /**
+     * Отмечает несколько уведомлений как обработанные одним запросом
+     * @return количество обновленных уведомлений (уже обработанные и несуществующие не учитываются)
+     */
+    @Transactional
+    public int markProcessed(List<Long> notificationIds) {
+        if (notificationIds == null || notificationIds.isEmpty()) {
+            throw new ValidationException("Список уведомлений не может быть пустым");
+        }
+        if (notificationIds.size() > MAX_BULK_SIZE) {
+            throw new ValidationException("Нельзя обработать больше " + MAX_BULK_SIZE + " уведомлений за раз");
         }
         
-        notificationRepository.saveAll(unreadNotifications);
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Long id : notificationIds) {
+            validationUtils.validateId(id, "уведомления");
+            ids.add(id);
+        }
+        
+        LocalDateTime processedAt = LocalDateTime.now();
+        int updated = 0;
+        for (Map.Entry<Integer, Set<Long>> group : groupByShard(ids, shardRouter::shardOfId).entrySet()) {
+            updated += shardRouter.inShard(group.getKey(),
+                    () -> notificationRepository.markProcessedByIds(group.getValue(), processedAt));
+        }
+        
+        afterCommit(() -> {
+            notificationSearchIndex.markProcessed(ids);
+            requestCoalescer.forget(ids);
+        });
+        return updated;
     }
     
     /**
@@ -261,21 +379,250 @@ public class NotificationService {
         // Валидация входных данных
         validationUtils.validateId(notificationId, "уведомления");
         
-        if (!notificationRepository.existsById(notificationId)) {
-            throw new ResourceNotFoundException("Уведомление", notificationId);
-        }
-        
-        notificationRepository.deleteById(notificationId);
+        shardRouter.runInShard(shardRouter.shardOfId(notificationId), () -> {
+            Notification notification = notificationRepository.findById(notificationId)
+                .orElseThrow(() -> new ResourceNotFoundException("Уведомление", notificationId));
+            
+            notificationRepository.deleteById(notificationId);
+            
+            if (!Boolean.TRUE.equals(notification.getIsRead())) {
+                changeUnreadCount(notification, -1);
+            }
+        });
+        afterCommit(() -> {
+            notificationSearchIndex.remove(notificationId);
+            requestCoalescer.forget(List.of(notificationId));
+        });
     }
     
     /**
-     * Получает уведомления с фильтрацией для админов
+     * Получает уведомления с фильтрацией для админов.
+     * Поиск идет по индексу в памяти, уведомления загружаются по id;
+     * пока индекс строится, используется поиск в БД
      */
     public Page<Notification> getNotificationsWithFilters(String search, Boolean processed, Pageable pageable) {
         if (search != null && !search.isEmpty()) {
-            return notificationRepository.searchNotificationsWithFilters(search, processed, pageable);
+            long[] ids = notificationSearchIndex.search(search, processed);
+            if (ids != null) {
+                return loadPage(ids, pageable);
+            }
+            return shardRouter.findPage(pageable, NEWEST_FIRST,
+                    page -> withAssociations(notificationRepository.searchNotificationsWithFilters(search, processed, page)));
+        } else {
+            return shardRouter.findPage(pageable, NEWEST_FIRST,
+                    page -> withAssociations(notificationRepository.findByProcessedStatus(processed, page)));
+        }
+    }
+    
+    /**
+     * Загружает страницу уведомлений по отсортированному списку id
+     */
+    private Page<Notification> loadPage(long[] ids, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), ids.length);
+        int to = Math.min(from + pageable.getPageSize(), ids.length);
+        
+        List<Long> pageIds = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            pageIds.add(ids[i]);
+        }
+        
+        Map<Long, Notification> loaded = new HashMap<>();
+        for (Map.Entry<Integer, Set<Long>> group : groupByShard(pageIds, shardRouter::shardOfId).entrySet()) {
+            List<Long> shardIds = new ArrayList<>(group.getValue());
+            for (Notification notification : shardRouter.inShard(group.getKey(),
+                    () -> withAssociations(notificationRepository.findAllById(shardIds)))) {
+                loaded.put(notification.getId(), notification);
+            }
+        }
+        
+        List<Notification> content = new ArrayList<>(pageIds.size());
+        for (Long id : pageIds) {
+            Notification notification = loaded.get(id);
+            if (notification != null) {
+                content.add(notification);
+            }
+        }
+        return new PageImpl<>(content, pageable, ids.length);
+    }
+    
+    /**
+     * Сверяет счетчики непрочитанных с БД и исправляет расхождения
+     */
+    @Scheduled(fixedDelayString = "${notifications.unread-counter.reconcile-interval-ms:300000}")
+    public void reconcileUnreadCounters() {
+        List<Long> userIds = unreadCounter.trackedUserIds();
+        if (userIds.isEmpty()) {
+            return;
+        }
+        
+        try {
+            Map<Long, Long> actual = new HashMap<>();
+            for (int from = 0; from < userIds.size(); from += RECONCILE_BATCH_SIZE) {
+                List<Long> batch = userIds.subList(from, Math.min(from + RECONCILE_BATCH_SIZE, userIds.size()));
+                for (Map.Entry<Integer, Set<Long>> group : groupByShard(batch, shardRouter::shardOfUser).entrySet()) {
+                    List<Long> shardUserIds = new ArrayList<>(group.getValue());
+                    for (Object[] row : shardRouter.inShard(group.getKey(),
+                            () -> notificationRepository.countUnreadGroupedByUser(shardUserIds))) {
+                        actual.put((Long) row[0], (Long) row[1]);
+                    }
+                }
+            }
+            
+            int corrected = unreadCounter.reconcile(userIds, actual);
+            if (corrected > 0) {
+                logger.warn("Исправлено {} счетчиков непрочитанных уведомлений из {}", corrected, userIds.size());
+            } else {
+                logger.debug("Счетчики непрочитанных уведомлений совпадают с БД ({} пользователей)", userIds.size());
+            }
+        } catch (Exception e) {
+            logger.error("Ошибка при сверке счетчиков непрочитанных уведомлений: {}", e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Сохраняет запрос пользователя к администраторам. Повтор запроса, который еще
+     * ожидает обработки (тот же пользователь, карта и тип), не создает новую запись:
+     * с тем же содержимым возвращается ожидающее уведомление, с другой причиной или
+     * суммой запрос отклоняется, чтобы администратор не обработал подмененные данные.
+     */
+    private Notification saveRequest(Notification request) {
+        return inUserShard(request.getUser(), () -> coalesceOrSave(request));
+    }
+    
+    private Notification coalesceOrSave(Notification request) {
+        String key = openRequestKey(request);
+        if (key == null) {
+            return saveNew(request);
+        }
+        
+        Long recentId = requestCoalescer.find(key, request.getMessage(), request.getAmount(),
+                System.currentTimeMillis());
+        if (recentId != null) {
+            Optional<Notification> recent = notificationRepository.findById(recentId)
+                    .filter(notification -> key.equals(notification.getOpenRequestKey()));
+            if (recent.isPresent()) {
+                logger.debug("Повторный запрос {} в пределах окна, используется уведомление {}", key, recentId);
+                return recent.get();
+            }
+        }
+        
+        Optional<Notification> existing = notificationRepository.findByOpenRequestKey(key);
+        if (existing.isPresent()) {
+            Notification pending = existing.get();
+            if (!Objects.equals(pending.getMessage(), request.getMessage())
+                    || !Objects.equals(pending.getAmount(), request.getAmount())) {
+                throw new BusinessException("По этой карте уже есть запрос, ожидающий обработки. "
+                        + "Дождитесь решения администратора, прежде чем отправлять новый", "DUPLICATE_REQUEST");
+            }
+            logger.info("Повторный запрос {} совпадает с ожидающим уведомлением {}", key, pending.getId());
+            remember(key, pending);
+            return pending;
+        }
+        
+        request.setOpenRequestKey(key);
+        Notification saved;
+        try {
+            saved = saveNew(request);
+        } catch (DataIntegrityViolationException e) {
+            // Одновременный запрос с тем же ключом уже сохранен другой транзакцией
+            throw new BusinessException("Такой запрос уже отправлен и ожидает обработки", "DUPLICATE_REQUEST", e);
+        }
+        remember(key, saved);
+        return saved;
+    }
+    
+    private void remember(String key, Notification notification) {
+        Long id = notification.getId();
+        String message = notification.getMessage();
+        Double amount = notification.getAmount();
+        afterCommit(() -> requestCoalescer.remember(key, id, message, amount, System.currentTimeMillis()));
+    }
+    
+    private String openRequestKey(Notification request) {
+        if (!COALESCED_TYPES.contains(request.getType())
+                || request.getUser() == null || request.getUser().getId() == null
+                || request.getCard() == null || request.getCard().getId() == null) {
+            return null;
+        }
+        return request.getUser().getId() + ":" + request.getCard().getId() + ":" + request.getType().name();
+    }
+    
+    /**
+     * Сохраняет новое уведомление, учитывает его в счетчике непрочитанных
+     * и после коммита рассылает подписчикам потока уведомлений
+     */
+    private Notification saveNew(Notification notification) {
+        return inUserShard(notification.getUser(), () -> insert(notification));
+    }
+    
+    private Notification insert(Notification notification) {
+        Notification saved = notificationRepository.save(notification);
+        if (!Boolean.TRUE.equals(notification.getIsRead())) {
+            changeUnreadCount(notification, 1);
+        }
+        
+        // Событие собирается внутри транзакции, пока доступны все поля сущности
+        NotificationStreamHub.NotificationEvent event = NotificationStreamHub.NotificationEvent.from(notification);
+        afterCommit(() -> {
+            notificationSearchIndex.add(event.id(), event.title(), event.message(), false, event.createdAt());
+            notificationStreamHub.publish(event);
+        });
+        return saved;
+    }
+    
+    private void changeUnreadCount(Notification notification, long delta) {
+        if (notification.getUser() == null || notification.getUser().getId() == null) {
+            return;
+        }
+        Long userId = notification.getUser().getId();
+        afterCommit(() -> unreadCounter.add(userId, delta));
+    }
+    
+    /**
+     * Выполняет действие в шарде пользователя
+     */
+    private <T> T inUserShard(User user, Supplier<T> action) {
+        return shardRouter.inShard(shardRouter.shardOfUser(user != null ? user.getId() : null), action);
+    }
+    
+    /**
+     * Загружает карту и пользователя уведомлений, пока открыта транзакция шарда: страницы уведомлений
+     * обращаются к ним уже после нее. Без шардирования связи по-прежнему загружаются лениво
+     */
+    private <T extends Iterable<Notification>> T withAssociations(T notifications) {
+        if (shardRouter.isSharded()) {
+            for (Notification notification : notifications) {
+                Hibernate.initialize(notification.getUser());
+                Hibernate.initialize(notification.getCard());
+            }
+        }
+        return notifications;
+    }
+    
+    /**
+     * Группирует id по шардам с сохранением порядка
+     */
+    private static Map<Integer, Set<Long>> groupByShard(Collection<Long> ids, Function<Long, Integer> shardOf) {
+        Map<Integer, Set<Long>> groups = new LinkedHashMap<>();
+        for (Long id : ids) {
+            groups.computeIfAbsent(shardOf.apply(id), shard -> new LinkedHashSet<>()).add(id);
+        }
+        return groups;
+    }
+    
+    /**
+     * Выполняет действие после коммита текущей транзакции или сразу, если транзакции нет
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
         } else {
-            return notificationRepository.findByProcessedStatus(processed, pageable);
+            action.run();
         }
     }
 }
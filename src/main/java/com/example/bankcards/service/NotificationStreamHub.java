@@ -0,0 +1,205 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Notification;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Рассылка новых уведомлений подписчикам через Server-Sent Events.
+ *
+ * У каждого подписчика своя ограниченная очередь. Публикация только кладет
+ * событие в очереди и не ждет отправки; если очередь переполнена, подписчик
+ * не успевает читать и отключается (браузер переподключится сам).
+ * Периодический heartbeat не дает прокси закрыть простаивающее соединение.
+ * Подписчики живут в памяти процесса и получают события только этого узла.
+ */
+@Service
+public class NotificationStreamHub {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationStreamHub.class);
+    private static final Object HEARTBEAT = new Object();
+
+    /**
+     * Событие о новом уведомлении
+     */
+    public record NotificationEvent(Long id, Long userId, String type, String typeDescription,
+                                    String title, String message, LocalDateTime createdAt) {
+
+        public static NotificationEvent from(Notification notification) {
+            return new NotificationEvent(
+                    notification.getId(),
+                    notification.getUser() != null ? notification.getUser().getId() : null,
+                    notification.getType() != null ? notification.getType().name() : null,
+                    notification.getType() != null ? notification.getType().getDescription() : null,
+                    notification.getTitle(),
+                    notification.getMessage(),
+                    notification.getCreatedAt());
+        }
+    }
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ScheduledThreadPoolExecutor executor;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long timeoutMillis;
+
+    @Autowired
+    public NotificationStreamHub(@Value("${notifications.stream.buffer-size:64}") int bufferSize,
+                                 @Value("${notifications.stream.max-subscribers:500}") int maxSubscribers,
+                                 @Value("${notifications.stream.timeout-ms:1800000}") long timeoutMillis,
+                                 @Value("${notifications.stream.heartbeat-interval-ms:15000}") long heartbeatMillis,
+                                 @Value("${notifications.stream.threads:2}") int threads) {
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMillis = timeoutMillis;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "notification-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * Регистрирует нового подписчика
+     * @return null, если достигнут предел подписчиков
+     */
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= maxSubscribers) {
+            return null;
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, new ArrayBlockingQueue<>(bufferSize));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+
+        // Первое сообщение сразу подтверждает клиенту, что подписка активна
+        enqueue(subscriber, HEARTBEAT);
+        return emitter;
+    }
+
+    /**
+     * Рассылает событие всем подписчикам. Вызывается после коммита транзакции.
+     */
+    public void publish(NotificationEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            enqueue(subscriber, event);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            // Если в очереди уже есть события, они сами поддержат соединение
+            if (subscriber.queue.isEmpty()) {
+                enqueue(subscriber, HEARTBEAT);
+            }
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, Object item) {
+        if (!subscriber.queue.offer(item)) {
+            logger.warn("Подписчик на уведомления не успевает получать события и будет отключен");
+            drop(subscriber);
+            return;
+        }
+        scheduleDrain(subscriber);
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> drain(subscriber));
+            } catch (RuntimeException e) {
+                subscriber.draining.set(false);
+                drop(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Отправляет накопленные события подписчику. Для одного подписчика
+     * одновременно выполняется не больше одной отправки.
+     */
+    private void drain(Subscriber subscriber) {
+        try {
+            Object item;
+            while ((item = subscriber.queue.poll()) != null) {
+                if (item == HEARTBEAT) {
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    NotificationEvent event = (NotificationEvent) item;
+                    subscriber.emitter.send(SseEmitter.event()
+                            .name("notification")
+                            .id(String.valueOf(event.id()))
+                            .data(event, MediaType.APPLICATION_JSON));
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("Не удалось отправить событие подписчику: {}", e.getMessage());
+            drop(subscriber);
+        } finally {
+            subscriber.draining.set(false);
+        }
+
+        // Событие могло прийти между последним poll и сбросом флага
+        if (!subscriber.queue.isEmpty() && subscribers.contains(subscriber)) {
+            scheduleDrain(subscriber);
+        }
+    }
+
+    private void drop(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriber.queue.clear();
+            try {
+                subscriber.emitter.complete();
+            } catch (Exception e) {
+                logger.debug("Ошибка при закрытии подписки: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Object> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter, BlockingQueue<Object> queue) {
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.OutboxEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Set;
+
+/**
+ * Обработчик исходящих событий.
+ *
+ * Доставка "хотя бы один раз": после сбоя узла или ошибки другого обработчика того же
+ * события оно будет доставлено повторно, поэтому обработка должна переносить повтор.
+ */
+public interface OutboxEventHandler {
+
+    /**
+     * Типы событий, которые принимает обработчик
+     */
+    Set<OutboxEvent.Type> getTypes();
+
+    /**
+     * Обрабатывает событие; исключение откладывает событие для повтора
+     */
+    void handle(OutboxEvent event, JsonNode payload);
+}
@@ -0,0 +1,257 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.ShardRouter;
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Доставка исходящих событий обработчикам.
+ *
+ * Пачка событий занимается в короткой транзакции: готовые события блокируются, их
+ * next_attempt_at сдвигается на время аренды, и другие узлы их не берут. Обработчики
+ * вызываются вне транзакции шарда, по порядку id; доставленные события удаляются.
+ * Если обработчик упал, событие откладывается с растущей паузой, а следующие события
+ * того же агрегата ждут его: у агрегата с отложенным или занятым событием новые не выбираются.
+ * После max-attempts неудачных попыток событие откладывается насовсем (parked_at) и остается
+ * в таблице для разбора, а остальные события агрегата доставляются дальше.
+ * Узел, упавший посреди пачки, ее не удалит - после аренды события доставятся повторно.
+ */
+@Service
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<OutboxEvent.Type, List<OutboxEventHandler>> handlers = new EnumMap<>(OutboxEvent.Type.class);
+    private final int batchSize;
+    private final long leaseMillis;
+    private final long maxBackoffMillis;
+    private final int maxAttempts;
+
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+    private final ExecutorService wakeUpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "outbox-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    // При шардировании в каждом шарде своя таблица событий
+    @Autowired(required = false)
+    private ShardRouter shardRouter = ShardRouter.SINGLE;
+
+    @Autowired
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       ObjectMapper objectMapper,
+                       PlatformTransactionManager transactionManager,
+                       List<OutboxEventHandler> eventHandlers,
+                       @Value("${outbox.relay.batch-size:100}") int batchSize,
+                       @Value("${outbox.relay.lease-ms:60000}") long leaseMillis,
+                       @Value("${outbox.relay.max-backoff-ms:300000}") long maxBackoffMillis,
+                       @Value("${outbox.relay.max-attempts:10}") int maxAttempts) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.leaseMillis = leaseMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxAttempts = maxAttempts;
+        for (OutboxEventHandler handler : eventHandlers) {
+            for (OutboxEvent.Type type : handler.getTypes()) {
+                handlers.computeIfAbsent(type, key -> new ArrayList<>()).add(handler);
+            }
+        }
+    }
+
+    /**
+     * Запускает доставку в фоне (после коммита нового события)
+     */
+    public void requestDrain() {
+        if (drainRequested.compareAndSet(false, true)) {
+            wakeUpExecutor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Периодическая доставка: подбирает отложенные события и события, записанные другими узлами
+     */
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:1000}")
+    public void drainScheduled() {
+        try {
+            drain();
+        } catch (Exception e) {
+            logger.error("❌ Ошибка при доставке исходящих событий: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Доставляет готовые события всех шардов
+     * @return количество доставленных событий
+     */
+    public int drain() {
+        drainRequested.set(false);
+        if (!drainLock.tryLock()) {
+            return 0;
+        }
+        try {
+            int total = 0;
+            for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+                total += drainShard(shard);
+            }
+            return total;
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private int drainShard(int shard) {
+        int total = 0;
+        while (true) {
+            List<OutboxEvent> batch = inShardTransaction(shard, this::claimBatch);
+            if (batch.isEmpty()) {
+                return total;
+            }
+            total += dispatch(shard, batch);
+            if (batch.size() < batchSize) {
+                return total;
+            }
+        }
+    }
+
+    /**
+     * Выбирает и занимает пачку событий; вызывается в транзакции шарда
+     */
+    private List<OutboxEvent> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> batch = outboxEventRepository.findDueForUpdate(now, PageRequest.of(0, batchSize));
+        if (!batch.isEmpty()) {
+            outboxEventRepository.claim(batch.stream().map(OutboxEvent::getId).toList(), now.plus(Duration.ofMillis(leaseMillis)));
+        }
+        return batch;
+    }
+
+    /**
+     * Вызывает обработчики по порядку; после ошибки события агрегата до конца пачки пропускаются
+     */
+    private int dispatch(int shard, List<OutboxEvent> batch) {
+        List<Long> done = new ArrayList<>();
+        List<Long> skipped = new ArrayList<>();
+        Set<String> failedAggregates = new HashSet<>();
+
+        for (OutboxEvent event : batch) {
+            if (failedAggregates.contains(event.getAggregateKey())) {
+                skipped.add(event.getId());
+                continue;
+            }
+            try {
+                JsonNode payload = objectMapper.readTree(event.getPayload());
+                for (OutboxEventHandler handler : handlers.getOrDefault(event.getType(), List.of())) {
+                    handler.handle(event, payload);
+                }
+                done.add(event.getId());
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                int attempts = event.getAttempts() + 1;
+                String error = truncate(e.getClass().getSimpleName() + ": " + e.getMessage());
+                if (attempts >= maxAttempts) {
+                    // Отложенное насовсем событие агрегат не держит: следующие события доставляются сразу
+                    inShardTransaction(shard, () -> outboxEventRepository.park(event.getId(), error, LocalDateTime.now()));
+                    logger.error("❌ Событие {} ({}, {}) не доставлено за {} попыток и отложено насовсем: {}",
+                            event.getId(), event.getType(), event.getAggregateKey(), attempts, error);
+                    continue;
+                }
+                failedAggregates.add(event.getAggregateKey());
+                long backoff = backoffMillis(attempts);
+                inShardTransaction(shard, () -> outboxEventRepository.postpone(event.getId(), error,
+                        LocalDateTime.now().plus(Duration.ofMillis(backoff))));
+                logger.warn("⚠️ Событие {} ({}, {}) не доставлено, попытка {}, повтор через {} мс: {}",
+                        event.getId(), event.getType(), event.getAggregateKey(), attempts, backoff, error);
+            }
+        }
+
+        if (!done.isEmpty()) {
+            inShardTransaction(shard, () -> {
+                outboxEventRepository.deleteAllByIdInBatch(done);
+                return null;
+            });
+            delivered.addAndGet(done.size());
+        }
+        if (!skipped.isEmpty()) {
+            // Аренда снимается сразу: события ждут отложенное событие своего агрегата, а не конца аренды
+            inShardTransaction(shard, () -> outboxEventRepository.claim(skipped, LocalDateTime.now()));
+        }
+        return done.size();
+    }
+
+    /**
+     * Короткая транзакция в шарде; в шарде 0 без внешней транзакции ShardRouter ее не открывает
+     */
+    private <T> T inShardTransaction(int shard, Supplier<T> action) {
+        return shardRouter.inShard(shard, () -> transactionTemplate.execute(status -> action.get()));
+    }
+
+    private long backoffMillis(int attempts) {
+        long backoff = 1000L << Math.min(attempts - 1, 20);
+        return Math.min(backoff, maxBackoffMillis);
+    }
+
+    private static String truncate(String error) {
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    /**
+     * Статистика доставки для панели администратора
+     */
+    public Map<String, Object> getStats() {
+        List<Long> pending = shardRouter.inEachShard(shard -> outboxEventRepository.count());
+        List<Long> failing = shardRouter.inEachShard(shard ->
+                outboxEventRepository.countByAttemptsGreaterThanAndParkedAtIsNull(0));
+        List<Long> parked = shardRouter.inEachShard(shard -> outboxEventRepository.countByParkedAtIsNotNull());
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pending.stream().mapToLong(Long::longValue).sum());
+        stats.put("failing", failing.stream().mapToLong(Long::longValue).sum());
+        stats.put("parked", parked.stream().mapToLong(Long::longValue).sum());
+        stats.put("delivered", delivered.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wakeUpExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Запись исходящих событий.
+ *
+ * Событие сохраняется в текущей транзакции (при шардировании - в транзакции шарда),
+ * поэтому оно появляется тогда и только тогда, когда зафиксировано само изменение.
+ * Аудит и уведомления выполняет OutboxRelay после коммита, запрос их не ждет.
+ */
+@Service
+public class OutboxService {
+
+    public static final String USER_ID = "userId";
+    public static final String IP_ADDRESS = "ipAddress";
+    public static final String USER_AGENT = "userAgent";
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Lazy
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    /**
+     * Записывает событие в текущую транзакцию. Адрес и браузер клиента берутся
+     * из текущего запроса: обработчики выполняются уже вне его
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public OutboxEvent publish(OutboxEvent.Type type, Long aggregateId, Map<String, Object> payload) {
+        Map<String, Object> body = new LinkedHashMap<>(payload);
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            HttpServletRequest request = attributes.getRequest();
+            body.put(IP_ADDRESS, AuditService.getClientIpAddress(request));
+            body.put(USER_AGENT, request.getHeader("User-Agent"));
+        }
+
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось сериализовать событие " + type, e);
+        }
+
+        OutboxEvent saved = outboxEventRepository.save(new OutboxEvent(type, aggregateId, json));
+
+        // Релей запускается сразу после коммита, не дожидаясь очередного опроса
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxRelay.requestDrain();
+            }
+        });
+        return saved;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.bankcards.service;
+
+import java.util.Arrays;
+
+/**
+ * Отсортированный по возрастанию список id для индексов поиска в памяти.
+ * Новые записи обычно получают больший id, поэтому добавление почти всегда идет в конец.
+ * Не потокобезопасен, доступ защищает индекс.
+ */
+final class PostingList {
+    long[] ids = new long[4];
+    int size;
+
+    void add(long id) {
+        int index = size > 0 && ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0 && index < size) {
+            return;
+        }
+        int insertAt = index >= 0 ? index : -index - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+    }
+
+    boolean remove(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Пересечение двух отсортированных массивов id
+     */
+    static long[] intersect(long[] left, long[] right) {
+        long[] result = new long[Math.min(left.length, right.length)];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                result[count++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
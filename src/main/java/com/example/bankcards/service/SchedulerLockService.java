@@ -0,0 +1,149 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.SchedulerLock;
+import com.example.bankcards.repository.SchedulerLockRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Блокировки фоновых задач в БД, чтобы при нескольких узлах задачу выполнял один из них.
+ *
+ * Узел занимает строку scheduler_locks на время аренды и продлевает ее, пока задача идет.
+ * Если узел упал, аренда истекает и задачу сможет занять другой узел. После завершения
+ * блокировка держится еще lock-at-least: узлы, запустившие ту же задачу чуть позже
+ * (расхождение часов), не повторят уже сделанную работу.
+ */
+@Service
+public class SchedulerLockService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchedulerLockService.class);
+
+    private final SchedulerLockRepository schedulerLockRepository;
+    private final String nodeId;
+    private final Duration leaseDuration;
+    private final Duration lockAtLeast;
+    private final ScheduledExecutorService heartbeatExecutor;
+
+    @Autowired
+    public SchedulerLockService(SchedulerLockRepository schedulerLockRepository,
+                                @Value("${scheduler.locks.node-id:}") String nodeId,
+                                @Value("${scheduler.locks.lease-ms:600000}") long leaseMillis,
+                                @Value("${scheduler.locks.lock-at-least-ms:60000}") long lockAtLeastMillis) {
+        this.schedulerLockRepository = schedulerLockRepository;
+        // Имя JVM - pid@host: различает и узлы, и несколько экземпляров на одном хосте
+        this.nodeId = nodeId == null || nodeId.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : nodeId;
+        this.leaseDuration = Duration.ofMillis(leaseMillis);
+        this.lockAtLeast = Duration.ofMillis(lockAtLeastMillis);
+        this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scheduler-lock-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Выполняет задачу, если удалось занять блокировку
+     * @return результат задачи или пустое значение, если задачу выполняет другой узел
+     */
+    public <T> Optional<T> runLocked(String name, Supplier<T> task) {
+        LocalDateTime lockedAt = LocalDateTime.now();
+        if (!acquire(name, lockedAt)) {
+            logger.debug("Задача {} выполняется другим узлом", name);
+            return Optional.empty();
+        }
+
+        long heartbeatMillis = Math.max(leaseDuration.toMillis() / 3, 1000);
+        ScheduledFuture<?> heartbeat = heartbeatExecutor.scheduleAtFixedRate(() -> extend(name),
+                heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        try {
+            return Optional.ofNullable(task.get());
+        } finally {
+            heartbeat.cancel(false);
+            release(name, lockedAt);
+        }
+    }
+
+    private boolean acquire(String name, LocalDateTime now) {
+        LocalDateTime until = now.plus(leaseDuration);
+        if (schedulerLockRepository.takeOver(name, nodeId, now, until) > 0) {
+            return true;
+        }
+        try {
+            return schedulerLockRepository.insertLock(name, nodeId, now, until) > 0;
+        } catch (DataIntegrityViolationException e) {
+            // Строка есть и аренда не истекла - блокировку держит другой узел
+            return false;
+        }
+    }
+
+    private void extend(String name) {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            if (schedulerLockRepository.extend(name, nodeId, now, now.plus(leaseDuration)) == 0) {
+                logger.warn("⚠️ Блокировка {} занята другим узлом, пока задача еще выполняется", name);
+            }
+        } catch (Exception e) {
+            logger.error("❌ Не удалось продлить блокировку {}: {}", name, e.getMessage(), e);
+        }
+    }
+
+    private void release(String name, LocalDateTime lockedAt) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime holdUntil = lockedAt.plus(lockAtLeast);
+        try {
+            schedulerLockRepository.release(name, nodeId, holdUntil.isAfter(now) ? holdUntil : now);
+        } catch (Exception e) {
+            // Аренда истечет сама
+            logger.error("❌ Не удалось освободить блокировку {}: {}", name, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Состояние блокировок для статуса планировщика
+     */
+    public List<Map<String, Object>> getLocks() {
+        LocalDateTime now = LocalDateTime.now();
+        return schedulerLockRepository.findAllByOrderByName().stream()
+                .map(lock -> lockState(lock, now))
+                .toList();
+    }
+
+    private Map<String, Object> lockState(SchedulerLock lock, LocalDateTime now) {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("name", lock.getName());
+        state.put("lockedBy", lock.getLockedBy());
+        state.put("lockedAt", lock.getLockedAt());
+        state.put("lockedUntil", lock.getLockedUntil());
+        state.put("heartbeatAt", lock.getHeartbeatAt());
+        state.put("held", lock.getLockedUntil().isAfter(now));
+        state.put("ownedByThisNode", nodeId.equals(lock.getLockedBy()));
+        return state;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeatExecutor.shutdownNow();
+    }
+}
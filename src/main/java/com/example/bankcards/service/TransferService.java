@@ -1,16 +1,21 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ShardRouter;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.dto.TransferResponse;
 import com.example.bankcards.dto.TransferStats;
 import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.OutboxEvent;
 import com.example.bankcards.entity.Transfer;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.*;
 import com.example.bankcards.repository.BankCardRepository;
 import com.example.bankcards.repository.TransferRepository;
 import com.example.bankcards.util.ValidationUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -18,15 +23,25 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 /**
- * Сервис для работы с переводами
+ * Сервис для работы с переводами.
+ *
+ * Переводить можно только между своими картами, поэтому при шардировании перевод
+ * целиком выполняется в шарде пользователя; событие для аудита пишется в outbox
+ * в той же транзакции и обрабатывается после коммита.
  */
 @Service
 @Transactional
 public class TransferService {
 
+    // Время перевода; тег outcome - success, conflict, error или код BusinessException (набор кодов конечен)
+    public static final String TRANSFER_TIMER = "bankcards.transfer";
+
     @Autowired
     private TransferRepository transferRepository;
 
@@ -37,23 +52,59 @@ public class TransferService {
     private ValidationUtils validationUtils;
     
     @Autowired
-    private AuditService auditService;
+    private OutboxService outboxService;
+
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    // Без database.shards.enabled бина нет и все выполняется в текущей транзакции
+    @Autowired(required = false)
+    private ShardRouter shardRouter = ShardRouter.SINGLE;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     /**
      * Выполняет перевод между картами
      */
     public TransferResponse transfer(TransferRequest request, User user) {
-        // Валидация входных данных
-        validationUtils.validateId(request.getFromCardId(), "карты отправителя");
-        validationUtils.validateId(request.getToCardId(), "карты получателя");
-        validationUtils.validateMinAmount(request.getAmount(), new BigDecimal("0.01"));
-        validationUtils.validateDescription(request.getDescription(), "Описание перевода");
-        
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            // Валидация входных данных
+            validationUtils.validateId(request.getFromCardId(), "карты отправителя");
+            validationUtils.validateId(request.getToCardId(), "карты получателя");
+            validationUtils.validateMinAmount(request.getAmount(), new BigDecimal("0.01"));
+            validationUtils.validateDescription(request.getDescription(), "Описание перевода");
+
+            Transfer transfer = shardRouter.inShard(shardRouter.shardOfUser(user.getId()), () -> executeTransfer(request, user));
+
+            TransferResponse response = createTransferResponse(transfer);
+            outcome = "success";
+            return response;
+        } catch (BusinessException e) {
+            if (e.getErrorCode() != null) {
+                outcome = e.getErrorCode().toLowerCase(Locale.ROOT);
+            }
+            throw e;
+        } catch (OptimisticLockingFailureException e) {
+            // Карту одновременно изменил другой запрос; клиент получает 409 и может повторить перевод
+            outcome = "conflict";
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer(TRANSFER_TIMER, "outcome", outcome));
+        }
+    }
+
+    /**
+     * Проверяет карты и переносит сумму; карты и перевод - в одном шарде
+     */
+    private Transfer executeTransfer(TransferRequest request, User user) {
         // Находим карты
-        BankCard fromCard = bankCardRepository.findById(request.getFromCardId())
+        BankCard fromCard = bankCardRepository.findCurrentById(request.getFromCardId())
                 .orElseThrow(() -> new ResourceNotFoundException("Карта отправителя", request.getFromCardId()));
 
-        BankCard toCard = bankCardRepository.findById(request.getToCardId())
+        BankCard toCard = bankCardRepository.findCurrentById(request.getToCardId())
                 .orElseThrow(() -> new ResourceNotFoundException("Карта получателя", request.getToCardId()));
 
         // Проверяем, что обе карты принадлежат пользователю
@@ -84,7 +135,9 @@ public class TransferService {
         // Создаем перевод
         Transfer transfer = new Transfer(fromCard, toCard, request.getAmount(), request.getDescription());
         transfer = transferRepository.save(transfer);
+        dataVersionService.markChanged(DataVersionService.Table.TRANSFERS, DataVersionService.Table.CARDS);
 
+        Transfer completed;
         try {
             // Выполняем перевод
             fromCard.setBalance(fromCard.getBalance().subtract(request.getAmount()));
@@ -96,14 +149,7 @@ public class TransferService {
             // Обновляем статус перевода
             transfer.setStatus(Transfer.Status.COMPLETED);
             transfer.setProcessedAt(LocalDateTime.now());
-            transfer = transferRepository.save(transfer);
-
-            // Логируем успешный перевод
-            auditService.logTransfer(user, transfer.getId(), fromCard.getMaskedNumber(), 
-                                   toCard.getMaskedNumber(), request.getAmount().doubleValue());
-
-            return createTransferResponse(transfer);
-
+            completed = transferRepository.save(transfer);
         } catch (Exception e) {
             // В случае ошибки отменяем перевод
             transfer.setStatus(Transfer.Status.FAILED);
@@ -112,6 +158,19 @@ public class TransferService {
 
             throw new RuntimeException("Ошибка при выполнении перевода: " + e.getMessage());
         }
+
+        // Событие для аудита фиксируется вместе с переводом
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put(OutboxService.USER_ID, user.getId());
+        payload.put("fromCard", fromCard.getMaskedNumber());
+        payload.put("toCard", toCard.getMaskedNumber());
+        payload.put("amount", request.getAmount().doubleValue());
+        outboxService.publish(OutboxEvent.Type.TRANSFER_COMPLETED, completed.getId(), payload);
+
+        // Проверка версий карт при flush, а не при коммите после выхода из transfer():
+        // конфликт попадает в замер и в тег outcome=conflict
+        bankCardRepository.flush();
+        return completed;
     }
 
     /**
@@ -119,8 +178,8 @@ public class TransferService {
      */
     @Transactional(readOnly = true)
     public Page<TransferResponse> getTransferHistory(User user, Pageable pageable) {
-        return transferRepository.findByUser(user, pageable)
-                .map(this::createTransferResponse);
+        return shardRouter.inShard(shardRouter.shardOfUser(user.getId()), () -> transferRepository.findByUser(user, pageable)
+                .map(this::createTransferResponse));
     }
 
     /**
@@ -128,11 +187,11 @@ public class TransferService {
      */
     @Transactional(readOnly = true)
     public Optional<TransferResponse> findById(Long id, User user) {
-        return transferRepository.findById(id)
+        return shardRouter.inShard(shardRouter.shardOfId(id), () -> transferRepository.findById(id)
                 .filter(transfer -> 
                     transfer.getFromCard().getOwner().getId().equals(user.getId()) ||
                     transfer.getToCard().getOwner().getId().equals(user.getId()))
-                .map(this::createTransferResponse);
+                .map(this::createTransferResponse));
     }
 
     /**
@@ -140,6 +199,10 @@ public class TransferService {
      */
     @Transactional(readOnly = true)
     public TransferStats getTransferStats(User user) {
+        return shardRouter.inShard(shardRouter.shardOfUser(user.getId()), () -> calculateTransferStats(user));
+    }
+
+    private TransferStats calculateTransferStats(User user) {
         long totalTransfers = transferRepository.countByUser(user);
         double totalAmount = transferRepository.getTotalAmountByUser(user);
         double averageAmount = totalTransfers > 0 ? totalAmount / totalTransfers : 0;
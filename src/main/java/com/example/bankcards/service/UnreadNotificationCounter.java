@@ -0,0 +1,131 @@
+package com.example.bankcards.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Счетчики непрочитанных уведомлений по пользователям.
+ *
+ * Значение загружается из БД при первом обращении и дальше поддерживается
+ * изменениями уведомлений. Счетчики живут в памяти процесса, поэтому
+ * возможное расхождение с БД периодически исправляется сверкой.
+ *
+ * Число счетчиков ограничено: при превышении предела удаляется десятая часть
+ * счетчиков, которые дольше всего не читались. Удаленный счетчик снова
+ * загрузится из БД при следующем обращении.
+ */
+class UnreadNotificationCounter {
+
+    private final ConcurrentHashMap<Long, Counter> counters = new ConcurrentHashMap<>();
+    private volatile int maxUsers;
+
+    UnreadNotificationCounter(int maxUsers) {
+        this.maxUsers = maxUsers;
+    }
+
+    void setMaxUsers(int maxUsers) {
+        this.maxUsers = maxUsers;
+    }
+
+    /**
+     * Получает значение счетчика, при отсутствии загружает его из БД.
+     * Запрос к БД выполняется вне блокировки карты: при одновременной загрузке
+     * остается значение, сохраненное первым.
+     */
+    long get(Long userId, LongSupplier loader) {
+        Counter counter = counters.get(userId);
+        if (counter == null) {
+            Counter loaded = new Counter(loader.getAsLong());
+            counter = counters.putIfAbsent(userId, loaded);
+            if (counter == null) {
+                counter = loaded;
+                evictIfNeeded();
+            }
+        }
+        counter.lastReadAt = System.nanoTime();
+        return counter.value.get();
+    }
+
+    /**
+     * Изменяет счетчик, если он уже загружен; иначе значение будет прочитано из БД при обращении
+     */
+    void add(Long userId, long delta) {
+        Counter counter = counters.get(userId);
+        if (counter != null) {
+            counter.value.accumulateAndGet(delta, (current, change) -> Math.max(0, current + change));
+        }
+    }
+
+    /**
+     * Обнуляет счетчик пользователя
+     */
+    void reset(Long userId) {
+        Counter counter = counters.get(userId);
+        if (counter != null) {
+            counter.value.set(0);
+        }
+    }
+
+    /**
+     * Пользователи, для которых счетчик загружен
+     */
+    List<Long> trackedUserIds() {
+        return new ArrayList<>(counters.keySet());
+    }
+
+    /**
+     * Приводит счетчики к значениям из БД
+     * @param actual количество непрочитанных по пользователям; отсутствующие пользователи считаются с нулем
+     * @return количество исправленных счетчиков
+     */
+    int reconcile(List<Long> userIds, Map<Long, Long> actual) {
+        int corrected = 0;
+        for (Long userId : userIds) {
+            Counter counter = counters.get(userId);
+            if (counter == null) {
+                continue;
+            }
+            long expected = actual.getOrDefault(userId, 0L);
+            if (counter.value.getAndSet(expected) != expected) {
+                corrected++;
+            }
+        }
+        return corrected;
+    }
+
+    int size() {
+        return counters.size();
+    }
+
+    /**
+     * Удаляет давно не читавшиеся счетчики, пока их число выше предела
+     */
+    private void evictIfNeeded() {
+        int limit = maxUsers;
+        if (counters.size() <= limit) {
+            return;
+        }
+        // Удаляем с запасом, чтобы не сортировать счетчики при каждой новой загрузке
+        int excess = counters.size() - limit + Math.max(1, limit / 10);
+        counters.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastReadAt))
+                .limit(excess)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(counters::remove);
+    }
+
+    private static final class Counter {
+        private final AtomicLong value;
+        private volatile long lastReadAt = System.nanoTime();
+
+        private Counter(long value) {
+            this.value = new AtomicLong(value);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.UserImportResult;
+import com.example.bankcards.dto.UserImportRow;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.ValidationException;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.PasswordHashingExecutor;
+import com.example.bankcards.util.ValidationUtils;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Массовый импорт пользователей.
+ *
+ * Строки обрабатываются пачками: проверка формата, одна проверка уникальности email
+ * запросом IN на пачку, хеширование паролей параллельно в ограниченном ForkJoinPool
+ * и вставка пачки одной транзакцией пакетами JDBC (id берутся из последовательности
+ * users_seq блоками, поэтому Hibernate может группировать INSERT). Ошибочные строки
+ * пропускаются и попадают в отчет с номером строки.
+ *
+ * Пароли хешируются отдельным BCrypt с той же стоимостью, что и при входе, но не в пуле
+ * PasswordHashingExecutor: импорт не должен занимать очередь проверки паролей при входе.
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+
+    private final UserRepository userRepository;
+    private final ValidationUtils validationUtils;
+    private final DataVersionService dataVersionService;
+    private final UserSearchIndex userSearchIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final BCryptPasswordEncoder encoder;
+    private final ForkJoinPool hashingPool;
+    private final int batchSize;
+    private final int maxRows;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public UserImportService(UserRepository userRepository,
+                             ValidationUtils validationUtils,
+                             DataVersionService dataVersionService,
+                             UserSearchIndex userSearchIndex,
+                             PlatformTransactionManager transactionManager,
+                             PasswordHashingExecutor passwordHashingExecutor,
+                             @Value("${users.import.parallelism:0}") int parallelism,
+                             @Value("${users.import.batch-size:500}") int batchSize,
+                             @Value("${users.import.max-rows:100000}") int maxRows) {
+        this.userRepository = userRepository;
+        this.validationUtils = validationUtils;
+        this.dataVersionService = dataVersionService;
+        this.userSearchIndex = userSearchIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.encoder = new BCryptPasswordEncoder(passwordHashingExecutor.getBcryptStrength());
+        // По умолчанию половина ядер: вторая половина остается входам и обычным запросам
+        int threads = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.hashingPool = new ForkJoinPool(threads);
+        this.batchSize = batchSize;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Читает строки импорта из CSV с заголовком
+     * (email,password,firstName,lastName,role,country,gender,dateOfBirth; регистр заголовков не важен)
+     */
+    public List<UserImportRow> parseCsv(Reader reader) throws IOException {
+        CSVFormat format = CSVFormat.DEFAULT.builder()
+                .setHeader()
+                .setSkipHeaderRecord(true)
+                .setIgnoreHeaderCase(true)
+                .setIgnoreEmptyLines(true)
+                .setTrim(true)
+                .build();
+
+        List<UserImportRow> rows = new ArrayList<>();
+        try (CSVParser parser = format.parse(reader)) {
+            if (parser.getHeaderNames().stream().noneMatch("email"::equalsIgnoreCase)) {
+                throw new ValidationException("В CSV нет столбца email");
+            }
+            for (CSVRecord record : parser) {
+                if (rows.size() >= maxRows) {
+                    throw new ValidationException("Слишком много строк для импорта, максимум " + maxRows);
+                }
+                rows.add(new UserImportRow(
+                        value(record, "email"), value(record, "password"),
+                        value(record, "firstName"), value(record, "lastName"),
+                        value(record, "role"), value(record, "country"),
+                        value(record, "gender"), value(record, "dateOfBirth")));
+            }
+        } catch (UncheckedIOException | IllegalStateException e) {
+            // Так CSVParser сообщает о незакрытых кавычках и дубликатах заголовков
+            throw new ValidationException("Некорректный CSV: " + e.getMessage());
+        }
+        return rows;
+    }
+
+    /**
+     * Импортирует пользователей. Строки с ошибками пропускаются, остальные сохраняются.
+     */
+    public UserImportResult importUsers(List<UserImportRow> rows) {
+        if (rows.size() > maxRows) {
+            throw new ValidationException("Слишком много строк для импорта, максимум " + maxRows);
+        }
+
+        long startTime = System.currentTimeMillis();
+        UserImportResult result = new UserImportResult();
+        result.setTotal(rows.size());
+        Set<String> seenEmails = new HashSet<>();
+
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, rows.size());
+            result.setImported(result.getImported() + importBatch(rows, from, to, seenEmails, result.getErrors()));
+        }
+
+        if (result.getImported() > 0) {
+            dataVersionService.markChanged(DataVersionService.Table.USERS);
+        }
+        result.setDurationMs(System.currentTimeMillis() - startTime);
+        logger.info("Импорт пользователей: {} из {} строк за {} мс, ошибок: {}",
+                result.getImported(), result.getTotal(), result.getDurationMs(), result.getErrors().size());
+        return result;
+    }
+
+    /**
+     * Импортирует строки [from, to)
+     * @return количество сохраненных пользователей
+     */
+    private int importBatch(List<UserImportRow> rows, int from, int to, Set<String> seenEmails,
+                            List<UserImportResult.RowError> errors) {
+        List<User> users = new ArrayList<>(to - from);
+        List<Integer> rowNumbers = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            UserImportRow row = rows.get(i);
+            try {
+                User user = toUser(row);
+                // Колляция email в БД без учета регистра, поэтому и дубликаты в файле ищутся так же
+                if (!seenEmails.add(user.getEmail().toLowerCase(Locale.ROOT))) {
+                    throw new ValidationException("Email повторяется в файле");
+                }
+                users.add(user);
+                rowNumbers.add(i + 1);
+            } catch (ValidationException e) {
+                errors.add(new UserImportResult.RowError(i + 1, row.getEmail(), e.getMessage()));
+            }
+        }
+        if (users.isEmpty()) {
+            return 0;
+        }
+
+        // Одна проверка уникальности на пачку вместо existsByEmail на строку
+        Set<String> existing = new HashSet<>();
+        List<String> emails = users.stream().map(User::getEmail).toList();
+        for (String email : userRepository.findExistingEmails(emails)) {
+            existing.add(email.toLowerCase(Locale.ROOT));
+        }
+        List<User> fresh = new ArrayList<>(users.size());
+        List<Integer> freshRowNumbers = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            if (existing.contains(user.getEmail().toLowerCase(Locale.ROOT))) {
+                errors.add(new UserImportResult.RowError(rowNumbers.get(i), user.getEmail(),
+                        "Пользователь с таким email уже существует"));
+            } else {
+                fresh.add(user);
+                freshRowNumbers.add(rowNumbers.get(i));
+            }
+        }
+        if (fresh.isEmpty()) {
+            return 0;
+        }
+
+        hashPasswords(fresh);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+                for (User user : fresh) {
+                    entityManager.persist(user);
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+        } catch (Exception e) {
+            // Например, тот же email добавлен параллельно после проверки: сохраняем строки по одной
+            logger.warn("Пакетная вставка пользователей не удалась, вставка по одному: {}", e.getMessage());
+            return insertOneByOne(fresh, freshRowNumbers, errors);
+        }
+
+        fresh.forEach(userSearchIndex::add);
+        return fresh.size();
+    }
+
+    private int insertOneByOne(List<User> users, List<Integer> rowNumbers, List<UserImportResult.RowError> errors) {
+        int imported = 0;
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            // id, выданные в откаченной транзакции, не используются повторно
+            user.setId(null);
+            try {
+                transactionTemplate.executeWithoutResult(status -> entityManager.persist(user));
+                userSearchIndex.add(user);
+                imported++;
+            } catch (Exception e) {
+                errors.add(new UserImportResult.RowError(rowNumbers.get(i), user.getEmail(),
+                        "Не удалось сохранить пользователя: " + e.getMessage()));
+            }
+        }
+        return imported;
+    }
+
+    private void hashPasswords(List<User> users) {
+        try {
+            hashingPool.submit(() -> users.parallelStream()
+                    .forEach(user -> user.setPassword(encoder.encode(user.getPassword()))))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Импорт пользователей прерван", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ошибка при хешировании паролей: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private User toUser(UserImportRow row) {
+        validationUtils.validateEmail(row.getEmail());
+        validationUtils.validateName(row.getFirstName(), "Имя");
+        validationUtils.validateName(row.getLastName(), "Фамилия");
+        validationUtils.validatePassword(row.getPassword());
+        if (row.getDateOfBirth() != null && !row.getDateOfBirth().isBlank()) {
+            validationUtils.validateDateOfBirth(row.getDateOfBirth());
+        }
+
+        User user = new User();
+        user.setEmail(row.getEmail().trim());
+        user.setUsername(user.getEmail());
+        user.setFirstName(row.getFirstName().trim());
+        user.setLastName(row.getLastName().trim());
+        user.setPassword(row.getPassword());
+        user.setRole(parseRole(row.getRole()));
+        user.setCountry(emptyToNull(row.getCountry()));
+        user.setGender(emptyToNull(row.getGender()));
+        user.setDateOfBirth(emptyToNull(row.getDateOfBirth()));
+        return user;
+    }
+
+    private static User.Role parseRole(String role) {
+        if (role == null || role.isBlank()) {
+            return User.Role.USER;
+        }
+        try {
+            return User.Role.valueOf(role.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Неизвестная роль: " + role);
+        }
+    }
+
+    private static String value(CSVRecord record, String column) {
+        return record.isMapped(column) && record.isSet(column) ? emptyToNull(record.get(column)) : null;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingPool.shutdownNow();
+    }
+}
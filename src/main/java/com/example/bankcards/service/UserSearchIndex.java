@@ -0,0 +1,353 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Триграммный индекс справочника пользователей по id, имени, фамилии и email.
+ *
+ * Поиск сохраняет смысл прежнего LIKE '%q%': слово запроса ищется как подстрока
+ * любого поля. Кандидаты находятся пересечением списков триграмм слова и затем
+ * проверяются по самим значениям полей; слова короче трех символов проверяются
+ * по всем пользователям в памяти. Несколько слов должны совпасть все.
+ * Результаты ранжируются: точное совпадение поля, затем начало поля, затем подстрока.
+ *
+ * Индекс строится при старте и обновляется из UserService после коммита транзакции.
+ * Индекс свой на каждом узле: изменения, сделанные на другом узле, подхватываются
+ * периодическим чтением пользователей с updated_at не раньше прошлой проверки
+ * (users.search-index.refresh-interval-ms), то есть появляются в поиске с этой задержкой.
+ * Удаленные на другом узле пользователи остаются в индексе до ночного перестроения,
+ * но в выдачу не попадают: их строки уже не загружаются из БД.
+ * Пока индекс не готов, поиск возвращает null и вызывающий код использует запрос к БД.
+ */
+@Service
+public class UserSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    private static final int GRAM = 3;
+    private static final int EXACT_SCORE = 100;
+    private static final int PREFIX_SCORE = 40;
+    private static final int CONTAINS_SCORE = 10;
+    /** Запас на транзакции, закоммиченные позже выставленного ими updated_at */
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private IndexData data = new IndexData();
+    private volatile boolean ready;
+    private volatile LocalDateTime refreshedAt;
+
+    // Изменения, пришедшие во время перестроения, повторяются на новом индексе
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final List<Consumer<IndexData>> pendingChanges = new ArrayList<>();
+
+    @Autowired
+    public UserSearchIndex(UserRepository userRepository, PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Строит индекс в фоне после старта приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Thread thread = new Thread(this::rebuild, "user-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Ночное перестроение подхватывает изменения, сделанные в обход UserService
+     */
+    @Scheduled(cron = "${users.search-index.rebuild-cron:0 40 3 * * ?}")
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        LocalDateTime startedAt = LocalDateTime.now();
+        try {
+            IndexData fresh = new IndexData();
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = userRepository.streamForSearchIndex()) {
+                    rows.forEach(row -> fresh.add((Long) row[0], (String) row[1], (String) row[2], (String) row[3]));
+                }
+            });
+
+            lock.writeLock().lock();
+            try {
+                for (Consumer<IndexData> change : pendingChanges) {
+                    change.accept(fresh);
+                }
+                data = fresh;
+                refreshedAt = startedAt;
+                ready = true;
+            } finally {
+                pendingChanges.clear();
+                rebuilding.set(false);
+                lock.writeLock().unlock();
+            }
+
+            logger.info("Индекс поиска пользователей построен: {} пользователей, {} триграмм за {} мс",
+                    fresh.documentCount(), fresh.gramCount(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            lock.writeLock().lock();
+            try {
+                pendingChanges.clear();
+                rebuilding.set(false);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.error("Ошибка при построении индекса поиска пользователей: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Подхватывает пользователей, созданных или измененных с прошлой проверки, в том числе на других узлах
+     */
+    @Scheduled(fixedDelayString = "${users.search-index.refresh-interval-ms:30000}",
+            initialDelayString = "${users.search-index.refresh-interval-ms:30000}")
+    public void refreshChanged() {
+        LocalDateTime since = refreshedAt;
+        if (since == null || rebuilding.get()) {
+            return;
+        }
+
+        LocalDateTime startedAt = LocalDateTime.now();
+        try {
+            List<Object[]> changed = new ArrayList<>();
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = userRepository.streamForSearchIndexChangedSince(since.minus(REFRESH_OVERLAP))) {
+                    rows.forEach(changed::add);
+                }
+            });
+
+            for (Object[] row : changed) {
+                Long id = (Long) row[0];
+                apply(index -> index.add(id, (String) row[1], (String) row[2], (String) row[3]));
+            }
+            refreshedAt = startedAt;
+            logger.debug("Индекс поиска пользователей обновлен: {} измененных пользователей", changed.size());
+        } catch (Exception e) {
+            logger.warn("⚠️ Не удалось обновить индекс поиска пользователей: {}", e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Добавляет пользователя в индекс или обновляет его поля
+     */
+    public void add(User user) {
+        Long id = user.getId();
+        String firstName = user.getFirstName();
+        String lastName = user.getLastName();
+        String email = user.getEmail();
+        apply(index -> index.add(id, firstName, lastName, email));
+    }
+
+    /**
+     * Удаляет пользователя из индекса
+     */
+    public void remove(Long id) {
+        apply(index -> index.remove(id));
+    }
+
+    /**
+     * Ищет пользователей, у которых каждое слово запроса входит в id, имя, фамилию или email
+     * @return id по убыванию релевантности или null, если индекс не готов или запрос пуст
+     */
+    public long[] search(String query) {
+        if (!ready) {
+            return null;
+        }
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            return data.search(terms);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Consumer<IndexData> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(data);
+            if (rebuilding.get()) {
+                pendingChanges.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Разбивает запрос на слова по пробелам без повторов
+     */
+    static List<String> tokenize(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (query != null) {
+            for (String term : normalize(query).split("\\s+")) {
+                if (!term.isEmpty()) {
+                    terms.add(term);
+                }
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    /**
+     * Данные индекса. Не потокобезопасны, доступ защищен блокировкой сервиса.
+     */
+    private static final class IndexData {
+        private final Map<String, PostingList> grams = new HashMap<>();
+        /** Нормализованные поля: id, имя, фамилия, email */
+        private final Map<Long, String[]> documents = new HashMap<>();
+        private final PostingList allIds = new PostingList();
+
+        void add(Long id, String firstName, String lastName, String email) {
+            remove(id);
+
+            String[] fields = {String.valueOf(id), normalize(firstName), normalize(lastName), normalize(email)};
+            for (String gram : gramsOf(fields)) {
+                grams.computeIfAbsent(gram, key -> new PostingList()).add(id);
+            }
+            documents.put(id, fields);
+            allIds.add(id);
+        }
+
+        void remove(Long id) {
+            String[] fields = documents.remove(id);
+            if (fields == null) {
+                return;
+            }
+            for (String gram : gramsOf(fields)) {
+                PostingList list = grams.get(gram);
+                if (list != null && list.remove(id) && list.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+            allIds.remove(id);
+        }
+
+        long[] search(List<String> terms) {
+            // Кандидаты: пересечение триграмм всех слов; короткие слова не сужают выборку
+            long[] candidates = null;
+            for (String term : terms) {
+                if (term.length() < GRAM) {
+                    continue;
+                }
+                for (String gram : gramsOf(term)) {
+                    PostingList list = grams.get(gram);
+                    if (list == null) {
+                        return new long[0];
+                    }
+                    candidates = candidates == null ? list.toArray() : PostingList.intersect(candidates, list.toArray());
+                    if (candidates.length == 0) {
+                        return candidates;
+                    }
+                }
+            }
+            if (candidates == null) {
+                candidates = allIds.toArray();
+            }
+
+            // Проверка подстрокой убирает кандидатов, у которых триграммы пришли из разных мест
+            List<long[]> matches = new ArrayList<>();
+            for (long id : candidates) {
+                int score = score(documents.get(id), terms);
+                if (score > 0) {
+                    matches.add(new long[]{id, score});
+                }
+            }
+            matches.sort((a, b) -> a[1] != b[1] ? Long.compare(b[1], a[1]) : Long.compare(a[0], b[0]));
+
+            long[] result = new long[matches.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = matches.get(i)[0];
+            }
+            return result;
+        }
+
+        private static int score(String[] fields, List<String> terms) {
+            int total = 0;
+            for (String term : terms) {
+                int best = 0;
+                for (String field : fields) {
+                    if (field.equals(term)) {
+                        best = EXACT_SCORE;
+                        break;
+                    } else if (field.startsWith(term)) {
+                        best = Math.max(best, PREFIX_SCORE);
+                    } else if (best < CONTAINS_SCORE && field.contains(term)) {
+                        best = CONTAINS_SCORE;
+                    }
+                }
+                if (best == 0) {
+                    return 0;
+                }
+                total += best;
+            }
+            return total;
+        }
+
+        private static Set<String> gramsOf(String... values) {
+            Set<String> result = new HashSet<>();
+            for (String value : values) {
+                for (int i = 0; i + GRAM <= value.length(); i++) {
+                    result.add(value.substring(i, i + GRAM));
+                }
+            }
+            return result;
+        }
+
+        int documentCount() {
+            return documents.size();
+        }
+
+        int gramCount() {
+            return grams.size();
+        }
+    }
+}
@@ -1,29 +1,76 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ShardRouter;
+import com.example.bankcards.dto.UserSummary;
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.RevokedToken;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.*;
+import com.example.bankcards.repository.AuditLogRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.RefreshTokenService;
+import com.example.bankcards.security.TokenRevocationService;
 import com.example.bankcards.util.ValidationUtils;
+import jakarta.persistence.EntityManagerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
- * Сервис для работы с пользователями
+ * Сервис для работы с пользователями.
+ *
+ * Изменяющие методы читают пользователя и пишут его в одной транзакции на запись, поэтому
+ * при включенных репликах чтение идет в основную БД, а не в отстающую реплику
  */
 @Service
 public class UserService {
+    /** Больше совпадений страница ищется запросом к БД, а не по списку id */
+    private static final int MAX_INDEXED_PAGE_IDS = 1000;
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     
     @Autowired
     private ValidationUtils validationUtils;
 
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    // Без database.shards.enabled бина нет и все выполняется в текущей транзакции
+    @Autowired(required = false)
+    private ShardRouter shardRouter = ShardRouter.SINGLE;
+
     @Autowired
     public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
         this.userRepository = userRepository;
@@ -33,6 +80,7 @@ public class UserService {
     /**
      * Создает нового пользователя
      */
+    @Transactional
     public User createUser(User user) {
         // Валидация входных данных
         validationUtils.validateEmail(user.getEmail());
@@ -57,12 +105,17 @@ public class UserService {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         User newUser = userRepository.save(user);
         userRepository.flush();
+        dataVersionService.markChanged(DataVersionService.Table.USERS);
+        afterCommit(() -> userSearchIndex.add(newUser));
         return newUser;
     }
 
     /**
-     * Находит пользователя по email
+     * Находит пользователя по email.
+     * Используется при входе и для определения текущего пользователя, поэтому читает основную БД:
+     * на реплике может не оказаться только что созданного пользователя или нового пароля
      */
+    @Transactional
     public Optional<User> findByEmail(String email) {
         return userRepository.findByEmail(email);
     }
@@ -84,15 +137,24 @@ public class UserService {
     /**
      * Сохраняет пользователя
      */
+    @Transactional
     public User save(User user) {
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        dataVersionService.markChanged(DataVersionService.Table.USERS);
+        afterCommit(() -> userSearchIndex.add(savedUser));
+        return savedUser;
     }
 
     /**
-     * Поиск пользователей по имени, email или ID
+     * Поиск пользователей по имени, email или ID.
+     * Результаты упорядочены по релевантности; пока индекс строится, используется поиск в БД
      */
     public List<User> searchUsers(String query) {
-        return userRepository.searchUsers(query);
+        long[] ids = userSearchIndex.search(query);
+        if (ids == null) {
+            return userRepository.searchUsers(query);
+        }
+        return loadInOrder(ids);
     }
 
     /**
@@ -102,17 +164,93 @@ public class UserService {
         return userRepository.findAll(pageable);
     }
 
+    /**
+     * Сводки по пользователям страницы (карты, непрочитанные уведомления, последнее действие)
+     * одним запросом независимо от размера страницы. При шардировании карты и уведомления
+     * считаются запросом в шарде каждой группы пользователей, а последнее действие
+     * берется из аудита в шарде 0
+     * @return сводки по id пользователя в порядке списка
+     */
+    public Map<Long, UserSummary> getUserSummaries(List<User> users) {
+        Map<Long, UserSummary> summaries = new LinkedHashMap<>();
+        for (User user : users) {
+            summaries.put(user.getId(), UserSummary.empty(user.getId()));
+        }
+        if (summaries.isEmpty()) {
+            return summaries;
+        }
+        if (!shardRouter.isSharded()) {
+            for (UserSummary summary : userRepository.findSummariesByIds(summaries.keySet(), BankCard.Status.ACTIVE)) {
+                summaries.put(summary.getUserId(), summary);
+            }
+            return summaries;
+        }
+
+        Map<Integer, Set<Long>> groups = new LinkedHashMap<>();
+        for (Long userId : summaries.keySet()) {
+            groups.computeIfAbsent(shardRouter.shardOfUser(userId), shard -> new LinkedHashSet<>()).add(userId);
+        }
+        for (Map.Entry<Integer, Set<Long>> group : groups.entrySet()) {
+            List<UserSummary> shardSummaries = shardRouter.inShard(group.getKey(),
+                    () -> userRepository.findSummariesByIds(group.getValue(), BankCard.Status.ACTIVE));
+            for (UserSummary summary : shardSummaries) {
+                summaries.put(summary.getUserId(), summary);
+            }
+        }
+        // Аудит есть только в шарде 0, в остальных шардах подзапрос вернул null
+        for (Object[] row : auditLogRepository.findLastActivityByUserIds(summaries.keySet())) {
+            summaries.get((Long) row[0]).setLastActivityAt((LocalDateTime) row[1]);
+        }
+        return summaries;
+    }
+
     /**
      * Поиск пользователей с пагинацией
      */
     public Page<User> searchUsersWithPagination(String query, Pageable pageable) {
-        return userRepository.searchUsersWithPagination(query, pageable);
+        long[] ids = userSearchIndex.search(query);
+        if (ids == null || ids.length > MAX_INDEXED_PAGE_IDS) {
+            return userRepository.searchUsersWithPagination(query, pageable);
+        }
+        if (ids.length == 0) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+        // Сортировка страницы задается пользователем, поэтому порядок релевантности здесь не нужен
+        return userRepository.findByIdIn(toIdList(ids), pageable);
+    }
+
+    /**
+     * Загружает пользователей по id, сохраняя порядок id
+     */
+    private List<User> loadInOrder(long[] ids) {
+        List<Long> idList = toIdList(ids);
+        Map<Long, User> loaded = new HashMap<>();
+        for (User user : userRepository.findAllById(idList)) {
+            loaded.put(user.getId(), user);
+        }
+        List<User> users = new ArrayList<>(ids.length);
+        for (Long id : idList) {
+            User user = loaded.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    private static List<Long> toIdList(long[] ids) {
+        List<Long> idList = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            idList.add(id);
+        }
+        return idList;
     }
 
 
     /**
      * Обновление пользователя
      */
+    @Transactional
     public User updateUser(Long id, User userData) {
         // Валидация ID
         validationUtils.validateId(id, "пользователя");
@@ -120,6 +258,9 @@ public class UserService {
         User existingUser = userRepository.findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Пользователь", id));
         
+        String previousEmail = existingUser.getEmail();
+        boolean passwordChanged = false;
+
         // Обновляем только непустые поля с валидацией
         if (userData.getFirstName() != null && !userData.getFirstName().isEmpty()) {
             validationUtils.validateName(userData.getFirstName(), "Имя");
@@ -142,6 +283,7 @@ public class UserService {
         if (userData.getPassword() != null && !userData.getPassword().isEmpty()) {
             validationUtils.validatePassword(userData.getPassword());
             existingUser.setPassword(passwordEncoder.encode(userData.getPassword()));
+            passwordChanged = true;
         }
         if (userData.getRole() != null) {
             existingUser.setRole(userData.getRole());
@@ -157,19 +299,59 @@ public class UserService {
             existingUser.setDateOfBirth(userData.getDateOfBirth());
         }
         
-        return userRepository.save(existingUser);
+        User savedUser = userRepository.save(existingUser);
+        dataVersionService.markChanged(DataVersionService.Table.USERS);
+        afterCommit(() -> userSearchIndex.add(savedUser));
+
+        // Выданные ранее токены содержат старый email или были получены со старым паролем
+        if (!previousEmail.equals(savedUser.getEmail())) {
+            tokenRevocationService.revokeAllForSubject(previousEmail, RevokedToken.Reasons.EMAIL_CHANGED);
+        } else if (passwordChanged) {
+            tokenRevocationService.revokeAllForSubject(previousEmail, RevokedToken.Reasons.PASSWORD_CHANGED);
+        }
+        // Refresh токены привязаны к id и переживают смену email, но не смену пароля
+        if (passwordChanged) {
+            refreshTokenService.revokeAllForUser(savedUser.getId());
+        }
+        return savedUser;
     }
 
     /**
      * Удаление пользователя
      */
+    @Transactional
     public void deleteUser(Long id) {
         // Валидация входных данных
         validationUtils.validateId(id, "пользователя");
         
-        if (!userRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Пользователь", id);
-        }
+        String email = userRepository.findById(id)
+            .map(User::getEmail)
+            .orElseThrow(() -> new ResourceNotFoundException("Пользователь", id));
+        // audit_logs партиционирована и не имеет внешнего ключа на users
+        auditLogRepository.detachUser(id);
+        refreshTokenService.deleteAllForUser(id);
         userRepository.deleteById(id);
+        // Карты удаляются каскадом в БД мимо Hibernate: их копии в кэше второго уровня больше не действительны
+        entityManagerFactory.getCache().evict(BankCard.class);
+        afterCommit(() -> userSearchIndex.remove(id));
+        dataVersionService.markChanged(DataVersionService.Table.USERS, DataVersionService.Table.CARDS,
+                DataVersionService.Table.TRANSFERS, DataVersionService.Table.AUDIT);
+        tokenRevocationService.revokeAllForSubject(email, RevokedToken.Reasons.USER_DELETED);
+    }
+
+    /**
+     * Индекс поиска меняется только после коммита: откат не должен оставлять в нем пользователя
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 }
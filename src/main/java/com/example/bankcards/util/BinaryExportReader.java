@@ -0,0 +1,206 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.util.BinaryExportWriter.Column;
+import com.example.bankcards.util.BinaryExportWriter.ColumnType;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Чтение бинарного экспорта, записанного {@link BinaryExportWriter}.
+ *
+ * Пример:
+ * <pre>
+ * try (BinaryExportReader reader = new BinaryExportReader(in)) {
+ *     int balance = reader.columnIndex("balance");
+ *     while (reader.next()) {
+ *         BigDecimal amount = reader.getAmount(balance);
+ *     }
+ * }
+ * </pre>
+ */
+public class BinaryExportReader implements Closeable {
+
+    private final DataInputStream in;
+    private final List<Column> columns;
+    private final boolean[] nulls;
+    private final long[] longValues;
+    private final String[] stringValues;
+    private final byte[] nullBitmap;
+    private long rowCount;
+    private boolean finished;
+
+    public BinaryExportReader(InputStream source) throws IOException {
+        DataInputStream header = new DataInputStream(source);
+        byte[] magic = new byte[BinaryExportWriter.MAGIC.length];
+        header.readFully(magic);
+        if (!Arrays.equals(magic, BinaryExportWriter.MAGIC)) {
+            throw new IOException("Поток не является бинарным экспортом");
+        }
+        int version = header.readUnsignedByte();
+        if (version != BinaryExportWriter.VERSION) {
+            throw new IOException("Неподдерживаемая версия формата: " + version);
+        }
+        int flags = header.readUnsignedByte();
+
+        InputStream body = (flags & BinaryExportWriter.FLAG_DEFLATE) != 0 ? new InflaterInputStream(source) : source;
+        this.in = new DataInputStream(new BufferedInputStream(body));
+
+        int count = in.readUnsignedShort();
+        Column[] definitions = new Column[count];
+        for (int i = 0; i < count; i++) {
+            ColumnType type = ColumnType.fromCode(in.readUnsignedByte());
+            byte[] name = new byte[in.readUnsignedShort()];
+            in.readFully(name);
+            definitions[i] = new Column(new String(name, StandardCharsets.UTF_8), type);
+        }
+        this.columns = Collections.unmodifiableList(Arrays.asList(definitions));
+        this.nulls = new boolean[count];
+        this.longValues = new long[count];
+        this.stringValues = new String[count];
+        this.nullBitmap = new byte[(count + 7) / 8];
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Индекс колонки по имени
+     */
+    public int columnIndex(String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).name().equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Колонка не найдена: " + name);
+    }
+
+    /**
+     * Переходит к следующей строке
+     * @return false, если строки закончились
+     */
+    public boolean next() throws IOException {
+        if (finished) {
+            return false;
+        }
+
+        int marker = in.readUnsignedByte();
+        if (marker == BinaryExportWriter.MARKER_END) {
+            long expected = in.readLong();
+            if (expected != rowCount) {
+                throw new IOException("Поврежденный поток: ожидалось " + expected + " строк, прочитано " + rowCount);
+            }
+            finished = true;
+            return false;
+        }
+        if (marker != BinaryExportWriter.MARKER_ROW) {
+            throw new IOException("Поврежденный поток: неизвестный маркер " + marker);
+        }
+
+        in.readFully(nullBitmap);
+        for (int i = 0; i < columns.size(); i++) {
+            nulls[i] = (nullBitmap[i >>> 3] & (1 << (i & 7))) != 0;
+            stringValues[i] = null;
+            if (nulls[i]) {
+                continue;
+            }
+            switch (columns.get(i).type()) {
+                case INT64:
+                case AMOUNT:
+                case TIMESTAMP:
+                    longValues[i] = in.readLong();
+                    break;
+                case DATE:
+                    longValues[i] = in.readInt();
+                    break;
+                case STRING:
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    stringValues[i] = new String(bytes, StandardCharsets.UTF_8);
+                    break;
+                default:
+                    throw new IOException("Неизвестный тип колонки: " + columns.get(i).type());
+            }
+        }
+        rowCount++;
+        return true;
+    }
+
+    /**
+     * Количество прочитанных строк
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isNull(int index) {
+        return nulls[index];
+    }
+
+    public long getLong(int index) {
+        return value(index, ColumnType.INT64);
+    }
+
+    /**
+     * Сумма в копейках
+     */
+    public long getAmountUnscaled(int index) {
+        return value(index, ColumnType.AMOUNT);
+    }
+
+    public BigDecimal getAmount(int index) {
+        return nulls[index] ? null : BigDecimal.valueOf(getAmountUnscaled(index), BinaryExportWriter.AMOUNT_SCALE);
+    }
+
+    public long getTimestampMillis(int index) {
+        return value(index, ColumnType.TIMESTAMP);
+    }
+
+    public LocalDateTime getTimestamp(int index, ZoneId zone) {
+        return nulls[index] ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(getTimestampMillis(index)), zone);
+    }
+
+    public LocalDate getDate(int index) {
+        return nulls[index] ? null : LocalDate.ofEpochDay(value(index, ColumnType.DATE));
+    }
+
+    public String getString(int index) {
+        checkType(index, ColumnType.STRING);
+        return stringValues[index];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private long value(int index, ColumnType type) {
+        checkType(index, type);
+        if (nulls[index]) {
+            throw new IllegalStateException("Колонка " + columns.get(index).name() + " содержит NULL");
+        }
+        return longValues[index];
+    }
+
+    private void checkType(int index, ColumnType type) {
+        if (columns.get(index).type() != type) {
+            throw new IllegalStateException("Колонка " + columns.get(index).name() + " имеет тип "
+                    + columns.get(index).type());
+        }
+    }
+}
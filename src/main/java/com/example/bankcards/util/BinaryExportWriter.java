@@ -0,0 +1,370 @@
+package com.example.bankcards.util;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Запись экспорта в компактном бинарном формате для машинных потребителей.
+ *
+ * Формат (все числа big-endian):
+ * <pre>
+ * "BCX1" | версия (1 байт) | флаги (1 байт, бит 0 - Deflate)
+ * далее, при включенном Deflate, - сжатый поток:
+ * количество колонок (2 байта)
+ * для каждой колонки: тип (1 байт), длина имени (2 байта), имя в UTF-8
+ * строки: маркер 1, битовая карта NULL-значений, значения непустых колонок
+ * конец: маркер 0, количество строк (8 байт)
+ * </pre>
+ * Значения: INT64 - 8 байт, AMOUNT - сумма в копейках (8 байт), TIMESTAMP - epoch millis UTC
+ * (8 байт), DATE - epoch day (4 байта), STRING - длина (4 байта) и байты UTF-8.
+ *
+ * Буферы строки переиспользуются, строки кодируются в UTF-8 вручную,
+ * поэтому запись строки не создает новых объектов.
+ * Читается классом {@link BinaryExportReader}.
+ */
+public class BinaryExportWriter implements Closeable {
+
+    static final byte[] MAGIC = {'B', 'C', 'X', '1'};
+    static final int VERSION = 1;
+    static final int FLAG_DEFLATE = 1;
+    static final int MARKER_ROW = 1;
+    static final int MARKER_END = 0;
+
+    /**
+     * Количество знаков после запятой у сумм
+     */
+    public static final int AMOUNT_SCALE = 2;
+
+    private static final double AMOUNT_FACTOR = 100.0;
+    private static final int FAST_AMOUNT_PRECISION = 15;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Типы колонок
+     */
+    public enum ColumnType {
+        INT64(1),
+        AMOUNT(2),
+        TIMESTAMP(3),
+        DATE(4),
+        STRING(5);
+
+        private final int code;
+
+        ColumnType(int code) {
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        static ColumnType fromCode(int code) {
+            for (ColumnType type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестный тип колонки: " + code);
+        }
+    }
+
+    /**
+     * Описание колонки
+     */
+    public record Column(String name, ColumnType type) {
+    }
+
+    private final Column[] columns;
+    private final ZoneRules zoneRules;
+    private final OutputStream sink;
+    private final DeflaterOutputStream deflaterStream;
+    private final Deflater deflater;
+
+    private final byte[] nullBitmap;
+    private byte[] rowBuffer = new byte[1024];
+    private int rowLength;
+    private int column = -1;
+    private long rowCount;
+    private boolean finished;
+
+    /**
+     * Создает writer и сразу записывает заголовок.
+     * Переданный поток не закрывается - за это отвечает вызывающий код.
+     */
+    public BinaryExportWriter(OutputStream out, boolean deflate, ZoneId zone, Column... columns) throws IOException {
+        if (columns.length == 0 || columns.length > 0xFFFF) {
+            throw new IllegalArgumentException("Недопустимое количество колонок: " + columns.length);
+        }
+        this.columns = columns.clone();
+        this.zoneRules = zone.getRules();
+        this.nullBitmap = new byte[(columns.length + 7) / 8];
+
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(deflate ? FLAG_DEFLATE : 0);
+
+        if (deflate) {
+            this.deflater = new Deflater(Deflater.BEST_SPEED);
+            this.deflaterStream = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+            this.sink = new BufferedOutputStream(deflaterStream, BUFFER_SIZE);
+        } else {
+            this.deflater = null;
+            this.deflaterStream = null;
+            this.sink = new BufferedOutputStream(out, BUFFER_SIZE);
+        }
+
+        writeRawShort(sink, columns.length);
+        for (Column col : columns) {
+            byte[] name = col.name().getBytes(StandardCharsets.UTF_8);
+            sink.write(col.type().getCode());
+            writeRawShort(sink, name.length);
+            sink.write(name);
+        }
+    }
+
+    public static Column column(String name, ColumnType type) {
+        return new Column(name, type);
+    }
+
+    /**
+     * Начинает новую строку
+     */
+    public void beginRow() {
+        if (finished) {
+            throw new IllegalStateException("Запись уже завершена");
+        }
+        if (column >= 0) {
+            throw new IllegalStateException("Предыдущая строка не завершена");
+        }
+        Arrays.fill(nullBitmap, (byte) 0);
+        rowLength = 0;
+        column = 0;
+    }
+
+    public void writeLong(long value) {
+        next(ColumnType.INT64);
+        putLong(value);
+    }
+
+    public void writeLong(Long value) {
+        if (value == null) {
+            writeNull(ColumnType.INT64);
+        } else {
+            writeLong(value.longValue());
+        }
+    }
+
+    /**
+     * Записывает сумму в копейках.
+     * Суммы из БД уже имеют масштаб 2, для них значение получается без BigInteger;
+     * остальные округляются до копеек.
+     */
+    public void writeAmount(BigDecimal value) {
+        if (value == null) {
+            writeNull(ColumnType.AMOUNT);
+            return;
+        }
+        next(ColumnType.AMOUNT);
+        long scaled;
+        if (value.scale() == AMOUNT_SCALE && value.precision() <= FAST_AMOUNT_PRECISION) {
+            // До 15 знаков double восстанавливает исходное целое число копеек точно
+            scaled = Math.round(value.doubleValue() * AMOUNT_FACTOR);
+        } else {
+            scaled = value.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        }
+        putLong(scaled);
+    }
+
+    public void writeTimestamp(LocalDateTime value) {
+        if (value == null) {
+            writeNull(ColumnType.TIMESTAMP);
+            return;
+        }
+        next(ColumnType.TIMESTAMP);
+        long seconds = value.toEpochSecond(zoneRules.getOffset(value));
+        putLong(seconds * 1000 + value.getNano() / 1_000_000);
+    }
+
+    public void writeDate(LocalDate value) {
+        if (value == null) {
+            writeNull(ColumnType.DATE);
+            return;
+        }
+        next(ColumnType.DATE);
+        putInt((int) value.toEpochDay());
+    }
+
+    public void writeString(CharSequence value) {
+        if (value == null) {
+            writeNull(ColumnType.STRING);
+            return;
+        }
+        next(ColumnType.STRING);
+        int length = utf8Length(value);
+        putInt(length);
+        ensureCapacity(length);
+        encodeUtf8(value);
+    }
+
+    /**
+     * Записывает NULL в текущую колонку
+     */
+    public void writeNull(ColumnType expected) {
+        int index = column;
+        next(expected);
+        nullBitmap[index >>> 3] |= (byte) (1 << (index & 7));
+    }
+
+    /**
+     * Завершает строку и передает ее в выходной поток
+     */
+    public void endRow() throws IOException {
+        if (column != columns.length) {
+            throw new IllegalStateException("Записано " + Math.max(column, 0) + " из " + columns.length + " колонок");
+        }
+        sink.write(MARKER_ROW);
+        sink.write(nullBitmap);
+        sink.write(rowBuffer, 0, rowLength);
+        column = -1;
+        rowCount++;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Записывает маркер конца и дожимает сжатый поток. Исходный поток остается открытым.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (column >= 0) {
+            throw new IllegalStateException("Последняя строка не завершена");
+        }
+        finished = true;
+
+        sink.write(MARKER_END);
+        writeRawLong(sink, rowCount);
+        sink.flush();
+        if (deflaterStream != null) {
+            deflaterStream.finish();
+            deflaterStream.flush();
+            deflater.end();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    private void next(ColumnType type) {
+        if (column < 0 || column >= columns.length) {
+            throw new IllegalStateException("Значение вне строки или лишняя колонка");
+        }
+        if (columns[column].type() != type) {
+            throw new IllegalStateException("Колонка " + columns[column].name() + " имеет тип "
+                    + columns[column].type() + ", а записывается " + type);
+        }
+        column++;
+    }
+
+    private void putLong(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            rowBuffer[rowLength++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void putInt(int value) {
+        ensureCapacity(4);
+        rowBuffer[rowLength++] = (byte) (value >>> 24);
+        rowBuffer[rowLength++] = (byte) (value >>> 16);
+        rowBuffer[rowLength++] = (byte) (value >>> 8);
+        rowBuffer[rowLength++] = (byte) value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (rowLength + extra > rowBuffer.length) {
+            rowBuffer = Arrays.copyOf(rowBuffer, Math.max(rowBuffer.length * 2, rowLength + extra));
+        }
+    }
+
+    /**
+     * Длина строки в UTF-8; одиночные суррогаты заменяются на '?', как в String.getBytes
+     */
+    static int utf8Length(CharSequence value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void encodeUtf8(CharSequence value) {
+        byte[] buffer = rowBuffer;
+        int pos = rowLength;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[pos++] = (byte) (0xC0 | (c >>> 6));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[pos++] = (byte) (0xF0 | (codePoint >>> 18));
+                buffer[pos++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[pos++] = '?';
+            } else {
+                buffer[pos++] = (byte) (0xE0 | (c >>> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        rowLength = pos;
+    }
+
+    private static void writeRawShort(OutputStream out, int value) throws IOException {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeRawLong(OutputStream out, long value) throws IOException {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+}
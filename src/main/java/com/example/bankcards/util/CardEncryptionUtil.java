@@ -1,5 +1,7 @@
 package com.example.bankcards.util;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
@@ -22,8 +24,14 @@ public class CardEncryptionUtil {
     // Секретный ключ для шифрования (в продакшене должен быть в переменных окружения)
     private static final String SECRET_KEY = "MySecretKey12345"; // 16 символов для AES-128
     
+    // Время шифрования и расшифровки, тег operation
+    public static final String CRYPTO_TIMER = "bankcards.card.crypto";
+    
     private SecretKey secretKey;
     
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
     public CardEncryptionUtil() {
         try {
             // Создаем ключ из строки
@@ -38,6 +46,10 @@ public class CardEncryptionUtil {
      * Шифрует номер карты
      */
     public String encryptCardNumber(String cardNumber) {
+        return meterRegistry.timer(CRYPTO_TIMER, "operation", "encrypt").record(() -> encrypt(cardNumber));
+    }
+    
+    private String encrypt(String cardNumber) {
         try {
             if (cardNumber == null || cardNumber.trim().isEmpty()) {
                 throw new IllegalArgumentException("Номер карты не может быть пустым");
@@ -64,6 +76,10 @@ public class CardEncryptionUtil {
      * Расшифровывает номер карты
      */
     public String decryptCardNumber(String encryptedCardNumber) {
+        return meterRegistry.timer(CRYPTO_TIMER, "operation", "decrypt").record(() -> decrypt(encryptedCardNumber));
+    }
+    
+    private String decrypt(String encryptedCardNumber) {
         try {
             if (encryptedCardNumber == null || encryptedCardNumber.trim().isEmpty()) {
                 throw new IllegalArgumentException("Зашифрованный номер карты не может быть пустым");
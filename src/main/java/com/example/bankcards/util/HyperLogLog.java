@@ -0,0 +1,94 @@
+package com.example.bankcards.util;
+
+import java.util.Arrays;
+
+/**
+ * Оценка количества уникальных значений (HyperLogLog) для идентификаторов типа long.
+ *
+ * Использует 1024 регистра по одному байту: погрешность около 3%, на малых
+ * количествах оценка почти точная. Скетчи можно объединять и хранить в БД
+ * в виде массива байт.
+ */
+public class HyperLogLog {
+
+    public static final int PRECISION = 10;
+    public static final int REGISTER_COUNT = 1 << PRECISION;
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTER_COUNT];
+    }
+
+    /**
+     * Восстанавливает скетч из сохраненных байт
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != REGISTER_COUNT) {
+            throw new IllegalArgumentException("Некорректный размер скетча: " + (bytes == null ? null : bytes.length));
+        }
+        HyperLogLog sketch = new HyperLogLog();
+        System.arraycopy(bytes, 0, sketch.registers, 0, REGISTER_COUNT);
+        return sketch;
+    }
+
+    public synchronized void add(long value) {
+        long hash = mix(value);
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        // Единица в конце ограничивает ранг, если оставшиеся биты нулевые
+        long rest = (hash << PRECISION) | (1L << (PRECISION - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Добавляет в этот скетч значения другого
+     */
+    public void merge(HyperLogLog other) {
+        byte[] otherRegisters = other.toBytes();
+        synchronized (this) {
+            for (int i = 0; i < REGISTER_COUNT; i++) {
+                if (otherRegisters[i] > registers[i]) {
+                    registers[i] = otherRegisters[i];
+                }
+            }
+        }
+    }
+
+    public synchronized long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+
+        double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+        // На малых количествах точнее линейный подсчет по пустым регистрам
+        if (estimate <= 2.5 * REGISTER_COUNT && zeros > 0) {
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public synchronized byte[] toBytes() {
+        return Arrays.copyOf(registers, REGISTER_COUNT);
+    }
+
+    /**
+     * Перемешивание битов (финализатор SplitMix64), чтобы последовательные id
+     * равномерно распределялись по регистрам
+     */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -10,6 +10,7 @@ import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 /**
@@ -24,10 +25,13 @@ import java.util.function.Function;
 @Component
 public class JwtUtils {
 
+    /** Время выдачи токена в миллисекундах: стандартный claim iat хранит только секунды */
+    public static final String ISSUED_AT_MILLIS_CLAIM = "iat_ms";
+
     @Value("${jwt.secret:mySecretKey123456789012345678901234567890}")
     private String secret;
 
-    @Value("${jwt.expiration:86400000}") // 24 hours
+    @Value("${jwt.expiration:900000}") // 15 minutes, продлевается через refresh токен
     private Long expiration;
 
     private SecretKey getSigningKey() {
@@ -89,15 +93,44 @@ public class JwtUtils {
         return createToken(extraClaims, userDetails.getUsername());
     }
 
+    /**
+     * Генерирует JWT токен для email пользователя (обмен refresh токена без загрузки UserDetails)
+     */
+    public String generateToken(String subject) {
+        return createToken(new HashMap<>(), subject);
+    }
+
+    /**
+     * Срок действия JWT токена в секундах
+     */
+    public long getExpirationSeconds() {
+        return expiration / 1000;
+    }
+
+    /**
+     * Время выдачи токена с точностью до миллисекунды.
+     * У токенов без claim iat_ms - время из iat, начало секунды выдачи.
+     */
+    public static Date getIssuedAt(Claims claims) {
+        Object issuedAtMillis = claims.get(ISSUED_AT_MILLIS_CLAIM);
+        if (issuedAtMillis instanceof Number number) {
+            return new Date(number.longValue());
+        }
+        return claims.getIssuedAt();
+    }
+
     /**
      * Создает JWT токен
      */
     private String createToken(Map<String, Object> claims, String subject) {
+        long now = System.currentTimeMillis();
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
+                .setId(UUID.randomUUID().toString())
+                .setIssuedAt(new Date(now))
+                .claim(ISSUED_AT_MILLIS_CLAIM, now)
+                .setExpiration(new Date(now + expiration))
                 .signWith(getSigningKey(), SignatureAlgorithm.HS256)
                 .compact();
     }
@@ -135,4 +168,15 @@ public class JwtUtils {
             return null;
         }
     }
+
+    /**
+     * Безопасно извлекает все утверждения из токена (jti, iat, exp для проверки отзыва)
+     */
+    public Claims getClaimsFromToken(String token) {
+        try {
+            return extractAllClaims(token);
+        } catch (Exception e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,3 @@
+-- Индекс для очереди уведомлений админа (фильтр по статусу обработки с сортировкой по дате)
+-- и для задачи очистки старых обработанных уведомлений
+CREATE INDEX idx_notifications_processed_created ON notifications(is_processed, created_at);
@@ -0,0 +1,18 @@
+-- Ключ открытого запроса пользователя (user_id:card_id:type) для защиты от дублей.
+-- Заполняется только у необработанных запросов, у обработанных сбрасывается в NULL,
+-- поэтому уникальный индекс ограничивает лишь ожидающие обработки запросы.
+ALTER TABLE notifications ADD COLUMN open_request_key VARCHAR(150) NULL;
+
+-- Для уже накопившихся дублей ключ получает только самый новый запрос
+UPDATE notifications n
+JOIN (
+    SELECT MAX(id) AS id
+    FROM notifications
+    WHERE is_processed = FALSE
+      AND card_id IS NOT NULL
+      AND type IN ('CARD_BLOCK_REQUEST', 'CARD_TOPUP_REQUEST', 'CARD_UNBLOCK_REQUEST')
+    GROUP BY user_id, card_id, type
+) latest ON latest.id = n.id
+SET n.open_request_key = CONCAT(n.user_id, ':', n.card_id, ':', n.type);
+
+CREATE UNIQUE INDEX uk_notifications_open_request_key ON notifications(open_request_key);
@@ -0,0 +1,13 @@
+-- Почасовые итоги аудита для панели администратора.
+-- Записываются периодически из памяти приложения; строка ALL/ALL содержит
+-- общее количество событий за час и скетч уникальных пользователей (HyperLogLog).
+CREATE TABLE audit_rollups (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    hour_start TIMESTAMP NOT NULL,
+    action VARCHAR(100) NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    event_count BIGINT NOT NULL,
+    user_sketch VARBINARY(1024) NULL,
+    
+    CONSTRAINT uk_audit_rollups_hour_action_status UNIQUE (hour_start, action, status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,14 @@
+-- Отозванные JWT токены.
+-- token_id задан - отозван один токен (claim jti); token_id пустой - отозваны все токены
+-- пользователя subject, выданные до revoked_at. Строки удаляются после expires_at,
+-- когда отозванные токены истекли бы сами.
+CREATE TABLE revoked_tokens (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    token_id VARCHAR(64) NULL,
+    subject VARCHAR(255) NOT NULL,
+    reason VARCHAR(50) NOT NULL,
+    revoked_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    
+    INDEX idx_revoked_tokens_expires (expires_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
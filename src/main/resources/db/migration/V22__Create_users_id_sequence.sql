@@ -0,0 +1,10 @@
+-- Последовательность id пользователей для пакетной вставки.
+-- MySQL не поддерживает SEQUENCE, Hibernate эмулирует последовательность users_seq таблицей
+-- с одной строкой next_val и выдает id блоками по 50 (allocationSize в User).
+-- Начальное значение с запасом в один блок выше текущих id, AUTO_INCREMENT столбца
+-- остается для вставок SQL в обход приложения.
+CREATE TABLE users_seq (
+    next_val BIGINT
+) ENGINE=InnoDB;
+
+INSERT INTO users_seq (next_val) SELECT COALESCE(MAX(id), 0) + 51 FROM users;
@@ -0,0 +1,5 @@
+-- Индекс для сводки по пользователям в списке администратора (UserRepository.findSummariesByIds).
+-- Подсчет карт с разбивкой по статусу читает только индекс (user_id, status), без строк таблицы.
+-- Непрочитанные уведомления и последнее действие уже покрыты индексами
+-- idx_notifications_user_unread (user_id, is_read) и idx_audit_logs_user_created (user_id, created_at).
+CREATE INDEX idx_bank_cards_user_status ON bank_cards(user_id, status);
@@ -0,0 +1,4 @@
+-- Версия карты для оптимистической блокировки.
+-- Карты кэшируются в памяти узла (кэш второго уровня Hibernate): запись баланса,
+-- прочитанного из устаревшей копии, отклоняется по несовпадению версии.
+ALTER TABLE bank_cards ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
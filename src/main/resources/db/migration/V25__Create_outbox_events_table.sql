@@ -0,0 +1,18 @@
+-- Исходящие события (transactional outbox).
+-- Строка пишется в транзакции изменения карты или перевода, поэтому при шардировании
+-- таблица есть в каждом шарде. Обработанные события удаляются; next_attempt_at
+-- сдвигается на время обработки и при повторе после ошибки.
+CREATE TABLE outbox_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    type VARCHAR(50) NOT NULL,
+    aggregate_type VARCHAR(50) NOT NULL,
+    aggregate_id BIGINT NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(500) NULL,
+    
+    INDEX idx_outbox_events_next_attempt (next_attempt_at, id),
+    INDEX idx_outbox_events_aggregate (aggregate_type, aggregate_id, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,11 @@
+-- Блокировки фоновых задач между узлами.
+-- Узел занимает задачу до locked_until и продлевает аренду, пока задача идет
+-- (heartbeat_at - время последнего продления). Упавший узел перестает продлевать,
+-- и после locked_until задачу может занять другой узел.
+CREATE TABLE scheduler_locks (
+    name VARCHAR(100) PRIMARY KEY,
+    locked_by VARCHAR(255) NOT NULL,
+    locked_at TIMESTAMP NOT NULL,
+    locked_until TIMESTAMP NOT NULL,
+    heartbeat_at TIMESTAMP NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
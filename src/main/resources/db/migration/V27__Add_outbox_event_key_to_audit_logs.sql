@@ -0,0 +1,6 @@
+-- Ключ исходящего события, по которому создана запись аудита (AuditOutboxHandler).
+-- Событие может быть доставлено повторно; запись с уже известным ключом не создается.
+-- Уникальный индекс на партиционированной таблице обязан включать created_at,
+-- поэтому повтор отсекается проверкой по обычному индексу.
+ALTER TABLE audit_logs ADD COLUMN outbox_event_key VARCHAR(100) NULL;
+CREATE INDEX idx_audit_logs_outbox_event_key ON audit_logs(outbox_event_key);
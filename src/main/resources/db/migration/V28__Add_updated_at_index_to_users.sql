@@ -0,0 +1,2 @@
+-- Периодическое обновление индекса поиска выбирает пользователей по updated_at
+CREATE INDEX idx_users_updated_at ON users (updated_at);
@@ -0,0 +1,3 @@
+-- Событие, не доставленное за outbox.relay.max-attempts попыток, откладывается насовсем:
+-- оно больше не выбирается и не задерживает остальные события своего агрегата.
+ALTER TABLE outbox_events ADD COLUMN parked_at TIMESTAMP NULL;
@@ -0,0 +1,9 @@
+-- Версии данных по таблицам для ключей кеша экспорта.
+-- Запись в таблицу увеличивает version одного из слотов в той же транзакции,
+-- версия таблицы - сумма по слотам (и по шардам). Строки слотов создает приложение при старте.
+CREATE TABLE data_versions (
+    table_name VARCHAR(20) NOT NULL,
+    slot INT NOT NULL,
+    version BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (table_name, slot)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
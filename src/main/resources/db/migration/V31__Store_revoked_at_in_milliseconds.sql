@@ -0,0 +1,3 @@
+-- Время отзыва всех токенов пользователя сравнивается со временем выдачи токена (claim iat_ms)
+-- с точностью до миллисекунды: токен, выданный после отзыва в ту же секунду, остается действительным.
+ALTER TABLE revoked_tokens MODIFY revoked_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3);
@@ -0,0 +1,72 @@
+// Подписка на новые уведомления через Server-Sent Events (только для админов)
+// Браузер сам переподключается при обрыве соединения, опрашивать страницу не нужно
+
+document.addEventListener('DOMContentLoaded', function() {
+    if (!window.EventSource) {
+        return;
+    }
+
+    const source = new EventSource('/notifications/stream');
+
+    source.addEventListener('notification', function(event) {
+        let data;
+        try {
+            data = JSON.parse(event.data);
+        } catch (e) {
+            return;
+        }
+
+        incrementCounter('[data-notifications-total]');
+        showNotificationToast(data);
+    });
+
+    window.addEventListener('beforeunload', function() {
+        source.close();
+    });
+});
+
+// Увеличивает счетчик на странице, если он есть
+function incrementCounter(selector) {
+    const counter = document.querySelector(selector);
+    if (!counter) {
+        return;
+    }
+    const value = parseInt(counter.textContent, 10) || 0;
+    counter.textContent = value + 1;
+    counter.style.display = '';
+}
+
+// Всплывающее сообщение о новом уведомлении со ссылкой на список
+function showNotificationToast(data) {
+    const toast = document.createElement('a');
+    toast.href = '/notifications';
+    toast.style.cssText = `
+        position: fixed;
+        top: 20px;
+        right: 20px;
+        background: white;
+        border-radius: 15px;
+        box-shadow: 0 10px 30px rgba(0, 0, 0, 0.2);
+        padding: 1rem 1.5rem;
+        max-width: 400px;
+        z-index: 10001;
+        border-left: 4px solid #667eea;
+        color: #333;
+        text-decoration: none;
+        animation: slideInRight 0.3s ease-out;
+    `;
+
+    const title = document.createElement('strong');
+    title.textContent = '🔔 ' + (data.typeDescription || data.title || 'Новое уведомление');
+    const message = document.createElement('div');
+    message.style.cssText = 'margin-top: 0.5rem; font-size: 0.9rem; color: #666;';
+    message.textContent = data.message || '';
+
+    toast.appendChild(title);
+    toast.appendChild(message);
+    document.body.appendChild(toast);
+
+    setTimeout(function() {
+        toast.remove();
+    }, 6000);
+}
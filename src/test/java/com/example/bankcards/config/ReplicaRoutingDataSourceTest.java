@@ -0,0 +1,153 @@
+package com.example.bankcards.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Маршрутизация на двух отдельных базах H2: в каждой таблица node с именем базы
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica1;
+    private DataSource replica2;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica1 = database("replica1");
+        replica2 = database("replica2");
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldUseReplica_OtherwisePrimary() {
+        // Given
+        ReplicaRoutingDataSource routing = routing(List.of(replica1), 5);
+        routing.updateLag(0, 0L);
+
+        // When & Then
+        assertEquals("replica1", currentNode(routing, true));
+        assertEquals("primary", currentNode(routing, false));
+        assertEquals("primary", new JdbcTemplate(new LazyConnectionDataSourceProxy(routing))
+                .queryForObject("SELECT name FROM node", String.class));
+    }
+
+    @Test
+    void laggingReplica_ShouldFallBackToPrimary() {
+        // Given
+        ReplicaRoutingDataSource routing = routing(List.of(replica1), 5);
+
+        // When
+        routing.updateLag(0, 30L);
+
+        // Then
+        assertEquals("primary", currentNode(routing, true));
+        assertEquals(1, routing.getPrimaryFallbacks());
+
+        // Отставание сократилось - реплика снова в работе
+        routing.updateLag(0, 2L);
+        assertEquals("replica1", currentNode(routing, true));
+    }
+
+    @Test
+    void staleCheckResult_ShouldFallBackToPrimary() {
+        // Given: результат проверки устаревает сразу
+        ReplicaRoutingDataSource routing = routing(List.of(replica1), 5, 0);
+
+        // When
+        routing.updateLag(0, 0L);
+
+        // Then
+        assertEquals("primary", currentNode(routing, true));
+        assertEquals(1, routing.getPrimaryFallbacks());
+    }
+
+    @Test
+    void replicasBeforeFirstCheck_ShouldNotBeUsed() {
+        // Given
+        ReplicaRoutingDataSource routing = routing(List.of(replica1), 5);
+
+        // When & Then
+        assertEquals("primary", currentNode(routing, true));
+    }
+
+    @Test
+    void roundRobin_ShouldAlternateReplicas_AndSkipUnavailable() {
+        // Given
+        ReplicaRoutingDataSource routing = routing(List.of(replica1, replica2), 5);
+        routing.updateLag(0, 0L);
+        routing.updateLag(1, 0L);
+
+        // When
+        String first = currentNode(routing, true);
+        String second = currentNode(routing, true);
+        routing.updateLag(1, null);
+        String third = currentNode(routing, true);
+        String fourth = currentNode(routing, true);
+
+        // Then
+        assertNotEquals(first, second);
+        assertEquals("replica1", third);
+        assertEquals("replica1", fourth);
+    }
+
+    @Test
+    void checkReplicas_LagQueryUnsupported_ShouldExcludeReplica() {
+        // Given: H2 не понимает SHOW REPLICA STATUS
+        ReplicaRoutingDataSource routing = routing(List.of(replica1), 5);
+
+        // When
+        routing.checkReplicas();
+
+        // Then
+        assertEquals("primary", currentNode(routing, true));
+    }
+
+    @Test
+    void checkReplicas_LagCheckDisabled_ShouldOnlyRequireConnection() {
+        // Given
+        ReplicaRoutingDataSource routing = routing(List.of(replica1), -1);
+
+        // When
+        routing.checkReplicas();
+
+        // Then
+        assertEquals("replica1", currentNode(routing, true));
+    }
+
+    private ReplicaRoutingDataSource routing(List<DataSource> replicas, long maxLagSeconds) {
+        return routing(replicas, maxLagSeconds, 60_000);
+    }
+
+    private ReplicaRoutingDataSource routing(List<DataSource> replicas, long maxLagSeconds, long statusTtlMillis) {
+        return new ReplicaRoutingDataSource(primary, replicas, ReplicaDataSourceProperties.Selection.ROUND_ROBIN,
+                maxLagSeconds, statusTtlMillis, "SHOW REPLICA STATUS");
+    }
+
+    private static String currentNode(ReplicaRoutingDataSource routing, boolean readOnly) {
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status ->
+                new JdbcTemplate(dataSource).queryForObject("SELECT name FROM node", String.class));
+    }
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(20))");
+        jdbcTemplate.update("DELETE FROM node");
+        jdbcTemplate.update("INSERT INTO node (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
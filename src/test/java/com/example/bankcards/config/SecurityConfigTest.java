@@ -2,12 +2,14 @@ package com.example.bankcards.config;
 
 import com.example.bankcards.security.CustomUserDetailsService;
 import com.example.bankcards.security.JwtAuthenticationFilter;
+import com.example.bankcards.security.PasswordHashingExecutor;
 import com.example.bankcards.util.JwtUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.ExpressionUrlAuthorizationConfigurer;
@@ -36,6 +38,9 @@ class SecurityConfigTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Spy
+    private PasswordHashingExecutor passwordHashingExecutor = new PasswordHashingExecutor(2, 16, 10);
+
     @InjectMocks
     private SecurityConfig securityConfig;
 
@@ -0,0 +1,155 @@
+package com.example.bankcards.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Шардирование на двух отдельных базах H2: в каждой таблица node с именем базы
+ * и таблица item с числами, по которым проверяется объединение страниц
+ */
+class ShardRouterTest {
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ShardRouter router;
+
+    @BeforeEach
+    void setUp() {
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(List.of(
+                database("shard0", 1, 4, 7), database("shard1", 2, 3, 9)));
+        dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        router = new ShardRouter(2, transactionManager);
+    }
+
+    @Test
+    void inShard_ShouldUseSelectedShard_AndReturnToHomeShard() {
+        // When
+        List<String> nodes = transactionTemplate.execute(status -> List.of(
+                currentNode(),
+                router.inShard(1, this::currentNode),
+                currentNode()));
+
+        // Then
+        assertEquals(List.of("shard0", "shard1", "shard0"), nodes);
+        assertEquals("shard0", router.inShard(0, this::currentNode));
+    }
+
+    @Test
+    void inShard_SameShard_ShouldJoinCurrentTransaction() {
+        // When: вложенный вызов видит незакоммиченную строку, затем транзакция шарда откатывается
+        assertThrows(IllegalStateException.class, () -> router.runInShard(1, () -> {
+            jdbcTemplate.update("INSERT INTO item (val) VALUES (100)");
+            Integer count = router.inShard(1, () -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM item", Integer.class));
+            assertEquals(4, count);
+            throw new IllegalStateException("откат");
+        }));
+
+        // Then
+        assertEquals(3, router.inShard(1, () -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM item", Integer.class)));
+    }
+
+    @Test
+    void inEachShard_ShouldVisitShardsInOrder() {
+        // When
+        List<String> nodes = router.inEachShard(shard -> currentNode());
+
+        // Then
+        assertEquals(List.of("shard0", "shard1"), nodes);
+        assertEquals(1L, router.getStats().get("crossShardQueries"));
+    }
+
+    @Test
+    void shardOfId_ShouldFollowAutoIncrementOffset() {
+        // Given
+        ShardRouter three = new ShardRouter(3, null);
+
+        // When & Then: шард k выдает id k+1, k+1+3, ...
+        assertEquals(0, three.shardOfId(1L));
+        assertEquals(1, three.shardOfId(2L));
+        assertEquals(2, three.shardOfId(3L));
+        assertEquals(0, three.shardOfId(4L));
+        assertEquals(1, three.shardOfId(5L));
+    }
+
+    @Test
+    void shardOfUser_ShouldSpreadSequentialIdsEvenly() {
+        // Given
+        ShardRouter three = new ShardRouter(3, null);
+        int[] counts = new int[3];
+
+        // When
+        for (long userId = 1; userId <= 3000; userId++) {
+            counts[three.shardOfUser(userId)]++;
+        }
+
+        // Then
+        for (int count : counts) {
+            assertTrue(count > 900 && count < 1100, "Неравномерное распределение: " + count);
+        }
+        assertEquals(three.shardOfUser(42L), three.shardOfUser(42L));
+    }
+
+    @Test
+    void findPage_ShouldMergeShardPagesInSortOrder() {
+        // Given: в шарде 0 числа 1, 4, 7, в шарде 1 - 2, 3, 9
+        PageRequest secondPage = PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "val"));
+
+        // When
+        Page<Integer> page = router.findPage(secondPage, Comparator.reverseOrder(), pageable -> {
+            List<Integer> values = jdbcTemplate.queryForList(
+                    "SELECT val FROM item ORDER BY val DESC LIMIT " + pageable.getPageSize(), Integer.class);
+            return new PageImpl<>(values, pageable, 3);
+        });
+
+        // Then: 9, 7 | 4, 3 | 2, 1
+        assertEquals(List.of(4, 3), page.getContent());
+        assertEquals(6, page.getTotalElements());
+        assertEquals(3, page.getTotalPages());
+    }
+
+    @Test
+    void single_ShouldRunActionWithoutTransaction() {
+        // When & Then
+        assertEquals(0, ShardRouter.SINGLE.shardOfUser(42L));
+        assertEquals(0, ShardRouter.SINGLE.shardOfId(42L));
+        assertEquals("ok", ShardRouter.SINGLE.inShard(0, () -> "ok"));
+        assertEquals(List.of(0), ShardRouter.SINGLE.inEachShard(shard -> shard));
+    }
+
+    private String currentNode() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private static DataSource database(String name, int... values) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(20))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS item (val INT)");
+        jdbcTemplate.update("DELETE FROM node");
+        jdbcTemplate.update("DELETE FROM item");
+        jdbcTemplate.update("INSERT INTO node (name) VALUES (?)", name);
+        for (int value : values) {
+            jdbcTemplate.update("INSERT INTO item (val) VALUES (?)", value);
+        }
+        return dataSource;
+    }
+}
@@ -5,15 +5,20 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.servlet.ModelAndView;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -385,4 +390,81 @@ class GlobalExceptionHandlerTest {
         Map<?, ?> body = (Map<?, ?>) responseEntity.getBody();
         assertTrue(body.containsKey("error"));
     }
+
+    @Test
+    void handleOptimisticLockingFailure_ShouldReturnConflict() {
+        // Given
+        ObjectOptimisticLockingFailureException exception =
+                new ObjectOptimisticLockingFailureException(com.example.bankcards.entity.BankCard.class, 1L);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getRequestURI()).thenReturn("/api/transfers");
+
+        // When
+        Object response = globalExceptionHandler.handleOptimisticLockingFailure(exception, request);
+
+        // Then
+        assertTrue(response instanceof ResponseEntity);
+        ResponseEntity<?> responseEntity = (ResponseEntity<?>) response;
+        assertEquals(HttpStatus.CONFLICT, responseEntity.getStatusCode());
+        Map<?, ?> body = (Map<?, ?>) responseEntity.getBody();
+        assertNotNull(body);
+        assertEquals("CONCURRENT_UPDATE", body.get("errorCode"));
+    }
+
+    @Test
+    void handleOptimisticLockingFailure_ForWebRequest_ShouldRenderErrorPage() {
+        // Given
+        ObjectOptimisticLockingFailureException exception =
+                new ObjectOptimisticLockingFailureException(com.example.bankcards.entity.BankCard.class, 1L);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getRequestURI()).thenReturn("/transfers");
+
+        // When
+        Object response = globalExceptionHandler.handleOptimisticLockingFailure(exception, request);
+
+        // Then
+        assertTrue(response instanceof ModelAndView);
+        ModelAndView modelAndView = (ModelAndView) response;
+        assertEquals("error", modelAndView.getViewName());
+        assertEquals("CONCURRENT_UPDATE", modelAndView.getModel().get("errorCode"));
+    }
+
+    @Test
+    void handleRejectedExecution_ShouldReturnServiceUnavailable() {
+        // Given
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getRequestURI()).thenReturn("/api/admin/export/bundle");
+
+        // When
+        Object response = globalExceptionHandler.handleRejectedExecution(
+                new RejectedExecutionException("full"), request, mock(HttpServletResponse.class));
+
+        // Then
+        assertTrue(response instanceof ResponseEntity);
+        ResponseEntity<?> responseEntity = (ResponseEntity<?>) response;
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, responseEntity.getStatusCode());
+        assertEquals("5", responseEntity.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        Map<?, ?> body = (Map<?, ?>) responseEntity.getBody();
+        assertNotNull(body);
+        assertEquals("SERVER_BUSY", body.get("errorCode"));
+    }
+
+    @Test
+    void handleRejectedExecution_ForWebRequest_ShouldRenderErrorPageWith503() {
+        // Given
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpServletResponse servletResponse = mock(HttpServletResponse.class);
+        when(request.getRequestURI()).thenReturn("/admin/export/bundle");
+
+        // When
+        Object response = globalExceptionHandler.handleRejectedExecution(
+                new RejectedExecutionException("full"), request, servletResponse);
+
+        // Then
+        assertTrue(response instanceof ModelAndView);
+        ModelAndView modelAndView = (ModelAndView) response;
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, modelAndView.getStatus());
+        assertEquals("SERVER_BUSY", modelAndView.getModel().get("errorCode"));
+        verify(servletResponse).setHeader(HttpHeaders.RETRY_AFTER, "5");
+    }
 }
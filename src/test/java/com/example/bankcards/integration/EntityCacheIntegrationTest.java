@@ -0,0 +1,176 @@
+package com.example.bankcards.integration;
+
+import com.example.bankcards.dto.BankCardDto;
+import com.example.bankcards.dto.CreateBankCardRequest;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.BankCardService;
+import com.example.bankcards.service.EntityCacheMetrics;
+import com.example.bankcards.service.TransferService;
+import com.example.bankcards.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Кэш второго уровня: данные из кэша не должны отставать от записей в БД, в том числе
+ * от записей другого узла (они имитируются SQL-запросом мимо Hibernate).
+ * Тест не транзакционный, каждое чтение идет в своей транзакции, как в отдельных запросах.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class EntityCacheIntegrationTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BankCardService bankCardService;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository bankCardRepository;
+
+    @Autowired
+    private EntityCacheMetrics entityCacheMetrics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        user = new User();
+        user.setEmail("cache-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com");
+        user.setFirstName("Cache");
+        user.setLastName("User");
+        user.setPassword(passwordEncoder.encode("password123"));
+        user.setRole(User.Role.USER);
+        user = userService.createUser(user);
+    }
+
+    @Test
+    void cachedCard_NeverServesStaleBalance() {
+        // Given
+        BankCardDto first = createCard();
+        BankCardDto second = createCard();
+        assertEquals(0, BigDecimal.ZERO.compareTo(loadBalance(first.getId())));
+        long hitsBefore = entityCacheMetrics.getHitCount(BankCard.CACHE_REGION);
+
+        // When
+        bankCardService.topupCard(first.getId(), 100.0);
+        BigDecimal afterTopup = loadBalance(first.getId());
+
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(first.getId());
+        request.setToCardId(second.getId());
+        request.setAmount(BigDecimal.valueOf(40));
+        request.setDescription("Cache test");
+        transferService.transfer(request, user);
+
+        // Then
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(afterTopup));
+        assertEquals(0, BigDecimal.valueOf(60).compareTo(loadBalance(first.getId())));
+        assertEquals(0, BigDecimal.valueOf(40).compareTo(loadBalance(second.getId())));
+        // Чтения обслуживались кэшем, а не только БД
+        assertTrue(entityCacheMetrics.getHitCount(BankCard.CACHE_REGION) > hitsBefore);
+        // Те же счетчики видны в реестре метрик
+        assertEquals(entityCacheMetrics.getHitCount(BankCard.CACHE_REGION), meterRegistry.get(EntityCacheMetrics.HITS_COUNTER)
+                .tag("region", BankCard.CACHE_REGION).functionCounter().count());
+    }
+
+    @Test
+    void cachedCard_ChangedByAnotherNode_ShouldServeCurrentBalance() {
+        // Given: карта в кэше второго уровня этого узла
+        BankCardDto first = createCard();
+        BankCardDto second = createCard();
+        assertEquals(0, BigDecimal.ZERO.compareTo(bankCardService.findById(first.getId()).orElseThrow().getBalance()));
+        assertTrue(entityManagerFactory.getCache().contains(BankCard.class, first.getId()));
+
+        // When: другой узел пополнил карту, кэш этого узла об этом не знает
+        jdbcTemplate.update("UPDATE bank_cards SET balance = balance + 100, version = version + 1 WHERE id = ?",
+                first.getId());
+
+        // Then: баланс читается актуальный, перевод видит пополнение
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(bankCardService.findById(first.getId()).orElseThrow().getBalance()));
+
+        TransferRequest request = new TransferRequest();
+        request.setFromCardId(first.getId());
+        request.setToCardId(second.getId());
+        request.setAmount(BigDecimal.valueOf(40));
+        request.setDescription("Cross-node test");
+        transferService.transfer(request, user);
+        assertEquals(0, BigDecimal.valueOf(60).compareTo(loadBalance(first.getId())));
+    }
+
+    @Test
+    void user_IsNotCached_SoChangesAreVisibleImmediately() {
+        // Given
+        String oldEmail = user.getEmail();
+        assertTrue(findByEmailInTransaction(oldEmail));
+
+        // When
+        User update = new User();
+        update.setEmail("renamed-" + oldEmail);
+        userService.updateUser(user.getId(), update);
+
+        // Then: пользователи читаются из БД, в кэше второго уровня их нет
+        assertFalse(entityManagerFactory.getCache().contains(User.class, user.getId()));
+        assertFalse(findByEmailInTransaction(oldEmail));
+        assertTrue(findByEmailInTransaction("renamed-" + oldEmail));
+    }
+
+    private BankCardDto createCard() {
+        CreateBankCardRequest request = new CreateBankCardRequest();
+        request.setOwnerEmail(user.getEmail());
+        request.setExpiryDate("12/30");
+        return bankCardService.createCard(request);
+    }
+
+    private BigDecimal loadBalance(Long cardId) {
+        return transactionTemplate.execute(status -> bankCardRepository.findById(cardId).orElseThrow().getBalance());
+    }
+
+    private boolean findByEmailInTransaction(String email) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> userRepository.findByEmail(email).isPresent()));
+    }
+}
@@ -299,4 +299,29 @@ class UserFlowIntegrationTest {
                 .getContent().get(0);
         assertEquals(BigDecimal.ZERO, zeroBalanceCard.getBalance());
     }
+
+    @Test
+    void userFlow_UserSummaries_CountCardsInOneQuery() {
+        // Given
+        CreateBankCardRequest cardRequest = new CreateBankCardRequest();
+        cardRequest.setOwnerEmail("user1@test.com");
+        cardRequest.setExpiryDate("12/26");
+        BankCardDto activeCard = bankCardService.createCard(cardRequest);
+        BankCardDto blockedCard = bankCardService.createCard(cardRequest);
+        bankCardService.blockCard(blockedCard.getId(), "Test");
+
+        // When
+        var summaries = userService.getUserSummaries(List.of(testUser1, testUser2));
+
+        // Then
+        assertNotNull(activeCard);
+        assertEquals(List.of(testUser1.getId(), testUser2.getId()), List.copyOf(summaries.keySet()));
+        UserSummary first = summaries.get(testUser1.getId());
+        assertEquals(2, first.getCardCount());
+        assertEquals(1, first.getActiveCardCount());
+        UserSummary second = summaries.get(testUser2.getId());
+        assertEquals(0, second.getCardCount());
+        assertEquals(0, second.getActiveCardCount());
+        assertEquals(0, second.getUnreadNotificationCount());
+    }
 }
@@ -5,6 +5,7 @@ import com.example.bankcards.entity.User;
 import com.example.bankcards.repository.BankCardRepository;
 import com.example.bankcards.service.BankCardService;
 import com.example.bankcards.service.CardExpirationSchedulerService;
+import com.example.bankcards.service.SchedulerLockService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,8 +16,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,6 +32,9 @@ class CardExpirySchedulerTest {
     @Mock
     private BankCardRepository bankCardRepository;
 
+    @Mock
+    private SchedulerLockService schedulerLockService;
+
     @InjectMocks
     private CardExpirationSchedulerService cardExpirationSchedulerService;
 
@@ -37,6 +44,9 @@ class CardExpirySchedulerTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(schedulerLockService.runLocked(anyString(), any()))
+                .thenAnswer(invocation -> Optional.ofNullable(invocation.<Supplier<?>>getArgument(1).get()));
+
         testUser = new User();
         testUser.setId(1L);
         testUser.setEmail("test@example.com");
@@ -15,6 +15,7 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -369,4 +370,19 @@ class CustomUserDetailsServiceTest {
         });
         assertEquals("Пользователь не найден: " + longEmail, exception.getMessage());
     }
+
+    @Test
+    void updatePassword_ShouldSaveRehashedPassword() {
+        // Given
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+        UserDetails userDetails = customUserDetailsService.loadUserByUsername("test@example.com");
+
+        // When
+        UserDetails updated = customUserDetailsService.updatePassword(userDetails, "$2a$12$rehashedPassword");
+
+        // Then
+        assertEquals("$2a$12$rehashedPassword", updated.getPassword());
+        assertEquals("$2a$12$rehashedPassword", testUser.getPassword());
+        verify(userRepository).save(testUser);
+    }
 }
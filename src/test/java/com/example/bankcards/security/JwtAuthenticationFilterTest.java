@@ -1,6 +1,9 @@
 package com.example.bankcards.security;
 
 import com.example.bankcards.util.JwtUtils;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -10,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -18,6 +22,7 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -45,6 +50,15 @@ class JwtAuthenticationFilterTest {
     @Mock
     private UserDetails userDetails;
 
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    @Mock
+    private Claims claims;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
@@ -454,4 +468,24 @@ class JwtAuthenticationFilterTest {
         // Check that no authentication was set
         assertNull(SecurityContextHolder.getContext().getAuthentication());
     }
+
+    @Test
+    void doFilterInternal_RevokedToken_ShouldNotLoadUser() throws ServletException, IOException {
+        // Given
+        Date issuedAt = new Date();
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + validToken);
+        when(jwtUtils.getUsernameFromToken(validToken)).thenReturn("test@example.com");
+        when(jwtUtils.getClaimsFromToken(validToken)).thenReturn(claims);
+        when(claims.getId()).thenReturn("token-id");
+        when(claims.getIssuedAt()).thenReturn(issuedAt);
+        when(tokenRevocationService.isRevoked("token-id", "test@example.com", issuedAt)).thenReturn(true);
+
+        // When
+        jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(filterChain).doFilter(request, response);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
 }
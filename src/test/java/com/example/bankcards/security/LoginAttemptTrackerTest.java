@@ -0,0 +1,120 @@
+package com.example.bankcards.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginAttemptTrackerTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private LoginAttemptTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        // Окно 100 с (корзины по 10 с), блокировка 60 с, лимиты: 3 на email, 5 на IP
+        tracker = new LoginAttemptTracker(100, 60, 3, 5);
+    }
+
+    @Test
+    void recordFailure_OverEmailLimit_ShouldLockEmailOnly() {
+        // Given
+        tracker.recordFailure("User@Example.com", "10.0.0.1", NOW);
+        tracker.recordFailure("user@example.com", "10.0.0.2", NOW + 1_000);
+
+        // When
+        long beforeLimit = tracker.getRetryAfterSeconds("user@example.com", "10.0.0.3", NOW + 2_000);
+        tracker.recordFailure("user@example.com ", "10.0.0.3", NOW + 2_000);
+
+        // Then
+        assertEquals(0, beforeLimit);
+        assertEquals(60, tracker.getRetryAfterSeconds("user@example.com", "10.0.0.9", NOW + 2_000));
+        assertEquals(0, tracker.getRetryAfterSeconds("other@example.com", "10.0.0.1", NOW + 2_000));
+        assertEquals(0, tracker.getRetryAfterSeconds("user@example.com", "10.0.0.9", NOW + 62_000));
+    }
+
+    @Test
+    void recordFailure_OverIpLimit_ShouldLockIpForAllEmails() {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            tracker.recordFailure("user" + i + "@example.com", "10.0.0.1", NOW + i);
+        }
+
+        // When & Then
+        assertTrue(tracker.getRetryAfterSeconds("new@example.com", "10.0.0.1", NOW + 10) > 0);
+        assertEquals(0, tracker.getRetryAfterSeconds("new@example.com", "10.0.0.2", NOW + 10));
+    }
+
+    @Test
+    void recordFailure_FailuresOutsideWindow_ShouldNotLock() {
+        // Given
+        tracker.recordFailure("user@example.com", null, NOW);
+        tracker.recordFailure("user@example.com", null, NOW + 50_000);
+
+        // When
+        tracker.recordFailure("user@example.com", null, NOW + 120_000);
+
+        // Then
+        assertEquals(0, tracker.getRetryAfterSeconds("user@example.com", null, NOW + 120_000));
+    }
+
+    @Test
+    void recordSuccess_ShouldResetEmailCounter() {
+        // Given
+        tracker.recordFailure("user@example.com", null, NOW);
+        tracker.recordFailure("user@example.com", null, NOW);
+
+        // When
+        tracker.recordSuccess("user@example.com");
+        tracker.recordFailure("user@example.com", null, NOW);
+
+        // Then
+        assertEquals(0, tracker.getRetryAfterSeconds("user@example.com", null, NOW));
+    }
+
+    @Test
+    void evictExpired_ShouldKeepLockedAndRemoveStaleCounters() {
+        // Given
+        tracker.recordFailure("stale@example.com", null, NOW);
+        for (int i = 0; i < 3; i++) {
+            tracker.recordFailure("locked@example.com", null, NOW + 50_000);
+        }
+
+        // When
+        tracker.evictExpired(NOW + 105_000);
+
+        // Then
+        assertEquals(1, tracker.trackedKeys());
+        assertTrue(tracker.getRetryAfterSeconds("locked@example.com", null, NOW + 105_000) > 0);
+
+        tracker.evictExpired(NOW + 200_000);
+        assertEquals(0, tracker.trackedKeys());
+    }
+
+    @Test
+    void counter_ConcurrentIncrements_ShouldNotLoseUpdates() throws InterruptedException {
+        // Given
+        LoginAttemptTracker.Counter counter = new LoginAttemptTracker.Counter();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    counter.increment(42);
+                }
+            });
+        }
+
+        // When
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Then
+        assertEquals(80_000, counter.sum(42));
+        assertEquals(0, counter.sum(42 + LoginAttemptTracker.BUCKETS));
+    }
+}
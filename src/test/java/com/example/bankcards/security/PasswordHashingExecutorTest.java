@@ -0,0 +1,96 @@
+package com.example.bankcards.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingExecutorTest {
+
+    private PasswordHashingExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void pooledEncoder_ShouldHashAndMatchInPool() {
+        // Given
+        executor = new PasswordHashingExecutor(2, 8, 4);
+        PooledBCryptPasswordEncoder encoder = new PooledBCryptPasswordEncoder(executor);
+
+        // When
+        String hash = encoder.encode("password123");
+
+        // Then
+        assertTrue(hash.startsWith("$2a$04$"));
+        assertTrue(encoder.matches("password123", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertEquals(3L, executor.getStats().get("completed"));
+    }
+
+    @Test
+    void pooledEncoder_WeakerStoredHash_ShouldRequestUpgrade() {
+        // Given
+        executor = new PasswordHashingExecutor(1, 8, 5);
+        PooledBCryptPasswordEncoder encoder = new PooledBCryptPasswordEncoder(executor);
+        String oldHash = new BCryptPasswordEncoder(4).encode("password123");
+
+        // When & Then
+        assertTrue(encoder.upgradeEncoding(oldHash));
+        assertFalse(encoder.upgradeEncoding(encoder.encode("password123")));
+    }
+
+    @Test
+    void execute_QueueFull_ShouldRejectImmediately() throws Exception {
+        // Given
+        executor = new PasswordHashingExecutor(1, 1, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        Thread running = new Thread(() -> executor.execute(() -> {
+            started.countDown();
+            await(release);
+            return null;
+        }));
+        Thread queued = new Thread(() -> executor.execute(() -> null));
+        running.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        queued.start();
+        while (executor.getQueueDepth() < 1) {
+            Thread.sleep(5);
+        }
+
+        // When & Then
+        assertThrows(AuthenticationBusyException.class, () -> executor.execute(() -> "rejected"));
+        assertEquals(1, executor.getRejectedCount());
+
+        release.countDown();
+        running.join(5000);
+        queued.join(5000);
+        assertEquals("ok", executor.execute(() -> "ok"));
+    }
+
+    @Test
+    void execute_TaskThrows_ShouldRethrowOriginalException() {
+        // Given
+        executor = new PasswordHashingExecutor(1, 1, 4);
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> executor.execute(() -> {
+            throw new IllegalArgumentException("rawPassword cannot be null");
+        }));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
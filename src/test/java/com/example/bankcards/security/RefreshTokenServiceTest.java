@@ -0,0 +1,121 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private RefreshTokenService refreshTokenService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, 3_600_000);
+        user = new User();
+        user.setId(1L);
+        user.setEmail("user@example.com");
+    }
+
+    @Test
+    void issue_ShouldStoreOnlyTokenHash() {
+        // When
+        String token = refreshTokenService.issue(user);
+
+        // Then
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(captor.capture());
+        assertNotEquals(token, captor.getValue().getTokenHash());
+        assertEquals(RefreshTokenService.hash(token), captor.getValue().getTokenHash());
+        assertEquals(64, captor.getValue().getTokenHash().length());
+        assertTrue(captor.getValue().getExpiresAt().isAfter(LocalDateTime.now()));
+    }
+
+    @Test
+    void rotate_ValidToken_ShouldIssueNextTokenOfSameFamily() {
+        // Given
+        RefreshToken stored = storedToken("old-token", "family-1");
+        when(refreshTokenRepository.findByTokenHashWithUser(RefreshTokenService.hash("old-token"))).thenReturn(Optional.of(stored));
+        when(refreshTokenRepository.markUsed(eq(5L), any(LocalDateTime.class))).thenReturn(1);
+
+        // When
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate("old-token");
+
+        // Then
+        assertSame(user, rotation.getUser());
+        assertNotEquals("old-token", rotation.getRefreshToken());
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(captor.capture());
+        assertEquals("family-1", captor.getValue().getFamilyId());
+        verify(refreshTokenRepository, never()).revokeFamily(anyString(), any());
+    }
+
+    @Test
+    void rotate_UsedToken_ShouldRevokeWholeFamily() {
+        // Given
+        RefreshToken stored = storedToken("old-token", "family-1");
+        stored.setUsedAt(LocalDateTime.now().minusMinutes(1));
+        when(refreshTokenRepository.findByTokenHashWithUser(RefreshTokenService.hash("old-token"))).thenReturn(Optional.of(stored));
+
+        // When & Then
+        BusinessException exception = assertThrows(BusinessException.class, () -> refreshTokenService.rotate("old-token"));
+        assertEquals("INVALID_REFRESH_TOKEN", exception.getErrorCode());
+        verify(refreshTokenRepository).revokeFamily(eq("family-1"), any(LocalDateTime.class));
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void rotate_ConcurrentExchange_ShouldRevokeWholeFamily() {
+        // Given
+        RefreshToken stored = storedToken("old-token", "family-1");
+        when(refreshTokenRepository.findByTokenHashWithUser(RefreshTokenService.hash("old-token"))).thenReturn(Optional.of(stored));
+        when(refreshTokenRepository.markUsed(eq(5L), any(LocalDateTime.class))).thenReturn(0);
+
+        // When & Then
+        assertThrows(BusinessException.class, () -> refreshTokenService.rotate("old-token"));
+        verify(refreshTokenRepository).revokeFamily(eq("family-1"), any(LocalDateTime.class));
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void rotate_ExpiredOrUnknownToken_ShouldThrowException() {
+        // Given
+        RefreshToken expired = storedToken("expired-token", "family-2");
+        expired.setExpiresAt(LocalDateTime.now().minusSeconds(1));
+        when(refreshTokenRepository.findByTokenHashWithUser(RefreshTokenService.hash("expired-token"))).thenReturn(Optional.of(expired));
+        when(refreshTokenRepository.findByTokenHashWithUser(RefreshTokenService.hash("unknown-token"))).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThrows(BusinessException.class, () -> refreshTokenService.rotate("expired-token"));
+        assertThrows(BusinessException.class, () -> refreshTokenService.rotate("unknown-token"));
+        verify(refreshTokenRepository, never()).markUsed(any(), any());
+        verify(refreshTokenRepository, never()).revokeFamily(anyString(), any());
+    }
+
+    private RefreshToken storedToken(String token, String familyId) {
+        RefreshToken refreshToken = new RefreshToken(RefreshTokenService.hash(token), familyId, user,
+                LocalDateTime.now().minusMinutes(5), LocalDateTime.now().plusHours(1));
+        refreshToken.setId(5L);
+        return refreshToken;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void setUp() {
+        tokenRevocationService = new TokenRevocationService(revokedTokenRepository, 3_600_000, 60_000);
+    }
+
+    @Test
+    void revokeToken_ShouldRejectOnlyThatToken() {
+        // Given
+        stubSave();
+        Date now = new Date();
+
+        // When
+        tokenRevocationService.revokeToken("jti-1", "user@example.com", new Date(now.getTime() + 60_000),
+                RevokedToken.Reasons.LOGOUT);
+
+        // Then
+        assertTrue(tokenRevocationService.isRevoked("jti-1", "user@example.com", now));
+        assertFalse(tokenRevocationService.isRevoked("jti-2", "user@example.com", now));
+        verify(revokedTokenRepository).save(any(RevokedToken.class));
+    }
+
+    @Test
+    void revokeAllForSubject_ShouldRejectOnlyTokensIssuedBefore() {
+        // Given
+        stubSave();
+        long now = System.currentTimeMillis();
+
+        // When
+        tokenRevocationService.revokeAllForSubject("user@example.com", RevokedToken.Reasons.PASSWORD_CHANGED);
+
+        // Then
+        assertTrue(tokenRevocationService.isRevoked("jti-old", "user@example.com", new Date(now - 60_000)));
+        assertTrue(tokenRevocationService.isRevoked(null, "user@example.com", null));
+        assertFalse(tokenRevocationService.isRevoked("jti-new", "user@example.com", new Date(now + 5_000)));
+        assertFalse(tokenRevocationService.isRevoked("jti-old", "other@example.com", new Date(now - 60_000)));
+    }
+
+    @Test
+    void revokeAllForSubject_TokenIssuedLaterInSameSecond_ShouldStayValid() {
+        // Given
+        stubSave();
+        tokenRevocationService.revokeAllForSubject("user@example.com", RevokedToken.Reasons.PASSWORD_CHANGED);
+        ArgumentCaptor<RevokedToken> saved = ArgumentCaptor.forClass(RevokedToken.class);
+        verify(revokedTokenRepository).save(saved.capture());
+        long revokedAt = saved.getValue().getRevokedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        // Then: граница - время отзыва, а не его секунда
+        assertTrue(tokenRevocationService.isRevoked("jti-same", "user@example.com", new Date(revokedAt)));
+        assertFalse(tokenRevocationService.isRevoked("jti-after", "user@example.com", new Date(revokedAt + 1)));
+        // Токен без iat_ms выдан в начале своей секунды и отозван
+        assertTrue(tokenRevocationService.isRevoked("jti-legacy", "user@example.com", new Date(revokedAt / 1000 * 1000)));
+    }
+
+    @Test
+    void refresh_ShouldApplyRevocationsFromOtherNodes() {
+        // Given: без окна перечитывания догрузка продолжается с последнего id
+        tokenRevocationService = new TokenRevocationService(revokedTokenRepository, 3_600_000, 0);
+        RevokedToken remote = new RevokedToken("jti-remote", "user@example.com", RevokedToken.Reasons.LOGOUT,
+                LocalDateTime.now(), LocalDateTime.now().plusHours(1));
+        remote.setId(7L);
+        when(revokedTokenRepository.findByIdGreaterThanOrderById(eq(0L), any())).thenReturn(List.of(remote));
+
+        // When
+        tokenRevocationService.refresh();
+        tokenRevocationService.refresh();
+
+        // Then
+        assertTrue(tokenRevocationService.isRevoked("jti-remote", "user@example.com", new Date()));
+        verify(revokedTokenRepository).findByIdGreaterThanOrderById(eq(7L), any());
+    }
+
+    @Test
+    void refresh_ShouldPickUpRowCommittedOutOfIdOrder() {
+        // Given: строка 8 видна раньше строки 7, транзакция которой еще не завершена
+        RevokedToken late = new RevokedToken("jti-late", "user@example.com", RevokedToken.Reasons.LOGOUT,
+                LocalDateTime.now(), LocalDateTime.now().plusHours(1));
+        late.setId(7L);
+        RevokedToken early = new RevokedToken("jti-early", "user@example.com", RevokedToken.Reasons.LOGOUT,
+                LocalDateTime.now(), LocalDateTime.now().plusHours(1));
+        early.setId(8L);
+        when(revokedTokenRepository.findByIdGreaterThanOrderById(eq(0L), any()))
+                .thenReturn(List.of(early))
+                .thenReturn(List.of(late, early));
+
+        // When
+        tokenRevocationService.refresh();
+        tokenRevocationService.refresh();
+
+        // Then
+        assertTrue(tokenRevocationService.isRevoked("jti-early", "user@example.com", new Date()));
+        assertTrue(tokenRevocationService.isRevoked("jti-late", "user@example.com", new Date()));
+    }
+
+    @Test
+    void revokeToken_InTransaction_ShouldApplyAfterCommit() {
+        // Given
+        stubSave();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            tokenRevocationService.revokeToken("jti-1", "user@example.com", null, RevokedToken.Reasons.LOGOUT);
+
+            // Then
+            assertFalse(tokenRevocationService.isRevoked("jti-1", "user@example.com", new Date()));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertTrue(tokenRevocationService.isRevoked("jti-1", "user@example.com", new Date()));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void purgeExpired_ShouldRebuildStateWithoutDeletedEntries() {
+        // Given
+        stubSave();
+        tokenRevocationService.revokeToken("jti-expired", "user@example.com", new Date(), RevokedToken.Reasons.LOGOUT);
+        when(revokedTokenRepository.deleteExpired(any(LocalDateTime.class))).thenReturn(1);
+
+        // When
+        tokenRevocationService.purgeExpired();
+
+        // Then
+        assertFalse(tokenRevocationService.isRevoked("jti-expired", "user@example.com", new Date()));
+    }
+
+    private void stubSave() {
+        when(revokedTokenRepository.save(any(RevokedToken.class))).thenAnswer(invocation -> {
+            RevokedToken revokedToken = invocation.getArgument(0);
+            revokedToken.setId(1L);
+            return revokedToken;
+        });
+    }
+}
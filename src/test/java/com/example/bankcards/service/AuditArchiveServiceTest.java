@@ -0,0 +1,191 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.ArchivedAuditLogDto;
+import com.example.bankcards.entity.AuditLog;
+import com.example.bankcards.repository.AuditLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditArchiveServiceTest {
+
+    @Mock
+    private AuditLogRepository auditLogRepository;
+
+    @Mock
+    private AuditPartitionManager auditPartitionManager;
+
+    @Mock
+    private SchedulerLockService schedulerLockService;
+
+    @Mock
+    private DataVersionService dataVersionService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path archiveDirectory;
+
+    private AuditArchiveService archiveService;
+
+    private final YearMonth month = YearMonth.of(2024, 1);
+    private final LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private final LocalDateTime to = LocalDateTime.of(2024, 2, 1, 0, 0);
+
+    @BeforeEach
+    void setUp() {
+        archiveService = new AuditArchiveService(auditLogRepository, auditPartitionManager, schedulerLockService,
+                dataVersionService, transactionManager, archiveDirectory.toString(), true, 3, 2);
+    }
+
+    @Test
+    void archiveMonth_ShouldWriteSegmentAndDeleteRows() throws Exception {
+        // Given
+        when(auditLogRepository.streamForArchive(from, to)).thenReturn(Stream.of(
+                row(10L, LocalDateTime.of(2024, 1, 5, 10, 0), 1L, "user@example.com", AuditLog.Actions.LOGIN, AuditLog.Status.SUCCESS),
+                row(11L, LocalDateTime.of(2024, 1, 6, 11, 0), null, null, AuditLog.Actions.LOGIN, AuditLog.Status.FAILED),
+                row(14L, LocalDateTime.of(2024, 1, 20, 9, 30), 2L, "admin@example.com", AuditLog.Actions.TRANSFER, AuditLog.Status.SUCCESS)
+        ));
+        when(auditLogRepository.countInRange(from, to)).thenReturn(3L);
+        when(auditPartitionManager.dropMonth(month, 3L)).thenReturn(false);
+
+        // When
+        long archived = archiveService.archiveMonth(month);
+
+        // Then
+        assertEquals(3, archived);
+        assertEquals(List.of(month), archiveService.getArchivedMonths());
+        try (Stream<Path> files = Files.list(archiveDirectory.resolve("2024-01"))) {
+            assertTrue(files.allMatch(file -> file.getFileName().toString().endsWith(".bcx.gz")));
+        }
+        // id 10..14 удаляются пачками по 2
+        verify(auditLogRepository).deleteArchived(10L, 12L, from, to);
+        verify(auditLogRepository).deleteArchived(12L, 14L, from, to);
+        verify(auditLogRepository).deleteArchived(14L, 16L, from, to);
+        verify(dataVersionService).markChanged(DataVersionService.Table.AUDIT);
+
+        // Чтение архива: новые первыми, с фильтрами
+        List<ArchivedAuditLogDto> all = archiveService.readArchived(month, month, null, null, null, 10);
+        assertEquals(List.of(14L, 11L, 10L), all.stream().map(ArchivedAuditLogDto::getId).toList());
+        assertNull(all.get(1).getUserId());
+        assertEquals("user@example.com", all.get(2).getUserEmail());
+
+        List<ArchivedAuditLogDto> failed = archiveService.readArchived(month, month,
+                AuditLog.Actions.LOGIN, AuditLog.Status.FAILED, null, 10);
+        assertEquals(1, failed.size());
+        assertEquals(11L, failed.get(0).getId());
+
+        List<ArchivedAuditLogDto> newest = archiveService.readArchived(month, month, null, null, null, 1);
+        assertEquals(14L, newest.get(0).getId());
+    }
+
+    @Test
+    void archiveMonth_RowsAddedDuringExport_ShouldKeepRowsInDatabase() throws Exception {
+        // Given
+        when(auditLogRepository.streamForArchive(from, to)).thenReturn(Stream.<Object[]>of(
+                row(10L, LocalDateTime.of(2024, 1, 5, 10, 0), 1L, "user@example.com", AuditLog.Actions.LOGIN, AuditLog.Status.SUCCESS)));
+        when(auditLogRepository.countInRange(from, to)).thenReturn(2L);
+
+        // When
+        long archived = archiveService.archiveMonth(month);
+
+        // Then
+        assertEquals(0, archived);
+        assertTrue(archiveService.getArchivedMonths().isEmpty());
+        verify(auditLogRepository, never()).deleteArchived(anyLong(), anyLong(), any(), any());
+        verifyNoInteractions(auditPartitionManager, dataVersionService);
+    }
+
+    @Test
+    void archiveMonth_Partitioned_ShouldDropPartition() throws Exception {
+        // Given
+        when(auditLogRepository.streamForArchive(from, to)).thenReturn(Stream.<Object[]>of(
+                row(10L, LocalDateTime.of(2024, 1, 5, 10, 0), 1L, "user@example.com", AuditLog.Actions.LOGIN, AuditLog.Status.SUCCESS)));
+        when(auditLogRepository.countInRange(from, to)).thenReturn(1L);
+        when(auditPartitionManager.dropMonth(month, 1L)).thenReturn(true);
+
+        // When
+        archiveService.archiveMonth(month);
+
+        // Then
+        verify(auditLogRepository, never()).deleteArchived(anyLong(), anyLong(), any(), any());
+        verify(dataVersionService).markChanged(DataVersionService.Table.AUDIT);
+    }
+
+    @Test
+    void archiveMonth_RerunAfterCrashBeforeDelete_ShouldNotDuplicateRows() throws Exception {
+        // Given: прошлый запуск записал сегмент, но упал до удаления строк из БД
+        when(auditLogRepository.streamForArchive(from, to))
+                .thenReturn(Stream.of(
+                        row(10L, LocalDateTime.of(2024, 1, 5, 10, 0), 1L, "user@example.com", AuditLog.Actions.LOGIN, AuditLog.Status.SUCCESS),
+                        row(11L, LocalDateTime.of(2024, 1, 6, 11, 0), 1L, "user@example.com", AuditLog.Actions.LOGOUT, AuditLog.Status.SUCCESS)))
+                .thenReturn(Stream.of(
+                        row(10L, LocalDateTime.of(2024, 1, 5, 10, 0), 1L, "user@example.com", AuditLog.Actions.LOGIN, AuditLog.Status.SUCCESS),
+                        row(11L, LocalDateTime.of(2024, 1, 6, 11, 0), 1L, "user@example.com", AuditLog.Actions.LOGOUT, AuditLog.Status.SUCCESS)));
+        when(auditLogRepository.countInRange(from, to)).thenReturn(2L);
+        when(auditPartitionManager.dropMonth(month, 2L))
+                .thenThrow(new IllegalStateException("node stopped"))
+                .thenReturn(true);
+        assertThrows(IllegalStateException.class, () -> archiveService.archiveMonth(month));
+
+        // When
+        long archived = archiveService.archiveMonth(month);
+
+        // Then: новый сегмент не создан, строки удалены из БД, в архиве нет повторов
+        assertEquals(0, archived);
+        try (Stream<Path> files = Files.list(archiveDirectory.resolve("2024-01"))) {
+            assertEquals(1, files.count());
+        }
+        verify(auditPartitionManager, times(2)).dropMonth(month, 2L);
+        List<ArchivedAuditLogDto> all = archiveService.readArchived(month, month, null, null, null, 10);
+        assertEquals(List.of(11L, 10L), all.stream().map(ArchivedAuditLogDto::getId).toList());
+    }
+
+    @Test
+    void archiveScheduled_LockHeldByOtherNode_ShouldSkip() {
+        // Given
+        when(schedulerLockService.runLocked(eq(AuditArchiveService.ARCHIVE_JOB), any())).thenReturn(Optional.empty());
+
+        // When
+        archiveService.archiveScheduled();
+
+        // Then
+        verifyNoInteractions(auditLogRepository, auditPartitionManager);
+    }
+
+    @Test
+    void hotSince_ArchiveDisabled_ShouldHaveNoLowerBound() {
+        // Given
+        AuditArchiveService disabled = new AuditArchiveService(auditLogRepository, auditPartitionManager,
+                schedulerLockService, dataVersionService, transactionManager, archiveDirectory.toString(), false, 3, 2);
+
+        // When & Then
+        assertNull(disabled.hotSince());
+        assertNotNull(archiveService.hotSince());
+    }
+
+    private static Object[] row(Long id, LocalDateTime createdAt, Long userId, String email, String action, String status) {
+        return new Object[]{id, createdAt, userId, email, action, AuditLog.EntityTypes.SYSTEM, null,
+                "Описание " + id, "127.0.0.1", "JUnit", status, null};
+    }
+}
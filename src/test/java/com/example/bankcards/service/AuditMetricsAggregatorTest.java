@@ -0,0 +1,208 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.AuditLog;
+import com.example.bankcards.entity.AuditRollup;
+import com.example.bankcards.repository.AuditLogRepository;
+import com.example.bankcards.repository.AuditRollupRepository;
+import com.example.bankcards.util.HyperLogLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditMetricsAggregatorTest {
+
+    @Mock
+    private AuditRollupRepository auditRollupRepository;
+
+    @Mock
+    private AuditLogRepository auditLogRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private AuditMetricsAggregator aggregator;
+
+    private final LocalDateTime now = LocalDateTime.of(2024, 3, 15, 12, 30);
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new AuditMetricsAggregator(auditRollupRepository, auditLogRepository, transactionManager);
+    }
+
+    @Test
+    void countLast24Hours_ShouldCountOnlyWindow() {
+        // Given
+        aggregator.record(now.minusMinutes(5), AuditLog.Actions.LOGIN, AuditLog.Status.FAILED, 1L);
+        aggregator.record(now.minusHours(23), AuditLog.Actions.LOGIN, AuditLog.Status.FAILED, 2L);
+        aggregator.record(now.minusHours(25), AuditLog.Actions.LOGIN, AuditLog.Status.FAILED, 3L);
+        aggregator.record(now.minusMinutes(1), AuditLog.Actions.LOGIN, AuditLog.Status.SUCCESS, 1L);
+
+        // When & Then
+        assertEquals(2, aggregator.countLast24Hours(AuditLog.Actions.LOGIN, AuditLog.Status.FAILED, now));
+        assertEquals(1, aggregator.countLast24Hours(AuditLog.Actions.LOGIN, AuditLog.Status.SUCCESS, now));
+    }
+
+    @Test
+    void getTodayActionsCount_ShouldStartAtMidnight() {
+        // Given
+        aggregator.record(now.minusHours(13), AuditLog.Actions.TRANSFER, AuditLog.Status.SUCCESS, 1L);
+        aggregator.record(now.minusHours(1), AuditLog.Actions.TRANSFER, AuditLog.Status.SUCCESS, 1L);
+        aggregator.record(now, AuditLog.Actions.VIEW_CARDS, AuditLog.Status.SUCCESS, null);
+
+        // When & Then
+        assertEquals(2, aggregator.getTodayActionsCount(now));
+    }
+
+    @Test
+    void getUniqueUsersCount_ShouldCountDistinctUsersFor30Days() {
+        // Given
+        for (long userId = 1; userId <= 20; userId++) {
+            aggregator.record(now.minusDays(userId), AuditLog.Actions.LOGIN, AuditLog.Status.SUCCESS, userId);
+            aggregator.record(now, AuditLog.Actions.LOGIN, AuditLog.Status.SUCCESS, userId);
+        }
+        aggregator.record(now.minusDays(40), AuditLog.Actions.LOGIN, AuditLog.Status.SUCCESS, 100L);
+
+        // When & Then
+        assertEquals(20, aggregator.getUniqueUsersCount(LocalDate.from(now)));
+    }
+
+    @Test
+    void warmUp_WithRollups_ShouldRestoreCounters() {
+        // Given: итог старше пересчитываемых при старте часов
+        LocalDateTime hourStart = LocalDateTime.now().withMinute(0).withSecond(0).withNano(0).minusHours(3);
+        HyperLogLog users = new HyperLogLog();
+        users.add(7L);
+        users.add(8L);
+        AuditRollup failed = new AuditRollup(hourStart, AuditLog.Actions.LOGIN, AuditLog.Status.FAILED, 4L);
+        AuditRollup all = new AuditRollup(hourStart, AuditRollup.ALL, AuditRollup.ALL, 4L);
+        all.setUserSketch(users.toBytes());
+        when(auditRollupRepository.findByHourStartGreaterThanEqualOrderByHourStart(any()))
+                .thenReturn(List.of(failed, all));
+        when(auditLogRepository.streamForMetrics(any(), any())).thenReturn(Stream.empty());
+
+        // When
+        aggregator.warmUp();
+
+        // Then: по audit_logs пересчитываются только последние часы, а не 30 дней
+        assertTrue(aggregator.isReady());
+        assertEquals(4, aggregator.countLast24Hours(AuditLog.Actions.LOGIN, AuditLog.Status.FAILED));
+        assertEquals(2, aggregator.getUniqueUsersCount());
+        verify(auditLogRepository).streamForMetrics(argThat(since -> since.isAfter(hourStart)), any());
+    }
+
+    @Test
+    void warmUp_WithRollups_ShouldRecountCurrentHourFromAuditLogs() {
+        // Given: итог текущего часа не содержит события, не записанного упавшим узлом
+        LocalDateTime eventTime = LocalDateTime.now().minusSeconds(1);
+        AuditRollup stale = new AuditRollup(eventTime.withMinute(0).withSecond(0).withNano(0),
+                AuditLog.Actions.LOGIN, AuditLog.Status.FAILED, 4L);
+        when(auditRollupRepository.findByHourStartGreaterThanEqualOrderByHourStart(any())).thenReturn(List.of(stale));
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rows.add(new Object[]{eventTime, AuditLog.Actions.LOGIN, AuditLog.Status.FAILED, 1L});
+        }
+        when(auditLogRepository.streamForMetrics(any(), any())).thenReturn(rows.stream());
+
+        // When
+        aggregator.warmUp();
+        aggregator.flush();
+
+        // Then: счетчик взят из audit_logs, а пересчитанные события не прибавляются к итогам повторно
+        assertEquals(5, aggregator.countLast24Hours(AuditLog.Actions.LOGIN, AuditLog.Status.FAILED));
+        verify(auditRollupRepository, never()).findByHourStartForUpdate(any());
+    }
+
+    @Test
+    void flush_ShouldAddDeltasToRollupsOfOtherNodes() {
+        // Given: другой узел уже записал 5 событий за час
+        when(auditRollupRepository.findByHourStartGreaterThanEqualOrderByHourStart(any())).thenReturn(List.of());
+        when(auditLogRepository.streamForMetrics(any(), any())).thenReturn(Stream.empty());
+        aggregator.warmUp();
+        LocalDateTime eventTime = LocalDateTime.now();
+        LocalDateTime hourStart = eventTime.withMinute(0).withSecond(0).withNano(0);
+        HyperLogLog otherUsers = new HyperLogLog();
+        otherUsers.add(9L);
+        AuditRollup failed = new AuditRollup(hourStart, AuditLog.Actions.LOGIN, AuditLog.Status.FAILED, 5L);
+        AuditRollup all = new AuditRollup(hourStart, AuditRollup.ALL, AuditRollup.ALL, 5L);
+        all.setUserSketch(otherUsers.toBytes());
+        when(auditRollupRepository.findByHourStartForUpdate(hourStart)).thenReturn(List.of(failed, all));
+        aggregator.record(eventTime, AuditLog.Actions.LOGIN, AuditLog.Status.FAILED, 1L);
+        aggregator.record(eventTime, AuditLog.Actions.LOGIN, AuditLog.Status.FAILED, 2L);
+
+        // When
+        aggregator.flush();
+
+        // Then
+        assertEquals(7L, failed.getEventCount());
+        assertEquals(7L, all.getEventCount());
+        assertEquals(3, HyperLogLog.fromBytes(all.getUserSketch()).estimate());
+        verify(auditRollupRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void record_InTransaction_ShouldCountAfterCommit() {
+        // Given
+        AuditLog auditLog = new AuditLog(null, AuditLog.Actions.LOGIN, AuditLog.EntityTypes.SYSTEM, null, "login");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            aggregator.record(auditLog);
+
+            // Then: до коммита событие не учтено
+            assertEquals(0, aggregator.countLast24Hours(AuditLog.Actions.LOGIN, AuditLog.Status.SUCCESS));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(1, aggregator.countLast24Hours(AuditLog.Actions.LOGIN, AuditLog.Status.SUCCESS));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void flush_ShouldWriteHourlyRollups() {
+        // Given
+        when(auditRollupRepository.findByHourStartGreaterThanEqualOrderByHourStart(any())).thenReturn(List.of());
+        when(auditLogRepository.streamForMetrics(any(), any())).thenReturn(Stream.empty());
+        aggregator.warmUp();
+        LocalDateTime eventTime = LocalDateTime.now();
+        aggregator.record(eventTime, AuditLog.Actions.LOGIN, AuditLog.Status.FAILED, 1L);
+        aggregator.record(eventTime, AuditLog.Actions.LOGIN, AuditLog.Status.FAILED, 2L);
+
+        // When
+        aggregator.flush();
+        aggregator.flush();
+
+        // Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Iterable<AuditRollup>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(auditRollupRepository, times(1)).saveAll(captor.capture());
+        List<AuditRollup> rollups = new ArrayList<>();
+        captor.getValue().forEach(rollups::add);
+
+        assertEquals(2, rollups.size());
+        AuditRollup failed = rollups.stream()
+                .filter(r -> AuditLog.Actions.LOGIN.equals(r.getAction())).findFirst().orElseThrow();
+        assertEquals(2L, failed.getEventCount());
+        assertEquals(eventTime.withMinute(0).withSecond(0).withNano(0), failed.getHourStart());
+        AuditRollup all = rollups.stream()
+                .filter(r -> AuditRollup.ALL.equals(r.getAction())).findFirst().orElseThrow();
+        assertEquals(2, HyperLogLog.fromBytes(all.getUserSketch()).estimate());
+    }
+}
@@ -1,14 +1,20 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.AuditLogCursorPage;
 import com.example.bankcards.entity.AuditLog;
 import com.example.bankcards.entity.BankCard;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.ValidationException;
 import com.example.bankcards.repository.AuditLogRepository;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -17,6 +23,7 @@ import org.springframework.data.domain.PageRequest;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -29,6 +36,21 @@ class AuditServiceTest {
     @Mock
     private AuditLogRepository auditLogRepository;
 
+    @Mock
+    private DataVersionService dataVersionService;
+
+    @Mock
+    private AuditMetricsAggregator auditMetrics;
+
+    @Mock
+    private AuditArchiveService auditArchiveService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private AuditService auditService;
 
@@ -50,6 +72,51 @@ class AuditServiceTest {
         testCard.setOwner(testUser);
     }
 
+    @Test
+    void logDataExport_ShouldNotInvalidateAuditExports() {
+        // When
+        auditService.logDataExport(testUser, "Карты", "CSV");
+        auditService.logViewCards(testUser);
+
+        // Then
+        verify(auditLogRepository, times(2)).save(any(AuditLog.class));
+        verifyNoInteractions(dataVersionService);
+    }
+
+    @Test
+    void logCardTopup_ShouldInvalidateAuditExports() {
+        // When
+        auditService.logCardTopup(testUser, 1L, "**** 1234", 500.0);
+
+        // Then
+        verify(dataVersionService).markChanged(DataVersionService.Table.AUDIT);
+    }
+
+    @Test
+    void logOutboxAction_AlreadyWritten_ShouldSkipDuplicate() {
+        // Given
+        when(auditLogRepository.existsByOutboxEventKey("CARD:1:10")).thenReturn(true);
+
+        // When
+        boolean written = auditService.logOutboxAction("CARD:1:10", testUser, AuditLog.Actions.TOPUP_CARD,
+                AuditLog.EntityTypes.CARD, 1L, "Пополнена карта", null, null);
+
+        // Then
+        assertFalse(written);
+        verify(auditLogRepository, never()).save(any(AuditLog.class));
+    }
+
+    @Test
+    void logOutboxAction_WriteFails_ShouldRethrow() {
+        // Given
+        when(auditLogRepository.existsByOutboxEventKey("CARD:1:10")).thenReturn(false);
+        when(auditLogRepository.save(any(AuditLog.class))).thenThrow(new RuntimeException("Database error"));
+
+        // When & Then
+        assertThrows(RuntimeException.class, () -> auditService.logOutboxAction("CARD:1:10", testUser,
+                AuditLog.Actions.TOPUP_CARD, AuditLog.EntityTypes.CARD, 1L, "Пополнена карта", null, null));
+    }
+
     @Test
     void logLogin_Success_ShouldSaveAuditLog() {
         // Given
@@ -230,6 +297,32 @@ class AuditServiceTest {
         verify(auditLogRepository).save(any(AuditLog.class));
     }
 
+    @Test
+    void getFailedLoginsCount_MetricsReady_ShouldNotQueryDatabase() {
+        // Given
+        when(auditMetrics.isReady()).thenReturn(true);
+        when(auditMetrics.countLast24Hours(AuditLog.Actions.LOGIN, AuditLog.Status.FAILED)).thenReturn(3L);
+
+        // When
+        long result = auditService.getFailedLoginsCount();
+
+        // Then
+        assertEquals(3L, result);
+        verify(auditLogRepository, never()).countFailedLoginAttempts(any());
+    }
+
+    @Test
+    void logLogin_ShouldRecordMetrics() {
+        // Given
+        when(auditLogRepository.save(any(AuditLog.class))).thenReturn(new AuditLog());
+
+        // When
+        auditService.logLogin(testUser);
+
+        // Then
+        verify(auditMetrics).record(argThat(log -> AuditLog.Actions.LOGIN.equals(log.getAction())));
+    }
+
     @Test
     void getAuditLogs_ShouldReturnPageOfLogs() {
         // Given
@@ -267,7 +360,9 @@ class AuditServiceTest {
 
         List<AuditLog> logs = Arrays.asList(auditLog);
         Page<AuditLog> logPage = new PageImpl<>(logs);
-        when(auditLogRepository.findWithFilters("LOGIN", "SUCCESS", "test@example.com", PageRequest.of(0, 10)))
+        LocalDateTime hotSince = LocalDateTime.of(2024, 1, 1, 0, 0);
+        when(auditArchiveService.hotSince()).thenReturn(hotSince);
+        when(auditLogRepository.findWithFiltersSince("LOGIN", "SUCCESS", "test@example.com", hotSince, PageRequest.of(0, 10)))
                 .thenReturn(logPage);
 
         // When
@@ -297,7 +392,9 @@ class AuditServiceTest {
 
         List<AuditLog> logs = Arrays.asList(auditLog);
         Page<AuditLog> logPage = new PageImpl<>(logs);
-        when(auditLogRepository.findAllForAdmins(PageRequest.of(0, 10)))
+        LocalDateTime hotSince = LocalDateTime.of(2024, 1, 1, 0, 0);
+        when(auditArchiveService.hotSince()).thenReturn(hotSince);
+        when(auditLogRepository.findAllForAdminsSince(hotSince, PageRequest.of(0, 10)))
                 .thenReturn(logPage);
 
         // When
@@ -306,7 +403,91 @@ class AuditServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
-        verify(auditLogRepository).findAllForAdmins(PageRequest.of(0, 10));
+        verify(auditLogRepository).findAllForAdminsSince(hotSince, PageRequest.of(0, 10));
+    }
+
+    @Test
+    void getAuditLogsPage_ExactEmail_ShouldSeekByUserIdAndReturnNextCursor() {
+        // Given
+        LocalDateTime hotSince = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime cursorAt = LocalDateTime.of(2024, 3, 10, 12, 0, 5);
+        when(auditArchiveService.hotSince()).thenReturn(hotSince);
+        when(userRepository.findIdByEmail("test@example.com")).thenReturn(Optional.of(1L));
+        when(auditLogRepository.findPageForAdminsByUsers(List.of(1L), "LOGIN", null, hotSince, cursorAt, 50L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(auditLog(49L, cursorAt), auditLog(45L, cursorAt.minusMinutes(1)), auditLog(44L, cursorAt.minusMinutes(2))));
+
+        // When
+        AuditLogCursorPage result = auditService.getAuditLogsPage("LOGIN", "", " test@example.com ", cursorAt + "_50", 2);
+
+        // Then
+        assertEquals(2, result.getContent().size());
+        assertTrue(result.hasNext());
+        assertEquals("2024-03-10T11:59:05_45", result.getNextCursor());
+        verify(userRepository, never()).findIdsByEmailPrefix(anyString(), any());
+    }
+
+    @Test
+    void getAuditLogsPage_UnknownEmailPrefix_ShouldReturnEmptyPageWithoutReadingLogs() {
+        // Given
+        when(userRepository.findIdByEmail("no_such")).thenReturn(Optional.empty());
+        when(userRepository.findIdsByEmailPrefix("no!_such", PageRequest.of(0, 501))).thenReturn(List.of());
+
+        // When
+        AuditLogCursorPage result = auditService.getAuditLogsPage(null, null, "no_such", null, 20);
+
+        // Then
+        assertTrue(result.getContent().isEmpty());
+        assertFalse(result.hasNext());
+        verify(auditLogRepository, never()).findPageForAdminsByUsers(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getAllAuditLogsForAdmin_ArchiveDisabled_ShouldReadWholeLog() {
+        // Given
+        when(auditArchiveService.hotSince()).thenReturn(null);
+        when(auditLogRepository.findAllForAdminsSince(LocalDateTime.of(1970, 1, 1, 0, 0), PageRequest.of(0, 10)))
+                .thenReturn(new PageImpl<>(List.of()));
+
+        // When
+        Page<AuditLog> result = auditService.getAllAuditLogsForAdmin(PageRequest.of(0, 10));
+
+        // Then
+        assertNotNull(result);
+        assertNull(auditService.getHotSince());
+    }
+
+    @Test
+    void getAuditLogsPage_LastPage_ShouldNotReturnCursor() {
+        // Given
+        LocalDateTime hotSince = LocalDateTime.of(2024, 1, 1, 0, 0);
+        when(auditArchiveService.hotSince()).thenReturn(hotSince);
+        when(auditLogRepository.findPageForAdmins(null, null, hotSince, null, null, PageRequest.of(0, 21)))
+                .thenReturn(List.of(auditLog(2L, LocalDateTime.now())));
+
+        // When
+        AuditLogCursorPage result = auditService.getAuditLogsPage(null, null, null, null, 20);
+
+        // Then
+        assertEquals(1, result.getContent().size());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void getAuditLogsPage_InvalidCursor_ShouldThrowValidationException() {
+        // When & Then
+        assertThrows(ValidationException.class,
+                () -> auditService.getAuditLogsPage(null, null, null, "garbage", 20));
+        verifyNoInteractions(auditLogRepository);
+    }
+
+    private AuditLog auditLog(Long id, LocalDateTime createdAt) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setId(id);
+        auditLog.setUser(testUser);
+        auditLog.setAction("LOGIN");
+        auditLog.setStatus("SUCCESS");
+        auditLog.setCreatedAt(createdAt);
+        return auditLog;
     }
 
     @Test
@@ -3,17 +3,21 @@ package com.example.bankcards.service;
 import com.example.bankcards.dto.BankCardDto;
 import com.example.bankcards.dto.CreateBankCardRequest;
 import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.OutboxEvent;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.*;
 import com.example.bankcards.repository.BankCardRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.util.CardEncryptionUtil;
 import com.example.bankcards.util.ValidationUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -46,7 +50,13 @@ class BankCardServiceTest {
     private ValidationUtils validationUtils;
 
     @Mock
-    private AuditService auditService;
+    private OutboxService outboxService;
+
+    @Mock
+    private DataVersionService dataVersionService;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @InjectMocks
     private BankCardService bankCardService;
@@ -131,7 +141,8 @@ class BankCardServiceTest {
         verify(validationUtils).validateExpiryDate(any(LocalDate.class));
         verify(cardEncryptionUtil).encryptCardNumber(anyString());
         verify(bankCardRepository).save(any(BankCard.class));
-        verify(auditService).logCardCreation(eq(testUser), eq(1L), eq("**** **** **** 1234"));
+        verify(outboxService).publish(eq(OutboxEvent.Type.CARD_CREATED), eq(1L), argThat(payload ->
+                payload.get("userId").equals(1L) && payload.get("maskedNumber").equals("**** **** **** 1234")));
     }
 
     @Test
@@ -162,7 +173,7 @@ class BankCardServiceTest {
     @Test
     void topupCard_Success() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard);
 
         // When
@@ -173,13 +184,14 @@ class BankCardServiceTest {
         verify(validationUtils).validateId(1L, "карты");
         verify(validationUtils).validateMinAmount(BigDecimal.valueOf(500.0), new BigDecimal("0.01"));
         verify(bankCardRepository).save(testCard);
-        verify(auditService).logCardTopup(eq(testUser), eq(1L), eq("**** **** **** 1234"), eq(500.0));
+        verify(outboxService).publish(eq(OutboxEvent.Type.CARD_TOPPED_UP), eq(1L), argThat(payload ->
+                payload.get("amount").equals(500.0) && payload.get("maskedNumber").equals("**** **** **** 1234")));
     }
 
     @Test
     void topupCard_CardNotFound() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.empty());
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(ResourceNotFoundException.class, () -> {
@@ -191,7 +203,7 @@ class BankCardServiceTest {
     void topupCard_CardNotActive() {
         // Given
         testCard.setStatus(BankCard.Status.BLOCKED);
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
 
         // When & Then
         assertThrows(CardBlockedException.class, () -> {
@@ -199,10 +211,26 @@ class BankCardServiceTest {
         });
     }
 
+    @Test
+    void requestCardBlock_AlreadySent_ShouldRejectWithoutEvent() {
+        // Given
+        testCard.setBlockRequestSent(true);
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+
+        // When
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> bankCardService.requestCardBlock(1L, testUser, "Утеря"));
+
+        // Then
+        assertEquals("DUPLICATE_REQUEST", exception.getErrorCode());
+        verify(bankCardRepository, never()).save(any());
+        verifyNoInteractions(outboxService);
+    }
+
     @Test
     void blockCard_Success() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard);
 
         // When
@@ -214,14 +242,15 @@ class BankCardServiceTest {
         verify(validationUtils).validateId(1L, "карты");
         verify(validationUtils).validateDescription("Test reason", "Причина блокировки");
         verify(bankCardRepository).save(testCard);
-        verify(auditService).logCardBlock(eq(testUser), eq(1L), eq("**** **** **** 1234"), eq("Test reason"));
+        verify(outboxService).publish(eq(OutboxEvent.Type.CARD_BLOCKED), eq(1L), argThat(payload ->
+                payload.get("reason").equals("Test reason") && payload.get("userId").equals(1L)));
     }
 
     @Test
     void blockCard_AlreadyBlocked() {
         // Given
         testCard.setStatus(BankCard.Status.BLOCKED);
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
 
         // When & Then
         assertThrows(BusinessException.class, () -> {
@@ -233,7 +262,7 @@ class BankCardServiceTest {
     void activateCard_Success() {
         // Given
         testCard.setStatus(BankCard.Status.BLOCKED);
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard);
 
         // When
@@ -244,13 +273,14 @@ class BankCardServiceTest {
         assertEquals(BankCard.Status.ACTIVE, testCard.getStatus());
         verify(validationUtils).validateId(1L, "карты");
         verify(bankCardRepository).save(testCard);
-        verify(auditService).logCardActivation(eq(testUser), eq(1L), eq("**** **** **** 1234"));
+        verify(outboxService).publish(eq(OutboxEvent.Type.CARD_ACTIVATED), eq(1L), argThat(payload ->
+                payload.get("maskedNumber").equals("**** **** **** 1234")));
     }
 
     @Test
     void activateCard_AlreadyActive() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
 
         // When & Then
         assertThrows(BusinessException.class, () -> {
@@ -261,7 +291,7 @@ class BankCardServiceTest {
     @Test
     void deleteCard_Success() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
 
         // When
         bankCardService.deleteCard(1L);
@@ -269,13 +299,14 @@ class BankCardServiceTest {
         // Then
         verify(validationUtils).validateId(1L, "карты");
         verify(bankCardRepository).deleteById(1L);
-        verify(auditService).logCardDeletion(eq(testUser), eq(1L), eq("**** **** **** 1234"));
+        verify(outboxService).publish(eq(OutboxEvent.Type.CARD_DELETED), eq(1L), argThat(payload ->
+                payload.get("userId").equals(1L) && payload.get("maskedNumber").equals("**** **** **** 1234")));
     }
 
     @Test
     void deleteCard_NotFound() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.empty());
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(ResourceNotFoundException.class, () -> {
@@ -419,7 +450,7 @@ class BankCardServiceTest {
     @Test
     void topupCard_InvalidAmount() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
 
         // When & Then
         assertThrows(ValidationException.class, () -> {
@@ -430,7 +461,7 @@ class BankCardServiceTest {
     @Test
     void topupCard_ZeroAmount() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
 
         // When & Then
         assertThrows(ValidationException.class, () -> {
@@ -441,7 +472,7 @@ class BankCardServiceTest {
     @Test
     void topupCard_VerySmallAmount() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard);
 
         // When
@@ -454,7 +485,7 @@ class BankCardServiceTest {
     @Test
     void blockCard_EmptyReason() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
 
         // When & Then
         assertThrows(ValidationException.class, () -> {
@@ -465,7 +496,7 @@ class BankCardServiceTest {
     @Test
     void blockCard_NullReason() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
 
         // When & Then
         assertThrows(ValidationException.class, () -> {
@@ -476,7 +507,7 @@ class BankCardServiceTest {
     @Test
     void blockCard_VeryLongReason() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
 
         // When & Then
         assertThrows(ValidationException.class, () -> {
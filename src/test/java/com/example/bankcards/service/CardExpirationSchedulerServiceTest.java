@@ -6,7 +6,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 /**
@@ -18,12 +23,18 @@ class CardExpirationSchedulerServiceTest {
     @Mock
     private BankCardService bankCardService;
 
+    @Mock
+    private SchedulerLockService schedulerLockService;
+
     @InjectMocks
     private CardExpirationSchedulerService schedulerService;
 
     @BeforeEach
     void setUp() {
-        // Настройка перед каждым тестом
+        // Блокировка всегда свободна: задача выполняется на текущем узле
+        lenient().when(schedulerLockService.getNodeId()).thenReturn("node-1");
+        lenient().when(schedulerLockService.runLocked(anyString(), any()))
+                .thenAnswer(invocation -> Optional.ofNullable(invocation.<Supplier<?>>getArgument(1).get()));
     }
 
     @Test
@@ -85,5 +96,36 @@ class CardExpirationSchedulerServiceTest {
         // Assert
         verify(bankCardService, times(1)).updateExpiredCards();
     }
+
+    @Test
+    void testCheckAndUpdateExpiredCards_Partitioned_ShouldCoverAllIdRanges() {
+        // Arrange: 4 диапазона по 25 id, последний открыт сверху
+        ReflectionTestUtils.setField(schedulerService, "partitions", 4);
+        when(bankCardService.getMaxCardId()).thenReturn(100L);
+        when(bankCardService.updateExpiredCards(anyLong(), anyLong())).thenReturn(1);
+
+        // Act
+        schedulerService.checkAndUpdateExpiredCards();
+
+        // Assert
+        verify(bankCardService).updateExpiredCards(1L, 25L);
+        verify(bankCardService).updateExpiredCards(26L, 50L);
+        verify(bankCardService).updateExpiredCards(51L, 75L);
+        verify(bankCardService).updateExpiredCards(76L, Long.MAX_VALUE);
+        verify(bankCardService, never()).updateExpiredCards();
+    }
+
+    @Test
+    void testCheckAndUpdateExpiredCards_LockHeldByOtherNode_ShouldSkip() {
+        // Arrange
+        when(schedulerLockService.runLocked(eq(CardExpirationSchedulerService.DAILY_JOB), any()))
+                .thenReturn(Optional.empty());
+
+        // Act
+        schedulerService.checkAndUpdateExpiredCards();
+
+        // Assert
+        verify(bankCardService, never()).updateExpiredCards();
+    }
 }
 
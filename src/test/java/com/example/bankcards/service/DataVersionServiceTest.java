@@ -0,0 +1,113 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.DataVersion;
+import com.example.bankcards.repository.DataVersionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DataVersionServiceTest {
+
+    @Mock
+    private DataVersionRepository dataVersionRepository;
+
+    private DataVersionService dataVersionService;
+
+    @BeforeEach
+    void setUp() {
+        dataVersionService = new DataVersionService(dataVersionRepository);
+    }
+
+    @Test
+    void markChanged_InTransaction_ShouldBumpEachTableOnceBeforeCommit() {
+        // Given
+        when(dataVersionRepository.increment(anyString(), anyInt())).thenReturn(1);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            dataVersionService.markChanged(DataVersionService.Table.TRANSFERS);
+            dataVersionService.markChanged(DataVersionService.Table.CARDS, DataVersionService.Table.TRANSFERS);
+
+            // Then: до коммита версия не меняется
+            verifyNoInteractions(dataVersionRepository);
+            TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.beforeCommit(false));
+            InOrder inOrder = inOrder(dataVersionRepository);
+            inOrder.verify(dataVersionRepository).increment(eq("CARDS"), anyInt());
+            inOrder.verify(dataVersionRepository).increment(eq("TRANSFERS"), anyInt());
+            verifyNoMoreInteractions(dataVersionRepository);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void markChanged_RolledBack_ShouldKeepVersion() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            dataVersionService.markChanged(DataVersionService.Table.USERS);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+            // Then
+            verifyNoInteractions(dataVersionRepository);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void markChanged_WithoutTransaction_ShouldBumpImmediately() {
+        // Given
+        when(dataVersionRepository.increment(eq("AUDIT"), anyInt())).thenReturn(1);
+
+        // When
+        dataVersionService.markChanged(DataVersionService.Table.AUDIT);
+
+        // Then
+        verify(dataVersionRepository).increment(eq("AUDIT"), intThat(slot -> slot >= 0 && slot < DataVersionService.SLOTS));
+    }
+
+    @Test
+    void describeVersions_ShouldSumSlotsAndDefaultToZero() {
+        // Given
+        when(dataVersionRepository.sumVersions(any())).thenReturn(List.<Object[]>of(new Object[]{"CARDS", 5L}));
+
+        // When
+        String versions = dataVersionService.describeVersions(DataVersionService.Table.CARDS, DataVersionService.Table.USERS);
+
+        // Then
+        assertEquals("CARDS=5;USERS=0", versions);
+    }
+
+    @Test
+    void init_ShouldCreateOnlyMissingSlots() {
+        // Given
+        DataVersion existing = new DataVersion("CARDS", 0);
+        when(dataVersionRepository.findAll()).thenReturn(List.of(existing));
+
+        // When
+        dataVersionService.init();
+
+        // Then
+        int expected = DataVersionService.Table.values().length * DataVersionService.SLOTS - 1;
+        verify(dataVersionRepository, times(expected)).saveAndFlush(any(DataVersion.class));
+        verify(dataVersionRepository, never()).saveAndFlush(argThat(v -> "CARDS".equals(v.getTableName()) && v.getSlot() == 0));
+    }
+}
@@ -13,12 +13,15 @@ import com.example.bankcards.repository.TransferRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.util.CardEncryptionUtil;
 import com.example.bankcards.util.ValidationUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -60,6 +63,15 @@ class EdgeCaseAndErrorHandlingTest {
     @Mock
     private AuditService auditService;
 
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private DataVersionService dataVersionService;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private BankCardService bankCardService;
 
@@ -187,7 +199,7 @@ class EdgeCaseAndErrorHandlingTest {
     void topupCard_MaximumAmount() {
         // Given
         double maxAmount = 999999.99;
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard);
 
         // When
@@ -203,7 +215,7 @@ class EdgeCaseAndErrorHandlingTest {
     void topupCard_MinimumAmount() {
         // Given
         double minAmount = 0.01;
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard);
 
         // When
@@ -219,7 +231,7 @@ class EdgeCaseAndErrorHandlingTest {
     void blockCard_MaximumLengthReason() {
         // Given
         String maxLengthReason = "a".repeat(1000); // Maximum allowed length
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard);
 
         // When
@@ -284,8 +296,8 @@ class EdgeCaseAndErrorHandlingTest {
         // Given
         BigDecimal maxAmount = BigDecimal.valueOf(999999.99);
         transferRequest.setAmount(maxAmount);
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
         when(transferRepository.save(any(Transfer.class))).thenReturn(new Transfer());
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard, testCard2);
 
@@ -304,8 +316,8 @@ class EdgeCaseAndErrorHandlingTest {
         // Given
         BigDecimal minAmount = BigDecimal.valueOf(0.01);
         transferRequest.setAmount(minAmount);
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
         when(transferRepository.save(any(Transfer.class))).thenReturn(new Transfer());
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard, testCard2);
 
@@ -324,8 +336,8 @@ class EdgeCaseAndErrorHandlingTest {
         // Given
         String maxLengthDescription = "a".repeat(1000); // Maximum allowed length
         transferRequest.setDescription(maxLengthDescription);
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
         when(transferRepository.save(any(Transfer.class))).thenReturn(new Transfer());
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard, testCard2);
 
@@ -344,8 +356,8 @@ class EdgeCaseAndErrorHandlingTest {
         // Given
         String multilingualDescription = "Transfer: перевод, 转账, transfert, перевод";
         transferRequest.setDescription(multilingualDescription);
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
         when(transferRepository.save(any(Transfer.class))).thenReturn(new Transfer());
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard, testCard2);
 
@@ -364,8 +376,8 @@ class EdgeCaseAndErrorHandlingTest {
         // Given
         String specialCharsDescription = "Transfer: !@#$%^&*()_+-=[]{}|;':\",./<>?`~";
         transferRequest.setDescription(specialCharsDescription);
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
         when(transferRepository.save(any(Transfer.class))).thenReturn(new Transfer());
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard, testCard2);
 
@@ -384,8 +396,8 @@ class EdgeCaseAndErrorHandlingTest {
         // Given
         BigDecimal highPrecisionAmount = BigDecimal.valueOf(123.456789);
         transferRequest.setAmount(highPrecisionAmount);
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
         when(transferRepository.save(any(Transfer.class))).thenReturn(new Transfer());
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard, testCard2);
 
@@ -474,7 +486,7 @@ class EdgeCaseAndErrorHandlingTest {
     @DisplayName("Перевод с несуществующим ID карты отправителя")
     void transfer_NonExistentFromCard() {
         // Given
-        when(bankCardRepository.findById(999L)).thenReturn(Optional.empty());
+        when(bankCardRepository.findCurrentById(999L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(ResourceNotFoundException.class, () -> {
@@ -486,8 +498,8 @@ class EdgeCaseAndErrorHandlingTest {
     @DisplayName("Перевод с несуществующим ID карты получателя")
     void transfer_NonExistentToCard() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(999L)).thenReturn(Optional.empty());
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(999L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(ResourceNotFoundException.class, () -> {
@@ -500,7 +512,7 @@ class EdgeCaseAndErrorHandlingTest {
     void transfer_SameCard() {
         // Given
         transferRequest.setToCardId(1L); // Same as fromCardId
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
 
         // When & Then
         assertThrows(ValidationException.class, () -> {
@@ -513,8 +525,8 @@ class EdgeCaseAndErrorHandlingTest {
     void transfer_BlockedFromCard() {
         // Given
         testCard.setStatus(BankCard.Status.BLOCKED);
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
 
         // When & Then
         assertThrows(CardBlockedException.class, () -> {
@@ -527,8 +539,8 @@ class EdgeCaseAndErrorHandlingTest {
     void transfer_BlockedToCard() {
         // Given
         testCard2.setStatus(BankCard.Status.BLOCKED);
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
 
         // When & Then
         assertThrows(CardBlockedException.class, () -> {
@@ -541,8 +553,8 @@ class EdgeCaseAndErrorHandlingTest {
     void transfer_ExpiredFromCard() {
         // Given
         testCard.setExpiryDate(LocalDate.now().minusDays(1));
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
 
         // When & Then
         assertThrows(CardBlockedException.class, () -> {
@@ -555,8 +567,8 @@ class EdgeCaseAndErrorHandlingTest {
     void transfer_ExpiredToCard() {
         // Given
         testCard2.setExpiryDate(LocalDate.now().minusDays(1));
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
 
         // When & Then
         assertThrows(CardBlockedException.class, () -> {
@@ -569,8 +581,8 @@ class EdgeCaseAndErrorHandlingTest {
     void transfer_InsufficientFunds() {
         // Given
         transferRequest.setAmount(BigDecimal.valueOf(1500.00)); // More than balance
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
 
         // When & Then
         assertThrows(InsufficientFundsException.class, () -> {
@@ -583,8 +595,8 @@ class EdgeCaseAndErrorHandlingTest {
     void transfer_ExactBalance() {
         // Given
         transferRequest.setAmount(BigDecimal.valueOf(1000.00)); // Exact balance
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
         when(transferRepository.save(any(Transfer.class))).thenReturn(new Transfer());
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(testCard, testCard2);
 
@@ -602,8 +614,8 @@ class EdgeCaseAndErrorHandlingTest {
     @DisplayName("Перевод с ошибкой базы данных")
     void transfer_DatabaseError() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
         when(transferRepository.save(any(Transfer.class))).thenThrow(new RuntimeException("Database connection failed"));
 
         // When & Then
@@ -616,8 +628,8 @@ class EdgeCaseAndErrorHandlingTest {
     @DisplayName("Перевод с частичной ошибкой сохранения")
     void transfer_PartialSaveError() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(testCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(testCard2));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(testCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(testCard2));
         when(transferRepository.save(any(Transfer.class))).thenReturn(new Transfer());
         when(bankCardRepository.save(testCard)).thenReturn(testCard);
         when(bankCardRepository.save(testCard2)).thenThrow(new RuntimeException("Failed to save to card"));
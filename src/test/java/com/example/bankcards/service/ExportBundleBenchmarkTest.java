@@ -0,0 +1,249 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.AuditLog;
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.Transfer;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.AuditLogRepository;
+import com.example.bankcards.repository.BankCardRepository;
+import com.example.bankcards.repository.TransferRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сравнение времени формирования архива экспорта с последовательными выгрузками.
+ * Последовательный вариант делает ту же работу, что и архив: каждый раздел пишется
+ * во временный файл в своей read-only транзакции, затем файлы упаковываются в ZIP.
+ * Тест не транзакционный: разделы архива читают данные в собственных транзакциях
+ * из других потоков и должны видеть закоммиченные данные.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ExportBundleBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportBundleBenchmarkTest.class);
+
+    private static final int CARD_COUNT = 300;
+    private static final int TRANSFER_COUNT = 600;
+    private static final int AUDIT_COUNT = 1000;
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private ExportBundleService exportBundleService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BankCardRepository bankCardRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User testUser;
+    private final List<BankCard> cards = new ArrayList<>();
+    private final List<Transfer> transfers = new ArrayList<>();
+    private final List<AuditLog> auditLogs = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        testUser = new User();
+        testUser.setEmail("bundle-benchmark@test.com");
+        testUser.setFirstName("Bundle");
+        testUser.setLastName("Benchmark");
+        testUser.setPassword("password-hash");
+        testUser.setRole(User.Role.USER);
+        testUser = userRepository.save(testUser);
+
+        for (int i = 0; i < CARD_COUNT; i++) {
+            BankCard card = new BankCard("bundle-card-" + i, "**** **** **** " + String.format("%04d", i),
+                    testUser, LocalDate.now().plusYears(2));
+            card.setBalance(BigDecimal.valueOf(1000));
+            cards.add(card);
+        }
+        List<BankCard> savedCards = bankCardRepository.saveAll(cards);
+        cards.clear();
+        cards.addAll(savedCards);
+
+        for (int i = 0; i < TRANSFER_COUNT; i++) {
+            Transfer transfer = new Transfer(cards.get(i % CARD_COUNT), cards.get((i + 1) % CARD_COUNT),
+                    BigDecimal.TEN, "Benchmark transfer " + i);
+            transfer.setStatus(Transfer.Status.COMPLETED);
+            transfers.add(transfer);
+        }
+        List<Transfer> savedTransfers = transferRepository.saveAll(transfers);
+        transfers.clear();
+        transfers.addAll(savedTransfers);
+
+        for (int i = 0; i < AUDIT_COUNT; i++) {
+            auditLogs.add(new AuditLog(testUser, AuditLog.Actions.VIEW_CARDS, AuditLog.EntityTypes.CARD, null,
+                    "Benchmark audit " + i));
+        }
+        List<AuditLog> savedLogs = auditLogRepository.saveAll(auditLogs);
+        auditLogs.clear();
+        auditLogs.addAll(savedLogs);
+    }
+
+    @AfterEach
+    void tearDown() {
+        auditLogRepository.deleteAll(auditLogs);
+        transferRepository.deleteAll(transfers);
+        bankCardRepository.deleteAll(cards);
+        userRepository.delete(testUser);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void bundle_ShouldContainAllSectionsAndReportTiming() throws IOException {
+        Set<ExportBundleService.Section> sections = ExportBundleService.parseSections(null);
+
+        // Прогрев: первые запросы и JIT не должны достаться одному из вариантов
+        ByteArrayOutputStream sequentialOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeSequentialBundle(sections, sequentialOut);
+        exportBundleService.writeBundle(sections, out);
+
+        // Варианты чередуются, берется лучшее время каждого
+        long sequentialBest = Long.MAX_VALUE;
+        long bundleBest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            sequentialOut.reset();
+            long sequentialStart = System.nanoTime();
+            writeSequentialBundle(sections, sequentialOut);
+            sequentialBest = Math.min(sequentialBest, System.nanoTime() - sequentialStart);
+
+            out.reset();
+            long bundleStart = System.nanoTime();
+            exportBundleService.writeBundle(sections, out);
+            bundleBest = Math.min(bundleBest, System.nanoTime() - bundleStart);
+        }
+
+        logger.info("Экспорт {} карт, {} переводов, {} записей аудита: последовательно {} мс, параллельный архив {} мс",
+                CARD_COUNT, TRANSFER_COUNT, AUDIT_COUNT, sequentialBest / 1_000_000, bundleBest / 1_000_000);
+
+        Set<String> entries = new HashSet<>();
+        long cardLines = 0;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.add(entry.getName());
+                String content = new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+                if ("cards.csv".equals(entry.getName())) {
+                    cardLines = content.lines().count();
+                }
+            }
+        }
+
+        assertEquals(Set.of("cards.csv", "transfers.csv", "users.csv", "audit-logs.csv"), entries);
+        assertTrue(cardLines >= CARD_COUNT + 1, "Ожидались все карты и заголовок, строк: " + cardLines);
+    }
+
+    @Test
+    void bundle_SelectedSections_ShouldContainOnlyThem() throws IOException {
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportBundleService.writeBundle(ExportBundleService.parseSections(List.of("users,audit")), out);
+
+        // Then
+        Set<String> entries = new HashSet<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.add(entry.getName());
+            }
+        }
+        assertEquals(Set.of("users.csv", "audit-logs.csv"), entries);
+    }
+
+    /**
+     * Та же работа, что и у архива, но по одному разделу: временный файл в read-only транзакции, затем ZIP
+     */
+    private void writeSequentialBundle(Set<ExportBundleService.Section> sections, OutputStream out) throws IOException {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        List<Path> files = new ArrayList<>();
+        try {
+            for (ExportBundleService.Section section : sections) {
+                Path file = Files.createTempFile("benchmark-" + section.name().toLowerCase(Locale.ROOT) + "-", ".csv");
+                files.add(file);
+                readOnly.executeWithoutResult(status -> {
+                    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                        writeSection(section, writer);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+
+            ZipOutputStream zip = new ZipOutputStream(out);
+            int i = 0;
+            for (ExportBundleService.Section section : sections) {
+                zip.putNextEntry(new ZipEntry(section.getFileName()));
+                Files.copy(files.get(i++), zip);
+                zip.closeEntry();
+            }
+            zip.finish();
+        } finally {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private long writeSection(ExportBundleService.Section section, Writer writer) throws IOException {
+        switch (section) {
+            case CARDS:
+                return exportService.writeAllCardsCSV(writer);
+            case TRANSFERS:
+                return exportService.writeAllTransfersCSV(writer);
+            case USERS:
+                return exportService.writeAllUsersCSV(writer);
+            case AUDIT:
+                return exportService.writeAllAuditLogsCSV(writer);
+            default:
+                throw new IllegalArgumentException("Неизвестный раздел: " + section);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.DataVersionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ExportCacheServiceTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private DataVersionService dataVersionService;
+    private ExportCacheService exportCacheService;
+
+    // Версии таблиц в БД
+    private final Map<String, Long> storedVersions = new HashMap<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        DataVersionRepository dataVersionRepository = mock(DataVersionRepository.class);
+        when(dataVersionRepository.increment(anyString(), anyInt())).thenAnswer(invocation -> {
+            storedVersions.merge(invocation.getArgument(0), 1L, Long::sum);
+            return 1;
+        });
+        when(dataVersionRepository.sumVersions(any())).thenAnswer(invocation -> {
+            List<Object[]> rows = new ArrayList<>();
+            for (String table : invocation.<Collection<String>>getArgument(0)) {
+                rows.add(new Object[]{table, storedVersions.getOrDefault(table, 0L)});
+            }
+            return rows;
+        });
+        dataVersionService = new DataVersionService(dataVersionRepository);
+        exportCacheService = new ExportCacheService(dataVersionService, cacheDir.toString(), 1024);
+    }
+
+    @Test
+    void getOrCompute_RepeatedRequest_ShouldServeFromCache() throws IOException {
+        // Given
+        AtomicInteger computations = new AtomicInteger();
+        String key = exportCacheService.buildKey("cards", "csv", ExportCacheService.filters("status", "ACTIVE"),
+                DataVersionService.Table.CARDS);
+
+        // When
+        byte[] first = exportCacheService.getOrCompute(key, () -> {
+            computations.incrementAndGet();
+            return "data".getBytes(StandardCharsets.UTF_8);
+        });
+        byte[] second = exportCacheService.getOrCompute(key, () -> {
+            computations.incrementAndGet();
+            return "other".getBytes(StandardCharsets.UTF_8);
+        });
+
+        // Then
+        assertEquals(1, computations.get());
+        assertArrayEquals(first, second);
+        assertEquals(1, exportCacheService.getHits());
+        assertEquals(1, exportCacheService.getMisses());
+    }
+
+    @Test
+    void buildKey_AfterDataChange_ShouldProduceNewKey() {
+        // Given
+        Map<String, String> filters = ExportCacheService.filters("status", "ACTIVE");
+        String before = exportCacheService.buildKey("cards", "csv", filters, DataVersionService.Table.CARDS);
+
+        // When
+        dataVersionService.markChanged(DataVersionService.Table.CARDS);
+        String after = exportCacheService.buildKey("cards", "csv", filters, DataVersionService.Table.CARDS);
+
+        // Then
+        assertNotEquals(before, after);
+    }
+
+    @Test
+    void buildKey_UnrelatedTableChange_ShouldKeepKey() {
+        // Given
+        Map<String, String> filters = ExportCacheService.filters("status", "ACTIVE");
+        String before = exportCacheService.buildKey("cards", "csv", filters, DataVersionService.Table.CARDS);
+
+        // When
+        dataVersionService.markChanged(DataVersionService.Table.AUDIT);
+        String after = exportCacheService.buildKey("cards", "csv", filters, DataVersionService.Table.CARDS);
+
+        // Then
+        assertEquals(before, after);
+    }
+
+    @Test
+    void filters_ShouldNormalizeBlankAndOrder() {
+        // When
+        String first = exportCacheService.buildKey("users", "csv",
+                ExportCacheService.filters("search", " ivan ", "role", ""), DataVersionService.Table.USERS);
+        String second = exportCacheService.buildKey("users", "csv",
+                ExportCacheService.filters("role", null, "search", "ivan"), DataVersionService.Table.USERS);
+
+        // Then
+        assertEquals(first, second);
+    }
+
+    @Test
+    void getOrCompute_OverSizeLimit_ShouldEvictLeastRecentlyUsed() throws IOException {
+        // Given
+        byte[] payload = new byte[400];
+        String first = exportCacheService.buildKey("cards", "csv", ExportCacheService.filters("search", "1"));
+        String second = exportCacheService.buildKey("cards", "csv", ExportCacheService.filters("search", "2"));
+        String third = exportCacheService.buildKey("cards", "csv", ExportCacheService.filters("search", "3"));
+
+        // When
+        exportCacheService.getOrCompute(first, () -> payload);
+        exportCacheService.getOrCompute(second, () -> payload);
+        exportCacheService.getOrCompute(first, () -> payload);
+        exportCacheService.getOrCompute(third, () -> payload);
+
+        // Then
+        assertEquals(2, exportCacheService.getEntryCount());
+        assertTrue(exportCacheService.getTotalSize() <= 1024);
+
+        AtomicInteger recomputed = new AtomicInteger();
+        exportCacheService.getOrCompute(first, () -> {
+            recomputed.incrementAndGet();
+            return payload;
+        });
+        assertEquals(0, recomputed.get());
+    }
+
+    @Test
+    void matchesETag_ShouldHandleListsWeakTagsAndWildcard() {
+        // Given
+        String key = "abc123";
+
+        // Then
+        assertTrue(exportCacheService.matchesETag("\"abc123\"", key));
+        assertTrue(exportCacheService.matchesETag("\"other\", W/\"abc123\"", key));
+        assertTrue(exportCacheService.matchesETag("*", key));
+        assertFalse(exportCacheService.matchesETag("\"other\"", key));
+        assertFalse(exportCacheService.matchesETag(null, key));
+    }
+
+    @Test
+    void constructor_ShouldDeleteFilesLeftByPreviousRun() throws IOException {
+        // Given
+        Path stale = Files.writeString(cacheDir.resolve("abc.export"), "old");
+        Path interrupted = Files.writeString(cacheDir.resolve("abc123.tmp"), "partial");
+        Path foreign = Files.writeString(cacheDir.resolve("notes.txt"), "keep");
+
+        // When
+        new ExportCacheService(dataVersionService, cacheDir.toString(), 1024);
+
+        // Then
+        assertFalse(Files.exists(stale));
+        assertFalse(Files.exists(interrupted));
+        assertTrue(Files.exists(foreign));
+    }
+}
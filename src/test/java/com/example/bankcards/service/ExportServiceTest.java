@@ -9,22 +9,30 @@ import com.example.bankcards.repository.AuditLogRepository;
 import com.example.bankcards.repository.BankCardRepository;
 import com.example.bankcards.repository.TransferRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.BinaryExportReader;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -46,6 +54,9 @@ class ExportServiceTest {
     @Mock
     private AuditLogRepository auditLogRepository;
 
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private ExportService exportService;
 
@@ -463,4 +474,59 @@ class ExportServiceTest {
         String pdfHeader = new String(result, 0, 4);
         assertEquals("%PDF", pdfHeader);
     }
+
+    @Test
+    void writeAllCardsBinary_ShouldBeReadableByReader() throws IOException {
+        // Given
+        when(bankCardRepository.streamAllForExport()).thenReturn(Stream.of(testCard));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        long rows = exportService.writeAllCardsBinary(out, true);
+
+        // Then
+        assertEquals(1, rows);
+        try (BinaryExportReader reader = new BinaryExportReader(new ByteArrayInputStream(out.toByteArray()))) {
+            assertTrue(reader.next());
+            assertEquals(1L, reader.getLong(reader.columnIndex("id")));
+            assertEquals("**** **** **** 1234", reader.getString(reader.columnIndex("masked_number")));
+            assertEquals("test@example.com", reader.getString(reader.columnIndex("owner_email")));
+            assertEquals(100000L, reader.getAmountUnscaled(reader.columnIndex("balance")));
+            assertEquals(testCard.getExpiryDate(), reader.getDate(reader.columnIndex("expiry_date")));
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void writeAllCardsBinary_ShouldRecordRowsBytesAndDuration() throws IOException {
+        // Given
+        when(bankCardRepository.streamAllForExport()).thenReturn(Stream.of(testCard));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        exportService.writeAllCardsBinary(out, false);
+
+        // Then
+        assertEquals(1, meterRegistry.get(ExportService.EXPORT_TIMER)
+                .tags("dataset", "cards", "format", "binary", "scope", "stream").timer().count());
+        DistributionSummary rows = meterRegistry.get(ExportService.EXPORT_ROWS).summary();
+        assertEquals(1.0, rows.totalAmount());
+        DistributionSummary bytes = meterRegistry.get(ExportService.EXPORT_BYTES).summary();
+        assertEquals(out.size(), bytes.totalAmount());
+    }
+
+    @Test
+    void exportCardsToCSVForAdmin_ShouldRecordUtf8Size() throws IOException {
+        // Given
+        when(bankCardRepository.findAllWithFilters(any(), anyString(), any(PageRequest.class)))
+                .thenReturn(new PageImpl<>(List.of(testCard)));
+
+        // When
+        byte[] result = exportService.exportCardsToCSVForAdmin("ACTIVE", "1234", "test@example.com");
+
+        // Then
+        DistributionSummary bytes = meterRegistry.get(ExportService.EXPORT_BYTES)
+                .tags("dataset", "cards", "format", "csv", "scope", "admin").summary();
+        assertEquals(result.length, bytes.totalAmount());
+    }
 }
@@ -0,0 +1,115 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.NotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationRetentionServiceTest {
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    @Mock
+    private NotificationSearchIndex notificationSearchIndex;
+
+    @Mock
+    private SchedulerLockService schedulerLockService;
+
+    private NotificationRetentionService retentionService;
+
+    private final LocalDateTime cutoff = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @BeforeEach
+    void setUp() {
+        retentionService = new NotificationRetentionService(
+                notificationRepository, notificationSearchIndex, schedulerLockService, true, 90, 2, 0);
+    }
+
+    @Test
+    void purgeOlderThan_ShouldDeleteInBatchesByIdRange() {
+        // Given
+        when(notificationRepository.findPurgeableIds(0L, cutoff, PageRequest.of(0, 2))).thenReturn(List.of(3L, 7L));
+        when(notificationRepository.findPurgeableIds(7L, cutoff, PageRequest.of(0, 2))).thenReturn(List.of(9L));
+        when(notificationRepository.deletePurgeableByIds(List.of(3L, 7L), cutoff)).thenReturn(2);
+        when(notificationRepository.deletePurgeableByIds(List.of(9L), cutoff)).thenReturn(1);
+
+        // When
+        int deleted = retentionService.purgeOlderThan(cutoff);
+
+        // Then
+        assertEquals(3, deleted);
+        verify(notificationRepository, times(2)).findPurgeableIds(anyLong(), any(), any());
+        verify(notificationSearchIndex).remove(3L);
+        verify(notificationSearchIndex).remove(7L);
+        verify(notificationSearchIndex).remove(9L);
+    }
+
+    @Test
+    void purgeOlderThan_NothingToDelete_ShouldNotDelete() {
+        // Given
+        when(notificationRepository.findPurgeableIds(0L, cutoff, PageRequest.of(0, 2))).thenReturn(List.of());
+
+        // When
+        int deleted = retentionService.purgeOlderThan(cutoff);
+
+        // Then
+        assertEquals(0, deleted);
+        verify(notificationRepository, never()).deletePurgeableByIds(any(), any());
+        verifyNoInteractions(notificationSearchIndex);
+    }
+
+    @Test
+    void purgeScheduled_Disabled_ShouldDoNothing() {
+        // Given
+        NotificationRetentionService disabled = new NotificationRetentionService(
+                notificationRepository, notificationSearchIndex, schedulerLockService, false, 90, 2, 0);
+
+        // When
+        disabled.purgeScheduled();
+
+        // Then
+        verifyNoInteractions(notificationRepository, schedulerLockService);
+    }
+
+    @Test
+    void purgeScheduled_LockHeldByOtherNode_ShouldSkip() {
+        // Given
+        when(schedulerLockService.runLocked(eq(NotificationRetentionService.PURGE_JOB), any())).thenReturn(Optional.empty());
+
+        // When
+        retentionService.purgeScheduled();
+
+        // Then
+        verifyNoInteractions(notificationRepository, notificationSearchIndex);
+    }
+
+    @Test
+    void purgeScheduled_LockAcquired_ShouldPurge() {
+        // Given
+        when(schedulerLockService.runLocked(eq(NotificationRetentionService.PURGE_JOB), any()))
+                .thenAnswer(invocation -> Optional.ofNullable(invocation.<Supplier<?>>getArgument(1).get()));
+        when(notificationRepository.findPurgeableIds(eq(0L), any(), eq(PageRequest.of(0, 2)))).thenReturn(List.of());
+
+        // When
+        retentionService.purgeScheduled();
+
+        // Then
+        verify(notificationRepository).findPurgeableIds(eq(0L), any(), eq(PageRequest.of(0, 2)));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.NotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationSearchIndexTest {
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 15, 12, 0);
+
+    private NotificationSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new NotificationSearchIndex(notificationRepository, transactionManager);
+
+        when(notificationRepository.streamForSearchIndex()).thenReturn(Stream.of(
+                new Object[]{1L, "Запрос на блокировку карты",
+                        "Пользователь Иван Петров запросил блокировку карты **** **** **** 1234. Причина: утеря", false, NOW.minusHours(3)},
+                new Object[]{2L, "Запрос на пополнение карты",
+                        "Пользователь Анна Смирнова запросил пополнение карты **** **** **** 5678 на сумму 500,00 руб.", true, NOW.minusHours(2)},
+                new Object[]{3L, "Перевод выполнен",
+                        "Перевод с карты **** **** **** 1234 на карту **** **** **** 5678 выполнен успешно", false, NOW.minusHours(1)}
+        ));
+        index.rebuild();
+    }
+
+    @Test
+    void search_BeforeRebuild_ShouldReturnNull() {
+        // Given
+        NotificationSearchIndex empty = new NotificationSearchIndex(notificationRepository, transactionManager);
+
+        // When & Then
+        assertNull(empty.search("карта", null));
+    }
+
+    @Test
+    void search_DifferentWordForms_ShouldMatch() {
+        // When & Then
+        assertArrayEquals(new long[]{1L}, index.search("блокировка", null));
+        assertArrayEquals(new long[]{3L, 2L, 1L}, index.search("Карта", null));
+        assertArrayEquals(new long[]{1L}, index.search("Петрова", null));
+    }
+
+    @Test
+    void search_Prefix_ShouldMatch() {
+        // When & Then
+        assertArrayEquals(new long[]{1L}, index.search("блок", null));
+        assertArrayEquals(new long[]{2L}, index.search("попол", null));
+    }
+
+    @Test
+    void search_SeveralWords_ShouldIntersect() {
+        // When & Then
+        assertArrayEquals(new long[]{3L, 1L}, index.search("карты 1234", null));
+        assertArrayEquals(new long[]{3L}, index.search("перевод 1234 5678", null));
+        assertArrayEquals(new long[0], index.search("блокировка 5678", null));
+    }
+
+    @Test
+    void search_ProcessedFilter_ShouldFilter() {
+        // When & Then
+        assertArrayEquals(new long[]{2L}, index.search("карты", true));
+        assertArrayEquals(new long[]{3L, 1L}, index.search("карты", false));
+    }
+
+    @Test
+    void search_NoWords_ShouldReturnNull() {
+        // When & Then
+        assertNull(index.search("**** ,", null));
+    }
+
+    @Test
+    void incrementalChanges_ShouldBeVisibleInSearch() {
+        // When
+        index.add(4L, "Запрос на разблокировку карты", "Карта **** 9999 заблокирована по ошибке", false, NOW);
+        index.markProcessed(List.of(1L));
+        index.remove(3L);
+
+        // Then
+        assertArrayEquals(new long[]{4L}, index.search("9999", null));
+        assertArrayEquals(new long[]{4L, 2L, 1L}, index.search("запрос карта", null));
+        assertArrayEquals(new long[]{4L}, index.search("запрос карта", false));
+        assertArrayEquals(new long[]{1L}, index.search("блокировку", true));
+        assertArrayEquals(new long[0], index.search("перевод", null));
+    }
+
+    @Test
+    void search_ShouldOrderByCreatedAtThenId() {
+        // Given
+        index.add(5L, "Запрос на пополнение карты", "Карта **** 4321, старое уведомление", false, NOW.minusDays(1));
+        index.add(6L, "Запрос на пополнение карты", "Карта **** 4321", false, NOW);
+        index.add(7L, "Запрос на пополнение карты", "Карта **** 4321", false, NOW);
+        index.add(8L, "Запрос на пополнение карты", "Карта **** 4321, без даты", false, null);
+
+        // When & Then
+        assertArrayEquals(new long[]{7L, 6L, 5L, 8L}, index.search("4321", null));
+    }
+
+    @Test
+    void tokenize_ShouldNormalizeCaseAndYo() {
+        // When
+        List<String> tokens = NotificationSearchIndex.tokenize("Ёлка ЗАПРОС, запрос 1234 a");
+
+        // Then
+        assertEquals(List.of("елк", "запрос", "1234"), tokens);
+    }
+}
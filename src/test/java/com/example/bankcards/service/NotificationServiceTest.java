@@ -3,7 +3,10 @@ package com.example.bankcards.service;
 import com.example.bankcards.entity.BankCard;
 import com.example.bankcards.entity.Notification;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.exception.ValidationException;
 import com.example.bankcards.repository.NotificationRepository;
+import com.example.bankcards.util.ValidationUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,12 +20,15 @@ import org.springframework.data.domain.PageRequest;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
@@ -32,6 +38,15 @@ class NotificationServiceTest {
     @Mock
     private NotificationRepository notificationRepository;
 
+    @Mock
+    private ValidationUtils validationUtils;
+
+    @Mock
+    private NotificationStreamHub notificationStreamHub;
+
+    @Mock
+    private NotificationSearchIndex notificationSearchIndex;
+
     @InjectMocks
     private NotificationService notificationService;
 
@@ -206,6 +221,29 @@ class NotificationServiceTest {
         assertEquals(Notification.Type.CARD_BLOCK_REQUEST, result.getContent().get(0).getType());
     }
 
+    @Test
+    void getNotificationsWithFilters_IndexReady_ShouldLoadByIdsInIndexOrder() {
+        // Given
+        Notification second = new Notification();
+        second.setId(2L);
+        second.setType(Notification.Type.CARD_BLOCK_REQUEST);
+        when(notificationSearchIndex.search("карта", null)).thenReturn(new long[]{2L, 1L});
+        when(notificationRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(testNotification, second));
+
+        // When
+        Page<Notification> result = notificationService.getNotificationsWithFilters(
+                "карта",
+                null,
+                PageRequest.of(0, 10)
+        );
+
+        // Then
+        assertEquals(2, result.getTotalElements());
+        assertEquals(2L, result.getContent().get(0).getId());
+        assertEquals(1L, result.getContent().get(1).getId());
+        verify(notificationRepository, never()).searchNotificationsWithFilters(any(), any(), any());
+    }
+
     @Test
     void getNotificationById_ShouldReturnNotification() {
         // Given
@@ -353,6 +391,179 @@ class NotificationServiceTest {
         verify(notificationRepository).countByUserAndIsReadFalse(testUser);
     }
 
+    @Test
+    void getUnreadCount_RepeatedCalls_ShouldQueryDatabaseOnce() {
+        // Given
+        when(notificationRepository.countByUserAndIsReadFalse(testUser)).thenReturn(4L);
+
+        // When
+        notificationService.getUnreadCount(testUser);
+        long result = notificationService.getUnreadCount(testUser);
+
+        // Then
+        assertEquals(4L, result);
+        verify(notificationRepository, times(1)).countByUserAndIsReadFalse(testUser);
+    }
+
+    @Test
+    void getUnreadCount_AfterCreateAndMarkAsRead_ShouldTrackChanges() {
+        // Given
+        when(notificationRepository.countByUserAndIsReadFalse(testUser)).thenReturn(2L);
+        when(notificationRepository.save(any(Notification.class))).thenReturn(testNotification);
+        when(notificationRepository.findById(1L)).thenReturn(Optional.of(testNotification));
+        notificationService.getUnreadCount(testUser);
+
+        // When
+        notificationService.createCardBlockRequest(testUser, testCard, "Утеряна");
+        long afterCreate = notificationService.getUnreadCount(testUser);
+        notificationService.markAsRead(1L);
+        notificationService.markAsRead(1L);
+        long afterRead = notificationService.getUnreadCount(testUser);
+
+        // Then
+        assertEquals(3L, afterCreate);
+        assertEquals(2L, afterRead);
+        verify(notificationRepository, times(1)).countByUserAndIsReadFalse(testUser);
+    }
+
+    @Test
+    void reconcileUnreadCounters_ShouldFixDrift() {
+        // Given
+        when(notificationRepository.countByUserAndIsReadFalse(testUser)).thenReturn(5L);
+        notificationService.getUnreadCount(testUser);
+        List<Object[]> actual = new ArrayList<>();
+        actual.add(new Object[]{1L, 7L});
+        when(notificationRepository.countUnreadGroupedByUser(anyList())).thenReturn(actual);
+
+        // When
+        notificationService.reconcileUnreadCounters();
+
+        // Then
+        assertEquals(7L, notificationService.getUnreadCount(testUser));
+    }
+
+    @Test
+    void markAllAsRead_ShouldRunSingleUpdateAndResetCounter() {
+        // Given
+        when(notificationRepository.countByUserAndIsReadFalse(testUser)).thenReturn(3000L);
+        when(notificationRepository.markAllAsReadByUser(eq(testUser), any(LocalDateTime.class))).thenReturn(3000);
+        notificationService.getUnreadCount(testUser);
+
+        // When
+        int updated = notificationService.markAllAsRead(testUser);
+
+        // Then
+        assertEquals(3000, updated);
+        assertEquals(0L, notificationService.getUnreadCount(testUser));
+        verify(notificationRepository, never()).findByUserAndIsReadFalseOrderByCreatedAtDesc(any());
+        verify(notificationRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void markProcessed_ShouldDeduplicateIdsAndRunSingleUpdate() {
+        // Given
+        when(notificationRepository.markProcessedByIds(anyCollection(), any(LocalDateTime.class))).thenReturn(2);
+
+        // When
+        int updated = notificationService.markProcessed(Arrays.asList(1L, 2L, 2L));
+
+        // Then
+        assertEquals(2, updated);
+        verify(notificationRepository).markProcessedByIds(argThat(ids -> ids.size() == 2), any(LocalDateTime.class));
+        verify(notificationRepository, never()).save(any(Notification.class));
+    }
+
+    @Test
+    void markProcessed_EmptyList_ShouldThrowException() {
+        // When & Then
+        assertThrows(ValidationException.class, () -> notificationService.markProcessed(List.of()));
+        verify(notificationRepository, never()).markProcessedByIds(anyCollection(), any());
+    }
+
+    @Test
+    void createCardBlockRequest_ShouldPublishEventToStream() {
+        // Given
+        when(notificationRepository.save(any(Notification.class))).thenAnswer(invocation -> {
+            Notification saved = invocation.getArgument(0);
+            saved.setId(42L);
+            return saved;
+        });
+
+        // When
+        notificationService.createCardBlockRequest(testUser, testCard, "Утеряна");
+
+        // Then
+        verify(notificationStreamHub).publish(argThat(event ->
+                event.id() == 42L
+                        && event.userId() == 1L
+                        && "CARD_BLOCK_REQUEST".equals(event.type())));
+    }
+
+    @Test
+    void createCardTopupRequest_RepeatedWithinWindow_ShouldReuseNotification() {
+        // Given
+        Notification[] stored = new Notification[1];
+        when(notificationRepository.save(any(Notification.class))).thenAnswer(invocation -> {
+            Notification saved = invocation.getArgument(0);
+            saved.setId(42L);
+            stored[0] = saved;
+            return saved;
+        });
+        when(notificationRepository.findById(42L)).thenAnswer(invocation -> Optional.of(stored[0]));
+
+        // When
+        Notification first = notificationService.createCardTopupRequest(testUser, testCard, 500.0);
+        Notification second = notificationService.createCardTopupRequest(testUser, testCard, 500.0);
+
+        // Then
+        assertSame(first, second);
+        assertEquals("1:1:CARD_TOPUP_REQUEST", first.getOpenRequestKey());
+        verify(notificationRepository, times(1)).save(any(Notification.class));
+        verify(notificationRepository, times(1)).findByOpenRequestKey("1:1:CARD_TOPUP_REQUEST");
+        verify(notificationStreamHub, times(1)).publish(any());
+    }
+
+    @Test
+    void createCardTopupRequest_PendingRequestWithOtherAmount_ShouldBeRejected() {
+        // Given
+        Notification pending = new Notification(testUser, testCard, Notification.Type.CARD_TOPUP_REQUEST,
+                "Запрос на пополнение карты", "Пополнение на 100.00 руб.", 100.0);
+        pending.setId(7L);
+        pending.setOpenRequestKey("1:1:CARD_TOPUP_REQUEST");
+        when(notificationRepository.findByOpenRequestKey("1:1:CARD_TOPUP_REQUEST")).thenReturn(Optional.of(pending));
+
+        // When
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> notificationService.createCardTopupRequest(testUser, testCard, 500.0));
+
+        // Then
+        assertEquals("DUPLICATE_REQUEST", exception.getErrorCode());
+        assertEquals(100.0, pending.getAmount());
+        assertEquals("Пополнение на 100.00 руб.", pending.getMessage());
+        verify(notificationRepository, never()).save(any(Notification.class));
+        verify(notificationStreamHub, never()).publish(any());
+    }
+
+    @Test
+    void createCardTopupRequest_PendingRequestWithSameAmount_ShouldReturnIt() {
+        // Given
+        String message = String.format("Пользователь %s %s запросил пополнение карты %s на сумму %.2f руб.",
+                testUser.getFirstName(), testUser.getLastName(), testCard.getMaskedNumber(), 500.0);
+        Notification pending = new Notification(testUser, testCard, Notification.Type.CARD_TOPUP_REQUEST,
+                "Запрос на пополнение карты", message, 500.0);
+        pending.setId(7L);
+        pending.setOpenRequestKey("1:1:CARD_TOPUP_REQUEST");
+        when(notificationRepository.findByOpenRequestKey("1:1:CARD_TOPUP_REQUEST")).thenReturn(Optional.of(pending));
+
+        // When
+        Notification result = notificationService.createCardTopupRequest(testUser, testCard, 500.0);
+
+        // Then
+        assertSame(pending, result);
+        verify(notificationRepository, never()).save(any(Notification.class));
+        verify(notificationStreamHub, never()).publish(any());
+    }
+
     @Test
     void createCardBlockRequest_ShouldCreateNotification() {
         // Given
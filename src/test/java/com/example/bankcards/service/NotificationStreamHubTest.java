@@ -0,0 +1,48 @@
+package com.example.bankcards.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationStreamHubTest {
+
+    private NotificationStreamHub hub;
+
+    @BeforeEach
+    void setUp() {
+        hub = new NotificationStreamHub(4, 2, 60000, 60000, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.shutdown();
+    }
+
+    @Test
+    void subscribe_OverLimit_ShouldReturnNull() {
+        // When
+        SseEmitter first = hub.subscribe();
+        SseEmitter second = hub.subscribe();
+        SseEmitter third = hub.subscribe();
+
+        // Then
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(third);
+        assertEquals(2, hub.getSubscriberCount());
+    }
+
+    @Test
+    void publish_ShouldNotBlockWithoutSubscribers() {
+        // When & Then
+        assertDoesNotThrow(() -> hub.publish(new NotificationStreamHub.NotificationEvent(
+                1L, 1L, "CARD_BLOCK_REQUEST", "Запрос на блокировку карты",
+                "Запрос на блокировку карты", "Сообщение", LocalDateTime.now())));
+        assertEquals(0, hub.getSubscriberCount());
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.AuditLog;
+import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.OutboxEvent;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.repository.OutboxEventRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private AuditService auditService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private BankCardService bankCardService;
+
+    @InjectMocks
+    private AuditOutboxHandler auditOutboxHandler;
+
+    @InjectMocks
+    private NotificationOutboxHandler notificationOutboxHandler;
+
+    private RecordingHandler handler;
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    void setUp() {
+        handler = new RecordingHandler();
+        outboxRelay = new OutboxRelay(outboxEventRepository, new ObjectMapper(), transactionManager,
+                List.of(handler), 10, 60000, 300000, 3);
+    }
+
+    @Test
+    void drain_ShouldDeliverInOrder_AndDeleteDeliveredEvents() {
+        // Given
+        List<OutboxEvent> batch = List.of(
+                event(1L, OutboxEvent.Type.CARD_CREATED, 5L),
+                event(2L, OutboxEvent.Type.CARD_TOPPED_UP, 5L),
+                event(3L, OutboxEvent.Type.TRANSFER_COMPLETED, 7L));
+        when(outboxEventRepository.findDueForUpdate(any(LocalDateTime.class), any(Pageable.class))).thenReturn(batch);
+
+        // When
+        int delivered = outboxRelay.drain();
+
+        // Then
+        assertEquals(3, delivered);
+        assertEquals(List.of(1L, 2L, 3L), handler.handled);
+        verify(outboxEventRepository).claim(eq(List.of(1L, 2L, 3L)), any(LocalDateTime.class));
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L, 2L, 3L));
+        verify(outboxEventRepository, never()).postpone(anyLong(), anyString(), any(LocalDateTime.class));
+    }
+
+    @Test
+    void drain_HandlerFails_ShouldPostponeEvent_AndHoldLaterEventsOfSameAggregate() {
+        // Given: событие 1 карты 5 падает, событие 3 той же карты ждет, перевод 7 доставляется
+        handler.failingIds.add(1L);
+        List<OutboxEvent> batch = List.of(
+                event(1L, OutboxEvent.Type.CARD_BLOCKED, 5L),
+                event(2L, OutboxEvent.Type.TRANSFER_COMPLETED, 7L),
+                event(3L, OutboxEvent.Type.CARD_ACTIVATED, 5L));
+        when(outboxEventRepository.findDueForUpdate(any(LocalDateTime.class), any(Pageable.class))).thenReturn(batch);
+
+        // When
+        int delivered = outboxRelay.drain();
+
+        // Then
+        assertEquals(1, delivered);
+        assertEquals(List.of(1L, 2L), handler.handled);
+        verify(outboxEventRepository).postpone(eq(1L), contains("handler failed"), any(LocalDateTime.class));
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(2L));
+        verify(outboxEventRepository).claim(eq(List.of(3L)), any(LocalDateTime.class));
+        assertEquals(1L, outboxRelay.getStats().get("failures"));
+    }
+
+    @Test
+    void drain_AttemptsExhausted_ShouldParkEvent_AndDeliverLaterEventsOfSameAggregate() {
+        // Given: событие 1 карты 5 падает третий раз подряд
+        handler.failingIds.add(1L);
+        OutboxEvent exhausted = event(1L, OutboxEvent.Type.CARD_BLOCK_REQUESTED, 5L);
+        exhausted.setAttempts(2);
+        when(outboxEventRepository.findDueForUpdate(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(exhausted, event(2L, OutboxEvent.Type.CARD_TOPPED_UP, 5L)));
+
+        // When
+        int delivered = outboxRelay.drain();
+
+        // Then: событие отложено насовсем, следующее событие карты доставлено
+        assertEquals(1, delivered);
+        assertEquals(List.of(1L, 2L), handler.handled);
+        verify(outboxEventRepository).park(eq(1L), contains("handler failed"), any(LocalDateTime.class));
+        verify(outboxEventRepository, never()).postpone(anyLong(), anyString(), any(LocalDateTime.class));
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(2L));
+    }
+
+    @Test
+    void drain_AuditWriteFails_ShouldKeepEventForRetry() {
+        // Given: запись аудита по событию 1 не удалась, событие 2 другой карты записано
+        OutboxRelay relay = new OutboxRelay(outboxEventRepository, new ObjectMapper(), transactionManager,
+                List.of(auditOutboxHandler), 10, 60000, 300000, 3);
+        OutboxEvent failing = event(1L, OutboxEvent.Type.CARD_TOPPED_UP, 5L);
+        OutboxEvent written = event(2L, OutboxEvent.Type.CARD_CREATED, 6L);
+        when(outboxEventRepository.findDueForUpdate(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(failing, written));
+        when(auditService.logOutboxAction(eq("CARD:5:1"), any(), eq(AuditLog.Actions.TOPUP_CARD), anyString(), eq(5L),
+                anyString(), any(), any())).thenThrow(new DataAccessResourceFailureException("audit database down"));
+        when(auditService.logOutboxAction(eq("CARD:6:2"), any(), eq(AuditLog.Actions.CREATE_CARD), anyString(), eq(6L),
+                anyString(), any(), any())).thenReturn(true);
+
+        // When
+        int delivered = relay.drain();
+
+        // Then: событие 1 отложено и не удалено, повтор запишет его под тем же ключом
+        assertEquals(1, delivered);
+        verify(outboxEventRepository).postpone(eq(1L), contains("audit database down"), any(LocalDateTime.class));
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(2L));
+    }
+
+    @Test
+    void drain_BlockRequestAlreadyPending_ShouldTreatEventAsHandled() {
+        // Given: по карте 5 уже ожидает запрос с другой причиной
+        OutboxRelay relay = new OutboxRelay(outboxEventRepository, new ObjectMapper(), transactionManager,
+                List.of(notificationOutboxHandler), 10, 60000, 300000, 3);
+        User user = new User();
+        BankCard card = new BankCard();
+        when(outboxEventRepository.findDueForUpdate(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(event(1L, OutboxEvent.Type.CARD_BLOCK_REQUESTED, 5L)));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(bankCardService.getCardEntityById(5L)).thenReturn(Optional.of(card));
+        when(notificationService.createCardBlockRequest(eq(user), eq(card), anyString()))
+                .thenThrow(new BusinessException("Запрос уже ожидает обработки", "DUPLICATE_REQUEST"));
+
+        // When
+        int delivered = relay.drain();
+
+        // Then
+        assertEquals(1, delivered);
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L));
+        verify(outboxEventRepository, never()).postpone(anyLong(), anyString(), any(LocalDateTime.class));
+    }
+
+    @Test
+    void drain_FullBatch_ShouldClaimNextBatch() {
+        // Given
+        List<OutboxEvent> full = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            full.add(event(id, OutboxEvent.Type.CARD_CREATED, id));
+        }
+        when(outboxEventRepository.findDueForUpdate(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(full)
+                .thenReturn(List.of(event(11L, OutboxEvent.Type.CARD_CREATED, 11L)));
+
+        // When
+        int delivered = outboxRelay.drain();
+
+        // Then
+        assertEquals(11, delivered);
+        verify(outboxEventRepository, times(2)).findDueForUpdate(any(LocalDateTime.class), any(Pageable.class));
+    }
+
+    @Test
+    void drain_NoEvents_ShouldNotCallHandlers() {
+        // Given
+        when(outboxEventRepository.findDueForUpdate(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of());
+
+        // When
+        int delivered = outboxRelay.drain();
+
+        // Then
+        assertEquals(0, delivered);
+        assertTrue(handler.handled.isEmpty());
+        verify(outboxEventRepository, never()).claim(any(), any());
+        verify(outboxEventRepository, never()).deleteAllByIdInBatch(any());
+    }
+
+    private static OutboxEvent event(Long id, OutboxEvent.Type type, Long aggregateId) {
+        OutboxEvent event = new OutboxEvent(type, aggregateId, "{\"userId\":1}");
+        event.setId(id);
+        return event;
+    }
+
+    /**
+     * Запоминает id обработанных событий и падает на заданных
+     */
+    private static class RecordingHandler implements OutboxEventHandler {
+
+        private final List<Long> handled = new ArrayList<>();
+        private final Set<Long> failingIds = new HashSet<>();
+
+        @Override
+        public Set<OutboxEvent.Type> getTypes() {
+            return EnumSet.allOf(OutboxEvent.Type.class);
+        }
+
+        @Override
+        public void handle(OutboxEvent event, JsonNode payload) {
+            handled.add(event.getId());
+            if (failingIds.contains(event.getId())) {
+                throw new IllegalStateException("handler failed");
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.SchedulerLockRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SchedulerLockServiceTest {
+
+    @Mock
+    private SchedulerLockRepository schedulerLockRepository;
+
+    private SchedulerLockService schedulerLockService;
+
+    @BeforeEach
+    void setUp() {
+        schedulerLockService = new SchedulerLockService(schedulerLockRepository, "node-1", 600000, 60000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        schedulerLockService.shutdown();
+    }
+
+    @Test
+    void runLocked_ExpiredLock_ShouldTakeOverAndRunTask() {
+        // Given
+        when(schedulerLockRepository.takeOver(eq("job"), eq("node-1"), any(), any())).thenReturn(1);
+
+        // When
+        Optional<Integer> result = schedulerLockService.runLocked("job", () -> 5);
+
+        // Then
+        assertEquals(Optional.of(5), result);
+        verify(schedulerLockRepository, never()).insertLock(any(), any(), any(), any());
+        verify(schedulerLockRepository).release(eq("job"), eq("node-1"), any());
+    }
+
+    @Test
+    void runLocked_FirstRun_ShouldInsertLock() {
+        // Given
+        when(schedulerLockRepository.takeOver(eq("job"), eq("node-1"), any(), any())).thenReturn(0);
+        when(schedulerLockRepository.insertLock(eq("job"), eq("node-1"), any(), any())).thenReturn(1);
+
+        // When
+        Optional<String> result = schedulerLockService.runLocked("job", () -> "done");
+
+        // Then
+        assertEquals(Optional.of("done"), result);
+    }
+
+    @Test
+    void runLocked_HeldByOtherNode_ShouldSkipTask() {
+        // Given
+        when(schedulerLockRepository.takeOver(eq("job"), eq("node-1"), any(), any())).thenReturn(0);
+        when(schedulerLockRepository.insertLock(eq("job"), eq("node-1"), any(), any()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        // When
+        Optional<Integer> result = schedulerLockService.runLocked("job", () -> fail("Задача не должна выполняться"));
+
+        // Then
+        assertTrue(result.isEmpty());
+        verify(schedulerLockRepository, never()).release(any(), any(), any());
+    }
+
+    @Test
+    void runLocked_TaskFails_ShouldReleaseLock_AndKeepItForLockAtLeast() {
+        // Given
+        when(schedulerLockRepository.takeOver(eq("job"), eq("node-1"), any(), any())).thenReturn(1);
+        LocalDateTime before = LocalDateTime.now();
+
+        // When
+        assertThrows(IllegalStateException.class, () -> schedulerLockService.runLocked("job", () -> {
+            throw new IllegalStateException("ошибка задачи");
+        }));
+
+        // Then: быстрая задача держит блокировку еще около минуты
+        ArgumentCaptor<LocalDateTime> until = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(schedulerLockRepository).release(eq("job"), eq("node-1"), until.capture());
+        assertTrue(until.getValue().isAfter(before.plusSeconds(59)));
+    }
+}
@@ -3,18 +3,23 @@ package com.example.bankcards.service;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.dto.TransferResponse;
 import com.example.bankcards.entity.BankCard;
+import com.example.bankcards.entity.OutboxEvent;
 import com.example.bankcards.entity.Transfer;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.*;
 import com.example.bankcards.repository.BankCardRepository;
 import com.example.bankcards.repository.TransferRepository;
 import com.example.bankcards.util.ValidationUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -38,7 +43,13 @@ class TransferServiceTest {
     private ValidationUtils validationUtils;
 
     @Mock
-    private AuditService auditService;
+    private OutboxService outboxService;
+
+    @Mock
+    private DataVersionService dataVersionService;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @InjectMocks
     private TransferService transferService;
@@ -93,8 +104,8 @@ class TransferServiceTest {
     @Test
     void transfer_Success() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(fromCard, toCard);
         when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
@@ -121,13 +132,15 @@ class TransferServiceTest {
         verify(transferRepository).save(any(Transfer.class));
         verify(bankCardRepository).save(fromCard);
         verify(bankCardRepository).save(toCard);
-        verify(auditService).logTransfer(eq(testUser), eq(1L), eq("**** **** **** 1234"), eq("**** **** **** 5678"), eq(200.0));
+        verify(outboxService).publish(eq(OutboxEvent.Type.TRANSFER_COMPLETED), eq(1L), argThat(payload ->
+                payload.get("fromCard").equals("**** **** **** 1234") && payload.get("toCard").equals("**** **** **** 5678")
+                        && payload.get("amount").equals(200.0)));
     }
 
     @Test
     void transfer_FromCardNotFound() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.empty());
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(ResourceNotFoundException.class, () -> {
@@ -138,8 +151,8 @@ class TransferServiceTest {
     @Test
     void transfer_ToCardNotFound() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.empty());
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(ResourceNotFoundException.class, () -> {
@@ -151,7 +164,7 @@ class TransferServiceTest {
     void transfer_SameCard() {
         // Given
         transferRequest.setToCardId(1L); // Same as fromCardId
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
 
         // When & Then
         assertThrows(ValidationException.class, () -> {
@@ -163,8 +176,8 @@ class TransferServiceTest {
     void transfer_FromCardBlocked() {
         // Given
         fromCard.setStatus(BankCard.Status.BLOCKED);
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
 
         // When & Then
         assertThrows(CardBlockedException.class, () -> {
@@ -176,8 +189,8 @@ class TransferServiceTest {
     void transfer_ToCardBlocked() {
         // Given
         toCard.setStatus(BankCard.Status.BLOCKED);
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
 
         // When & Then
         assertThrows(CardBlockedException.class, () -> {
@@ -189,8 +202,8 @@ class TransferServiceTest {
     void transfer_InsufficientFunds() {
         // Given
         transferRequest.setAmount(BigDecimal.valueOf(1500.00)); // More than balance
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
 
         // When & Then
         assertThrows(InsufficientFundsException.class, () -> {
@@ -205,8 +218,8 @@ class TransferServiceTest {
         otherUser.setId(2L);
         fromCard.setOwner(otherUser);
         
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
 
         // When & Then
         assertThrows(BusinessException.class, () -> {
@@ -221,8 +234,8 @@ class TransferServiceTest {
         otherUser.setId(2L);
         toCard.setOwner(otherUser);
         
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
 
         // When & Then
         assertThrows(BusinessException.class, () -> {
@@ -233,8 +246,8 @@ class TransferServiceTest {
     @Test
     void transfer_TransferFails_Rollback() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
         when(bankCardRepository.save(fromCard)).thenThrow(new RuntimeException("Database error"));
 
@@ -295,8 +308,8 @@ class TransferServiceTest {
     void transfer_ExactBalance() {
         // Given
         transferRequest.setAmount(BigDecimal.valueOf(1000.00)); // Exact balance
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(fromCard, toCard);
 
@@ -313,8 +326,8 @@ class TransferServiceTest {
     void transfer_ExpiredCard() {
         // Given
         fromCard.setExpiryDate(LocalDate.now().minusDays(1));
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
 
         // When & Then
         assertThrows(CardBlockedException.class, () -> {
@@ -326,8 +339,8 @@ class TransferServiceTest {
     void transfer_ExpiredToCard() {
         // Given
         toCard.setExpiryDate(LocalDate.now().minusDays(1));
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
 
         // When & Then
         assertThrows(CardBlockedException.class, () -> {
@@ -339,8 +352,8 @@ class TransferServiceTest {
     void transfer_MaximumAmount() {
         // Given
         transferRequest.setAmount(BigDecimal.valueOf(999999.99)); // Large amount
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(fromCard, toCard);
 
@@ -356,8 +369,8 @@ class TransferServiceTest {
     @Test
     void transfer_ConcurrentTransferAttempts() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(fromCard, toCard);
 
@@ -448,8 +461,8 @@ class TransferServiceTest {
     void transfer_SpecialCharactersInDescription() {
         // Given
         transferRequest.setDescription("Transfer with special chars: !@#$%^&*()");
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(fromCard, toCard);
 
@@ -466,8 +479,8 @@ class TransferServiceTest {
     void transfer_UnicodeDescription() {
         // Given
         transferRequest.setDescription("Перевод с кириллицей и эмодзи 🏦💰");
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(fromCard, toCard);
 
@@ -483,8 +496,8 @@ class TransferServiceTest {
     @Test
     void transfer_DatabaseErrorDuringSave() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenThrow(new RuntimeException("Database connection failed"));
 
         // When & Then
@@ -496,8 +509,8 @@ class TransferServiceTest {
     @Test
     void transfer_PartialFailure_Rollback() {
         // Given
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
         when(bankCardRepository.save(fromCard)).thenReturn(fromCard);
         when(bankCardRepository.save(toCard)).thenThrow(new RuntimeException("Failed to save to card"));
@@ -515,8 +528,8 @@ class TransferServiceTest {
     void transfer_EdgeCase_OneCent() {
         // Given
         transferRequest.setAmount(BigDecimal.valueOf(0.01));
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(fromCard, toCard);
 
@@ -535,8 +548,8 @@ class TransferServiceTest {
     void transfer_EdgeCase_MaximumPrecision() {
         // Given
         transferRequest.setAmount(BigDecimal.valueOf(123.456789)); // High precision
-        when(bankCardRepository.findById(1L)).thenReturn(Optional.of(fromCard));
-        when(bankCardRepository.findById(2L)).thenReturn(Optional.of(toCard));
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
         when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
         when(bankCardRepository.save(any(BankCard.class))).thenReturn(fromCard, toCard);
 
@@ -548,4 +561,37 @@ class TransferServiceTest {
         assertEquals("COMPLETED", result.getStatus());
         assertEquals(BigDecimal.valueOf(123.456789), result.getAmount());
     }
+
+    @Test
+    void transfer_ShouldRecordTimerTaggedByOutcome() {
+        // Given
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
+        when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
+
+        // When
+        transferService.transfer(transferRequest, testUser);
+        transferRequest.setAmount(BigDecimal.valueOf(5000.00));
+        assertThrows(InsufficientFundsException.class, () -> transferService.transfer(transferRequest, testUser));
+
+        // Then: код бизнес-ошибки становится тегом, а не текст сообщения
+        assertEquals(1, meterRegistry.get(TransferService.TRANSFER_TIMER).tag("outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get(TransferService.TRANSFER_TIMER).tag("outcome", "insufficient_funds").timer().count());
+    }
+
+    @Test
+    void transfer_CardChangedConcurrently_ShouldRecordConflict() {
+        // Given: версия карты изменилась между чтением и записью
+        when(bankCardRepository.findCurrentById(1L)).thenReturn(Optional.of(fromCard));
+        when(bankCardRepository.findCurrentById(2L)).thenReturn(Optional.of(toCard));
+        when(transferRepository.save(any(Transfer.class))).thenReturn(testTransfer);
+        doThrow(new ObjectOptimisticLockingFailureException(BankCard.class, 1L)).when(bankCardRepository).flush();
+
+        // When
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> transferService.transfer(transferRequest, testUser));
+
+        // Then: конфликт обнаружен внутри замера
+        assertEquals(1, meterRegistry.get(TransferService.TRANSFER_TIMER).tag("outcome", "conflict").timer().count());
+        assertNull(meterRegistry.find(TransferService.TRANSFER_TIMER).tag("outcome", "success").timer());
+    }
 }
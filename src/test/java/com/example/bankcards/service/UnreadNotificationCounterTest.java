@@ -0,0 +1,51 @@
+package com.example.bankcards.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnreadNotificationCounterTest {
+
+    @Test
+    void get_ShouldLoadOnceAndApplyChanges() {
+        // Given
+        UnreadNotificationCounter counter = new UnreadNotificationCounter(10);
+        AtomicInteger loads = new AtomicInteger();
+
+        // When
+        long first = counter.get(1L, () -> {
+            loads.incrementAndGet();
+            return 3;
+        });
+        counter.add(1L, 2);
+        long second = counter.get(1L, () -> {
+            loads.incrementAndGet();
+            return 100;
+        });
+
+        // Then
+        assertEquals(3, first);
+        assertEquals(5, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void get_OverLimit_ShouldEvictLeastRecentlyRead() {
+        // Given
+        UnreadNotificationCounter counter = new UnreadNotificationCounter(3);
+        counter.get(1L, () -> 1);
+        counter.get(2L, () -> 2);
+        counter.get(3L, () -> 3);
+        counter.get(1L, () -> 0);
+
+        // When
+        counter.get(4L, () -> 4);
+
+        // Then
+        assertTrue(counter.size() <= 3);
+        assertFalse(counter.trackedUserIds().contains(2L));
+        assertTrue(counter.trackedUserIds().contains(4L));
+    }
+}
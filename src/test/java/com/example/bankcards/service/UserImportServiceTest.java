@@ -0,0 +1,134 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.UserImportResult;
+import com.example.bankcards.dto.UserImportRow;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.ValidationException;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.PasswordHashingExecutor;
+import com.example.bankcards.util.ValidationUtils;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserImportServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserSearchIndex userSearchIndex;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private Session session;
+
+    private PasswordHashingExecutor passwordHashingExecutor;
+    private UserImportService userImportService;
+
+    @BeforeEach
+    void setUp() {
+        passwordHashingExecutor = new PasswordHashingExecutor(1, 4, 4);
+        userImportService = new UserImportService(userRepository, new ValidationUtils(), mock(DataVersionService.class),
+                userSearchIndex, transactionManager, passwordHashingExecutor, 2, 2, 100);
+        ReflectionTestUtils.setField(userImportService, "entityManager", entityManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userImportService.shutdown();
+        passwordHashingExecutor.shutdown();
+    }
+
+    @Test
+    void parseCsv_ShouldMapColumnsIgnoringHeaderCase() throws Exception {
+        // Given
+        String csv = "EMAIL,Password,firstname,lastName,role\n"
+                + "ivan@example.com,secret1,Иван,Петров,admin\n"
+                + "\n"
+                + "\"anna@example.com\",secret2,Анна,Смирнова,\n";
+
+        // When
+        List<UserImportRow> rows = userImportService.parseCsv(new StringReader(csv));
+
+        // Then
+        assertEquals(2, rows.size());
+        assertEquals("ivan@example.com", rows.get(0).getEmail());
+        assertEquals("Иван", rows.get(0).getFirstName());
+        assertEquals("admin", rows.get(0).getRole());
+        assertNull(rows.get(1).getRole());
+        assertNull(rows.get(1).getCountry());
+    }
+
+    @Test
+    void parseCsv_WithoutEmailColumn_ShouldThrowException() {
+        // When & Then
+        assertThrows(ValidationException.class,
+                () -> userImportService.parseCsv(new StringReader("name,password\nIvan,secret1\n")));
+    }
+
+    @Test
+    void importUsers_ShouldReportRowErrorsAndInsertValidRows() {
+        // Given
+        when(entityManager.unwrap(Session.class)).thenReturn(session);
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of());
+        when(userRepository.findExistingEmails(List.of("taken@example.com"))).thenReturn(List.of("TAKEN@example.com"));
+        List<UserImportRow> rows = List.of(
+                new UserImportRow("ivan@example.com", "secret1", "Иван", "Петров", null, null, null, null),
+                new UserImportRow("not-an-email", "secret2", "Анна", "Смирнова", null, null, null, null),
+                new UserImportRow("IVAN@example.com", "secret3", "Иван", "Второй", null, null, null, null),
+                new UserImportRow("taken@example.com", "secret4", "Петр", "Иванов", "ADMIN", null, null, null),
+                new UserImportRow("olga@example.com", "secret5", "Ольга", "Сидорова", "OWNER", null, null, null));
+
+        // When
+        UserImportResult result = userImportService.importUsers(rows);
+
+        // Then
+        assertEquals(5, result.getTotal());
+        assertEquals(1, result.getImported());
+        assertEquals(List.of(2, 3, 4, 5), result.getErrors().stream().map(UserImportResult.RowError::getRow).toList());
+
+        ArgumentCaptor<User> captor = ArgumentCaptor.forClass(User.class);
+        verify(entityManager).persist(captor.capture());
+        User saved = captor.getValue();
+        assertEquals("ivan@example.com", saved.getEmail());
+        assertEquals(User.Role.USER, saved.getRole());
+        assertTrue(new BCryptPasswordEncoder().matches("secret1", saved.getPassword()));
+        verify(session).setJdbcBatchSize(2);
+        verify(userSearchIndex).add(saved);
+    }
+
+    @Test
+    void importUsers_TooManyRows_ShouldThrowException() {
+        // Given
+        List<UserImportRow> rows = Collections.nCopies(101, new UserImportRow());
+
+        // When & Then
+        assertThrows(ValidationException.class, () -> userImportService.importUsers(rows));
+        verify(userRepository, never()).findExistingEmails(any());
+    }
+}
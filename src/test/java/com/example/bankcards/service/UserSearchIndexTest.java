@@ -0,0 +1,124 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserSearchIndexTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private UserSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new UserSearchIndex(userRepository, transactionManager);
+
+        when(userRepository.streamForSearchIndex()).thenReturn(Stream.of(
+                new Object[]{1L, "Иван", "Петров", "ivan.petrov@example.com"},
+                new Object[]{2L, "Анна", "Смирнова", "anna@example.com"},
+                new Object[]{12L, "Пётр", "Иванов", "petr@mail.ru"}
+        ));
+        index.rebuild();
+    }
+
+    @Test
+    void search_BeforeRebuild_ShouldReturnNull() {
+        // Given
+        UserSearchIndex empty = new UserSearchIndex(userRepository, transactionManager);
+
+        // When & Then
+        assertNull(empty.search("иван"));
+    }
+
+    @Test
+    void search_ExactMatch_ShouldRankBeforePrefixAndSubstring() {
+        // When & Then
+        assertArrayEquals(new long[]{1L, 12L}, index.search("Иван"));
+        assertArrayEquals(new long[]{12L, 1L}, index.search("петр"));
+        assertArrayEquals(new long[]{2L, 1L, 12L}, index.search("ан"));
+    }
+
+    @Test
+    void search_SubstringOfEmailAndId_ShouldMatch() {
+        // When & Then
+        assertArrayEquals(new long[]{1L, 2L}, index.search("example"));
+        assertArrayEquals(new long[]{1L}, index.search("rov@ex"));
+        assertArrayEquals(new long[]{12L}, index.search("12"));
+        assertArrayEquals(new long[]{1L, 12L}, index.search("1"));
+    }
+
+    @Test
+    void search_SeveralWords_ShouldMatchAll() {
+        // When & Then
+        assertArrayEquals(new long[]{1L}, index.search("иван петров"));
+        assertArrayEquals(new long[0], index.search("иван смирнова"));
+        assertArrayEquals(new long[0], index.search("zzz"));
+    }
+
+    @Test
+    void addAndRemove_ShouldUpdateIndex() {
+        // Given
+        User renamed = new User();
+        renamed.setId(2L);
+        renamed.setFirstName("Анна");
+        renamed.setLastName("Иванова");
+        renamed.setEmail("anna@example.com");
+
+        // When
+        index.remove(1L);
+        index.add(renamed);
+
+        // Then
+        assertArrayEquals(new long[]{2L, 12L}, index.search("иван"));
+        assertArrayEquals(new long[0], index.search("смирнова"));
+    }
+
+    @Test
+    void refreshChanged_ShouldApplyUsersChangedOnOtherNodes() {
+        // Given
+        when(userRepository.streamForSearchIndexChangedSince(any(LocalDateTime.class))).thenReturn(Stream.of(
+                new Object[]{2L, "Анна", "Иванова", "anna@example.com"},
+                new Object[]{30L, "Олег", "Смирнов", "oleg@example.com"}
+        ));
+
+        // When
+        index.refreshChanged();
+
+        // Then
+        assertArrayEquals(new long[]{1L, 2L, 12L}, index.search("иван"));
+        assertArrayEquals(new long[]{30L}, index.search("смирно"));
+    }
+
+    @Test
+    void refreshChanged_BeforeRebuild_ShouldNotQuery() {
+        // Given
+        UserSearchIndex empty = new UserSearchIndex(userRepository, transactionManager);
+
+        // When
+        empty.refreshChanged();
+
+        // Then
+        verify(userRepository, never()).streamForSearchIndexChangedSince(any());
+        assertNull(empty.search("иван"));
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.util.BinaryExportWriter.ColumnType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryExportFormatTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Moscow");
+
+    private byte[] writeSample(boolean deflate, int rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryExportWriter writer = new BinaryExportWriter(out, deflate, ZONE,
+                BinaryExportWriter.column("id", ColumnType.INT64),
+                BinaryExportWriter.column("name", ColumnType.STRING),
+                BinaryExportWriter.column("balance", ColumnType.AMOUNT),
+                BinaryExportWriter.column("created_at", ColumnType.TIMESTAMP),
+                BinaryExportWriter.column("expiry_date", ColumnType.DATE));
+
+        for (int i = 0; i < rows; i++) {
+            writer.beginRow();
+            writer.writeLong(i);
+            writer.writeString(i % 2 == 0 ? "Иван Петров 😀" : null);
+            writer.writeAmount(new BigDecimal("1234.56").add(BigDecimal.valueOf(i)));
+            writer.writeTimestamp(LocalDateTime.of(2024, 3, 15, 10, 30, 0, 123_000_000));
+            writer.writeDate(LocalDate.of(2027, 12, 31));
+            writer.endRow();
+        }
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    @Test
+    void roundTrip_ShouldRestoreAllValues() throws IOException {
+        // Given
+        byte[] data = writeSample(false, 3);
+
+        // When
+        try (BinaryExportReader reader = new BinaryExportReader(new ByteArrayInputStream(data))) {
+            int id = reader.columnIndex("id");
+            int name = reader.columnIndex("name");
+            int balance = reader.columnIndex("balance");
+            int createdAt = reader.columnIndex("created_at");
+            int expiry = reader.columnIndex("expiry_date");
+
+            // Then
+            assertEquals(5, reader.getColumns().size());
+            assertTrue(reader.next());
+            assertEquals(0, reader.getLong(id));
+            assertEquals("Иван Петров 😀", reader.getString(name));
+            assertEquals(123456, reader.getAmountUnscaled(balance));
+            assertEquals(new BigDecimal("1234.56"), reader.getAmount(balance));
+            assertEquals(LocalDateTime.of(2024, 3, 15, 10, 30, 0, 123_000_000), reader.getTimestamp(createdAt, ZONE));
+            assertEquals(LocalDate.of(2027, 12, 31), reader.getDate(expiry));
+
+            assertTrue(reader.next());
+            assertTrue(reader.isNull(name));
+            assertNull(reader.getString(name));
+            assertEquals(new BigDecimal("1235.56"), reader.getAmount(balance));
+
+            assertTrue(reader.next());
+            assertFalse(reader.next());
+            assertEquals(3, reader.getRowCount());
+        }
+    }
+
+    @Test
+    void roundTrip_WithDeflate_ShouldBeSmallerAndEqual() throws IOException {
+        // Given
+        byte[] plain = writeSample(false, 1000);
+        byte[] compressed = writeSample(true, 1000);
+
+        // When
+        long rows = 0;
+        try (BinaryExportReader reader = new BinaryExportReader(new ByteArrayInputStream(compressed))) {
+            int id = reader.columnIndex("id");
+            while (reader.next()) {
+                assertEquals(rows++, reader.getLong(id));
+            }
+        }
+
+        // Then
+        assertEquals(1000, rows);
+        assertTrue(compressed.length < plain.length);
+    }
+
+    @Test
+    void writeAmount_ShouldRoundToKopecks() throws IOException {
+        // Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryExportWriter writer = new BinaryExportWriter(out, false, ZONE,
+                BinaryExportWriter.column("amount", ColumnType.AMOUNT));
+
+        // When
+        for (String value : Arrays.asList("10", "0.005", "-99.99", "123456789012345.67")) {
+            writer.beginRow();
+            writer.writeAmount(new BigDecimal(value));
+            writer.endRow();
+        }
+        writer.finish();
+
+        // Then
+        try (BinaryExportReader reader = new BinaryExportReader(new ByteArrayInputStream(out.toByteArray()))) {
+            assertTrue(reader.next());
+            assertEquals(1000, reader.getAmountUnscaled(0));
+            assertTrue(reader.next());
+            assertEquals(1, reader.getAmountUnscaled(0));
+            assertTrue(reader.next());
+            assertEquals(-9999, reader.getAmountUnscaled(0));
+            assertTrue(reader.next());
+            assertEquals(12345678901234567L, reader.getAmountUnscaled(0));
+        }
+    }
+
+    @Test
+    void writer_WrongColumnType_ShouldThrowException() throws IOException {
+        // Given
+        BinaryExportWriter writer = new BinaryExportWriter(new ByteArrayOutputStream(), false, ZONE,
+                BinaryExportWriter.column("id", ColumnType.INT64));
+        writer.beginRow();
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> writer.writeString("text"));
+    }
+
+    @Test
+    void writer_IncompleteRow_ShouldThrowException() throws IOException {
+        // Given
+        BinaryExportWriter writer = new BinaryExportWriter(new ByteArrayOutputStream(), false, ZONE,
+                BinaryExportWriter.column("id", ColumnType.INT64),
+                BinaryExportWriter.column("name", ColumnType.STRING));
+        writer.beginRow();
+        writer.writeLong(1L);
+
+        // When & Then
+        assertThrows(IllegalStateException.class, writer::endRow);
+    }
+
+    @Test
+    void reader_TruncatedStream_ShouldThrowException() throws IOException {
+        // Given
+        byte[] data = writeSample(false, 2);
+        byte[] truncated = Arrays.copyOf(data, data.length - 4);
+
+        // When & Then
+        assertThrows(IOException.class, () -> {
+            try (BinaryExportReader reader = new BinaryExportReader(new ByteArrayInputStream(truncated))) {
+                while (reader.next()) {
+                    // читаем до конца
+                }
+            }
+        });
+    }
+
+    @Test
+    void reader_NotAnExport_ShouldThrowException() {
+        // When & Then
+        assertThrows(IOException.class,
+                () -> new BinaryExportReader(new ByteArrayInputStream("id,name\n1,a".getBytes())));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimate_SmallCardinality_ShouldBeExact() {
+        // Given
+        HyperLogLog sketch = new HyperLogLog();
+
+        // When
+        for (long id = 1; id <= 50; id++) {
+            sketch.add(id);
+            sketch.add(id);
+        }
+
+        // Then
+        assertEquals(50, sketch.estimate());
+    }
+
+    @Test
+    void estimate_LargeCardinality_ShouldBeWithinFivePercent() {
+        // Given
+        HyperLogLog sketch = new HyperLogLog();
+
+        // When
+        for (long id = 1; id <= 100_000; id++) {
+            sketch.add(id);
+        }
+
+        // Then
+        assertEquals(100_000, sketch.estimate(), 5_000);
+    }
+
+    @Test
+    void merge_ShouldCountUnion() {
+        // Given
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        for (long id = 1; id <= 30; id++) {
+            first.add(id);
+        }
+        for (long id = 21; id <= 40; id++) {
+            second.add(id);
+        }
+
+        // When
+        first.merge(HyperLogLog.fromBytes(second.toBytes()));
+
+        // Then
+        assertEquals(40, first.estimate());
+    }
+}
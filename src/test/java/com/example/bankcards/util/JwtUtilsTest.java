@@ -1,6 +1,8 @@
 package com.example.bankcards.util;
 
 import com.example.bankcards.entity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -311,4 +313,18 @@ class JwtUtilsTest {
         assertTrue(jwtUtils.validateToken(token));
         assertEquals(unicodeUser.getEmail(), jwtUtils.getUsernameFromToken(token));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getIssuedAt_ShouldPreferMillisecondClaim() {
+        // Given
+        Claims claims = Jwts.claims();
+        claims.setIssuedAt(new Date(1_700_000_000_000L));
+        claims.put(JwtUtils.ISSUED_AT_MILLIS_CLAIM, 1_700_000_000_123L);
+        Claims legacy = Jwts.claims();
+        legacy.setIssuedAt(new Date(1_700_000_000_000L));
+
+        // When & Then
+        assertEquals(1_700_000_000_123L, JwtUtils.getIssuedAt(claims).getTime());
+        assertEquals(1_700_000_000_000L, JwtUtils.getIssuedAt(legacy).getTime());
+    }
+}